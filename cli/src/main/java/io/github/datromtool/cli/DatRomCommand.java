@@ -5,7 +5,9 @@ import io.github.datromtool.cli.argument.DatafileArgument;
 import io.github.datromtool.cli.argument.PatternsFileArgument;
 import io.github.datromtool.cli.command.OneGameOneRomCommand;
 import io.github.datromtool.cli.converter.*;
+import io.github.datromtool.data.LinkMode;
 import io.github.datromtool.data.OutputMode;
+import io.github.datromtool.data.SyncMode;
 import io.github.datromtool.io.ArchiveType;
 import picocli.CommandLine;
 
@@ -25,6 +27,8 @@ public final class DatRomCommand {
         CommandLine cmd = new CommandLine(new DatRomCommand());
         cmd.registerConverter(ArchiveType.class, new ArchiveTypeConverter());
         cmd.registerConverter(OutputMode.class, new OutputModeConverter());
+        cmd.registerConverter(LinkMode.class, new LinkModeConverter());
+        cmd.registerConverter(SyncMode.class, new SyncModeConverter());
         cmd.registerConverter(PatternsFileArgument.class, new PatternsFileConverter());
         cmd.registerConverter(DatafileArgument.class, new DatafileConverter());
         cmd.registerConverter(ByteSize.class, new ByteSizeConverter());
@@ -0,0 +1,38 @@
+package io.github.datromtool.cli.converter;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.UnmodifiableIterator;
+import io.github.datromtool.data.SyncMode;
+import picocli.CommandLine;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+
+public final class SyncModeConverter
+        implements CommandLine.ITypeConverter<SyncMode>, Iterable<String> {
+
+    private final static ImmutableList<String> aliases = Arrays.stream(SyncMode.values())
+            .map(Enum::name)
+            .map(String::toLowerCase)
+            .collect(ImmutableList.toImmutableList());
+
+    @Override
+    @Nonnull
+    public UnmodifiableIterator<String> iterator() {
+        return aliases.iterator();
+    }
+
+    @Override
+    public SyncMode convert(String value) {
+        return aliases.stream()
+                .filter(c -> c.equalsIgnoreCase(value))
+                .findFirst()
+                .map(String::toUpperCase)
+                .map(SyncMode::valueOf)
+                .orElseThrow(() -> new CommandLine.TypeConversionException(
+                        String.format(
+                                "'%s' is not a valid sync mode value. It must be one of %s",
+                                value,
+                                aliases)));
+    }
+}
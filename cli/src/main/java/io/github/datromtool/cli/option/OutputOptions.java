@@ -2,8 +2,10 @@ package io.github.datromtool.cli.option;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import io.github.datromtool.cli.converter.ArchiveTypeConverter;
+import io.github.datromtool.cli.converter.LinkModeConverter;
 import io.github.datromtool.cli.converter.OutputModeConverter;
 import io.github.datromtool.data.FileOutputOptions;
+import io.github.datromtool.data.LinkMode;
 import io.github.datromtool.data.OutputMode;
 import io.github.datromtool.data.TextOutputOptions;
 import io.github.datromtool.io.ArchiveType;
@@ -95,6 +97,15 @@ public final class OutputOptions {
                 description = "Group resulting files in subfolders based on their names")
         private boolean alphabetic;
 
+        @CommandLine.Option(
+                names = "--link",
+                paramLabel = "MODE",
+                description = "Link files which need no extraction or compression instead of copying them, "
+                        + "if the filesystem allows it (default: copy). "
+                        + "Options: ${COMPLETION-CANDIDATES}",
+                completionCandidates = LinkModeConverter.class)
+        private LinkMode linkMode;
+
         @CommandLine.ArgGroup
         private GroupingOptions groupingOptions;
 
@@ -103,7 +114,8 @@ public final class OutputOptions {
                     builder = FileOutputOptions.builder();
             builder = builder
                     .outputDir(outputDir)
-                    .alphabetic(alphabetic);
+                    .alphabetic(alphabetic)
+                    .linkMode(linkMode);
             if (groupingOptions != null) {
                 builder = builder
                         .archiveType(groupingOptions.getArchiveType())
@@ -4,7 +4,9 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import io.github.datromtool.ByteSize;
 import io.github.datromtool.cli.converter.ExecutableFileConverter;
+import io.github.datromtool.cli.converter.SyncModeConverter;
 import io.github.datromtool.config.AppConfig;
+import io.github.datromtool.data.SyncMode;
 import lombok.*;
 import picocli.CommandLine;
 
@@ -33,10 +35,27 @@ public class PerformanceOptions {
     private Integer scanThreads;
     private ByteSize scanBufferSize;
     private ByteSize scanBufferMaxSize;
+    private Path scanDirectoryCache;
 
     private Integer copyThreads;
+    private Integer deviceThreads;
+    private Integer zipThreads;
+    private Integer deflateThreads;
+    private Integer xzThreads;
+    private ByteSize xzBlockSize;
+    private Integer zstdLevel;
+    private Integer zstdThreads;
     private ByteSize copyBufferSize;
-    private boolean allowRawZipCopy;
+    private ByteSize writeBufferSize;
+    private SyncMode syncMode;
+    private boolean batchFileTimes;
+    private boolean resume;
+    private boolean skipUnchanged;
+    private Boolean allowRawZipCopy;
+    private boolean copyDuringScan;
+    private boolean disableCloning;
+    private Integer readAheadDepth;
+    private Integer gzipThreads;
     private Path customUnrarPath;
     private Path customSevenZipPath;
 
@@ -67,6 +86,15 @@ public class PerformanceOptions {
         this.scanBufferMaxSize = scanBufferMaxSize;
     }
 
+    @CommandLine.Option(
+            names = "--scan-directory-cache",
+            paramLabel = "FILE",
+            description = "File where the list of files inside each scanned archive is kept between runs. \n" +
+                    "Archives which didn't change since the last run don't need to be listed again.")
+    public void setScanDirectoryCache(Path scanDirectoryCache) {
+        this.scanDirectoryCache = scanDirectoryCache;
+    }
+
     @CommandLine.Option(
             names = "--copy-threads",
             paramLabel = "THREADS",
@@ -76,6 +104,77 @@ public class PerformanceOptions {
         this.copyThreads = copyThreads;
     }
 
+    @CommandLine.Option(
+            names = "--copy-device-threads",
+            paramLabel = "THREADS",
+            description = "Maximum number of copy threads reading from the same storage device at once. " +
+                    "No limit by default. \n" +
+                    "Setting it to 1 or 2 improves performance when reading from hard drives.")
+    public void setDeviceThreads(Integer deviceThreads) {
+        validateThreads(deviceThreads);
+        this.deviceThreads = deviceThreads;
+    }
+
+    @CommandLine.Option(
+            names = "--copy-zip-threads",
+            paramLabel = "THREADS",
+            description = "Number of threads to use for compressing the files of each ZIP file, " +
+                    "in addition to the copy threads. Defaults to 1.")
+    public void setZipThreads(Integer zipThreads) {
+        validateThreads(zipThreads);
+        this.zipThreads = zipThreads;
+    }
+
+    @CommandLine.Option(
+            names = "--copy-deflate-threads",
+            paramLabel = "THREADS",
+            description = "Number of threads to use for compressing each large file inside a ZIP file, " +
+                    "in addition to the copy threads. Defaults to 1.")
+    public void setDeflateThreads(Integer deflateThreads) {
+        validateThreads(deflateThreads);
+        this.deflateThreads = deflateThreads;
+    }
+
+    @CommandLine.Option(
+            names = "--copy-xz-threads",
+            paramLabel = "THREADS",
+            description = "Number of threads to use for compressing each TAR.XZ file, " +
+                    "in addition to the copy threads. Defaults to 1.")
+    public void setXzThreads(Integer xzThreads) {
+        validateThreads(xzThreads);
+        this.xzThreads = xzThreads;
+    }
+
+    @CommandLine.Option(
+            names = "--copy-xz-block",
+            paramLabel = "BYTES",
+            description = "Size of the blocks compressed in parallel when using more than one XZ thread. Defaults to 24MB.")
+    public void setXzBlockSize(ByteSize xzBlockSize) {
+        validateBufferSize(xzBlockSize);
+        this.xzBlockSize = xzBlockSize;
+    }
+
+    @CommandLine.Option(
+            names = "--copy-zstd-level",
+            paramLabel = "LEVEL",
+            description = "Compression level of TAR.ZST files, from 1 to 22. Defaults to 3.")
+    public void setZstdLevel(Integer zstdLevel) {
+        if (zstdLevel < 1 || zstdLevel > 22) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "Zstandard level should be between 1 and 22");
+        }
+        this.zstdLevel = zstdLevel;
+    }
+
+    @CommandLine.Option(
+            names = "--copy-zstd-threads",
+            paramLabel = "THREADS",
+            description = "Number of threads to use for compressing each TAR.ZST file, " +
+                    "in addition to the copy threads. Defaults to 1.")
+    public void setZstdThreads(Integer zstdThreads) {
+        validateThreads(zstdThreads);
+        this.zstdThreads = zstdThreads;
+    }
+
     @CommandLine.Option(
             names = "--copy-buffer",
             paramLabel = "BYTES",
@@ -85,14 +184,100 @@ public class PerformanceOptions {
         this.copyBufferSize = copyBufferSize;
     }
 
+    @CommandLine.Option(
+            names = "--copy-write-buffer",
+            paramLabel = "BYTES",
+            description = "Maximum size of the buffer used for writing each file, rounded up to the block size " +
+                    "of the destination. Defaults to 1MB.")
+    public void setWriteBufferSize(ByteSize writeBufferSize) {
+        validateBufferSize(writeBufferSize);
+        this.writeBufferSize = writeBufferSize;
+    }
+
+    @CommandLine.Option(
+            names = "--copy-sync",
+            paramLabel = "MODE",
+            description = "When to sync the written files to the storage device: " +
+                    "never, after each file or after all files (default: none). " +
+                    "Options: ${COMPLETION-CANDIDATES}",
+            completionCandidates = SyncModeConverter.class)
+    public void setSyncMode(SyncMode syncMode) {
+        this.syncMode = syncMode;
+    }
+
+    @CommandLine.Option(
+            names = "--copy-batch-times",
+            description = "Set the timestamps of all written files after all of them are written. \n" +
+                    "Improves performance when writing many small files to network shares.")
+    public void setBatchFileTimes(boolean batchFileTimes) {
+        this.batchFileTimes = batchFileTimes;
+    }
+
+    @CommandLine.Option(
+            names = "--copy-resume",
+            description = "Keep a journal of the copied files in the output directory. \n" +
+                    "Running the same command again after it's interrupted skips the files which were already copied. " +
+                    "The journal is deleted once the copy finishes without failures.")
+    public void setResume(boolean resume) {
+        this.resume = resume;
+    }
+
+    @CommandLine.Option(
+            names = "--copy-skip-unchanged",
+            description = "Do not write files which already exist in the output directory with the expected " +
+                    "size and CRC32. \n" +
+                    "Entries in existing ZIP and 7z files are checked using the CRC32 kept by the archive.")
+    public void setSkipUnchanged(boolean skipUnchanged) {
+        this.skipUnchanged = skipUnchanged;
+    }
+
     @CommandLine.Option(
             names = "--copy-raw-zip",
-            description = "Allow raw copies when copying from/to ZIP file. \n" +
-                    "Improves performance, but it disables the renaming of files inside the generated ZIP files.")
-    public void setAllowRawZipCopy(boolean allowRawZipCopy) {
+            description = "Allow/disallow raw copies when copying from/to ZIP file (enabled by default). \n" +
+                    "Entries are copied without being decompressed and compressed again.",
+            negatable = true)
+    public void setAllowRawZipCopy(Boolean allowRawZipCopy) {
         this.allowRawZipCopy = allowRawZipCopy;
     }
 
+    @CommandLine.Option(
+            names = "--copy-during-scan",
+            description = "Start copying each game as soon as all of its files are found outside of archives, while the scan is still running. " +
+                    "Games which need files inside archives are copied after the scan, so the same files are picked either way. \n" +
+                    "Improves performance, but the progress of scanning and copying will be displayed interleaved.")
+    public void setCopyDuringScan(boolean copyDuringScan) {
+        this.copyDuringScan = copyDuringScan;
+    }
+
+    @CommandLine.Option(
+            names = "--copy-no-clone",
+            description = "Do not clone files when copying them within a filesystem that supports copy-on-write (e.g. Btrfs, XFS).")
+    public void setDisableCloning(boolean disableCloning) {
+        this.disableCloning = disableCloning;
+    }
+
+    @CommandLine.Option(
+            names = "--read-ahead",
+            paramLabel = "BLOCKS",
+            description = "Number of blocks (1MB each by default) read in advance from each file while scanning and copying. " +
+                    "Defaults to 0 (disabled). \n" +
+                    "Improves performance when reading from network shares.")
+    public void setReadAheadDepth(Integer readAheadDepth) {
+        if (readAheadDepth < 0) {
+            throw new CommandLine.ParameterException(spec.commandLine(), "Number of blocks should not be negative");
+        }
+        this.readAheadDepth = readAheadDepth;
+    }
+
+    @CommandLine.Option(
+            names = "--gzip-threads",
+            paramLabel = "THREADS",
+            description = "Number of threads to use for decompressing each block-based TAR.GZ file (such as those " +
+                    "written by bgzip) while scanning and copying, in addition to the scan or copy threads. Defaults to 1.")
+    public void setGzipThreads(Integer gzipThreads) {
+        validateThreads(gzipThreads);
+        this.gzipThreads = gzipThreads;
+    }
 
     @CommandLine.Option(
             names = "--unrar-exec",
@@ -147,6 +332,9 @@ public class PerformanceOptions {
         if (scanThreads != null
                 || scanBufferSize != null
                 || scanBufferMaxSize != null
+                || scanDirectoryCache != null
+                || readAheadDepth != null
+                || gzipThreads != null
                 || customUnrarPath != null
                 || customSevenZipPath != null
                 || forceOptions != null) {
@@ -160,6 +348,15 @@ public class PerformanceOptions {
             if (scanBufferMaxSize != null) {
                 builder.maxBufferSize(toIntExact(scanBufferMaxSize.getSizeInBytes()));
             }
+            if (scanDirectoryCache != null) {
+                builder.archiveDirectoryCache(scanDirectoryCache);
+            }
+            if (readAheadDepth != null) {
+                builder.readAhead(original.getReadAhead().withDepth(readAheadDepth));
+            }
+            if (gzipThreads != null) {
+                builder.gzipThreads(gzipThreads);
+            }
             if (customUnrarPath != null) {
                 builder.customUnrarPath(customUnrarPath);
             }
@@ -177,27 +374,95 @@ public class PerformanceOptions {
 
     public AppConfig.FileCopierConfig merge(AppConfig.FileCopierConfig original) {
         if (copyThreads != null
+                || deviceThreads != null
+                || zipThreads != null
+                || deflateThreads != null
+                || xzThreads != null
+                || xzBlockSize != null
+                || zstdLevel != null
+                || zstdThreads != null
                 || copyBufferSize != null
+                || writeBufferSize != null
+                || syncMode != null
+                || batchFileTimes
+                || resume
+                || skipUnchanged
+                || readAheadDepth != null
+                || gzipThreads != null
                 || customUnrarPath != null
                 || customSevenZipPath != null
-                || allowRawZipCopy
+                || allowRawZipCopy != null
+                || copyDuringScan
+                || disableCloning
                 || forceOptions != null) {
             AppConfig.FileCopierConfig.FileCopierConfigBuilder builder = original.toBuilder();
             if (copyThreads != null) {
-                builder.threads(scanThreads);
+                builder.threads(copyThreads);
+            }
+            if (deviceThreads != null) {
+                builder.maxSpecsPerDevice(deviceThreads);
+            }
+            if (zipThreads != null) {
+                builder.zipThreads(zipThreads);
+            }
+            if (deflateThreads != null) {
+                builder.deflateThreads(deflateThreads);
+            }
+            if (xzThreads != null) {
+                builder.xzThreads(xzThreads);
+            }
+            if (xzBlockSize != null) {
+                builder.xzBlockSize(toIntExact(xzBlockSize.getSizeInBytes()));
+            }
+            if (zstdLevel != null) {
+                builder.zstdLevel(zstdLevel);
+            }
+            if (zstdThreads != null) {
+                builder.zstdThreads(zstdThreads);
             }
             if (copyBufferSize != null) {
                 builder.bufferSize(toIntExact(copyBufferSize.getSizeInBytes()));
             }
+            if (writeBufferSize != null) {
+                builder.writeBufferSize(toIntExact(writeBufferSize.getSizeInBytes()));
+            }
+            if (syncMode != null) {
+                builder.syncMode(syncMode);
+            }
+            if (batchFileTimes) {
+                builder.batchFileTimes(true);
+            }
+            if (resume) {
+                builder.resume(true);
+            }
+            if (skipUnchanged) {
+                builder.skipUnchanged(true);
+            }
+            if (readAheadDepth != null) {
+                builder.readAhead(original.getReadAhead().withDepth(readAheadDepth));
+            }
+            if (gzipThreads != null) {
+                builder.gzipThreads(gzipThreads);
+            }
             if (customUnrarPath != null) {
                 builder.customUnrarPath(customUnrarPath);
             }
             if (customSevenZipPath != null) {
                 builder.customSevenZipPath(customSevenZipPath);
             }
-            builder.allowRawZipCopy(allowRawZipCopy);
-            builder.forceUnrar(forceOptions.isForceUnrar());
-            builder.forceSevenZip(forceOptions.isForceSevenZip());
+            if (allowRawZipCopy != null) {
+                builder.allowRawZipCopy(allowRawZipCopy);
+            }
+            if (copyDuringScan) {
+                builder.copyDuringScan(true);
+            }
+            if (disableCloning) {
+                builder.cloneFiles(false);
+            }
+            if (forceOptions != null) {
+                builder.forceUnrar(forceOptions.isForceUnrar());
+                builder.forceSevenZip(forceOptions.isForceSevenZip());
+            }
             return builder.build();
         }
         return original;
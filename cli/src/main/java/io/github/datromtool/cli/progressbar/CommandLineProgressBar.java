@@ -235,11 +235,11 @@ public final class CommandLineProgressBar implements FileScanner.Listener, FileC
     }
 
     @Override
-    public void reportTotalItems(int totalItems) {
+    public synchronized void reportTotalItems(int totalItems) {
         this.totalItems = totalItems;
         int totalItemsLength = (int) Math.floor(Math.log10(totalItems)) + 1;
         this.mainBarPrint = action + " [%s%s%s] %" + totalItemsLength + "d/" + totalItems;
-        printMainBar(0);
+        printMainBar(current.get());
     }
 
     @Override
@@ -9,8 +9,10 @@ import io.github.datromtool.GameParser;
 import io.github.datromtool.GameSorter;
 import io.github.datromtool.SerializationHelper;
 import io.github.datromtool.config.AppConfig;
+import io.github.datromtool.data.CrcKey;
 import io.github.datromtool.data.FileOutputOptions;
 import io.github.datromtool.data.Filter;
+import io.github.datromtool.data.LinkMode;
 import io.github.datromtool.data.OutputMode;
 import io.github.datromtool.data.ParsedGame;
 import io.github.datromtool.data.PostFilter;
@@ -20,6 +22,7 @@ import io.github.datromtool.domain.datafile.logiqx.Clrmamepro;
 import io.github.datromtool.domain.datafile.logiqx.Datafile;
 import io.github.datromtool.domain.datafile.logiqx.Game;
 import io.github.datromtool.domain.datafile.logiqx.Header;
+import io.github.datromtool.domain.datafile.logiqx.Rom;
 import io.github.datromtool.domain.detector.Detector;
 import io.github.datromtool.exception.ExecutionException;
 import io.github.datromtool.exception.InvalidDatafileException;
@@ -27,6 +30,7 @@ import io.github.datromtool.exception.WrappedExecutionException;
 import io.github.datromtool.io.ArchiveType;
 import io.github.datromtool.io.FileCopier;
 import io.github.datromtool.io.FileScanner;
+import io.github.datromtool.io.ScanResultIndex;
 import io.github.datromtool.io.ScanResultMatcher;
 import io.github.datromtool.sorting.GameComparator;
 import io.github.datromtool.sorting.GameNameComparator;
@@ -42,10 +46,14 @@ import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -78,17 +86,32 @@ public final class OneGameOneRom {
             validate(parsedGames);
             ImmutableMap<String, ImmutableList<ParsedGame>> filteredAndGrouped =
                     filterAndGroup(parsedGames);
-            ImmutableMap<String, ImmutableList<ScanResultMatcher.GameMatchList>> presentGames =
-                    getPresentGames(
-                            appConfig,
-                            datafiles,
-                            inputDirs,
-                            fileOutputOptions.getArchiveType(),
-                            fileScannerListeners,
-                            filteredAndGrouped);
-            ImmutableSet<FileCopier.Spec> specs = createCopySpecs(fileOutputOptions, presentGames);
-            FileCopier fileCopier = new FileCopier(appConfig.getCopier(), fileCopierListeners);
-            fileCopier.copy(specs);
+            FileCopier fileCopier = new FileCopier(
+                    appConfig.getCopier(),
+                    fileCopierListeners,
+                    appConfig.getCopier().isResume()
+                            ? fileOutputOptions.getOutputDir().resolve(FileCopier.JOURNAL_FILE_NAME)
+                            : null);
+            if (appConfig.getCopier().isCopyDuringScan()) {
+                scanAndCopy(
+                        appConfig,
+                        datafiles,
+                        inputDirs,
+                        fileOutputOptions,
+                        fileScannerListeners,
+                        filteredAndGrouped,
+                        fileCopier);
+            } else {
+                ImmutableMap<String, ImmutableList<ScanResultMatcher.GameMatchList>> presentGames =
+                        getPresentGames(
+                                appConfig,
+                                datafiles,
+                                inputDirs,
+                                fileOutputOptions.getArchiveType(),
+                                fileScannerListeners,
+                                filteredAndGrouped);
+                fileCopier.copy(createCopySpecs(fileOutputOptions, presentGames).iterator());
+            }
         } catch (InvalidDatafileException e) {
             throw e;
         } catch (WrappedExecutionException e) {
@@ -190,6 +213,68 @@ public final class OneGameOneRom {
         return matcher.match(filteredAndGrouped, toType);
     }
 
+    /**
+     * Scans the input directories and copies each game as soon as its top candidate has all of its files
+     * present outside of archives, since no other file found later would be picked over them. Games which
+     * could not be resolved that way, i.e. the ones which will fall back to another candidate or need files
+     * inside archives, are matched and copied after the scan finishes, the same way as without copying
+     * during the scan.
+     */
+    private static void scanAndCopy(
+            @Nonnull AppConfig appConfig,
+            @Nonnull Collection<Datafile> datafiles,
+            @Nonnull Collection<Path> inputDirs,
+            @Nonnull FileOutputOptions fileOutputOptions,
+            @Nonnull List<FileScanner.Listener> fileScannerListeners,
+            @Nonnull Map<String, ? extends List<ParsedGame>> filteredAndGrouped,
+            @Nonnull FileCopier fileCopier) {
+        ImmutableList<Detector> detectors = loadDetectors(datafiles);
+        FileScanner scanner = new FileScanner(
+                appConfig.getScanner(),
+                datafiles,
+                detectors,
+                fileScannerListeners);
+        ArchiveType toType = fileOutputOptions.getArchiveType();
+        Map<ParsedGame, String> parentOfTopCandidate = new IdentityHashMap<>();
+        filteredAndGrouped.forEach((parent, games) -> {
+            if (!games.isEmpty()) {
+                parentOfTopCandidate.put(games.get(0), parent);
+            }
+        });
+        ScanResultIndex index = new ScanResultIndex(parentOfTopCandidate.keySet());
+        Set<String> submitted = ConcurrentHashMap.newKeySet();
+        AtomicReference<WrappedExecutionException> failure = new AtomicReference<>();
+        try (FileCopier.Session session = fileCopier.open()) {
+            ImmutableList<FileScanner.Result> scanResults = scanner.scan(inputDirs, results -> {
+                for (ParsedGame game : index.add(results)) {
+                    String parent = parentOfTopCandidate.get(game);
+                    if (!index.hasUncompressedMatches(game) || submitted.contains(parent)) {
+                        continue;
+                    }
+                    new ScanResultMatcher(index.getResults(game))
+                            .tryMatch(game, toType)
+                            .filter(m -> submitted.add(parent))
+                            .ifPresent(m -> {
+                                try {
+                                    session.submit(FileCopier.groupBySource(buildSpecStream(fileOutputOptions, m)
+                                            .collect(ImmutableList.toImmutableList())));
+                                } catch (WrappedExecutionException e) {
+                                    failure.compareAndSet(null, e);
+                                }
+                            });
+                }
+            });
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+            ImmutableMap<String, ? extends List<ParsedGame>> remaining = filteredAndGrouped.entrySet().stream()
+                    .filter(e -> !submitted.contains(e.getKey()))
+                    .collect(ImmutableMap.toImmutableMap(Map.Entry::getKey, Map.Entry::getValue));
+            ScanResultMatcher matcher = new ScanResultMatcher(scanResults);
+            session.submit(createCopySpecs(fileOutputOptions, matcher.match(remaining, toType)).iterator());
+        }
+    }
+
     private static Stream<Stream<ParsedGame>> parsedGameStream(
             Map<String, ? extends Collection<ParsedGame>> map) {
         return map.values().stream().map(Collection::stream);
@@ -375,16 +460,21 @@ public final class OneGameOneRom {
                 .filter(Objects::nonNull);
     }
 
-    private static ImmutableSet<FileCopier.Spec> createCopySpecs(
+    /**
+     * Creates the specs for the top candidate of each game. Specs of different games which read from the same
+     * 7z or TAR archive, as is common with full set archives, are merged into a single spec, so the archive is
+     * read only once, in its physical order, for all of them.
+     */
+    private static ImmutableList<FileCopier.Spec> createCopySpecs(
             @Nonnull FileOutputOptions fileOutputOptions,
             @Nonnull Map<String, ? extends List<ScanResultMatcher.GameMatchList>> presentGames) {
-        return presentGames.values().stream()
+        return FileCopier.groupBySource(presentGames.values().stream()
                 .map(Collection::stream)
                 .map(Stream::findFirst)
                 .filter(Optional::isPresent)
                 .map(Optional::get)
                 .flatMap(gameMatchList -> buildSpecStream(fileOutputOptions, gameMatchList))
-                .collect(ImmutableSet.toImmutableSet());
+                .collect(ImmutableList.toImmutableList()));
     }
 
     private static Stream<FileCopier.Spec> buildSpecStream(
@@ -402,7 +492,7 @@ public final class OneGameOneRom {
             ArchiveType toType = fileOutputOptions.getArchiveType();
             if (toType == null) {
                 // Simple copy/extraction
-                return simpleCopyOrExtractionStream(baseDir, perFile);
+                return simpleCopyOrExtractionStream(baseDir, perFile, fileOutputOptions.getLinkMode());
             } else {
                 // Compression/archive copy
                 return compressionOrArchiveCopyStream(
@@ -419,7 +509,8 @@ public final class OneGameOneRom {
 
     private static Stream<FileCopier.Spec> simpleCopyOrExtractionStream(
             Path baseDir,
-            Map<Path, ? extends Collection<ScanResultMatcher.RomMatch>> matchesPerFile) {
+            Map<Path, ? extends Collection<ScanResultMatcher.RomMatch>> matchesPerFile,
+            @Nullable LinkMode linkMode) {
         return matchesPerFile.entrySet().stream()
                 .flatMap(e -> {
                     Path from = e.getKey();
@@ -433,10 +524,11 @@ public final class OneGameOneRom {
                     if (fromType == null) {
                         // Simple copy
                         return list.stream()
-                                .map(ScanResultMatcher.RomMatch::getRom)
-                                .map(rom -> FileCopier.CopySpec.builder()
+                                .map(m -> FileCopier.CopySpec.builder()
                                         .from(from)
-                                        .to(baseDir.resolve(rom.getName()))
+                                        .to(baseDir.resolve(m.getRom().getName()))
+                                        .linkMode(linkMode)
+                                        .expected(getExpectedContents(m))
                                         .build());
                     } else {
                         // Extraction
@@ -447,6 +539,7 @@ public final class OneGameOneRom {
                                         .map(m -> FileCopier.ExtractionSpec.InternalSpec.builder()
                                                 .from(m.getResult().getArchivePath())
                                                 .to(baseDir.resolve(m.getRom().getName()))
+                                                .expected(getExpectedContents(m))
                                                 .build())
                                         .collect(ImmutableMap.toImmutableMap(FileCopier.ExtractionSpec.InternalSpec::getFrom, Function.identity(), (a, b) -> a)))
                                 .build());
@@ -503,6 +596,7 @@ public final class OneGameOneRom {
                             .map(p -> FileCopier.CompressionSpec.InternalSpec.builder()
                                     .from(p.getResult().getPath())
                                     .to(p.getRom().getName())
+                                    .expected(getExpectedContents(p))
                                     .build())
                             .collect(ImmutableSet.toImmutableSet()))
                     .build());
@@ -537,11 +631,26 @@ public final class OneGameOneRom {
                         .map(m -> FileCopier.ArchiveCopySpec.InternalSpec.builder()
                                 .from(m.getResult().getArchivePath())
                                 .to(m.getRom().getName())
+                                .expected(getExpectedContents(m))
                                 .build())
                         .collect(ImmutableMap.toImmutableMap(FileCopier.ArchiveCopySpec.InternalSpec::getFrom, Function.identity(), (a, b) -> a)))
                 .build();
     }
 
+    /**
+     * @return the size and CRC32 the copy of a ROM will have, or null if they're unknown, such as when the
+     * header of the file was skipped to match it to the ROM
+     */
+    @Nullable
+    private static CrcKey getExpectedContents(@Nonnull ScanResultMatcher.RomMatch match) {
+        Rom rom = match.getRom();
+        FileScanner.Result result = match.getResult();
+        if (rom.getSize() == null || rom.getCrc() == null || result.getSize() != result.getUnheaderedSize()) {
+            return null;
+        }
+        return CrcKey.from(rom);
+    }
+
     @Nonnull
     private static Path createBaseDirectory(
             @Nonnull Game game,
@@ -1,10 +1,12 @@
 package io.github.datromtool.config;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import io.github.datromtool.data.SyncMode;
 import lombok.*;
 import lombok.extern.jackson.Jacksonized;
 
 import java.nio.file.Path;
+import java.util.Map;
 
 import static com.fasterxml.jackson.annotation.JsonInclude.Include.NON_DEFAULT;
 import static lombok.AccessLevel.PRIVATE;
@@ -39,9 +41,26 @@ public class AppConfig {
         @NonNull
         Integer threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
 
+        /**
+         * Threads used to decompress the members of each block-based TAR_GZ file in parallel, on top of
+         * {@link #threads}. They're shared by all the files read at once, rather than started for each of them.
+         */
+        @Builder.Default
+        @NonNull
+        Integer gzipThreads = 1;
+
+        @Builder.Default
+        @NonNull
+        ReadAheadConfig readAhead = ReadAheadConfig.builder().build();
+
         Path customUnrarPath;
         Path customSevenZipPath;
 
+        /**
+         * File where the entries of each scanned archive are kept between runs, if any.
+         */
+        Path archiveDirectoryCache;
+
         @Builder.Default
         boolean forceUnrar = false;
 
@@ -66,8 +85,133 @@ public class AppConfig {
         @NonNull
         Integer threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
 
+        /**
+         * Threads used to compress the entries of each ZIP file in parallel, on top of {@link #threads}.
+         * Only used when there is more than one entry.
+         */
+        @Builder.Default
+        @NonNull
+        Integer zipThreads = 1;
+
+        /**
+         * Threads used to deflate blocks of a single large ZIP entry in parallel, on top of {@link #threads}.
+         * <p>
+         * The blocks of {@link #deflateThreads}, {@link #xzThreads} and {@link #gzipThreads} are all handled by
+         * a single pool shared by the files copied at once, with as many threads as the largest of them.
+         */
+        @Builder.Default
+        @NonNull
+        Integer deflateThreads = 1;
+
+        /**
+         * Threads used to compress blocks of TAR_XZ files in parallel, on top of {@link #threads}.
+         */
+        @Builder.Default
+        @NonNull
+        Integer xzThreads = 1;
+
+        /**
+         * Size of the blocks compressed in parallel when {@link #xzThreads} is greater than one.
+         */
+        @Builder.Default
+        @NonNull
+        Integer xzBlockSize = 24 * 1024 * 1024; // 24MB
+
+        /**
+         * Threads used to decompress the members of each block-based TAR_GZ file in parallel, on top of
+         * {@link #threads}.
+         */
+        @Builder.Default
+        @NonNull
+        Integer gzipThreads = 1;
+
+        /**
+         * Compression level of TAR_ZST files, from 1 to 22.
+         */
+        @Builder.Default
+        @NonNull
+        Integer zstdLevel = 3;
+
+        /**
+         * Threads used to compress each TAR_ZST file, on top of {@link #threads}.
+         */
+        @Builder.Default
+        @NonNull
+        Integer zstdThreads = 1;
+
+        /**
+         * Maximum size of the buffer used when writing each file. It's rounded up to the block size of the
+         * destination's file store, and small files use a smaller buffer, so they are written all at once.
+         */
+        @Builder.Default
+        @NonNull
+        Integer writeBufferSize = 1024 * 1024; // 1MB
+
+        /**
+         * When the written files are synced to the storage device.
+         */
+        @Builder.Default
+        @NonNull
+        SyncMode syncMode = SyncMode.NONE;
+
+        /**
+         * Set the timestamps of all written files at once, after all of them are written, instead of after
+         * each one. Mostly useful for network shares, where each of these operations is a round trip.
+         */
         @Builder.Default
-        boolean allowRawZipCopy = false;
+        boolean batchFileTimes = false;
+
+        /**
+         * Keep a journal of the copied files in the output directory, so an interrupted copy can be resumed by
+         * running it again, skipping the files which were already copied. The journal is deleted once the copy
+         * finishes without failures.
+         */
+        @Builder.Default
+        boolean resume = false;
+
+        /**
+         * Leave destinations which already have the expected size and CRC32 alone instead of writing them again.
+         * Entries of ZIP and 7z archives are checked using the CRC32 kept by the archive.
+         */
+        @Builder.Default
+        boolean skipUnchanged = false;
+
+        /**
+         * Maximum amount of specs waiting to be copied or being copied at any time.
+         */
+        @Builder.Default
+        @NonNull
+        Integer maxPendingSpecs = 1024;
+
+        /**
+         * Maximum amount of specs reading from the same storage device at any time. Zero means no limit.
+         * Mostly useful for hard drives, which slow down when reading many files at once.
+         */
+        @Builder.Default
+        int maxSpecsPerDevice = 0;
+
+        /**
+         * Copy ZIP entries to ZIP files without decompressing and compressing them again, renaming them if needed.
+         */
+        @Builder.Default
+        boolean allowRawZipCopy = true;
+
+        /**
+         * Clone files instead of copying them when the filesystem supports it (copy-on-write).
+         */
+        @Builder.Default
+        boolean cloneFiles = true;
+
+        /**
+         * Start copying each game as soon as all of its files have been found outside of archives, instead of
+         * waiting for the scan to finish. Games which need files inside archives are still copied after it.
+         */
+        @Builder.Default
+        boolean copyDuringScan = false;
+
+        @Builder.Default
+        @NonNull
+        ReadAheadConfig readAhead = ReadAheadConfig.builder().build();
 
         Path customUnrarPath;
         Path customSevenZipPath;
@@ -79,6 +223,36 @@ public class AppConfig {
         boolean forceSevenZip = false;
     }
 
+    @With
+    @Value
+    @Jacksonized
+    @Builder(toBuilder = true)
+    @AllArgsConstructor(access = PRIVATE)
+    @NoArgsConstructor(access = PRIVATE, force = true)
+    @JsonInclude(NON_DEFAULT)
+    public static class ReadAheadConfig {
+
+        /**
+         * Blocks read in advance from each file, or zero to read each file synchronously.
+         */
+        @Builder.Default
+        int depth = 0;
+
+        /**
+         * Size of each block read in advance.
+         */
+        @Builder.Default
+        int blockSize = 1024 * 1024; // 1MB
+
+        /**
+         * Blocks read in advance from the files in specific file stores, instead of {@link #depth}. File stores
+         * are identified by name or by type (e.g. "nfs" or "cifs").
+         */
+        @Builder.Default
+        @NonNull
+        Map<String, Integer> depthPerFileStore = Map.of();
+    }
+
     @NonNull
     @Builder.Default
     AppConfig.FileScannerConfig scanner = FileScannerConfig.builder().build();
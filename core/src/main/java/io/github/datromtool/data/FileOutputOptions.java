@@ -23,5 +23,6 @@ public class FileOutputOptions {
     boolean alphabetic;
     ArchiveType archiveType;
     boolean forceSubfolder;
+    LinkMode linkMode;
 
 }
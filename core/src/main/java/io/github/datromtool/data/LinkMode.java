@@ -0,0 +1,19 @@
+package io.github.datromtool.data;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * How files which need no extraction or compression are placed in the output directory.
+ */
+public enum LinkMode {
+    /**
+     * Create hard links, falling back to symbolic links and then to copies.
+     */
+    @JsonProperty("hardlink")
+    HARDLINK,
+    /**
+     * Create symbolic links, falling back to copies.
+     */
+    @JsonProperty("symlink")
+    SYMLINK
+}
@@ -0,0 +1,24 @@
+package io.github.datromtool.data;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * When the files written by the copier are synced to the storage device.
+ */
+public enum SyncMode {
+    /**
+     * Leave it to the operating system.
+     */
+    @JsonProperty("none")
+    NONE,
+    /**
+     * Sync each file as soon as it's written.
+     */
+    @JsonProperty("file")
+    FILE,
+    /**
+     * Sync all files at once, after all of them are written.
+     */
+    @JsonProperty("batch")
+    BATCH
+}
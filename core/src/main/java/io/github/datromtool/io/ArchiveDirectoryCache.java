@@ -0,0 +1,218 @@
+package io.github.datromtool.io;
+
+import com.google.common.collect.ImmutableList;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The list of entries of each archive scanned by {@link FileScanner}, persisted across runs, so archives which
+ * didn't change since they were listed don't need to be listed again.
+ * <p>
+ * Archives are identified by path, size and last modification time. Archives split into volumes are identified by
+ * their first volume, the sum of the sizes of all of them and the latest modification time among them.
+ * <p>
+ * The file has one line per archive, as {@code A<TAB>size<TAB>mtime<TAB>path}, followed by one line per entry, as
+ * {@code E<TAB>size<TAB>crc<TAB>offset<TAB>mtime<TAB>name}, where the unknown values are {@code -}. Times are in
+ * milliseconds since the epoch and CRC32s are in hexadecimal. Invalid lines are ignored.
+ * <p>
+ * This class is thread-safe.
+ */
+@Slf4j
+final class ArchiveDirectoryCache {
+
+    private static final String VERSION = "V\t1";
+    private static final String ARCHIVE = "A";
+    private static final String ENTRY = "E";
+    private static final String UNKNOWN = "-";
+
+    @Value
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    static class Entry {
+
+        @NonNull
+        String name;
+        long size;
+        @Nullable
+        Long crc;
+        /**
+         * The offset of the entry in the archive, or a negative number if unknown
+         */
+        long offset;
+        @Nullable
+        Long lastModifiedTime;
+
+        @Nonnull
+        static Entry of(
+                @Nonnull String name,
+                long size,
+                @Nullable Long crc,
+                long offset,
+                @Nullable Long lastModifiedTime) {
+            return new Entry(name, size, crc, offset < 0 ? -1 : offset, lastModifiedTime);
+        }
+    }
+
+    @Value
+    private static class Listing {
+
+        long size;
+        long lastModifiedTime;
+        ImmutableList<Entry> entries;
+    }
+
+    private final Path file;
+    private final Map<Path, Listing> listings;
+    private volatile boolean modified;
+
+    private ArchiveDirectoryCache(Path file, Map<Path, Listing> listings) {
+        this.file = file;
+        this.listings = listings;
+    }
+
+    /**
+     * Reads the cache, which is empty if the file doesn't exist or is from an incompatible version.
+     */
+    @Nonnull
+    static ArchiveDirectoryCache load(@Nonnull Path file) throws IOException {
+        Map<Path, Listing> listings = new ConcurrentHashMap<>();
+        List<String> lines;
+        try {
+            lines = new String(Files.readAllBytes(file), StandardCharsets.UTF_8).lines().toList();
+        } catch (NoSuchFileException e) {
+            lines = List.of();
+        }
+        if (!lines.isEmpty() && !lines.get(0).equals(VERSION)) {
+            log.warn("Ignoring archive directory cache '{}' from an incompatible version", file);
+            lines = List.of();
+        }
+        Path archive = null;
+        long size = 0;
+        long lastModifiedTime = 0;
+        List<Entry> entries = new ArrayList<>();
+        for (String line : lines) {
+            try {
+                if (line.startsWith(ARCHIVE + "\t")) {
+                    if (archive != null) {
+                        listings.put(archive, new Listing(size, lastModifiedTime, ImmutableList.copyOf(entries)));
+                    }
+                    archive = null;
+                    entries.clear();
+                    String[] parts = line.split("\t", 4);
+                    size = Long.parseLong(parts[1]);
+                    lastModifiedTime = Long.parseLong(parts[2]);
+                    archive = Paths.get(parts[3]);
+                } else if (line.startsWith(ENTRY + "\t") && archive != null) {
+                    String[] parts = line.split("\t", 6);
+                    entries.add(Entry.of(
+                            parts[5],
+                            Long.parseLong(parts[1]),
+                            parts[2].equals(UNKNOWN) ? null : Long.parseLong(parts[2], 16),
+                            parts[3].equals(UNKNOWN) ? -1 : Long.parseLong(parts[3]),
+                            parts[4].equals(UNKNOWN) ? null : Long.parseLong(parts[4])));
+                }
+            } catch (RuntimeException e) {
+                log.debug("Ignoring invalid archive directory cache line '{}'", line, e);
+                // The rest of the archive's entries can't be trusted
+                archive = null;
+                entries.clear();
+            }
+        }
+        if (archive != null) {
+            listings.put(archive, new Listing(size, lastModifiedTime, ImmutableList.copyOf(entries)));
+        }
+        log.debug("Read the entries of {} archives from '{}'", listings.size(), file);
+        return new ArchiveDirectoryCache(file, listings);
+    }
+
+    /**
+     * @return the entries of the archive, or null if it wasn't listed or changed since it was listed
+     */
+    @Nullable
+    ImmutableList<Entry> get(@Nonnull Path archive, long size, long lastModifiedTime) {
+        Listing listing = listings.get(normalize(archive));
+        if (listing == null || listing.getSize() != size || listing.getLastModifiedTime() != lastModifiedTime) {
+            return null;
+        }
+        return listing.getEntries();
+    }
+
+    void put(@Nonnull Path archive, long size, long lastModifiedTime, @Nonnull List<Entry> entries) {
+        if (isMultiline(archive.toString()) || entries.stream().anyMatch(e -> isMultiline(e.getName()))) {
+            // Can't be written to a single line
+            return;
+        }
+        listings.put(normalize(archive), new Listing(size, lastModifiedTime, ImmutableList.copyOf(entries)));
+        modified = true;
+    }
+
+    /**
+     * Writes the cache if anything changed, replacing the file at once so it's never left incomplete.
+     */
+    synchronized void save() throws IOException {
+        if (!modified) {
+            return;
+        }
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+            writer.write(VERSION);
+            writer.newLine();
+            for (Map.Entry<Path, Listing> mapEntry : listings.entrySet()) {
+                Listing listing = mapEntry.getValue();
+                writer.write(String.join("\t",
+                        ARCHIVE,
+                        Long.toString(listing.getSize()),
+                        Long.toString(listing.getLastModifiedTime()),
+                        mapEntry.getKey().toString()));
+                writer.newLine();
+                for (Entry entry : listing.getEntries()) {
+                    writer.write(String.join("\t",
+                            ENTRY,
+                            Long.toString(entry.getSize()),
+                            entry.getCrc() != null ? Long.toHexString(entry.getCrc()) : UNKNOWN,
+                            entry.getOffset() >= 0 ? Long.toString(entry.getOffset()) : UNKNOWN,
+                            entry.getLastModifiedTime() != null ? entry.getLastModifiedTime().toString() : UNKNOWN,
+                            entry.getName()));
+                    writer.newLine();
+                }
+            }
+        }
+        try {
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        modified = false;
+        log.debug("Wrote the entries of {} archives to '{}'", listings.size(), file);
+    }
+
+    private static boolean isMultiline(String s) {
+        return s.indexOf('\n') >= 0 || s.indexOf('\r') >= 0;
+    }
+
+    private static Path normalize(Path file) {
+        return file.toAbsolutePath().normalize();
+    }
+}
@@ -9,12 +9,14 @@ import org.apache.commons.compress.compressors.bzip2.BZip2Utils;
 import org.apache.commons.compress.compressors.gzip.GzipUtils;
 import org.apache.commons.compress.compressors.lzma.LZMAUtils;
 import org.apache.commons.compress.compressors.xz.XZUtils;
+import org.apache.commons.compress.compressors.zstandard.ZstdUtils;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.function.Predicate;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import static java.util.regex.Pattern.CASE_INSENSITIVE;
@@ -32,7 +34,8 @@ public enum ArchiveType {
     TAR_GZ(Constants.TAR_GZ, true, ArchiveType::isGzip),
     TAR_LZ4(Constants.TAR_LZ4, true, ArchiveType::isLz4),
     TAR_LZMA(Constants.TAR_LZMA, LZMAUtils.isLZMACompressionAvailable(), ArchiveType::isTarLzma),
-    TAR_XZ(Constants.TAR_XZ, XZUtils.isXZCompressionAvailable(), ArchiveType::isTarXz);
+    TAR_XZ(Constants.TAR_XZ, XZUtils.isXZCompressionAvailable(), ArchiveType::isTarXz),
+    TAR_ZST(Constants.TAR_ZST, ZstdUtils.isZstdCompressionAvailable(), ArchiveType::isTarZst);
 
     private static boolean isZip(String s) {
         return Constants.ZIP_PATTERN.matcher(s).find();
@@ -77,6 +80,11 @@ public enum ArchiveType {
                 && Constants.TAR_PATTERN.matcher(XZUtils.getUncompressedFileName(s)).find();
     }
 
+    private static boolean isTarZst(String s) {
+        return ZstdUtils.isZstdCompressionAvailable()
+                && Constants.TAR_ZST_PATTERN.matcher(s).find();
+    }
+
     @Getter(onMethod_ = {@JsonValue})
     private final String alias;
     @Getter
@@ -92,8 +100,22 @@ public enum ArchiveType {
         return parse(fileName);
     }
 
+    /**
+     * Parses the type of archive from its name. The first volume of an archive split by size, such as
+     * {@code name.zip.001}, has the type of the archive, except for RAR, whose volumes are named differently.
+     */
     @Nullable
     public static ArchiveType parse(String fileName) {
+        Matcher matcher = Constants.FIRST_VOLUME_PATTERN.matcher(fileName);
+        if (matcher.find()) {
+            ArchiveType archiveType = parseName(fileName.substring(0, matcher.start()));
+            return archiveType != RAR ? archiveType : null;
+        }
+        return parseName(fileName);
+    }
+
+    @Nullable
+    private static ArchiveType parseName(String fileName) {
         for (ArchiveType value : values()) {
             if (value.predicate.test(fileName)) {
                 return value;
@@ -125,6 +147,7 @@ public enum ArchiveType {
         private static final String TAR_LZ4 = "tar.lz4";
         private static final String TAR_LZMA = "tar.lzma";
         private static final String TAR_XZ = "tar.xz";
+        private static final String TAR_ZST = "tar.zst";
 
         private static Pattern toPattern(String alias) {
             return compile("\\." + quote(alias) + "$", CASE_INSENSITIVE);
@@ -136,5 +159,7 @@ public enum ArchiveType {
         private static final Pattern TAR_PATTERN = toPattern(TAR);
         private static final Pattern TAR_7Z_PATTERN = toPattern(TAR_SEVEN_ZIP);
         private static final Pattern TAR_LZ4_PATTERN = toPattern(TAR_LZ4);
+        private static final Pattern TAR_ZST_PATTERN = toPattern(TAR_ZST);
+        private static final Pattern FIRST_VOLUME_PATTERN = compile("\\.001$");
     }
 }
@@ -0,0 +1,212 @@
+package io.github.datromtool.io;
+
+import io.github.datromtool.data.CrcKey;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A write-ahead journal of the files written by {@link FileCopier}, so an interrupted copy can be resumed.
+ * <p>
+ * Each destination is recorded before it's written and again, with its size and CRC32 when known, after it's
+ * complete. Destinations are written to a temporary file and renamed when complete, so a destination recorded
+ * as complete can be trusted as long as it still has the same size, without reading it again. If the contents
+ * expected for it are known, they must also match the size and CRC32 recorded.
+ * <p>
+ * The CRC32 is only recorded for files whose contents pass through the copier. Files copied by the OS, cloned
+ * or linked, as well as archives, are recorded without it, so only their size is checked when resuming.
+ * <p>
+ * The journal is deleted once a copy finishes without failures, so a later copy doesn't trust files which may
+ * have been changed since.
+ * <p>
+ * Lines are appended as {@code S<TAB>path} when a file is started and {@code D<TAB>size<TAB>crc<TAB>path} when
+ * it's done, where the CRC32 is {@code -} if it wasn't calculated. A later line for the same path replaces the
+ * earlier ones, and incomplete lines left by an interrupted run are ignored.
+ */
+@Slf4j
+final class CopyJournal implements Closeable {
+
+    private static final String STARTED = "S";
+    private static final String DONE = "D";
+    private static final String NO_CRC = "-";
+    private static final String TEMP_SUFFIX = ".part";
+
+    private final Path file;
+    private final Map<Path, Entry> done;
+    private final BufferedWriter writer;
+
+    @Value
+    private static class Entry {
+
+        long size;
+        @Nullable
+        Long crc;
+
+        /**
+         * @return whether the expected contents have the recorded size and, if it was recorded, CRC32
+         */
+        boolean matches(CrcKey expected) {
+            if (expected.getSize() != size) {
+                return false;
+            }
+            try {
+                return crc == null || Long.parseLong(expected.getCrc(), 16) == crc;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+    }
+
+    private CopyJournal(Path file, Map<Path, Entry> done, BufferedWriter writer) {
+        this.file = file;
+        this.done = done;
+        this.writer = writer;
+    }
+
+    /**
+     * Opens the journal, reading the files completed by previous runs and removing the temporary files of
+     * the ones which were still being written.
+     */
+    @Nonnull
+    static CopyJournal open(@Nonnull Path file) throws IOException {
+        Map<Path, Entry> done = new HashMap<>();
+        Set<Path> started = new HashSet<>();
+        List<String> lines;
+        try {
+            // Decoded leniently, as the last line may have been cut in the middle of a character
+            lines = new String(Files.readAllBytes(file), StandardCharsets.UTF_8).lines().toList();
+        } catch (NoSuchFileException e) {
+            lines = List.of();
+        }
+        for (String line : lines) {
+            try {
+                if (line.startsWith(STARTED + "\t")) {
+                    Path path = Paths.get(line.substring(STARTED.length() + 1));
+                    done.remove(path);
+                    started.add(path);
+                } else if (line.startsWith(DONE + "\t")) {
+                    String[] parts = line.split("\t", 4);
+                    if (parts.length == 4) {
+                        Path path = Paths.get(parts[3]);
+                        Long crc = parts[2].equals(NO_CRC) ? null : Long.parseLong(parts[2], 16);
+                        done.put(path, new Entry(Long.parseLong(parts[1]), crc));
+                        started.remove(path);
+                    }
+                }
+            } catch (RuntimeException e) {
+                log.debug("Ignoring invalid journal line '{}'", line, e);
+            }
+        }
+        for (Path path : started) {
+            Files.deleteIfExists(getTempFile(path));
+        }
+        if (!done.isEmpty()) {
+            log.info("Resuming copy from '{}'. {} files were already copied.", file, done.size());
+        }
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        BufferedWriter writer = Files.newBufferedWriter(
+                file,
+                StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+        if (!lines.isEmpty()) {
+            // The last line may have been left incomplete
+            writer.newLine();
+        }
+        return new CopyJournal(file, done, writer);
+    }
+
+    @Nonnull
+    static Path getTempFile(@Nonnull Path file) {
+        return file.resolveSibling(file.getFileName() + TEMP_SUFFIX);
+    }
+
+    /**
+     * @param expected the contents expected for the file, if known
+     * @return whether the file was completed by a previous run and still has the same size, and the size and CRC32
+     * recorded for it are the expected ones
+     */
+    boolean isDone(@Nonnull Path file, @Nullable CrcKey expected) {
+        Entry entry;
+        synchronized (this) {
+            entry = done.get(normalize(file));
+        }
+        if (entry == null || (expected != null && !entry.matches(expected))) {
+            return false;
+        }
+        try {
+            return Files.size(file) == entry.getSize();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return the CRC32 recorded for the file, if it was completed by a previous run and still has the same size
+     */
+    @Nullable
+    Long getCrc(@Nonnull Path file) {
+        Entry entry;
+        synchronized (this) {
+            entry = done.get(normalize(file));
+        }
+        return entry != null && isDone(file, null) ? entry.getCrc() : null;
+    }
+
+    synchronized void started(@Nonnull Path file) throws IOException {
+        Path path = normalize(file);
+        done.remove(path);
+        append(STARTED + "\t" + path);
+    }
+
+    synchronized void done(@Nonnull Path file, long size, @Nullable Long crc) throws IOException {
+        Path path = normalize(file);
+        done.put(path, new Entry(size, crc));
+        append(DONE + "\t" + size + "\t" + (crc != null ? Long.toHexString(crc) : NO_CRC) + "\t" + path);
+    }
+
+    private void append(String line) throws IOException {
+        writer.write(line);
+        writer.newLine();
+        // Flushed, but not synced, as losing the last entries only means copying those files again
+        writer.flush();
+    }
+
+    private static Path normalize(Path file) {
+        return file.toAbsolutePath().normalize();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        log.debug("Closing copy journal '{}'", file);
+        writer.close();
+    }
+
+    /**
+     * Closes and deletes the journal, as there's nothing left to resume.
+     */
+    synchronized void delete() throws IOException {
+        close();
+        log.debug("Deleting copy journal '{}'", file);
+        Files.deleteIfExists(file);
+    }
+}
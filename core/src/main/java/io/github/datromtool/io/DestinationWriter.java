@@ -0,0 +1,380 @@
+package io.github.datromtool.io;
+
+import com.google.common.collect.Lists;
+import io.github.datromtool.config.AppConfig;
+import io.github.datromtool.data.CrcKey;
+import io.github.datromtool.data.Pair;
+import io.github.datromtool.data.SyncMode;
+import io.github.datromtool.util.ZipFilePool;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+/**
+ * Writes the destination files of a copy session according to the {@link AppConfig.FileCopierConfig}:
+ * <ul>
+ *     <li>Writes are buffered in multiples of the block size of the destination's file store, so large files are
+ *     written in large aligned blocks and small files are written all at once</li>
+ *     <li>Files are synced to the storage device as configured by {@link SyncMode}</li>
+ *     <li>Timestamps are either set as soon as each file is written or all at once at the end</li>
+ *     <li>If there is a {@link CopyJournal}, files are written to a temporary file which is renamed when
+ *     complete, and recorded in the journal so they can be skipped if the copy is resumed later. With
+ *     {@link SyncMode#BATCH}, they are only recorded once they are synced, so the journal never lists a file
+ *     whose contents may not have reached the storage device</li>
+ * </ul>
+ * Anything deferred to the end is done by {@link #flush(ExecutorService)}.
+ */
+@Slf4j
+final class DestinationWriter {
+
+    private static final int DEFAULT_BLOCK_SIZE = 4096;
+
+    private final AppConfig.FileCopierConfig config;
+    @Nullable
+    private final CopyJournal journal;
+    private final Map<Path, Integer> blockSizes = new ConcurrentHashMap<>();
+    private final Queue<PendingFile> pendingFiles = new ConcurrentLinkedQueue<>();
+    private final Map<Path, WrittenFile> writtenFiles = new ConcurrentHashMap<>();
+
+    DestinationWriter(@Nonnull AppConfig.FileCopierConfig config) {
+        this(config, null);
+    }
+
+    DestinationWriter(@Nonnull AppConfig.FileCopierConfig config, @Nullable CopyJournal journal) {
+        this.config = config;
+        this.journal = journal;
+    }
+
+    @Value
+    private static class WrittenFile {
+
+        long size;
+        @Nullable
+        Long crc;
+    }
+
+    @Value
+    private static class PendingFile {
+
+        Path file;
+        boolean setTimes;
+        @Nullable
+        FileTime lastModifiedTime;
+        @Nullable
+        FileTime lastAccessTime;
+        @Nullable
+        FileTime creationTime;
+        /**
+         * What to record in the journal once the file is synced, if anything
+         */
+        @Nullable
+        WrittenFile journaled;
+    }
+
+    /**
+     * Opens a buffered stream to write a file, which is synced when closed if {@link SyncMode#FILE} is used.
+     *
+     * @param size the expected size of the file, or a negative number if unknown
+     */
+    @Nonnull
+    OutputStream newOutputStream(@Nonnull Path file, long size) throws IOException {
+        FileChannel channel = FileChannel.open(
+                startFile(file),
+                StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        CRC32 crc32 = journal != null ? new CRC32() : null;
+        return new BufferedOutputStream(Channels.newOutputStream(channel), getBufferSize(file, size)) {
+
+            private long written;
+
+            @Override
+            public synchronized void write(int b) throws IOException {
+                super.write(b);
+                written++;
+                if (crc32 != null) {
+                    crc32.update(b);
+                }
+            }
+
+            @Override
+            public synchronized void write(@Nonnull byte[] b, int off, int len) throws IOException {
+                super.write(b, off, len);
+                written += len;
+                if (crc32 != null) {
+                    crc32.update(b, off, len);
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                try (channel) {
+                    flush();
+                    force(channel);
+                }
+                if (crc32 != null) {
+                    writtenFiles.put(normalize(file), new WrittenFile(written, crc32.getValue()));
+                }
+            }
+        };
+    }
+
+    /**
+     * Marks the start of the writing of a file.
+     *
+     * @return the path where the file must actually be written, which is a temporary file if there's a journal
+     */
+    @Nonnull
+    Path startFile(@Nonnull Path file) throws IOException {
+        // The archive may have been read before, and open handles keep it from being replaced on some systems
+        ZipFilePool.shared().evict(file);
+        if (journal == null) {
+            return file;
+        }
+        journal.started(file);
+        return CopyJournal.getTempFile(file);
+    }
+
+    /**
+     * @param files the files, along with their expected contents, if known
+     * @return whether all the given files were completed by a previous run, according to the journal
+     */
+    boolean isDone(@Nonnull Collection<Pair<Path, CrcKey>> files) {
+        return journal != null
+                && !files.isEmpty()
+                && files.stream().allMatch(f -> journal.isDone(f.getLeft(), f.getRight()));
+    }
+
+    /**
+     * @return the CRC32 of a file written by a previous run, according to the journal, if known
+     */
+    @Nullable
+    Long getJournaledCrc(@Nonnull Path file) {
+        return journal != null ? journal.getCrc(file) : null;
+    }
+
+    /**
+     * Deletes what was written of a file which could not be completed.
+     */
+    void discard(@Nonnull Path file) throws IOException {
+        writtenFiles.remove(normalize(file));
+        Files.deleteIfExists(journal != null ? CopyJournal.getTempFile(file) : file);
+    }
+
+    private int getBufferSize(Path file, long size) {
+        int blockSize = getBlockSize(file);
+        long maxSize = roundUp(Math.max(1, config.getWriteBufferSize()), blockSize);
+        if (size < 0) {
+            return (int) Math.min(maxSize, Integer.MAX_VALUE);
+        }
+        return (int) Math.min(Math.min(maxSize, roundUp(Math.max(1, size), blockSize)), Integer.MAX_VALUE);
+    }
+
+    private static long roundUp(long value, int blockSize) {
+        return (value + blockSize - 1) / blockSize * blockSize;
+    }
+
+    private int getBlockSize(Path file) {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent == null) {
+            return DEFAULT_BLOCK_SIZE;
+        }
+        return blockSizes.computeIfAbsent(parent, p -> {
+            try {
+                long blockSize = Files.getFileStore(p).getBlockSize();
+                return blockSize > 0 && blockSize <= Integer.MAX_VALUE ? (int) blockSize : DEFAULT_BLOCK_SIZE;
+            } catch (IOException | UnsupportedOperationException e) {
+                log.debug("Could not get the block size for '{}'", p, e);
+                return DEFAULT_BLOCK_SIZE;
+            }
+        });
+    }
+
+    /**
+     * Syncs a channel being written if {@link SyncMode#FILE} is used.
+     */
+    private void force(@Nonnull FileChannel channel) throws IOException {
+        if (config.getSyncMode() == SyncMode.FILE) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Syncs a file written by other means, such as by the OS, if {@link SyncMode#FILE} is used.
+     */
+    void force(@Nonnull Path file) throws IOException {
+        if (config.getSyncMode() == SyncMode.FILE) {
+            sync(file);
+        }
+    }
+
+    /**
+     * Finishes a file written with {@link #newOutputStream(Path, long)} or synced with {@link #force(Path)},
+     * setting its timestamps now or deferring them to {@link #flush(ExecutorService)}.
+     */
+    void finishFile(
+            @Nonnull Path file,
+            @Nullable FileTime lastModifiedTime,
+            @Nullable FileTime lastAccessTime,
+            @Nullable FileTime creationTime) throws IOException {
+        WrittenFile journaled = complete(file);
+        if (config.isBatchFileTimes()) {
+            pendingFiles.add(new PendingFile(file, true, lastModifiedTime, lastAccessTime, creationTime, journaled));
+        } else {
+            setTimes(file, lastModifiedTime, lastAccessTime, creationTime);
+            if (config.getSyncMode() == SyncMode.BATCH) {
+                pendingFiles.add(new PendingFile(file, false, null, null, null, journaled));
+            }
+        }
+    }
+
+    /**
+     * Finishes a file written by other means, such as an archive, syncing it as configured.
+     */
+    void finishArchive(@Nonnull Path file) throws IOException {
+        if (!Files.isRegularFile(journal != null ? CopyJournal.getTempFile(file) : file)) {
+            // Nothing was written
+            return;
+        }
+        WrittenFile journaled = complete(file);
+        switch (config.getSyncMode()) {
+            case NONE -> {
+            }
+            case FILE -> sync(file);
+            case BATCH -> pendingFiles.add(new PendingFile(file, false, null, null, null, journaled));
+        }
+    }
+
+    /**
+     * Finishes a link to another file, which is only recorded in the journal.
+     */
+    void finishLink(@Nonnull Path file) throws IOException {
+        if (journal != null) {
+            journal.done(file, Files.size(file), null);
+        }
+    }
+
+    /**
+     * Renames the temporary file and records it in the journal, unless it's only synced later.
+     *
+     * @return what to record in the journal once the file is synced, if it's deferred to
+     * {@link #flush(ExecutorService)}
+     */
+    @Nullable
+    private WrittenFile complete(Path file) throws IOException {
+        if (journal == null) {
+            return null;
+        }
+        WrittenFile writtenFile = writtenFiles.remove(normalize(file));
+        Path tempFile = CopyJournal.getTempFile(file);
+        try {
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (writtenFile == null) {
+            writtenFile = new WrittenFile(Files.size(file), null);
+        }
+        if (config.getSyncMode() == SyncMode.BATCH) {
+            return writtenFile;
+        }
+        journal.done(file, writtenFile.getSize(), writtenFile.getCrc());
+        return null;
+    }
+
+    private static Path normalize(Path file) {
+        return file.toAbsolutePath().normalize();
+    }
+
+    /**
+     * Sets the timestamps and syncs the files which were deferred to the end, splitting them between the
+     * threads of the given executor.
+     */
+    void flush(@Nonnull ExecutorService executorService) {
+        List<PendingFile> files = new ArrayList<>();
+        PendingFile pendingFile;
+        while ((pendingFile = pendingFiles.poll()) != null) {
+            files.add(pendingFile);
+        }
+        if (files.isEmpty()) {
+            return;
+        }
+        int partitionSize = (files.size() + config.getThreads() - 1) / config.getThreads();
+        List<Future<?>> futures = new ArrayList<>();
+        for (List<PendingFile> partition : Lists.partition(files, partitionSize)) {
+            futures.add(executorService.submit(() -> partition.forEach(this::complete)));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                log.error("Unexpected exception thrown", e.getCause());
+            } catch (InterruptedException e) {
+                log.error("Interrupted while finishing the copied files", e);
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void complete(PendingFile pendingFile) {
+        try {
+            if (pendingFile.isSetTimes()) {
+                setTimes(
+                        pendingFile.getFile(),
+                        pendingFile.getLastModifiedTime(),
+                        pendingFile.getLastAccessTime(),
+                        pendingFile.getCreationTime());
+            }
+            if (config.getSyncMode() == SyncMode.BATCH) {
+                sync(pendingFile.getFile());
+            }
+            WrittenFile journaled = pendingFile.getJournaled();
+            if (journal != null && journaled != null) {
+                journal.done(pendingFile.getFile(), journaled.getSize(), journaled.getCrc());
+            }
+        } catch (IOException e) {
+            log.warn("Could not finish writing '{}'", pendingFile.getFile(), e);
+        }
+    }
+
+    private static void setTimes(
+            Path file,
+            @Nullable FileTime lastModifiedTime,
+            @Nullable FileTime lastAccessTime,
+            @Nullable FileTime creationTime) throws IOException {
+        BasicFileAttributeView toAttrib = Files.getFileAttributeView(file, BasicFileAttributeView.class);
+        toAttrib.setTimes(lastModifiedTime, lastAccessTime, creationTime);
+    }
+
+    private static void sync(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+}
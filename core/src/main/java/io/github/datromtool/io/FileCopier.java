@@ -1,13 +1,42 @@
 package io.github.datromtool.io;
 
-import com.github.junrar.exception.RarException;
 import com.github.junrar.exception.UnsupportedRarV5Exception;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Streams;
+import io.github.datromtool.SystemUtils;
 import io.github.datromtool.config.AppConfig;
+import io.github.datromtool.data.CrcKey;
+import io.github.datromtool.data.LinkMode;
+import io.github.datromtool.data.Pair;
+import io.github.datromtool.io.compression.CompressionAlgorithm;
+import io.github.datromtool.io.compression.Compressor;
+import io.github.datromtool.io.compression.Decompressor;
+import io.github.datromtool.io.compression.ParallelDeflateOutputStream;
+import io.github.datromtool.io.compression.ParallelGzipDecompressor;
+import io.github.datromtool.io.compression.ParallelXZCompressor;
+import io.github.datromtool.io.compression.ZstdCompressor;
+import io.github.datromtool.io.copy.FileTimes;
+import io.github.datromtool.io.copy.SourceSpec;
+import io.github.datromtool.io.copy.TransferEngine;
+import io.github.datromtool.io.copy.archive.ArchiveDestinationInternalSpec;
+import io.github.datromtool.io.copy.archive.ArchiveDestinationSpec;
+import io.github.datromtool.io.copy.archive.ArchiveDestinationSpecFactory;
+import io.github.datromtool.io.copy.archive.ArchiveSourceInternalSpec;
+import io.github.datromtool.io.copy.archive.ArchiveSourceSpec;
+import io.github.datromtool.io.copy.archive.ArchiveSourceSpecFactory;
+import io.github.datromtool.io.copy.archive.exceptions.ArchiveEntryNotFoundException;
+import io.github.datromtool.io.copy.impl.ChannelTransferStrategy;
+import io.github.datromtool.io.copy.impl.FileSourceSpec;
 import io.github.datromtool.io.logging.FileCopierLoggingListener;
 import io.github.datromtool.util.ArchiveUtils;
+import io.github.datromtool.util.ReadAheadPolicy;
+import io.github.datromtool.util.ZipFilePool;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -16,9 +45,9 @@ import lombok.NonNull;
 import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.compress.archivers.sevenz.SevenZArchiveEntry;
-import org.apache.commons.compress.archivers.sevenz.SevenZOutputFile;
-import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
-import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.sevenz.SevenZFile;
+import org.apache.commons.compress.archivers.zip.DefaultBackingStoreSupplier;
+import org.apache.commons.compress.archivers.zip.ParallelScatterZipCreator;
 import org.apache.commons.compress.archivers.zip.X000A_NTFS;
 import org.apache.commons.compress.archivers.zip.X5455_ExtendedTimestamp;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
@@ -30,28 +59,43 @@ import org.apache.commons.compress.compressors.xz.XZUtils;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileStore;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.attribute.BasicFileAttributeView;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileTime;
 import java.security.InvalidParameterException;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.util.Date;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
 
-import static io.github.datromtool.util.ArchiveUtils.normalizePath;
 import static java.util.Objects.requireNonNull;
 
 @Slf4j
@@ -67,6 +111,23 @@ public final class FileCopier {
      */
     private static final Path EMPTY_PATH = Paths.get("");
 
+    /**
+     * Minimum size of a file for it to be cloned, since each clone starts a new process.
+     */
+    private static final long CLONE_MIN_SIZE = 1024 * 1024;
+
+    /**
+     * Maximum amount of specs grouped into a single {@link MultiDestinationSpec}. Larger groups are split, so
+     * fewer destination archives may be open at once, and a large archive can be read by several threads.
+     */
+    @VisibleForTesting
+    static final int MAX_GROUP_SIZE = 64;
+
+    /**
+     * The default name of the journal used to resume an interrupted copy, which is kept in the output directory.
+     */
+    public static final String JOURNAL_FILE_NAME = ".datromtool-journal";
+
     public static abstract class Spec {
 
         private Spec() {
@@ -83,6 +144,13 @@ public final class FileCopier {
         Path from;
         @NonNull
         Path to;
+        @Nullable
+        LinkMode linkMode;
+        /**
+         * The size and CRC32 the destination will have, so it can be left alone if it already has them.
+         */
+        @Nullable
+        CrcKey expected;
     }
 
     @Builder
@@ -100,6 +168,8 @@ public final class FileCopier {
             String from;
             @NonNull
             Path to;
+            @Nullable
+            CrcKey expected;
         }
 
         @NonNull
@@ -125,6 +195,8 @@ public final class FileCopier {
             Path from;
             @NonNull
             String to;
+            @Nullable
+            CrcKey expected;
         }
 
         @NonNull
@@ -150,6 +222,8 @@ public final class FileCopier {
             String from;
             @NonNull
             String to;
+            @Nullable
+            CrcKey expected;
         }
 
         @NonNull
@@ -164,6 +238,55 @@ public final class FileCopier {
         ImmutableMap<String, InternalSpec> internalSpecs;
     }
 
+    /**
+     * Extractions and archive copies which all read from the same archive, done in a single pass over it, so each
+     * entry is decoded only once no matter how many destinations it has.
+     * <p>
+     * Only 7z and TAR archives are supported, as they must be decoded sequentially and, for solid 7z archives,
+     * reading any entry means decoding everything before it in the same block. ZIP and RAR archives, whose entries
+     * can be read on their own, are rejected, as are copies to RAR archives, which can't be written.
+     *
+     * @see #groupBySource(Collection)
+     */
+    @Builder
+    @Value
+    @EqualsAndHashCode(callSuper = false)
+    public static class MultiDestinationSpec extends Spec {
+
+        @NonNull
+        ArchiveType fromType;
+        @NonNull
+        Path from;
+        @NonNull
+        ImmutableList<ExtractionSpec> extractionSpecs;
+        @NonNull
+        ImmutableList<ArchiveCopySpec> archiveCopySpecs;
+
+        /**
+         * @throws IllegalArgumentException if the archive isn't a 7z or TAR archive, or if any of the archives
+         *                                  copied to is a RAR archive
+         */
+        private MultiDestinationSpec(
+                @NonNull ArchiveType fromType,
+                @NonNull Path from,
+                @NonNull ImmutableList<ExtractionSpec> extractionSpecs,
+                @NonNull ImmutableList<ArchiveCopySpec> archiveCopySpecs) {
+            if (!isSequential(fromType)) {
+                throw new IllegalArgumentException(String.format(
+                        "Copying %s archives such as '%s' to multiple destinations is not supported",
+                        fromType.getAlias(),
+                        from));
+            }
+            if (archiveCopySpecs.stream().anyMatch(s -> s.getToType() == ArchiveType.RAR)) {
+                throw new IllegalArgumentException("RAR compression is not supported");
+            }
+            this.fromType = fromType;
+            this.from = from;
+            this.extractionSpecs = extractionSpecs;
+            this.archiveCopySpecs = archiveCopySpecs;
+        }
+    }
+
     public interface Listener {
 
         void init(int numThreads);
@@ -184,13 +307,59 @@ public final class FileCopier {
     private final AppConfig.FileCopierConfig config;
     private final ImmutableList<Listener> listeners;
     private final ThreadLocal<byte[]> threadLocalBuffer;
+    private final Map<FileStore, CloneSupport> cloneSupport = new ConcurrentHashMap<>();
+    private final Map<Pair<Path, Path>, Optional<FileStore>> sharedFileStores = new ConcurrentHashMap<>();
+    private final ThreadLocal<Session> currentSession = new ThreadLocal<>();
+    @Nullable
+    private final Path journalFile;
+    private final ReadAheadPolicy readAheadPolicy;
+    private final TransferEngine transferEngine;
 
     public FileCopier(
             @Nonnull AppConfig.FileCopierConfig config,
             @Nonnull List<Listener> listeners) {
+        this(config, listeners, null);
+    }
+
+    /**
+     * @param journalFile the journal of the copied files. If not null, files already copied by a previous run
+     *                    using the same journal are skipped, and files are written to a temporary file first, so
+     *                    an interrupted copy can be resumed
+     */
+    public FileCopier(
+            @Nonnull AppConfig.FileCopierConfig config,
+            @Nonnull List<Listener> listeners,
+            @Nullable Path journalFile) {
         this.config = config;
+        this.journalFile = journalFile;
         this.listeners = processListenerList(requireNonNull(listeners));
         this.threadLocalBuffer = ThreadLocal.withInitial(() -> new byte[config.getBufferSize()]);
+        this.readAheadPolicy = ReadAheadPolicy.from(config.getReadAhead());
+        this.transferEngine = config.isAllowRawZipCopy()
+                ? TransferEngine.withDefaultStrategies(config.getBufferSize())
+                : TransferEngine.withStrategies(ImmutableList.of(new ChannelTransferStrategy()), config.getBufferSize());
+    }
+
+    /**
+     * @return the compressors of XZ, using more threads if {@link AppConfig.FileCopierConfig#getXzThreads()} is
+     * greater than one and a compression executor is given, and of Zstandard, with the level and threads configured
+     */
+    private static ImmutableMap<CompressionAlgorithm, Compressor> getTarCompressors(
+            AppConfig.FileCopierConfig config,
+            @Nullable ExecutorService compressionExecutorService) {
+        ImmutableMap.Builder<CompressionAlgorithm, Compressor> compressors = ImmutableMap.builder();
+        if (config.getXzThreads() > 1 && compressionExecutorService != null) {
+            compressors.put(
+                    CompressionAlgorithm.XZ,
+                    new ParallelXZCompressor(
+                            config.getXzBlockSize(),
+                            config.getXzThreads(),
+                            compressionExecutorService));
+        }
+        // A single thread is the calling one, without any workers
+        int zstdWorkers = config.getZstdThreads() > 1 ? config.getZstdThreads() : 0;
+        compressors.put(CompressionAlgorithm.ZSTD, new ZstdCompressor(config.getZstdLevel(), zstdWorkers));
+        return compressors.build();
     }
 
     @Nonnull
@@ -201,40 +370,317 @@ public final class FileCopier {
         return ImmutableList.copyOf(listeners);
     }
 
+    /**
+     * Marks the end of the specs in a queue given to {@link #copy(BlockingQueue)}.
+     */
+    public static final Spec END_OF_SPECS = new Spec() {
+        @Override
+        public String toString() {
+            return "END_OF_SPECS";
+        }
+    };
+
+    /**
+     * Groups the extractions and archive copies which read from the same 7z or TAR archive into a
+     * {@link MultiDestinationSpec}, so the archive is decoded once instead of once per spec. All other specs,
+     * including the ones which are the only readers of their archive, are kept as they are.
+     * <p>
+     * Groups of more than {@value #MAX_GROUP_SIZE} specs are split, each part decoding the archive once.
+     * <p>
+     * The order of the specs is kept, with each group taking the place of its first spec.
+     */
+    @Nonnull
+    public static ImmutableList<Spec> groupBySource(@Nonnull Collection<? extends Spec> specs) {
+        Map<Path, List<Spec>> specsBySource = new LinkedHashMap<>();
+        for (Spec spec : specs) {
+            Path source = getSequentialSource(spec);
+            if (source != null) {
+                specsBySource.computeIfAbsent(source, k -> new ArrayList<>()).add(spec);
+            }
+        }
+        ImmutableList.Builder<Spec> builder = ImmutableList.builder();
+        for (Spec spec : specs) {
+            Path source = getSequentialSource(spec);
+            if (source == null) {
+                builder.add(spec);
+                continue;
+            }
+            List<Spec> group = specsBySource.remove(source);
+            if (group == null) {
+                // Already added with its group
+                continue;
+            }
+            for (List<Spec> part : Lists.partition(group, MAX_GROUP_SIZE)) {
+                builder.add(part.size() == 1 ? part.get(0) : toMultiDestinationSpec(source, part));
+            }
+        }
+        return builder.build();
+    }
+
+    private static MultiDestinationSpec toMultiDestinationSpec(Path source, List<Spec> group) {
+        MultiDestinationSpec.MultiDestinationSpecBuilder multiSpec = MultiDestinationSpec.builder().from(source);
+        ImmutableList.Builder<ExtractionSpec> extractionSpecs = ImmutableList.builder();
+        ImmutableList.Builder<ArchiveCopySpec> archiveCopySpecs = ImmutableList.builder();
+        for (Spec member : group) {
+            if (member instanceof ExtractionSpec) {
+                multiSpec.fromType(((ExtractionSpec) member).getFromType());
+                extractionSpecs.add((ExtractionSpec) member);
+            } else {
+                multiSpec.fromType(((ArchiveCopySpec) member).getFromType());
+                archiveCopySpecs.add((ArchiveCopySpec) member);
+            }
+        }
+        return multiSpec
+                .extractionSpecs(extractionSpecs.build())
+                .archiveCopySpecs(archiveCopySpecs.build())
+                .build();
+    }
+
+    @Nullable
+    private static Path getSequentialSource(Spec spec) {
+        if (spec instanceof ExtractionSpec) {
+            ExtractionSpec extractionSpec = (ExtractionSpec) spec;
+            return isSequential(extractionSpec.getFromType()) ? extractionSpec.getFrom() : null;
+        } else if (spec instanceof ArchiveCopySpec) {
+            ArchiveCopySpec archiveCopySpec = (ArchiveCopySpec) spec;
+            return isSequential(archiveCopySpec.getFromType()) && archiveCopySpec.getToType() != ArchiveType.RAR
+                    ? archiveCopySpec.getFrom()
+                    : null;
+        }
+        return null;
+    }
+
+    private static boolean isSequential(ArchiveType archiveType) {
+        return switch (archiveType) {
+            case ZIP, RAR -> false;
+            case SEVEN_ZIP, TAR, TAR_BZ2, TAR_GZ, TAR_LZ4, TAR_LZMA, TAR_XZ, TAR_ZST -> true;
+        };
+    }
+
+    /**
+     * Copies all the given specs, reading each 7z or TAR archive only once.
+     *
+     * @see #groupBySource(Collection)
+     */
     public void copy(Set<? extends Spec> definitions) {
         log.debug("Copying selected files: {}", definitions);
-        ExecutorService executorService = Executors.newFixedThreadPool(
-                config.getThreads(),
-                new IndexedThreadFactory(log, "COPIER"));
-        if (!LZMAUtils.isLZMACompressionAvailable()) {
-            log.warn("LZMA compression support is disabled");
+        try (Session session = open()) {
+            session.submit(groupBySource(definitions));
         }
-        if (!XZUtils.isXZCompressionAvailable()) {
-            log.warn("XZ compression support is disabled");
+    }
+
+    /**
+     * Copies the specs returned by the given iterator, starting as soon as the first batch is available.
+     *
+     * @see Session#submit(Iterator)
+     */
+    public void copy(Iterator<? extends Spec> definitions) {
+        try (Session session = open()) {
+            session.submit(definitions);
         }
-        for (Listener listener : listeners) {
-            listener.init(config.getThreads());
-            listener.reportTotalItems(definitions.size());
-        }
-        definitions.stream()
-                .map(d -> executorService.submit(() -> copy(d)))
-                .collect(ImmutableList.toImmutableList())
-                .forEach(this::waitForCompletion);
-        executorService.shutdownNow();
-        for (Listener listener : listeners) {
-            listener.reportAllFinished();
+    }
+
+    /**
+     * Copies the specs taken from the given queue until {@link #END_OF_SPECS} is found, starting as soon as
+     * the first one is available.
+     *
+     * @see #copy(Iterator)
+     */
+    public void copy(BlockingQueue<? extends Spec> definitions) {
+        try (Session session = open()) {
+            Spec spec;
+            while ((spec = definitions.take()) != END_OF_SPECS) {
+                session.submit(spec);
+            }
+        } catch (InterruptedException e) {
+            log.error("Interrupted while waiting for files to copy", e);
+            Thread.currentThread().interrupt();
         }
     }
 
-    private void waitForCompletion(Future<?> future) {
-        try {
-            future.get();
-        } catch (Exception e) {
-            log.error("Unexpected exception thrown", e);
+    /**
+     * Opens a new copy session, to which specs can be submitted while they are still being produced.
+     * Copying starts as soon as each spec is submitted, and submitting blocks while there are already
+     * {@link AppConfig.FileCopierConfig#getMaxPendingSpecs()} specs waiting or being copied.
+     * <p>
+     * Closing the session waits for all submitted specs to finish.
+     */
+    @Nonnull
+    public Session open() {
+        return new Session();
+    }
+
+    public final class Session implements AutoCloseable {
+
+        private final ExecutorService executorService;
+        /**
+         * Compresses and decompresses the blocks of all the files being copied at once, so the threads configured
+         * for parallel compression are bounded for the whole session instead of being multiplied by each file
+         */
+        @Nullable
+        private final ExecutorService compressionExecutorService;
+        private final Decompressor gzipDecompressor;
+        private final ArchiveSourceSpecFactory archiveSourceSpecFactory;
+        private final ArchiveDestinationSpecFactory archiveDestinationSpecFactory;
+        private final int maxPendingSpecs;
+        private final Semaphore pending;
+        @Nullable
+        private final CopyJournal journal;
+        private final DestinationWriter destinationWriter;
+        private final SpecScheduler scheduler;
+        private final ZipFilePool.Session zipFileSession;
+        private int totalItems;
+        private volatile boolean failed;
+
+        private Session() {
+            this.executorService = Executors.newFixedThreadPool(
+                    config.getThreads(),
+                    new IndexedThreadFactory(log, "COPIER"));
+            int compressionThreads = Math.max(
+                    config.getDeflateThreads(),
+                    Math.max(config.getXzThreads(), config.getGzipThreads()));
+            this.compressionExecutorService = compressionThreads > 1
+                    ? Executors.newFixedThreadPool(compressionThreads, new IndexedThreadFactory(log, "COMPRESSOR"))
+                    : null;
+            this.gzipDecompressor = config.getGzipThreads() > 1 && compressionExecutorService != null
+                    ? new ParallelGzipDecompressor(config.getGzipThreads(), compressionExecutorService)
+                    : CompressionAlgorithm.GZIP.getDecompressor();
+            // RAR archives are read natively first, and only with UnRAR or 7-Zip if they can't be
+            this.archiveSourceSpecFactory =
+                    new ArchiveSourceSpecFactory(false, false, readAheadPolicy, gzipDecompressor);
+            this.archiveDestinationSpecFactory = new ArchiveDestinationSpecFactory(
+                    false,
+                    config.getDeflateThreads(),
+                    compressionExecutorService,
+                    getTarCompressors(config, compressionExecutorService));
+            this.maxPendingSpecs = Math.max(1, config.getMaxPendingSpecs());
+            this.pending = new Semaphore(maxPendingSpecs);
+            try {
+                this.journal = journalFile != null ? CopyJournal.open(journalFile) : null;
+            } catch (IOException e) {
+                executorService.shutdownNow();
+                if (compressionExecutorService != null) {
+                    compressionExecutorService.shutdownNow();
+                }
+                throw new UncheckedIOException("Could not open the copy journal '" + journalFile + "'", e);
+            }
+            this.destinationWriter = new DestinationWriter(config, journal);
+            this.scheduler = new SpecScheduler(config.getMaxSpecsPerDevice());
+            this.zipFileSession = ZipFilePool.shared().openSession();
+            if (!LZMAUtils.isLZMACompressionAvailable()) {
+                log.warn("LZMA compression support is disabled");
+            }
+            if (!XZUtils.isXZCompressionAvailable()) {
+                log.warn("XZ compression support is disabled");
+            }
+            for (Listener listener : listeners) {
+                listener.init(config.getThreads());
+            }
+        }
+
+        public void submit(@Nonnull Spec spec) {
+            submit(ImmutableList.of(spec));
+        }
+
+        /**
+         * Submits all the given specs as a single batch.
+         * <p>
+         * The specs are copied in the order decided by the {@link SpecScheduler}: the largest first, grouped by
+         * source directory, and with at most {@link AppConfig.FileCopierConfig#getMaxSpecsPerDevice()} specs
+         * reading from the same device at once. Specs reading from the same 7z or TAR archive should be grouped
+         * with {@link #groupBySource(Collection)} beforehand.
+         */
+        public void submit(@Nonnull Collection<? extends Spec> specs) {
+            reportTotalItems(specs.size());
+            scheduler.addAll(specs);
+            for (int i = 0; i < specs.size(); i++) {
+                pending.acquireUninterruptibly();
+                try {
+                    executorService.execute(() -> {
+                        currentSession.set(this);
+                        try {
+                            SpecScheduler.Ticket ticket = scheduler.take();
+                            try {
+                                copy(ticket.getSpec());
+                            } finally {
+                                scheduler.done(ticket);
+                            }
+                        } catch (InterruptedException e) {
+                            log.error("Interrupted while waiting for files to copy", e);
+                            Thread.currentThread().interrupt();
+                        } catch (Exception e) {
+                            log.error("Unexpected exception thrown", e);
+                            failed = true;
+                        } finally {
+                            currentSession.remove();
+                            pending.release();
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    pending.release();
+                    throw e;
+                }
+            }
+        }
+
+        /**
+         * Submits the specs returned by the given iterator in batches of
+         * {@link AppConfig.FileCopierConfig#getMaxPendingSpecs()}, each of them ordered by the {@link SpecScheduler}.
+         * <p>
+         * A batch is pulled from the iterator while the previous one is still being copied, so at most twice as
+         * many specs are held at once. The total amount of items reported to the listeners is updated as batches
+         * are pulled.
+         *
+         * @see #submit(Collection)
+         */
+        public void submit(@Nonnull Iterator<? extends Spec> specs) {
+            Iterators.partition(specs, maxPendingSpecs).forEachRemaining(this::submit);
+        }
+
+        private synchronized void reportTotalItems(int newItems) {
+            totalItems += newItems;
+            for (Listener listener : listeners) {
+                listener.reportTotalItems(totalItems);
+            }
+        }
+
+        @Override
+        public void close() {
+            pending.acquireUninterruptibly(maxPendingSpecs);
+            destinationWriter.flush(executorService);
+            executorService.shutdownNow();
+            if (compressionExecutorService != null) {
+                compressionExecutorService.shutdownNow();
+            }
+            zipFileSession.close();
+            if (journal != null) {
+                try {
+                    if (failed) {
+                        journal.close();
+                    } else {
+                        // Everything was copied, so there's nothing left to resume
+                        journal.delete();
+                    }
+                } catch (IOException e) {
+                    log.warn("Could not close the copy journal '{}'", journalFile, e);
+                }
+            }
+            for (Listener listener : listeners) {
+                listener.reportAllFinished();
+            }
         }
     }
 
     private void copy(Spec spec) {
+        Spec changed = config.isSkipUnchanged() ? withoutUnchanged(spec) : spec;
+        if (changed == null || destinationWriter().isDone(getExpectedDestinations(changed))) {
+            skip(spec);
+            return;
+        }
+        copyChanged(changed);
+    }
+
+    private void copyChanged(Spec spec) {
         if (spec instanceof CopySpec) {
             copy((CopySpec) spec);
         } else if (spec instanceof ExtractionSpec) {
@@ -243,15 +689,296 @@ public final class FileCopier {
             copy((CompressionSpec) spec);
         } else if (spec instanceof ArchiveCopySpec) {
             copy((ArchiveCopySpec) spec);
+        } else if (spec instanceof MultiDestinationSpec) {
+            copy((MultiDestinationSpec) spec);
         } else {
             throw new InvalidParameterException("Cannot handle " + spec);
         }
     }
 
+    /**
+     * @return the destinations of a spec along with their expected contents, which are only known for files which
+     * aren't archives
+     */
+    private static ImmutableList<Pair<Path, CrcKey>> getExpectedDestinations(Spec spec) {
+        if (spec instanceof CopySpec) {
+            CopySpec copySpec = (CopySpec) spec;
+            return ImmutableList.of(Pair.of(copySpec.getTo(), copySpec.getExpected()));
+        } else if (spec instanceof ExtractionSpec) {
+            return ((ExtractionSpec) spec).getInternalSpecs()
+                    .values()
+                    .stream()
+                    .map(i -> Pair.of(i.getTo(), i.getExpected()))
+                    .collect(ImmutableList.toImmutableList());
+        } else if (spec instanceof MultiDestinationSpec) {
+            MultiDestinationSpec multiSpec = (MultiDestinationSpec) spec;
+            return Stream.concat(multiSpec.getExtractionSpecs().stream(), multiSpec.getArchiveCopySpecs().stream())
+                    .map(FileCopier::getExpectedDestinations)
+                    .flatMap(Collection::stream)
+                    .collect(ImmutableList.toImmutableList());
+        } else {
+            return getDestinations(spec).stream()
+                    .map(d -> Pair.<Path, CrcKey>of(d, null))
+                    .collect(ImmutableList.toImmutableList());
+        }
+    }
+
+    private static ImmutableList<Path> getDestinations(Spec spec) {
+        if (spec instanceof CopySpec) {
+            return ImmutableList.of(((CopySpec) spec).getTo());
+        } else if (spec instanceof ExtractionSpec) {
+            return ((ExtractionSpec) spec).getInternalSpecs()
+                    .values()
+                    .stream()
+                    .map(ExtractionSpec.InternalSpec::getTo)
+                    .collect(ImmutableList.toImmutableList());
+        } else if (spec instanceof CompressionSpec) {
+            return ImmutableList.of(((CompressionSpec) spec).getTo());
+        } else if (spec instanceof ArchiveCopySpec) {
+            return ImmutableList.of(((ArchiveCopySpec) spec).getTo());
+        } else if (spec instanceof MultiDestinationSpec) {
+            MultiDestinationSpec multiSpec = (MultiDestinationSpec) spec;
+            return Stream.concat(multiSpec.getExtractionSpecs().stream(), multiSpec.getArchiveCopySpecs().stream())
+                    .map(FileCopier::getDestinations)
+                    .flatMap(Collection::stream)
+                    .collect(ImmutableList.toImmutableList());
+        } else {
+            return ImmutableList.of();
+        }
+    }
+
+    /**
+     * Removes what already has the expected contents from a spec, i.e. the destination files or, for archives, the
+     * entries with the expected size and CRC32. Only ZIP and 7z archives are supported, as they keep the CRC32 of
+     * their entries, and an archive is left alone only if all of its entries are.
+     *
+     * @return what's left of the spec, or null if everything in it is unchanged
+     */
+    @Nullable
+    private Spec withoutUnchanged(Spec spec) {
+        try {
+            if (spec instanceof CopySpec) {
+                CopySpec copySpec = (CopySpec) spec;
+                return isUnchanged(copySpec.getTo(), copySpec.getExpected()) ? null : spec;
+            } else if (spec instanceof ExtractionSpec) {
+                ExtractionSpec extractionSpec = (ExtractionSpec) spec;
+                ImmutableMap<String, ExtractionSpec.InternalSpec> internalSpecs = ImmutableMap.copyOf(
+                        Maps.filterValues(
+                                extractionSpec.getInternalSpecs(),
+                                i -> !isUnchanged(i.getTo(), i.getExpected())));
+                if (internalSpecs.isEmpty()) {
+                    return null;
+                }
+                if (internalSpecs.size() == extractionSpec.getInternalSpecs().size()) {
+                    return spec;
+                }
+                return ExtractionSpec.builder()
+                        .fromType(extractionSpec.getFromType())
+                        .from(extractionSpec.getFrom())
+                        .internalSpecs(internalSpecs)
+                        .build();
+            } else if (spec instanceof CompressionSpec) {
+                CompressionSpec compressionSpec = (CompressionSpec) spec;
+                return isUnchanged(
+                        compressionSpec.getToType(),
+                        compressionSpec.getTo(),
+                        compressionSpec.getInternalSpecs()
+                                .stream()
+                                .map(i -> Pair.of(i.getTo(), i.getExpected()))
+                                .toList()) ? null : spec;
+            } else if (spec instanceof ArchiveCopySpec) {
+                ArchiveCopySpec archiveCopySpec = (ArchiveCopySpec) spec;
+                return isUnchanged(
+                        archiveCopySpec.getToType(),
+                        archiveCopySpec.getTo(),
+                        archiveCopySpec.getInternalSpecs()
+                                .values()
+                                .stream()
+                                .map(i -> Pair.of(i.getTo(), i.getExpected()))
+                                .toList()) ? null : spec;
+            } else if (spec instanceof MultiDestinationSpec) {
+                MultiDestinationSpec multiSpec = (MultiDestinationSpec) spec;
+                ImmutableList.Builder<ExtractionSpec> extractionSpecs = ImmutableList.builder();
+                for (ExtractionSpec extractionSpec : multiSpec.getExtractionSpecs()) {
+                    Spec changed = withoutUnchanged(extractionSpec);
+                    if (changed != null) {
+                        extractionSpecs.add((ExtractionSpec) changed);
+                    }
+                }
+                ImmutableList.Builder<ArchiveCopySpec> archiveCopySpecs = ImmutableList.builder();
+                for (ArchiveCopySpec archiveCopySpec : multiSpec.getArchiveCopySpecs()) {
+                    if (withoutUnchanged(archiveCopySpec) != null) {
+                        archiveCopySpecs.add(archiveCopySpec);
+                    }
+                }
+                MultiDestinationSpec changed = MultiDestinationSpec.builder()
+                        .fromType(multiSpec.getFromType())
+                        .from(multiSpec.getFrom())
+                        .extractionSpecs(extractionSpecs.build())
+                        .archiveCopySpecs(archiveCopySpecs.build())
+                        .build();
+                if (changed.getExtractionSpecs().isEmpty() && changed.getArchiveCopySpecs().isEmpty()) {
+                    return null;
+                }
+                return changed.equals(multiSpec) ? spec : changed;
+            }
+        } catch (IOException | UncheckedIOException e) {
+            log.debug("Could not check whether the destinations of {} are unchanged", spec, e);
+        }
+        return spec;
+    }
+
+    private boolean isUnchanged(Path file, @Nullable CrcKey expected) {
+        if (expected == null || !Files.isRegularFile(file)) {
+            return false;
+        }
+        try {
+            if (Files.size(file) != expected.getSize()) {
+                return false;
+            }
+            Long crc = destinationWriter().getJournaledCrc(file);
+            return matches(expected, expected.getSize(), crc != null ? crc : calculateCrc(file));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean isUnchanged(
+            ArchiveType toType,
+            Path to,
+            Collection<Pair<String, CrcKey>> entries) throws IOException {
+        if (entries.stream().anyMatch(e -> e.getRight() == null) || !Files.isRegularFile(to)) {
+            return false;
+        }
+        // Any other entry, even a directory, means the archive is stale and has to be written again
+        Set<String> expectedNames = entries.stream().map(Pair::getLeft).collect(Collectors.toSet());
+        Map<String, Pair<Long, Long>> checksums = new HashMap<>();
+        switch (toType) {
+            case ZIP -> {
+                try (ZipFilePool.Lease lease = ZipFilePool.shared().acquire(to)) {
+                    List<ZipArchiveEntry> zipArchiveEntries = Collections.list(lease.getZipFile().getEntries());
+                    List<String> names = zipArchiveEntries.stream().map(ZipArchiveEntry::getName).toList();
+                    if (!hasExactly(names, expectedNames)) {
+                        return false;
+                    }
+                    for (ZipArchiveEntry zipArchiveEntry : zipArchiveEntries) {
+                        checksums.put(
+                                zipArchiveEntry.getName(),
+                                Pair.of(zipArchiveEntry.getSize(), zipArchiveEntry.getCrc()));
+                    }
+                }
+            }
+            case SEVEN_ZIP -> {
+                try (SevenZFile sevenZFile = ArchiveUtils.openSevenZip(to)) {
+                    // The names are in the header, so they're checked before decompressing anything
+                    List<String> names = Streams.stream(sevenZFile.getEntries())
+                            .map(SevenZArchiveEntry::getName)
+                            .toList();
+                    if (!hasExactly(names, expectedNames)) {
+                        return false;
+                    }
+                    SevenZArchiveEntry entry;
+                    while ((entry = sevenZFile.getNextEntry()) != null) {
+                        if (entry.getHasCrc()) {
+                            checksums.put(entry.getName(), Pair.of(entry.getSize(), entry.getCrcValue()));
+                        } else {
+                            // Archives created by Commons Compress don't have the CRC32 of their entries
+                            checksums.put(entry.getName(), Pair.of(entry.getSize(), calculateCrc(sevenZFile::read)));
+                        }
+                    }
+                }
+            }
+            default -> {
+                // The contents of RAR and TAR archives can't be checked without decompressing them
+                return false;
+            }
+        }
+        for (Pair<String, CrcKey> entry : entries) {
+            Pair<Long, Long> checksum = checksums.get(entry.getLeft());
+            if (checksum == null || !matches(entry.getRight(), checksum.getLeft(), checksum.getRight())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean hasExactly(List<String> names, Set<String> expectedNames) {
+        return names.size() == expectedNames.size() && expectedNames.containsAll(names);
+    }
+
+    private static boolean matches(CrcKey expected, long size, long crc) {
+        try {
+            return expected.getSize() == size && Long.parseLong(expected.getCrc(), 16) == crc;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private long calculateCrc(Path file) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            return calculateCrc(inputStream::read);
+        }
+    }
+
+    private long calculateCrc(TriFunction<byte[], Integer, Integer, Integer, IOException> readFunction)
+            throws IOException {
+        byte[] buffer = threadLocalBuffer.get();
+        CRC32 crc32 = new CRC32();
+        int bytesRead;
+        while ((bytesRead = readFunction.apply(buffer, 0, buffer.length)) > -1) {
+            crc32.update(buffer, 0, bytesRead);
+        }
+        return crc32.getValue();
+    }
+
+    /**
+     * Skips a spec whose destinations already have the expected contents or were all written by a previous run,
+     * according to the journal.
+     */
+    private void skip(Spec spec) {
+        int index = getThreadIndex();
+        ImmutableList<Path> destinations = getDestinations(spec);
+        Path destination = destinations.size() == 1 ? destinations.get(0) : EMPTY_PATH;
+        log.debug("Skipping {}, as its destinations are up to date", spec);
+        for (Listener listener : listeners) {
+            listener.reportStart(index, EMPTY_PATH, destination, 1);
+        }
+        for (Listener listener : listeners) {
+            listener.reportFinish(index, EMPTY_PATH, destination);
+        }
+    }
+
     private static int getThreadIndex() {
         return ((IndexedThread) Thread.currentThread()).getIndex();
     }
 
+    private DestinationWriter destinationWriter() {
+        return currentSession.get().destinationWriter;
+    }
+
+    private Decompressor gzipDecompressor() {
+        return currentSession.get().gzipDecompressor;
+    }
+
+    private ArchiveSourceSpecFactory archiveSourceSpecFactory() {
+        return currentSession.get().archiveSourceSpecFactory;
+    }
+
+    private ArchiveDestinationSpecFactory archiveDestinationSpecFactory() {
+        return currentSession.get().archiveDestinationSpecFactory;
+    }
+
+    /**
+     * Reports a failure to the listeners, and keeps the journal of the current session, so the copy can be
+     * resumed.
+     */
+    private void reportFailure(int index, Path source, Path destination, String message, Throwable cause) {
+        currentSession.get().failed = true;
+        for (Listener listener : listeners) {
+            listener.reportFailure(index, source, destination, message, cause);
+        }
+    }
+
     private void copy(CopySpec spec) {
         int index = getThreadIndex();
         for (Listener listener : listeners) {
@@ -259,24 +986,28 @@ public final class FileCopier {
         }
         try {
             BasicFileAttributes fromAttrib = Files.readAttributes(spec.getFrom(), BasicFileAttributes.class);
-            try (InputStream inputStream = Files.newInputStream(spec.getFrom())) {
-                try (OutputStream outputStream = Files.newOutputStream(spec.getTo())) {
-                    copyWithProgress(
-                            index,
-                            fromAttrib.size(),
-                            spec.getFrom(),
-                            spec.getTo(),
-                            inputStream::read,
-                            outputStream::write);
+            if (spec.getLinkMode() != null && linkFile(spec.getLinkMode(), spec.getFrom(), spec.getTo())) {
+                for (Listener listener : listeners) {
+                    listener.reportStart(index, spec.getFrom(), spec.getTo(), fromAttrib.size());
+                    listener.reportBytesCopied(index, fromAttrib.size());
+                }
+                // Links share the timestamps of the source
+                destinationWriter().finishLink(spec.getTo());
+                return;
+            }
+            Path target = destinationWriter().startFile(spec.getTo());
+            if (cloneFile(fromAttrib.size(), spec.getFrom(), target)) {
+                for (Listener listener : listeners) {
+                    listener.reportStart(index, spec.getFrom(), spec.getTo(), fromAttrib.size());
+                    listener.reportBytesCopied(index, fromAttrib.size());
                 }
+            } else {
+                transferFile(index, fromAttrib.size(), spec.getFrom(), spec.getTo(), target);
             }
-            BasicFileAttributeView toAttrib = Files.getFileAttributeView(spec.getTo(), BasicFileAttributeView.class);
-            toAttrib.setTimes(fromAttrib.lastModifiedTime(), fromAttrib.lastAccessTime(), fromAttrib.creationTime());
+            destinationWriter().finishFile(spec.getTo(), fromAttrib.lastModifiedTime(), fromAttrib.lastAccessTime(), fromAttrib.creationTime());
         } catch (Exception e) {
             log.error("Could not copy '{}' to '{}'", spec.getFrom(), spec.getTo(), e);
-            for (Listener listener : listeners) {
-                listener.reportFailure(index, spec.getFrom(), spec.getTo(), "Could not copy files", e);
-            }
+            reportFailure(index, spec.getFrom(), spec.getTo(), "Could not copy files", e);
         } finally {
             for (Listener listener : listeners) {
                 listener.reportFinish(index, spec.getFrom(), spec.getTo());
@@ -290,32 +1021,23 @@ public final class FileCopier {
             listener.reportStart(index, spec.getFrom(), EMPTY_PATH, 1);
         }
         try {
-            switch (spec.getFromType()) {
-                case ZIP -> extractZipEntries(spec, index);
-                case RAR -> extractRarEntries(spec, index);
-                case SEVEN_ZIP -> extractSevenZipEntries(spec, index);
-                case TAR, TAR_BZ2, TAR_GZ, TAR_LZ4, TAR_LZMA, TAR_XZ -> extractTarEntries(spec, index);
-            }
+            readWithRarFallback(sourceSpecFactory -> extractEntries(spec, index, sourceSpecFactory));
         } catch (UnsupportedRarV5Exception e) {
             log.error("Could not extract '{}'. RAR5 is not supported yet", spec.getFrom());
-            for (Listener listener : listeners) {
-                listener.reportFailure(
-                        index,
-                        spec.getFrom(),
-                        EMPTY_PATH,
-                        "Could not extract archive. RAR5 is not supported yet",
-                        e);
-            }
+            reportFailure(
+                    index,
+                    spec.getFrom(),
+                    EMPTY_PATH,
+                    "Could not extract archive. RAR5 is not supported yet",
+                    e);
         } catch (Exception e) {
             log.error("Could not extract '{}'", spec.getFrom(), e);
-            for (Listener listener : listeners) {
-                listener.reportFailure(
-                        index,
-                        spec.getFrom(),
-                        EMPTY_PATH,
-                        "Could not extract archive",
-                        e);
-            }
+            reportFailure(
+                    index,
+                    spec.getFrom(),
+                    EMPTY_PATH,
+                    "Could not extract archive",
+                    e);
         } finally {
             for (Listener listener : listeners) {
                 listener.reportFinish(index, spec.getFrom(), EMPTY_PATH);
@@ -329,17 +1051,16 @@ public final class FileCopier {
             listener.reportStart(index, EMPTY_PATH, spec.getTo(), 1);
         }
         try {
-            switch (spec.getToType()) {
-                case ZIP -> compressZipEntries(spec, index);
-                case RAR -> throw new UnsupportedOperationException("RAR compression is not supported");
-                case SEVEN_ZIP -> compressSevenZipEntries(spec, index);
-                case TAR, TAR_BZ2, TAR_GZ, TAR_LZ4, TAR_LZMA, TAR_XZ -> compressTarEntries(spec, index);
+            CompressionSpec target = withTarget(spec, destinationWriter().startFile(spec.getTo()));
+            if (spec.getToType() == ArchiveType.ZIP && config.getZipThreads() > 1 && hasLargeEntries(spec)) {
+                compressZipEntriesInParallel(target, index);
+            } else {
+                compressEntries(target, index);
             }
+            destinationWriter().finishArchive(spec.getTo());
         } catch (Exception e) {
             log.error("Could not compress files to '{}'", spec.getTo(), e);
-            for (Listener listener : listeners) {
-                listener.reportFailure(index, EMPTY_PATH, spec.getTo(), "Could not compress files", e);
-            }
+            reportFailure(index, EMPTY_PATH, spec.getTo(), "Could not compress files", e);
         } finally {
             for (Listener listener : listeners) {
                 listener.reportFinish(index, EMPTY_PATH, spec.getTo());
@@ -353,34 +1074,26 @@ public final class FileCopier {
             listener.reportStart(index, spec.getFrom(), spec.getTo(), 1);
         }
         try {
-            switch (spec.getFromType()) {
-                case ZIP -> fromZipToArchive(spec, index);
-                case RAR -> fromRarToArchive(spec, index);
-                case SEVEN_ZIP -> fromSevenZipToArchive(spec, index);
-                case TAR, TAR_BZ2, TAR_GZ, TAR_LZ4, TAR_LZMA, TAR_XZ -> fromTarToArchive(spec, index);
-            }
+            transferEntries(withTarget(spec, destinationWriter().startFile(spec.getTo())), index);
+            destinationWriter().finishArchive(spec.getTo());
         } catch (UnsupportedRarV5Exception e) {
             log.error(
                     "Could not copy contents of '{}' to '{}'. RAR5 is not natively supported yet.",
                     spec.getFrom(),
                     spec.getTo());
-            for (Listener listener : listeners) {
-                listener.reportFailure(
-                        index,
-                        spec.getFrom(),
-                        spec.getTo(),
-                        "Could not copy contents of archive. RAR5 is not supported yet",
-                        e);
-            }
+            reportFailure(
+                    index,
+                    spec.getFrom(),
+                    spec.getTo(),
+                    "Could not copy contents of archive. RAR5 is not supported yet",
+                    e);
         } catch (Exception e) {
             log.error(
                     "Could not copy contents of '{}' to '{}'",
                     spec.getFrom(),
                     spec.getTo(),
                     e);
-            for (Listener listener : listeners) {
-                listener.reportFailure(index, spec.getFrom(), spec.getTo(), "Could not copy contents of archive", e);
-            }
+            reportFailure(index, spec.getFrom(), spec.getTo(), "Could not copy contents of archive", e);
         } finally {
             for (Listener listener : listeners) {
                 listener.reportFinish(index, spec.getFrom(), spec.getTo());
@@ -388,774 +1101,479 @@ public final class FileCopier {
         }
     }
 
-    private void extractZipEntries(ExtractionSpec spec, int index) throws IOException {
-        ArchiveUtils.readZip(spec.getFrom(), (zipFile, zipArchiveEntry) -> {
-            String name = zipArchiveEntry.getName();
-            ExtractionSpec.InternalSpec internal = findInternalSpec(spec, name);
-            if (internal == null) {
-                return;
-            }
-            try (InputStream inputStream = zipFile.getInputStream(zipArchiveEntry)) {
-                Path to = internal.getTo();
-                try (OutputStream outputStream = Files.newOutputStream(to)) {
-                    Path source = spec.getFrom().resolve(name);
-                    long size = zipArchiveEntry.getSize();
-                    copyWithProgress(
-                            index,
-                            size,
-                            source,
-                            to,
-                            inputStream::read,
-                            outputStream::write);
-                } catch (FileAlreadyExistsException e) {
-                    throw e;
-                } catch (IOException e) {
-                    Files.deleteIfExists(to);
-                    throw e;
-                }
-                BasicFileAttributeView toAttrib = Files.getFileAttributeView(to, BasicFileAttributeView.class);
-                toAttrib.setTimes(zipArchiveEntry.getLastModifiedTime(), zipArchiveEntry.getLastAccessTime(), zipArchiveEntry.getCreationTime());
-            }
-        });
+    /**
+     * @return the spec, writing the archive to the given path instead, such as the temporary file of a journal
+     */
+    private static CompressionSpec withTarget(CompressionSpec spec, Path target) {
+        if (target.equals(spec.getTo())) {
+            return spec;
+        }
+        return CompressionSpec.builder()
+                .toType(spec.getToType())
+                .to(target)
+                .internalSpecs(spec.getInternalSpecs())
+                .build();
     }
 
-    private void extractRarEntries(ExtractionSpec spec, int index) throws Exception {
-        try {
-            ArchiveUtils.readRar(spec.getFrom(), (archive, fileHeader) -> {
-                String name = normalizePath(fileHeader.getFileName());
-                ExtractionSpec.InternalSpec internal = findInternalSpec(spec, name);
-                if (internal == null) {
-                    return;
-                }
-                try (InputStream inputStream = archive.getInputStream(fileHeader)) {
-                    Path to = internal.getTo();
-                    try (OutputStream outputStream = Files.newOutputStream(to)) {
-                        Path source = spec.getFrom().resolve(name);
-                        long size = fileHeader.getFullUnpackSize();
-                        copyWithProgress(
-                                index,
-                                size,
-                                source,
-                                to,
-                                inputStream::read,
-                                outputStream::write);
-                    } catch (FileAlreadyExistsException e) {
-                        throw e;
-                    } catch (IOException e) {
-                        Files.deleteIfExists(to);
-                        throw e;
-                    }
-                    BasicFileAttributeView toAttrib = Files.getFileAttributeView(to, BasicFileAttributeView.class);
-                    toAttrib.setTimes(from(fileHeader.getMTime()), from(fileHeader.getATime()), from(fileHeader.getCTime()));
-                }
-            });
-        } catch (UnsupportedRarV5Exception e) {
-            if (isUseUnrar()) {
-                extractRarEntriesWithUnrar(spec, index);
-            } else if (isUseSevenZip()) {
-                extractRarEntriesWithSevenZip(spec, index);
-            } else {
-                throw e;
-            }
+    private static ArchiveCopySpec withTarget(ArchiveCopySpec spec, Path target) {
+        if (target.equals(spec.getTo())) {
+            return spec;
         }
+        return ArchiveCopySpec.builder()
+                .fromType(spec.getFromType())
+                .toType(spec.getToType())
+                .from(spec.getFrom())
+                .to(target)
+                .internalSpecs(spec.getInternalSpecs())
+                .build();
     }
 
-    private void extractRarEntriesWithUnrar(ExtractionSpec spec, int index) throws Exception {
-        ImmutableSet<String> desiredEntryNames = spec.getInternalSpecs().keySet();
-        ArchiveUtils.readRarWithUnrar(
-                spec.getFrom(),
-                desiredEntryNames,
-                (entry, processInputStream) -> processRarEntry(spec, index, entry, processInputStream));
+    private void copy(MultiDestinationSpec spec) {
+        int index = getThreadIndex();
+        for (Listener listener : listeners) {
+            listener.reportStart(index, spec.getFrom(), EMPTY_PATH, 1);
+        }
+        try {
+            fanOutEntries(spec, index);
+        } catch (Exception e) {
+            log.error("Could not copy contents of '{}'", spec.getFrom(), e);
+            reportFailure(index, spec.getFrom(), EMPTY_PATH, "Could not copy contents of archive", e);
+        } finally {
+            for (Listener listener : listeners) {
+                listener.reportFinish(index, spec.getFrom(), EMPTY_PATH);
+            }
+        }
     }
 
-    private void extractRarEntriesWithSevenZip(ExtractionSpec spec, int index) throws Exception {
-        ImmutableSet<String> desiredEntryNames = spec.getInternalSpecs().keySet();
-        ArchiveUtils.readRarWithSevenZip(
+    private void fanOutEntries(MultiDestinationSpec spec, int index) throws IOException {
+        List<ArchiveOutput> archiveOutputs = spec.getArchiveCopySpecs()
+                .stream()
+                .map(ArchiveOutput::new)
+                .toList();
+        ImmutableSet.Builder<String> names = ImmutableSet.builder();
+        spec.getExtractionSpecs().forEach(s -> names.addAll(s.getInternalSpecs().keySet()));
+        spec.getArchiveCopySpecs().forEach(s -> names.addAll(s.getInternalSpecs().keySet()));
+        try (ArchiveSourceSpec source = archiveSourceSpecFactory().buildSourceSpec(
                 spec.getFrom(),
-                desiredEntryNames,
-                (entry, processInputStream) -> processRarEntry(spec, index, entry, processInputStream));
+                spec.getFromType(),
+                names.build())) {
+            try {
+                ArchiveSourceInternalSpec internalSpec;
+                while ((internalSpec = source.getNextInternalSpec()) != null) {
+                    try (ArchiveSourceInternalSpec entry = internalSpec) {
+                        fanOutEntry(index, entry, spec, archiveOutputs);
+                    }
+                }
+            } catch (ArchiveEntryNotFoundException e) {
+                // The entries found are still copied, as they are when reading the archive for a single spec
+                log.warn("Some entries were not found when reading '{}'", spec.getFrom(), e);
+            }
+            // The archives whose entries were all found are already finished
+            for (ArchiveOutput archiveOutput : archiveOutputs) {
+                try {
+                    archiveOutput.finish();
+                } catch (IOException e) {
+                    archiveOutput.fail(index, spec.getFrom(), e);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            for (ArchiveOutput archiveOutput : archiveOutputs) {
+                archiveOutput.discard();
+            }
+            throw e;
+        }
     }
 
-    private void processRarEntry(
-            ExtractionSpec spec,
+    /**
+     * Reads an entry once, writing it to every extracted file and archive which expects it.
+     * <p>
+     * A destination which can't be written is discarded and reported on its own, while the others are still
+     * written. Only failing to read the entry fails all of them.
+     */
+    private void fanOutEntry(
             int index,
-            UnrarArchiveEntry entry,
-            InputStream processInputStream) throws IOException {
+            ArchiveSourceInternalSpec entry,
+            MultiDestinationSpec spec,
+            List<ArchiveOutput> archiveOutputs) throws IOException {
         String name = entry.getName();
-        ExtractionSpec.InternalSpec internal = findInternalSpec(spec, name);
-        if (internal == null) {
-            return;
+        List<Path> files = new ArrayList<>();
+        for (ExtractionSpec extractionSpec : spec.getExtractionSpecs()) {
+            ExtractionSpec.InternalSpec internal = findInternalSpec(extractionSpec, name);
+            if (internal != null) {
+                files.add(internal.getTo());
+            }
         }
-        Path to = internal.getTo();
-        try (OutputStream outputStream = Files.newOutputStream(to)) {
-            Path source = spec.getFrom().resolve(name);
-            long size = entry.getSize();
-            copyWithProgress(
-                    index,
-                    size,
-                    source,
-                    to,
-                    processInputStream::read,
-                    outputStream::write);
-        } catch (FileAlreadyExistsException e) {
-            throw e;
-        } catch (IOException e) {
-            Files.deleteIfExists(to);
-            throw e;
+        List<Pair<ArchiveOutput, ArchiveCopySpec.InternalSpec>> archiveEntries = new ArrayList<>();
+        for (ArchiveOutput archiveOutput : archiveOutputs) {
+            ArchiveCopySpec.InternalSpec internal = findInternalSpec(archiveOutput.spec, name);
+            if (internal != null && !archiveOutput.finished && !archiveOutput.failed) {
+                archiveEntries.add(Pair.of(archiveOutput, internal));
+            }
         }
-        BasicFileAttributeView toAttrib = Files.getFileAttributeView(to, BasicFileAttributeView.class);
-        toAttrib.setTimes(from(entry.getModificationTime()), null, null);
-    }
-
-    private void extractSevenZipEntries(ExtractionSpec spec, int index) throws IOException {
-        ArchiveUtils.readSevenZip(spec.getFrom(), (sevenZFile, sevenZArchiveEntry) -> {
-            String name = sevenZArchiveEntry.getName();
-            ExtractionSpec.InternalSpec internal = findInternalSpec(spec, name);
-            if (internal == null) {
-                return;
+        if (files.isEmpty() && archiveEntries.isEmpty()) {
+            return;
+        }
+        Path source = spec.getFrom().resolve(name);
+        Path destination = !files.isEmpty()
+                ? files.get(0)
+                : archiveEntries.get(0).getLeft().spec.getTo().resolve(archiveEntries.get(0).getRight().getTo());
+        Map<Path, OutputStream> outputStreams = new LinkedHashMap<>();
+        for (Path file : files) {
+            try {
+                outputStreams.put(file, destinationWriter().newOutputStream(file, entry.getSize()));
+            } catch (IOException e) {
+                failFile(index, source, file, null, e);
             }
-            Path to = internal.getTo();
-            try (OutputStream outputStream = Files.newOutputStream(to)) {
-                Path source = spec.getFrom().resolve(name);
-                long size = sevenZArchiveEntry.getSize();
-                copyWithProgress(index, size, source, to, sevenZFile::read, outputStream::write);
-            } catch (FileAlreadyExistsException e) {
-                throw e;
+        }
+        Map<ArchiveOutput, ArchiveDestinationInternalSpec> archiveDestinations = new LinkedHashMap<>();
+        for (Pair<ArchiveOutput, ArchiveCopySpec.InternalSpec> archiveEntry : archiveEntries) {
+            ArchiveOutput archiveOutput = archiveEntry.getLeft();
+            try {
+                archiveDestinations.put(
+                        archiveOutput,
+                        archiveOutput.createEntry(archiveEntry.getRight().getTo(), entry));
             } catch (IOException e) {
-                Files.deleteIfExists(to);
-                throw e;
+                archiveOutput.fail(index, source, e);
             }
-            BasicFileAttributeView toAttrib = Files.getFileAttributeView(to, BasicFileAttributeView.class);
-            toAttrib.setTimes(
-                    sevenZArchiveEntry.getHasLastModifiedDate() ? from(sevenZArchiveEntry.getLastModifiedDate()) : null,
-                    sevenZArchiveEntry.getHasAccessDate() ? from(sevenZArchiveEntry.getAccessDate()) : null,
-                    sevenZArchiveEntry.getHasCreationDate() ? from(sevenZArchiveEntry.getCreationDate()) : null);
-        });
-    }
-
-    private void extractTarEntries(ExtractionSpec spec, int index) throws IOException {
-        ArchiveUtils.readTar(
-                spec.getFromType(),
-                spec.getFrom(),
-                (tarArchiveEntry, tarArchiveInputStream) -> {
-                    String name = tarArchiveEntry.getName();
-                    ExtractionSpec.InternalSpec internal = findInternalSpec(spec, name);
-                    if (internal == null) {
-                        return;
+        }
+        try {
+            InputStream inputStream = entry.getInputStream();
+            copyWithProgress(index, entry.getSize(), source, destination, inputStream::read, (b, off, len) -> {
+                Iterator<Map.Entry<Path, OutputStream>> outputStreamIterator = outputStreams.entrySet().iterator();
+                while (outputStreamIterator.hasNext()) {
+                    Map.Entry<Path, OutputStream> outputStream = outputStreamIterator.next();
+                    try {
+                        outputStream.getValue().write(b, off, len);
+                    } catch (IOException e) {
+                        outputStreamIterator.remove();
+                        failFile(index, source, outputStream.getKey(), outputStream.getValue(), e);
                     }
-                    Path to = internal.getTo();
-                    try (OutputStream outputStream = Files.newOutputStream(to)) {
-                        Path source = spec.getFrom().resolve(name);
-                        long size = tarArchiveEntry.getRealSize();
-                        copyWithProgress(
-                                index,
-                                size,
-                                source,
-                                to,
-                                tarArchiveInputStream::read,
-                                outputStream::write);
-                    } catch (FileAlreadyExistsException e) {
-                        throw e;
+                }
+                Iterator<Map.Entry<ArchiveOutput, ArchiveDestinationInternalSpec>> archiveDestinationIterator =
+                        archiveDestinations.entrySet().iterator();
+                while (archiveDestinationIterator.hasNext()) {
+                    Map.Entry<ArchiveOutput, ArchiveDestinationInternalSpec> archiveDestination =
+                            archiveDestinationIterator.next();
+                    try {
+                        archiveDestination.getValue().getOutputStream().write(b, off, len);
                     } catch (IOException e) {
-                        Files.deleteIfExists(to);
-                        throw e;
+                        archiveDestinationIterator.remove();
+                        closeQuietly(archiveDestination.getValue());
+                        archiveDestination.getKey().fail(index, source, e);
                     }
-                    BasicFileAttributeView toAttrib = Files.getFileAttributeView(to, BasicFileAttributeView.class);
-                    toAttrib.setTimes(from(tarArchiveEntry.getLastModifiedDate()), null, null);
-                });
-    }
-
-    private void compressZipEntries(CompressionSpec spec, int index) throws IOException {
-        try (ZipArchiveOutputStream zipArchiveOutputStream = new ZipArchiveOutputStream(spec.getTo())) {
-            for (CompressionSpec.InternalSpec internal : spec.getInternalSpecs()) {
-                Path source = internal.getFrom();
-                try (InputStream inputStream = Files.newInputStream(source)) {
-                    ZipArchiveEntry archiveEntry = zipArchiveOutputStream.createArchiveEntry(
-                            source.toFile(),
-                            internal.getTo());
-                    BasicFileAttributes fromAttrib = Files.readAttributes(source, BasicFileAttributes.class);
-                    setTimes(fromAttrib.lastModifiedTime(), fromAttrib.lastAccessTime(), fromAttrib.creationTime(), archiveEntry);
-                    Path destination = spec.getTo().resolve(internal.getTo());
-                    zipArchiveOutputStream.putArchiveEntry(archiveEntry);
-                    copyWithProgress(
-                            index,
-                            fromAttrib.size(),
-                            source,
-                            destination,
-                            inputStream::read,
-                            zipArchiveOutputStream::write);
-                    zipArchiveOutputStream.closeArchiveEntry();
                 }
-            }
-        } catch (FileAlreadyExistsException e) {
-            throw e;
+            });
         } catch (IOException e) {
-            Files.deleteIfExists(spec.getTo());
-            throw e;
-        }
-    }
-
-    private void compressSevenZipEntries(CompressionSpec spec, int index) throws IOException {
-        try (SevenZOutputFile sevenZOutputFile = new SevenZOutputFile(spec.getTo().toFile())) {
-            for (CompressionSpec.InternalSpec internal : spec.getInternalSpecs()) {
-                Path source = internal.getFrom();
-                try (InputStream inputStream = Files.newInputStream(source)) {
-                    SevenZArchiveEntry archiveEntry =
-                            sevenZOutputFile.createArchiveEntry(source.toFile(), internal.getTo());
-                    BasicFileAttributes fromAttrib = Files.readAttributes(source, BasicFileAttributes.class);
-                    archiveEntry.setAccessDate(toDate(fromAttrib.lastAccessTime()));
-                    archiveEntry.setCreationDate(toDate(fromAttrib.creationTime()));
-                    Path destination = spec.getTo().resolve(internal.getFrom());
-                    sevenZOutputFile.putArchiveEntry(archiveEntry);
-                    copyWithProgress(
-                            index,
-                            fromAttrib.size(),
-                            source,
-                            destination,
-                            inputStream::read,
-                            sevenZOutputFile::write);
-                    sevenZOutputFile.closeArchiveEntry();
-                }
+            // Failed reading the entry, so none of the files can be completed
+            for (Map.Entry<Path, OutputStream> outputStream : outputStreams.entrySet()) {
+                closeQuietly(outputStream.getKey(), outputStream.getValue());
+                destinationWriter().discard(outputStream.getKey());
             }
-        } catch (FileAlreadyExistsException e) {
-            throw e;
-        } catch (IOException e) {
-            Files.deleteIfExists(spec.getTo());
-            throw e;
-        }
-    }
-
-    private void compressTarEntries(CompressionSpec spec, int index) throws IOException {
-        OutputStream outputStream = ArchiveUtils.outputStreamForTar(spec.getToType(), spec.getTo());
-        if (outputStream == null) {
-            return;
-        }
-        try (TarArchiveOutputStream tarOutputStream = new TarArchiveOutputStream(outputStream)) {
-            for (CompressionSpec.InternalSpec internal : spec.getInternalSpecs()) {
-                Path source = internal.getFrom();
-                try (InputStream inputStream = Files.newInputStream(source)) {
-                    TarArchiveEntry archiveEntry =
-                            tarOutputStream.createArchiveEntry(source.toFile(), internal.getTo());
-                    Path destination = spec.getTo().resolve(internal.getTo());
-                    tarOutputStream.putArchiveEntry(archiveEntry);
-                    copyWithProgress(
-                            index,
-                            archiveEntry.getSize(),
-                            source,
-                            destination,
-                            inputStream::read,
-                            tarOutputStream::write);
-                    tarOutputStream.closeArchiveEntry();
-                }
+            for (ArchiveDestinationInternalSpec archiveDestination : archiveDestinations.values()) {
+                closeQuietly(archiveDestination);
             }
-        } catch (FileAlreadyExistsException e) {
-            throw e;
-        } catch (IOException e) {
-            Files.deleteIfExists(spec.getTo());
             throw e;
         }
-    }
-
-    private void fromZipToArchive(ArchiveCopySpec spec, int index) throws IOException {
-        switch (spec.getToType()) {
-            case ZIP -> {
-                if (config.isAllowRawZipCopy()) {
-                    fromZipToZipRaw(spec, index);
-                } else {
-                    fromZipToZip(spec, index);
-                }
+        for (Map.Entry<ArchiveOutput, ArchiveDestinationInternalSpec> archiveDestination :
+                archiveDestinations.entrySet()) {
+            try {
+                archiveDestination.getValue().close();
+                archiveDestination.getKey().closeEntry(name);
+            } catch (IOException e) {
+                archiveDestination.getKey().fail(index, source, e);
             }
-            case RAR -> throw new UnsupportedOperationException("RAR compression is not supported");
-            case SEVEN_ZIP -> fromZipToSevenZip(spec, index);
-            case TAR, TAR_BZ2, TAR_GZ, TAR_LZ4, TAR_LZMA, TAR_XZ -> fromZipToTar(spec, index);
-        }
-    }
-
-    private void fromRarToArchive(ArchiveCopySpec spec, int index) throws Exception {
-        switch (spec.getToType()) {
-            case ZIP -> fromRarToZip(spec, index);
-            case RAR -> throw new UnsupportedOperationException("RAR compression is not supported");
-            case SEVEN_ZIP -> fromRarToSevenZip(spec, index);
-            case TAR, TAR_BZ2, TAR_GZ, TAR_LZ4, TAR_LZMA, TAR_XZ -> fromRarToTar(spec, index);
         }
-    }
-
-    private void fromSevenZipToArchive(ArchiveCopySpec spec, int index) throws IOException {
-        switch (spec.getToType()) {
-            case ZIP -> fromSevenZipToZip(spec, index);
-            case RAR -> throw new UnsupportedOperationException("RAR compression is not supported");
-            case SEVEN_ZIP -> fromSevenZipToSevenZip(spec, index);
-            case TAR, TAR_BZ2, TAR_GZ, TAR_LZ4, TAR_LZMA, TAR_XZ -> fromSevenZipToTar(spec, index);
+        FileTimes fileTimes = entry.getFileTimes();
+        for (Map.Entry<Path, OutputStream> outputStream : outputStreams.entrySet()) {
+            Path file = outputStream.getKey();
+            try {
+                outputStream.getValue().close();
+                destinationWriter().finishFile(
+                        file,
+                        fileTimes.getLastModifiedTime(),
+                        fileTimes.getLastAccessTime(),
+                        fileTimes.getCreationTime());
+            } catch (IOException e) {
+                failFile(index, source, file, null, e);
+            }
         }
     }
 
-    private void fromTarToArchive(ArchiveCopySpec spec, int index) throws IOException {
-        switch (spec.getToType()) {
-            case ZIP -> fromTarToZip(spec, index);
-            case RAR -> throw new UnsupportedOperationException("RAR compression is not supported");
-            case SEVEN_ZIP -> fromTarToSevenZip(spec, index);
-            case TAR, TAR_BZ2, TAR_GZ, TAR_LZ4, TAR_LZMA, TAR_XZ -> fromTarToTar(spec, index);
+    /**
+     * Discards a file extracted from a {@link MultiDestinationSpec} which could not be written, and reports it.
+     */
+    private void failFile(
+            int index,
+            Path source,
+            Path file,
+            @Nullable OutputStream outputStream,
+            IOException cause) {
+        log.error("Could not extract '{}' to '{}'", source, file, cause);
+        if (outputStream != null) {
+            closeQuietly(file, outputStream);
         }
-    }
-
-    private void fromZipToZipRaw(ArchiveCopySpec spec, int index) throws IOException {
-        try (ZipArchiveOutputStream zipArchiveOutputStream = new ZipArchiveOutputStream(spec.getTo())) {
-            ArchiveUtils.readZip(spec.getFrom(), (zipFile, zipArchiveEntry) -> {
-                String name = zipArchiveEntry.getName();
-                ArchiveCopySpec.InternalSpec internal = findInternalSpec(spec, name);
-                if (internal == null) {
-                    return;
-                }
-                Path source = spec.getFrom().resolve(name);
-                Path to = spec.getTo().resolve(name);
-                if (!name.equals(internal.getTo())) {
-                    log.warn(
-                            "Cannot rename files inside ZIPs when using raw copy. "
-                                    + "Writing '{}' as '{}'",
-                            spec.getTo().resolve(internal.getTo()),
-                            to);
-                }
-                for (Listener listener : listeners) {
-                    listener.reportStart(index, source, to, zipArchiveEntry.getSize());
-                }
-                zipArchiveOutputStream.addRawArchiveEntry(
-                        zipArchiveEntry,
-                        zipFile.getRawInputStream(zipArchiveEntry));
-                for (Listener listener : listeners) {
-                    listener.reportBytesCopied(index, zipArchiveEntry.getSize());
-                }
-            });
-        } catch (FileAlreadyExistsException e) {
-            throw e;
+        try {
+            destinationWriter().discard(file);
         } catch (IOException e) {
-            Files.deleteIfExists(spec.getTo());
-            throw e;
+            log.warn("Could not delete incomplete file '{}'", file, e);
         }
+        reportFailure(index, source, file, "Could not extract file", cause);
     }
 
-    private void fromZipToZip(ArchiveCopySpec spec, int index) throws IOException {
-        try (ZipArchiveOutputStream zipArchiveOutputStream = new ZipArchiveOutputStream(spec.getTo())) {
-            ArchiveUtils.readZip(
-                    spec.getFrom(),
-                    (zipFile, zipArchiveEntry) -> {
-                        String name = zipArchiveEntry.getName();
-                        ArchiveCopySpec.InternalSpec internal = findInternalSpec(spec, name);
-                        if (internal == null) {
-                            return;
-                        }
-                        try (InputStream inputStream = zipFile.getInputStream(zipArchiveEntry)) {
-                            toZip(
-                                    index,
-                                    inputStream::read,
-                                    zipArchiveOutputStream,
-                                    spec,
-                                    internal,
-                                    name,
-                                    zipArchiveEntry.getLastModifiedTime(),
-                                    zipArchiveEntry.getLastAccessTime(),
-                                    zipArchiveEntry.getCreationTime(),
-                                    zipArchiveEntry.getSize());
-                        }
-                    });
-        } catch (FileAlreadyExistsException e) {
-            throw e;
+    private static void closeQuietly(Path file, OutputStream outputStream) {
+        try {
+            outputStream.close();
         } catch (IOException e) {
-            Files.deleteIfExists(spec.getTo());
-            throw e;
+            log.debug("Could not close '{}'", file, e);
         }
     }
 
-    private void fromZipToSevenZip(ArchiveCopySpec spec, int index) throws IOException {
-        try (SevenZOutputFile sevenZOutputFile = new SevenZOutputFile(spec.getTo().toFile())) {
-            ArchiveUtils.readZip(
-                    spec.getFrom(),
-                    (zipFile, zipArchiveEntry) -> {
-                        String name = zipArchiveEntry.getName();
-                        ArchiveCopySpec.InternalSpec internal = findInternalSpec(spec, name);
-                        if (internal == null) {
-                            return;
-                        }
-                        try (InputStream inputStream = zipFile.getInputStream(zipArchiveEntry)) {
-                            toSevenZip(
-                                    index,
-                                    inputStream::read,
-                                    sevenZOutputFile,
-                                    spec,
-                                    internal,
-                                    name,
-                                    toDate(zipArchiveEntry.getLastModifiedTime()),
-                                    toDate(zipArchiveEntry.getLastAccessTime()),
-                                    toDate(zipArchiveEntry.getCreationTime()),
-                                    zipArchiveEntry.getSize());
-                        }
-                    });
-        } catch (FileAlreadyExistsException e) {
-            throw e;
+    private static void closeQuietly(ArchiveDestinationInternalSpec destinationSpec) {
+        try {
+            destinationSpec.close();
         } catch (IOException e) {
-            Files.deleteIfExists(spec.getTo());
-            throw e;
+            log.debug("Could not close '{}'", destinationSpec.getDisplayName(), e);
         }
     }
 
-    private void fromZipToTar(ArchiveCopySpec spec, int index) throws IOException {
-        OutputStream outputStream = ArchiveUtils.outputStreamForTar(spec.getToType(), spec.getTo());
-        if (outputStream == null) {
-            return;
+    /**
+     * The destination archive of an {@link ArchiveCopySpec} in a {@link MultiDestinationSpec}, written through the
+     * same {@link ArchiveDestinationSpec} as when copying it on its own. It's only opened when its first entry is
+     * found in the source archive, and finished as soon as its last one is written, so only the archives whose
+     * entries are being read are open at once.
+     */
+    private final class ArchiveOutput {
+
+        private final ArchiveCopySpec spec;
+        private final Set<String> remainingEntries;
+        @Nullable
+        private ArchiveDestinationSpec destination;
+        private boolean closed;
+        private boolean finished;
+        private boolean failed;
+
+        private ArchiveOutput(ArchiveCopySpec spec) {
+            this.spec = spec;
+            this.remainingEntries = new HashSet<>(spec.getInternalSpecs().keySet());
         }
-        try (TarArchiveOutputStream tarOutputStream = new TarArchiveOutputStream(outputStream)) {
-            ArchiveUtils.readZip(
-                    spec.getFrom(),
-                    (zipFile, zipArchiveEntry) -> {
-                        String name = zipArchiveEntry.getName();
-                        ArchiveCopySpec.InternalSpec internal = findInternalSpec(spec, name);
-                        if (internal == null) {
-                            return;
-                        }
-                        try (InputStream inputStream = zipFile.getInputStream(zipArchiveEntry)) {
-                            toTar(
-                                    index,
-                                    inputStream::read,
-                                    tarOutputStream,
-                                    spec,
-                                    internal,
-                                    name,
-                                    toDate(zipArchiveEntry.getLastModifiedTime()),
-                                    zipArchiveEntry.getSize());
-                        }
-                    });
-        } catch (FileAlreadyExistsException e) {
-            throw e;
-        } catch (IOException e) {
-            Files.deleteIfExists(spec.getTo());
-            throw e;
+
+        private void open() throws IOException {
+            Path target = destinationWriter().startFile(spec.getTo());
+            destination = archiveDestinationSpecFactory().buildDestinationSpec(target, spec.getToType());
         }
-    }
 
-    private void fromRarToZip(ArchiveCopySpec spec, int index) throws Exception {
-        try (ZipArchiveOutputStream zipArchiveOutputStream = new ZipArchiveOutputStream(spec.getTo())) {
-            ArchiveUtils.readRar(
-                    spec.getFrom(),
-                    (archive, fileHeader) -> {
-                        String name = normalizePath(fileHeader.getFileName());
-                        ArchiveCopySpec.InternalSpec internal = findInternalSpec(spec, name);
-                        if (internal == null) {
-                            return;
-                        }
-                        try (InputStream inputStream = archive.getInputStream(fileHeader)) {
-                            toZip(
-                                    index,
-                                    inputStream::read,
-                                    zipArchiveOutputStream,
-                                    spec,
-                                    internal,
-                                    name,
-                                    from(fileHeader.getMTime()),
-                                    from(fileHeader.getATime()),
-                                    from(fileHeader.getCTime()),
-                                    fileHeader.getFullUnpackSize());
-                        }
-                    });
-        } catch (FileAlreadyExistsException e) {
-            throw e;
-        } catch (UnsupportedRarV5Exception e) {
-            if (isUseUnrar()) {
-                fromRarWithUnrarToZip(spec, index);
-            } else if (isUseSevenZip()) {
-                fromRarWithSevenZipToZip(spec, index);
-            } else {
-                Files.deleteIfExists(spec.getTo());
-                throw e;
+        /**
+         * @param sourceSpec the entry being copied, for its attributes
+         */
+        private ArchiveDestinationInternalSpec createEntry(String name, SourceSpec sourceSpec) throws IOException {
+            if (destination == null) {
+                open();
             }
-        } catch (IOException | RarException e) {
-            Files.deleteIfExists(spec.getTo());
-            throw e;
+            return destination.createInternalDestinationSpecFor(name, sourceSpec);
         }
-    }
 
-    private void fromRarWithUnrarToZip(ArchiveCopySpec spec, int index) throws Exception {
-        try (ZipArchiveOutputStream zipArchiveOutputStream = new ZipArchiveOutputStream(spec.getTo())) {
-            ImmutableSet<String> desiredEntryNames = getInternalSources(spec);
-            ArchiveUtils.readRarWithUnrar(
-                    spec.getFrom(),
-                    desiredEntryNames,
-                    (entry, processInputStream) -> fromRarEntryToZip(spec, index, zipArchiveOutputStream, entry, processInputStream));
-        } catch (FileAlreadyExistsException e) {
-            throw e;
-        } catch (IOException | RarException e) {
-            Files.deleteIfExists(spec.getTo());
-            throw e;
+        /**
+         * @param sourceName the name of the entry in the source archive
+         */
+        private void closeEntry(String sourceName) throws IOException {
+            remainingEntries.remove(sourceName);
+            if (remainingEntries.isEmpty()) {
+                finish();
+            }
         }
-    }
 
-    private void fromRarWithSevenZipToZip(ArchiveCopySpec spec, int index) throws Exception {
-        try (ZipArchiveOutputStream zipArchiveOutputStream = new ZipArchiveOutputStream(spec.getTo())) {
-            ImmutableSet<String> desiredEntryNames = getInternalSources(spec);
-            ArchiveUtils.readRarWithSevenZip(
-                    spec.getFrom(),
-                    desiredEntryNames,
-                    (entry, processInputStream) -> fromRarEntryToZip(spec, index, zipArchiveOutputStream, entry, processInputStream));
-        } catch (FileAlreadyExistsException e) {
-            throw e;
-        } catch (IOException | RarException e) {
-            Files.deleteIfExists(spec.getTo());
-            throw e;
+        /**
+         * Closes and finishes the archive, even if some of its entries were not found, as it would be done
+         * when copying it on its own.
+         */
+        private void finish() throws IOException {
+            if (finished || failed) {
+                return;
+            }
+            if (destination == null) {
+                open();
+            }
+            close();
+            destinationWriter().finishArchive(spec.getTo());
+            finished = true;
         }
-    }
 
-    private void fromRarEntryToZip(
-            ArchiveCopySpec spec,
-            int index,
-            ZipArchiveOutputStream zipArchiveOutputStream,
-            UnrarArchiveEntry entry,
-            InputStream processInputStream) throws IOException {
-        String name = entry.getName();
-        ArchiveCopySpec.InternalSpec internal = findInternalSpec(spec, name);
-        if (internal == null) {
-            return;
-        }
-        toZip(
-                index,
-                processInputStream::read,
-                zipArchiveOutputStream,
-                spec,
-                internal,
-                name,
-                from(entry.getModificationTime()),
-                null,
-                null,
-                entry.getSize());
-    }
-
-    private void fromRarToSevenZip(ArchiveCopySpec spec, int index) throws Exception {
-        try (SevenZOutputFile sevenZOutputFile = new SevenZOutputFile(spec.getTo().toFile())) {
-            ArchiveUtils.readRar(
-                    spec.getFrom(),
-                    (archive, fileHeader) -> {
-                        String name = normalizePath(fileHeader.getFileName());
-                        ArchiveCopySpec.InternalSpec internal = findInternalSpec(spec, name);
-                        if (internal == null) {
-                            return;
-                        }
-                        try (InputStream inputStream = archive.getInputStream(fileHeader)) {
-                            toSevenZip(
-                                    index,
-                                    inputStream::read,
-                                    sevenZOutputFile,
-                                    spec,
-                                    internal,
-                                    name,
-                                    fileHeader.getMTime(),
-                                    fileHeader.getATime(),
-                                    fileHeader.getCTime(),
-                                    fileHeader.getFullUnpackSize());
-                        }
-                    });
-        } catch (FileAlreadyExistsException e) {
-            throw e;
-        } catch (UnsupportedRarV5Exception e) {
-            if (isUseUnrar()) {
-                fromRarWithUnrarToSevenZip(spec, index);
-            } else if (isUseSevenZip()) {
-                fromRarWithSevenZipToSevenZip(spec, index);
-            } else {
-                Files.deleteIfExists(spec.getTo());
-                throw e;
+        private void close() throws IOException {
+            if (closed || destination == null) {
+                return;
             }
-        } catch (IOException | RarException e) {
-            Files.deleteIfExists(spec.getTo());
-            throw e;
+            closed = true;
+            destination.close();
         }
-    }
 
-    private void fromRarWithUnrarToSevenZip(ArchiveCopySpec spec, int index) throws Exception {
-        try (SevenZOutputFile sevenZOutputFile = new SevenZOutputFile(spec.getTo().toFile())) {
-            ImmutableSet<String> desiredEntryNames = getInternalSources(spec);
-            ArchiveUtils.readRarWithUnrar(
-                    spec.getFrom(),
-                    desiredEntryNames,
-                    (entry, processInputStream) -> fromRarEntryToSevenZip(spec, index, sevenZOutputFile, entry, processInputStream));
-        } catch (FileAlreadyExistsException e) {
-            throw e;
-        } catch (IOException | RarException e) {
-            Files.deleteIfExists(spec.getTo());
-            throw e;
+        /**
+         * Discards the archive after failing to write it, and reports it. No more entries are written to it.
+         */
+        private void fail(int index, Path source, IOException cause) {
+            log.error("Could not copy '{}' to '{}'", source, spec.getTo(), cause);
+            discard();
+            failed = true;
+            reportFailure(index, source, spec.getTo(), "Could not copy contents of archive", cause);
+        }
+
+        private void discard() {
+            if (destination == null || finished || failed) {
+                // A finished archive has all of its entries, and one never opened has nothing to delete
+                return;
+            }
+            try {
+                close();
+            } catch (IOException e) {
+                log.debug("Could not close '{}'", spec.getTo(), e);
+            }
+            try {
+                destinationWriter().discard(spec.getTo());
+            } catch (IOException e) {
+                log.warn("Could not delete incomplete archive '{}'", spec.getTo(), e);
+            }
         }
     }
 
-    private void fromRarWithSevenZipToSevenZip(ArchiveCopySpec spec, int index) throws Exception {
-        try (SevenZOutputFile sevenZOutputFile = new SevenZOutputFile(spec.getTo().toFile())) {
-            ImmutableSet<String> desiredEntryNames = getInternalSources(spec);
-            ArchiveUtils.readRarWithSevenZip(
-                    spec.getFrom(),
-                    desiredEntryNames,
-                    (entry, processInputStream) -> fromRarEntryToSevenZip(spec, index, sevenZOutputFile, entry, processInputStream));
+    /**
+     * Compresses the files one after the other through the {@link TransferEngine}.
+     */
+    private void compressEntries(CompressionSpec spec, int index) throws IOException {
+        try (ArchiveDestinationSpec destination =
+                     archiveDestinationSpecFactory().buildDestinationSpec(spec.getTo(), spec.getToType())) {
+            for (CompressionSpec.InternalSpec internal : spec.getInternalSpecs()) {
+                try (SourceSpec source = FileSourceSpec.from(internal.getFrom(), readAheadPolicy)) {
+                    transferEntry(index, source, internal.getFrom(), destination, spec.getTo(), internal.getTo());
+                }
+            }
         } catch (FileAlreadyExistsException e) {
             throw e;
-        } catch (IOException | RarException e) {
+        } catch (IOException e) {
             Files.deleteIfExists(spec.getTo());
             throw e;
         }
     }
 
-    private void fromRarEntryToSevenZip(
-            ArchiveCopySpec spec,
-            int index,
-            SevenZOutputFile sevenZOutputFile,
-            UnrarArchiveEntry entry,
-            InputStream processInputStream) throws IOException {
-        String name = entry.getName();
-        ArchiveCopySpec.InternalSpec internal = findInternalSpec(spec, name);
-        if (internal == null) {
-            return;
-        }
-        toSevenZip(
-                index,
-                processInputStream::read,
-                sevenZOutputFile,
-                spec,
-                internal,
-                name,
-                toDate(entry.getModificationTime()),
-                null,
-                null,
-                entry.getSize());
-    }
-
-    private void fromRarToTar(ArchiveCopySpec spec, int index) throws Exception {
-        OutputStream outputStream = ArchiveUtils.outputStreamForTar(spec.getToType(), spec.getTo());
-        if (outputStream == null) {
-            return;
-        }
-        try (TarArchiveOutputStream tarOutputStream = new TarArchiveOutputStream(outputStream)) {
-            ArchiveUtils.readRar(
-                    spec.getFrom(),
-                    (archive, fileHeader) -> {
-                        String name = normalizePath(fileHeader.getFileName());
-                        ArchiveCopySpec.InternalSpec internal = findInternalSpec(spec, name);
-                        if (internal == null) {
-                            return;
-                        }
-                        try (InputStream inputStream = archive.getInputStream(fileHeader)) {
-                            toTar(
-                                    index,
-                                    inputStream::read,
-                                    tarOutputStream,
-                                    spec,
-                                    internal,
-                                    name,
-                                    fileHeader.getMTime(),
-                                    fileHeader.getFullUnpackSize());
-                        }
-                    });
-        } catch (FileAlreadyExistsException e) {
-            throw e;
-        } catch (UnsupportedRarV5Exception e) {
+    /**
+     * Reads an archive with the source specs of the session. RAR5 archives, which can't be read natively, are read
+     * again with UnRAR or 7-Zip instead, if available.
+     *
+     * @throws UnsupportedRarV5Exception if it's a RAR5 archive and neither UnRAR nor 7-Zip are available
+     */
+    private void readWithRarFallback(ArchiveReader reader) throws Exception {
+        try {
+            reader.read(archiveSourceSpecFactory());
+        } catch (IOException e) {
+            if (!(e.getCause() instanceof UnsupportedRarV5Exception)) {
+                throw e;
+            }
             if (isUseUnrar()) {
-                fromRarWithUnrarToTar(spec, index);
+                reader.read(new ArchiveSourceSpecFactory(false, true, readAheadPolicy, gzipDecompressor()));
             } else if (isUseSevenZip()) {
-                fromRarWithSevenZipToTar(spec, index);
+                reader.read(new ArchiveSourceSpecFactory(true, false, readAheadPolicy, gzipDecompressor()));
             } else {
-                Files.deleteIfExists(spec.getTo());
-                throw e;
+                throw (UnsupportedRarV5Exception) e.getCause();
             }
-        } catch (IOException | RarException e) {
-            Files.deleteIfExists(spec.getTo());
-            throw e;
         }
     }
 
-    private boolean isUseSevenZip() {
-        return !config.isForceUnrar() && ArchiveUtils.isSevenZipAvailable(config.getCustomSevenZipPath());
-    }
+    @FunctionalInterface
+    private interface ArchiveReader {
 
-    private boolean isUseUnrar() {
-        return !config.isForceSevenZip() && ArchiveUtils.isUnrarAvailable(config.getCustomUnrarPath());
+        void read(ArchiveSourceSpecFactory sourceSpecFactory) throws IOException;
     }
 
-    private void fromRarWithUnrarToTar(
-            ArchiveCopySpec spec,
-            int index) throws Exception {
-        OutputStream outputStream = ArchiveUtils.outputStreamForTar(spec.getToType(), spec.getTo());
-        if (outputStream == null) {
-            return;
-        }
-        try (TarArchiveOutputStream tarOutputStream = new TarArchiveOutputStream(outputStream)) {
-            ImmutableSet<String> desiredEntryNames = getInternalSources(spec);
-            ArchiveUtils.readRarWithUnrar(
-                    spec.getFrom(),
-                    desiredEntryNames,
-                    (entry, processInputStream) -> fromRarEntryToTar(spec, index, tarOutputStream, entry, processInputStream));
-        } catch (FileAlreadyExistsException e) {
-            throw e;
-        } catch (IOException | RarException e) {
-            Files.deleteIfExists(spec.getTo());
-            throw e;
+    /**
+     * Extracts the entries of an archive through the {@link TransferEngine}. Only the entries of the spec are read
+     * from archives with an index of their entries, such as ZIP archives.
+     */
+    private void extractEntries(
+            ExtractionSpec spec,
+            int index,
+            ArchiveSourceSpecFactory sourceSpecFactory) throws IOException {
+        try (ArchiveSourceSpec source = sourceSpecFactory.buildSourceSpec(
+                spec.getFrom(),
+                spec.getFromType(),
+                spec.getInternalSpecs().keySet())) {
+            try {
+                ArchiveSourceInternalSpec internalSpec;
+                while ((internalSpec = source.getNextInternalSpec()) != null) {
+                    try (ArchiveSourceInternalSpec entry = internalSpec) {
+                        extractEntry(
+                                index,
+                                entry,
+                                spec.getFrom().resolve(entry.getName()),
+                                spec.getInternalSpecs().get(entry.getName()).getTo());
+                    }
+                }
+            } catch (ArchiveEntryNotFoundException e) {
+                // The entries found are still extracted, as they are when reading them along with other archives
+                log.warn("Some entries were not found when extracting '{}'", spec.getFrom(), e);
+            }
         }
     }
 
-    private void fromRarWithSevenZipToTar(
-            ArchiveCopySpec spec,
-            int index) throws Exception {
-        OutputStream outputStream = ArchiveUtils.outputStreamForTar(spec.getToType(), spec.getTo());
-        if (outputStream == null) {
-            return;
+    /**
+     * Writes the entry through the {@link DestinationWriter}, so it's synced and journaled as configured.
+     */
+    private void extractEntry(int index, ArchiveSourceInternalSpec entry, Path from, Path to) throws IOException {
+        for (Listener listener : listeners) {
+            listener.reportStart(index, from, to, entry.getSize());
         }
-        try (TarArchiveOutputStream tarOutputStream = new TarArchiveOutputStream(outputStream)) {
-            ImmutableSet<String> desiredEntryNames = getInternalSources(spec);
-            ArchiveUtils.readRarWithSevenZip(
-                    spec.getFrom(),
-                    desiredEntryNames,
-                    (entry, processInputStream) -> fromRarEntryToTar(spec, index, tarOutputStream, entry, processInputStream));
+        try (OutputStream outputStream = destinationWriter().newOutputStream(to, entry.getSize())) {
+            transferEngine.transfer(entry, outputStream, bytes -> {
+                for (Listener listener : listeners) {
+                    listener.reportBytesCopied(index, bytes);
+                }
+            });
         } catch (FileAlreadyExistsException e) {
             throw e;
-        } catch (IOException | RarException e) {
-            Files.deleteIfExists(spec.getTo());
+        } catch (IOException e) {
+            destinationWriter().discard(to);
             throw e;
         }
+        FileTimes fileTimes = entry.getFileTimes();
+        destinationWriter().finishFile(
+                to,
+                fileTimes.getLastModifiedTime(),
+                fileTimes.getLastAccessTime(),
+                fileTimes.getCreationTime());
     }
 
-    private void fromRarEntryToTar(
-            ArchiveCopySpec spec,
-            int index,
-            TarArchiveOutputStream tarOutputStream,
-            UnrarArchiveEntry entry,
-            InputStream processInputStream) throws IOException {
-        String name = entry.getName();
-        ArchiveCopySpec.InternalSpec internal = findInternalSpec(spec, name);
-        if (internal == null) {
-            return;
-        }
-        toTar(
-                index,
-                processInputStream::read,
-                tarOutputStream,
-                spec,
-                internal,
-                name,
-                toDate(entry.getModificationTime()),
-                entry.getSize());
+    /**
+     * Copies the entries of an archive to another archive through the {@link TransferEngine}, which passes the
+     * compressed data of ZIP entries through as is when {@link AppConfig.FileCopierConfig#isAllowRawZipCopy()}.
+     */
+    private void transferEntries(ArchiveCopySpec spec, int index) throws Exception {
+        readWithRarFallback(sourceSpecFactory -> transferEntries(spec, index, sourceSpecFactory));
     }
 
-    private void fromSevenZipToZip(ArchiveCopySpec spec, int index) throws IOException {
-        try (ZipArchiveOutputStream zipArchiveOutputStream = new ZipArchiveOutputStream(spec.getTo())) {
-            ArchiveUtils.readSevenZip(
-                    spec.getFrom(),
-                    (sevenZFile, sevenZArchiveEntry) -> toZip(
-                            index,
-                            sevenZFile::read,
-                            zipArchiveOutputStream,
-                            spec,
-                            sevenZArchiveEntry.getName(),
-                            sevenZArchiveEntry.getHasLastModifiedDate()
-                                    ? from(sevenZArchiveEntry.getLastModifiedDate())
-                                    : null,
-                            sevenZArchiveEntry.getHasAccessDate()
-                                    ? from(sevenZArchiveEntry.getAccessDate())
-                                    : null,
-                            sevenZArchiveEntry.getHasCreationDate()
-                                    ? from(sevenZArchiveEntry.getCreationDate())
-                                    : null,
-                            sevenZArchiveEntry.getSize()));
+    private void transferEntries(
+            ArchiveCopySpec spec,
+            int index,
+            ArchiveSourceSpecFactory sourceSpecFactory) throws IOException {
+        try (ArchiveSourceSpec source = sourceSpecFactory.buildSourceSpec(
+                spec.getFrom(),
+                spec.getFromType(),
+                spec.getInternalSpecs().keySet());
+             ArchiveDestinationSpec destination =
+                     archiveDestinationSpecFactory().buildDestinationSpec(spec.getTo(), spec.getToType())) {
+            try {
+                ArchiveSourceInternalSpec internalSpec;
+                while ((internalSpec = source.getNextInternalSpec()) != null) {
+                    try (ArchiveSourceInternalSpec entry = internalSpec) {
+                        transferEntry(
+                                index,
+                                entry,
+                                spec.getFrom().resolve(entry.getName()),
+                                destination,
+                                spec.getTo(),
+                                spec.getInternalSpecs().get(entry.getName()).getTo());
+                    }
+                }
+            } catch (ArchiveEntryNotFoundException e) {
+                // The entries found are still copied, as they are when reading them along with other archives
+                log.warn("Some entries were not found when copying '{}' to '{}'", spec.getFrom(), spec.getTo(), e);
+            }
         } catch (FileAlreadyExistsException e) {
             throw e;
         } catch (IOException e) {
@@ -1164,191 +1582,128 @@ public final class FileCopier {
         }
     }
 
-    private void fromSevenZipToSevenZip(ArchiveCopySpec spec, int index) throws IOException {
-        try (SevenZOutputFile sevenZOutputFile =
-                     new SevenZOutputFile(spec.getTo().toFile())) {
-            ArchiveUtils.readSevenZip(
-                    spec.getFrom(),
-                    (sevenZFile, sevenZArchiveEntry) -> toSevenZip(
-                            index,
-                            sevenZFile::read,
-                            sevenZOutputFile,
-                            spec,
-                            sevenZArchiveEntry.getName(),
-                            sevenZArchiveEntry.getHasLastModifiedDate()
-                                    ? sevenZArchiveEntry.getLastModifiedDate()
-                                    : null,
-                            sevenZArchiveEntry.getHasAccessDate()
-                                    ? sevenZArchiveEntry.getAccessDate()
-                                    : null,
-                            sevenZArchiveEntry.getHasCreationDate()
-                                    ? sevenZArchiveEntry.getCreationDate()
-                                    : null,
-                            sevenZArchiveEntry.getSize()));
-        } catch (FileAlreadyExistsException e) {
-            throw e;
-        } catch (IOException e) {
-            Files.deleteIfExists(spec.getTo());
-            throw e;
+    private void transferEntry(
+            int index,
+            SourceSpec source,
+            Path from,
+            ArchiveDestinationSpec destination,
+            Path archive,
+            String name) throws IOException {
+        for (Listener listener : listeners) {
+            listener.reportStart(index, from, archive.resolve(name), source.getSize());
         }
+        transferEngine.transfer(source, destination, name, bytes -> {
+            for (Listener listener : listeners) {
+                listener.reportBytesCopied(index, bytes);
+            }
+        });
     }
 
-    private void fromSevenZipToTar(ArchiveCopySpec spec, int index) throws IOException {
-        OutputStream outputStream = ArchiveUtils.outputStreamForTar(spec.getToType(), spec.getTo());
-        if (outputStream == null) {
-            return;
-        }
-        try (TarArchiveOutputStream tarOutputStream = new TarArchiveOutputStream(outputStream)) {
-            ArchiveUtils.readSevenZip(
-                    spec.getFrom(),
-                    (sevenZFile, sevenZArchiveEntry) -> toTar(
-                            index,
-                            sevenZFile::read,
-                            tarOutputStream,
-                            spec,
-                            sevenZArchiveEntry.getName(),
-                            sevenZArchiveEntry.getHasLastModifiedDate()
-                                    ? sevenZArchiveEntry.getLastModifiedDate()
-                                    : null,
-                            sevenZArchiveEntry.getSize()));
-        } catch (FileAlreadyExistsException e) {
-            throw e;
-        } catch (IOException e) {
-            Files.deleteIfExists(spec.getTo());
-            throw e;
+    /**
+     * Checks whether at least two of the files are large enough for deflating them on their own threads to pay for
+     * the thread pool and the temporary files of {@link ParallelScatterZipCreator}.
+     */
+    @VisibleForTesting
+    static boolean hasLargeEntries(CompressionSpec spec) throws IOException {
+        int largeEntries = 0;
+        for (CompressionSpec.InternalSpec internal : spec.getInternalSpecs()) {
+            if (Files.size(internal.getFrom()) >= ParallelDeflateOutputStream.MIN_PARALLEL_SIZE && ++largeEntries > 1) {
+                return true;
+            }
         }
+        return false;
     }
 
-    private void fromTarToZip(ArchiveCopySpec spec, int index)
-            throws IOException {
+    /**
+     * Deflates the entries on their own threads with {@link ParallelScatterZipCreator}, which compresses each one
+     * to a temporary file next to the destination and then merges them into the final file.
+     */
+    private void compressZipEntriesInParallel(CompressionSpec spec, int index) throws IOException {
+        ImmutableList.Builder<Pair<ZipArchiveEntry, Path>> entries = ImmutableList.builder();
+        long totalSize = 0;
+        for (CompressionSpec.InternalSpec internal : spec.getInternalSpecs()) {
+            Path source = internal.getFrom();
+            BasicFileAttributes fromAttrib = Files.readAttributes(source, BasicFileAttributes.class);
+            ZipArchiveEntry archiveEntry = new ZipArchiveEntry(source.toFile(), internal.getTo());
+            archiveEntry.setMethod(ZipEntry.DEFLATED);
+            setTimes(fromAttrib.lastModifiedTime(), fromAttrib.lastAccessTime(), fromAttrib.creationTime(), archiveEntry);
+            entries.add(Pair.of(archiveEntry, source));
+            totalSize += fromAttrib.size();
+        }
+        for (Listener listener : listeners) {
+            listener.reportStart(index, EMPTY_PATH, spec.getTo(), totalSize);
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(
+                Math.min(config.getZipThreads(), spec.getInternalSpecs().size()),
+                new IndexedThreadFactory(log, "ZIP"));
+        ParallelScatterZipCreator creator = new ParallelScatterZipCreator(
+                executorService,
+                new DefaultBackingStoreSupplier(spec.getTo().toAbsolutePath().getParent()));
+        Object progressLock = new Object();
+        for (Pair<ZipArchiveEntry, Path> entry : entries.build()) {
+            creator.addArchiveEntry(
+                    entry.getLeft(),
+                    () -> newProgressInputStream(index, entry.getRight(), progressLock));
+        }
         try (ZipArchiveOutputStream zipArchiveOutputStream = new ZipArchiveOutputStream(spec.getTo())) {
-            ArchiveUtils.readTar(
-                    spec.getFromType(),
-                    spec.getFrom(),
-                    (tarArchiveEntry, tarArchiveInputStream) -> toZip(
-                            index,
-                            tarArchiveInputStream::read,
-                            zipArchiveOutputStream,
-                            spec,
-                            tarArchiveEntry.getName(),
-                            from(tarArchiveEntry.getLastModifiedDate()),
-                            null,
-                            null,
-                            tarArchiveEntry.getRealSize()));
+            creator.writeTo(zipArchiveOutputStream);
         } catch (FileAlreadyExistsException e) {
             throw e;
         } catch (IOException e) {
             Files.deleteIfExists(spec.getTo());
             throw e;
-        }
-    }
-
-    private void fromTarToSevenZip(ArchiveCopySpec spec, int index) throws IOException {
-        try (SevenZOutputFile sevenZOutputFile = new SevenZOutputFile(spec.getTo().toFile())) {
-            ArchiveUtils.readTar(
-                    spec.getFromType(),
-                    spec.getFrom(),
-                    (tarArchiveEntry, tarArchiveInputStream) -> toSevenZip(
-                            index,
-                            tarArchiveInputStream::read,
-                            sevenZOutputFile,
-                            spec,
-                            tarArchiveEntry.getName(),
-                            tarArchiveEntry.getLastModifiedDate(),
-                            null,
-                            null,
-                            tarArchiveEntry.getRealSize()));
-        } catch (FileAlreadyExistsException e) {
-            throw e;
-        } catch (IOException e) {
+        } catch (ExecutionException e) {
             Files.deleteIfExists(spec.getTo());
-            throw e;
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Files.deleteIfExists(spec.getTo());
+            throw new InterruptedIOException("Interrupted while compressing files");
+        } finally {
+            executorService.shutdownNow();
         }
     }
 
-    private void fromTarToTar(ArchiveCopySpec spec, int index) throws IOException {
-        OutputStream outputStream = ArchiveUtils.outputStreamForTar(spec.getToType(), spec.getTo());
-        if (outputStream == null) {
-            return;
-        }
-        try (TarArchiveOutputStream tarOutputStream = new TarArchiveOutputStream(outputStream)) {
-            ArchiveUtils.readTar(
-                    spec.getFromType(),
-                    spec.getFrom(),
-                    (tarArchiveEntry, tarArchiveInputStream) -> toTar(
-                            index,
-                            tarArchiveInputStream::read,
-                            tarOutputStream,
-                            spec,
-                            tarArchiveEntry.getName(),
-                            tarArchiveEntry.getLastModifiedDate(),
-                            tarArchiveEntry.getRealSize()));
-        } catch (FileAlreadyExistsException e) {
-            throw e;
+    /**
+     * Opens a file reporting the bytes read as copied bytes. The entries of a spec may be read by many threads
+     * at once, so the listeners are only called while holding the given lock.
+     */
+    private InputStream newProgressInputStream(int index, Path source, Object progressLock) {
+        InputStream inputStream;
+        try {
+            inputStream = readAheadPolicy.newInputStream(source);
         } catch (IOException e) {
-            Files.deleteIfExists(spec.getTo());
-            throw e;
+            throw new UncheckedIOException(e);
         }
+        return new FilterInputStream(inputStream) {
+
+            @Override
+            public int read(@Nonnull byte[] b, int off, int len) throws IOException {
+                int bytesRead = super.read(b, off, len);
+                if (bytesRead > 0) {
+                    synchronized (progressLock) {
+                        for (Listener listener : listeners) {
+                            listener.reportBytesCopied(index, bytesRead);
+                        }
+                    }
+                }
+                return bytesRead;
+            }
+        };
     }
 
-    private static ImmutableSet<String> getInternalSources(ArchiveCopySpec spec) {
-        return spec.getInternalSpecs().keySet();
+    private boolean isUseSevenZip() {
+        return !config.isForceUnrar() && ArchiveUtils.isSevenZipAvailable(config.getCustomSevenZipPath());
     }
 
-    private void toZip(
-            int index,
-            TriFunction<byte[], Integer, Integer, Integer, IOException> readFunction,
-            ZipArchiveOutputStream zipArchiveOutputStream,
-            ArchiveCopySpec spec,
-            String name,
-            @Nullable FileTime lastModifiedTime,
-            @Nullable FileTime lastAccessTime,
-            @Nullable FileTime creationTime,
-            long size)
-            throws IOException {
-        toZip(
-                index,
-                readFunction,
-                zipArchiveOutputStream,
-                spec,
-                findInternalSpec(spec, name),
-                name,
-                lastModifiedTime,
-                lastAccessTime,
-                creationTime,
-                size);
-    }
-
-    private void toZip(
-            int index,
-            TriFunction<byte[], Integer, Integer, Integer, IOException> readFunction,
-            ZipArchiveOutputStream zipArchiveOutputStream,
-            ArchiveCopySpec spec,
-            @Nullable ArchiveCopySpec.InternalSpec internal,
-            String name,
-            @Nullable FileTime lastModifiedTime,
-            @Nullable FileTime lastAccessTime,
-            @Nullable FileTime creationTime,
-            long size)
-            throws IOException {
-        if (internal == null) {
-            return;
-        }
-        Path to = spec.getTo().resolve(internal.getTo());
-        ZipArchiveEntry zae = new ZipArchiveEntry(internal.getTo());
-        setTimes(lastModifiedTime, lastAccessTime, creationTime, zae);
-        Path source = spec.getFrom().resolve(name);
-        zipArchiveOutputStream.putArchiveEntry(zae);
-        copyWithProgress(
-                index,
-                size,
-                source,
-                to,
-                readFunction,
-                zipArchiveOutputStream::write);
-        zipArchiveOutputStream.closeArchiveEntry();
+    private boolean isUseUnrar() {
+        return !config.isForceSevenZip() && ArchiveUtils.isUnrarAvailable(config.getCustomUnrarPath());
     }
 
+
     private void setTimes(
             @Nullable FileTime lastModifiedTime,
             @Nullable FileTime lastAccessTime,
@@ -1406,126 +1761,6 @@ public final class FileCopier {
         return fileTime.to(TimeUnit.SECONDS);
     }
 
-    private void toSevenZip(
-            int index,
-            TriFunction<byte[], Integer, Integer, Integer, IOException> readFunction,
-            SevenZOutputFile sevenZOutputFile,
-            ArchiveCopySpec spec,
-            String name,
-            @Nullable Date lastModifiedDate,
-            @Nullable Date lastAccessDate,
-            @Nullable Date creationDate,
-            long size)
-            throws IOException {
-        toSevenZip(
-                index,
-                readFunction,
-                sevenZOutputFile,
-                spec,
-                findInternalSpec(spec, name),
-                name,
-                lastModifiedDate,
-                lastAccessDate,
-                creationDate,
-                size);
-    }
-
-    private void toSevenZip(
-            int index,
-            TriFunction<byte[], Integer, Integer, Integer, IOException> readFunction,
-            SevenZOutputFile sevenZOutputFile,
-            ArchiveCopySpec spec,
-            @Nullable ArchiveCopySpec.InternalSpec internal,
-            String name,
-            @Nullable Date lastModifiedDate,
-            @Nullable Date lastAccessDate,
-            @Nullable Date creationDate,
-            long size)
-            throws IOException {
-        if (internal == null) {
-            return;
-        }
-        Path to = spec.getTo().resolve(internal.getTo());
-        SevenZArchiveEntry zae = new SevenZArchiveEntry();
-        zae.setName(internal.getTo());
-        zae.setSize(size);
-        if (lastModifiedDate != null) {
-            zae.setLastModifiedDate(lastModifiedDate);
-        }
-        if (lastAccessDate != null) {
-            zae.setAccessDate(lastAccessDate);
-        }
-        if (creationDate != null) {
-            zae.setCreationDate(creationDate);
-        }
-        Path source = spec.getFrom().resolve(name);
-        sevenZOutputFile.putArchiveEntry(zae);
-        copyWithProgress(
-                index,
-                size,
-                source,
-                to,
-                readFunction,
-                sevenZOutputFile::write);
-        sevenZOutputFile.closeArchiveEntry();
-    }
-
-    private void toTar(
-            int index,
-            TriFunction<byte[], Integer, Integer, Integer, IOException> readFunction,
-            TarArchiveOutputStream tarOutputStream,
-            ArchiveCopySpec spec,
-            String name,
-            @Nullable Date lastModifiedDate,
-            long size)
-            throws IOException {
-        toTar(
-                index,
-                readFunction,
-                tarOutputStream,
-                spec,
-                findInternalSpec(spec, name),
-                name,
-                lastModifiedDate,
-                size);
-    }
-
-    private void toTar(
-            int index,
-            TriFunction<byte[], Integer, Integer, Integer, IOException> readFunction,
-            TarArchiveOutputStream tarOutputStream,
-            ArchiveCopySpec spec,
-            @Nullable ArchiveCopySpec.InternalSpec internal,
-            String name,
-            @Nullable Date lastModifiedDate,
-            long size)
-            throws IOException {
-        if (internal == null) {
-            return;
-        }
-        Path to = spec.getTo().resolve(internal.getTo());
-        TarArchiveEntry zae = new TarArchiveEntry(internal.getTo());
-        zae.setSize(size);
-        if (lastModifiedDate != null) {
-            zae.setModTime(lastModifiedDate);
-        }
-        Path source = spec.getFrom().resolve(name);
-        tarOutputStream.putArchiveEntry(zae);
-        copyWithProgress(
-                index,
-                size,
-                source,
-                to,
-                readFunction,
-                tarOutputStream::write);
-        tarOutputStream.closeArchiveEntry();
-    }
-
-    @Nullable
-    private Date toDate(@Nullable FileTime fileTime) {
-        return fileTime != null ? new Date(fileTime.toMillis()) : null;
-    }
-
     @Nullable
     private ZipLong toUnixTime(@Nullable FileTime fileTime) {
         return fileTime != null ? new ZipLong(fileTimeToUnixTime(fileTime)) : null;
@@ -1536,22 +1771,7 @@ public final class FileCopier {
         return fileTime != null ? new ZipEightByteInteger(fileTime.to(TimeUnit.MICROSECONDS) * 10) : null;
     }
 
-    @Nullable
-    private Date toDate(@Nullable LocalDateTime date) {
-        return date != null ? new Date(date.atZone(ZoneId.systemDefault())
-                .toInstant()
-                .toEpochMilli()) : null;
-    }
 
-    @Nullable
-    private static FileTime from(@Nullable Date date) {
-        return date != null ? FileTime.fromMillis(date.getTime()) : null;
-    }
-
-    @Nullable
-    private static FileTime from(@Nullable LocalDateTime date) {
-        return date != null ? FileTime.from(date.atZone(ZoneId.systemDefault()).toInstant()) : null;
-    }
 
     @Nullable
     private ExtractionSpec.InternalSpec findInternalSpec(ExtractionSpec spec, String name) {
@@ -1563,6 +1783,134 @@ public final class FileCopier {
         return spec.getInternalSpecs().get(name);
     }
 
+    /**
+     * Links the destination to the source. Hard links fall back to symbolic links, which work across
+     * filesystems.
+     *
+     * @return whether a link was created
+     */
+    private boolean linkFile(LinkMode linkMode, Path from, Path to) throws IOException {
+        if (Files.exists(to)) {
+            if (Files.isSameFile(from, to)) {
+                return true;
+            }
+            Files.delete(to);
+        }
+        if (linkMode == LinkMode.HARDLINK) {
+            try {
+                Files.createLink(to, from);
+                return true;
+            } catch (IOException | UnsupportedOperationException e) {
+                log.debug("Could not create hard link '{}' to '{}'", to, from, e);
+            }
+        }
+        try {
+            Files.createSymbolicLink(to, from.toAbsolutePath());
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            log.debug("Could not create symbolic link '{}' to '{}'", to, from, e);
+            return false;
+        }
+    }
+
+    /**
+     * Tries to clone the file using copy-on-write (reflinks), which only works if both paths are on the
+     * same filesystem and that filesystem supports it (e.g. Btrfs and XFS).
+     * <p>
+     * Whether cloning works is remembered per destination file store. Only one file is cloned there until the
+     * first clone succeeds, and no others are after one fails, so filesystems which don't support it only run
+     * {@code cp} once. The file store is looked up once per pair of source and destination directories.
+     * <p>
+     * The JDK has no API for cloning, so every clone runs {@code cp --reflink=always}. Starting a process costs
+     * about as much as copying a small file, so files smaller than {@link #CLONE_MIN_SIZE} are never cloned.
+     *
+     * @return whether the file was cloned
+     */
+    private boolean cloneFile(long size, Path from, Path to) {
+        if (!config.isCloneFiles()
+                || SystemUtils.OPERATING_SYSTEM != SystemUtils.OperatingSystem.LINUX
+                || size < CLONE_MIN_SIZE) {
+            return false;
+        }
+        Path fromParent = from.toAbsolutePath().getParent();
+        Path toParent = to.toAbsolutePath().getParent();
+        if (fromParent == null || toParent == null) {
+            return false;
+        }
+        FileStore fileStore = sharedFileStores.computeIfAbsent(
+                Pair.of(fromParent, toParent),
+                k -> getSharedFileStore(k.getLeft(), k.getRight())).orElse(null);
+        if (fileStore == null) {
+            return false;
+        }
+        CloneSupport support = cloneSupport.putIfAbsent(fileStore, CloneSupport.PROBING);
+        if (support != null && support != CloneSupport.SUPPORTED) {
+            // Either it's not supported, or another file is being cloned to find out, so this one is copied
+            return false;
+        }
+        String[] arguments = {
+                "cp",
+                "--reflink=always",
+                "--",
+                from.toAbsolutePath().normalize().toString(),
+                to.toAbsolutePath().normalize().toString()};
+        ProcessBuilder pb = new ProcessBuilder(arguments)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        boolean cloned;
+        try {
+            cloned = pb.start().waitFor() == 0;
+        } catch (IOException e) {
+            log.debug("Failed to run '{}'", String.join(" ", arguments), e);
+            cloned = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cloneSupport.remove(fileStore, CloneSupport.PROBING);
+            return false;
+        }
+        if (cloned) {
+            cloneSupport.replace(fileStore, CloneSupport.PROBING, CloneSupport.SUPPORTED);
+        } else if (cloneSupport.put(fileStore, CloneSupport.UNSUPPORTED) != CloneSupport.UNSUPPORTED) {
+            log.info("Could not clone files on '{}'. Using regular copies instead.", fileStore);
+        }
+        return cloned;
+    }
+
+    private enum CloneSupport {
+        PROBING,
+        SUPPORTED,
+        UNSUPPORTED
+    }
+
+    private static Optional<FileStore> getSharedFileStore(Path fromDirectory, Path toDirectory) {
+        try {
+            FileStore fileStore = Files.getFileStore(fromDirectory);
+            if (fileStore.equals(Files.getFileStore(toDirectory))) {
+                return Optional.of(fileStore);
+            }
+        } catch (IOException e) {
+            log.debug("Could not determine the file stores of '{}' and '{}'", fromDirectory, toDirectory, e);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Copies a file through the {@link TransferEngine}, which lets the OS transfer the data where supported.
+     */
+    private void transferFile(int index, long size, Path source, Path destination, Path target) throws IOException {
+        for (Listener listener : listeners) {
+            listener.reportStart(index, source, destination, size);
+        }
+        try (SourceSpec sourceSpec = FileSourceSpec.from(source, readAheadPolicy)) {
+            transferEngine.transfer(sourceSpec, target, bytes -> {
+                for (Listener listener : listeners) {
+                    listener.reportBytesCopied(index, bytes);
+                }
+            });
+        }
+        destinationWriter().force(target);
+    }
+
     private void copyWithProgress(
             int index,
             long size,
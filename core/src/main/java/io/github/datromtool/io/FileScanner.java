@@ -3,13 +3,18 @@ package io.github.datromtool.io;
 import com.github.junrar.exception.UnsupportedRarV5Exception;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableSet;
 import io.github.datromtool.config.AppConfig;
 import io.github.datromtool.domain.datafile.logiqx.Datafile;
 import io.github.datromtool.domain.detector.Detector;
 import io.github.datromtool.domain.detector.Rule;
+import io.github.datromtool.io.compression.CompressionAlgorithm;
+import io.github.datromtool.io.compression.Decompressor;
+import io.github.datromtool.io.compression.ParallelGzipDecompressor;
 import io.github.datromtool.io.logging.FileScannerLoggingListener;
 import io.github.datromtool.util.ArchiveUtils;
+import io.github.datromtool.util.ArchiveVolumes;
+import io.github.datromtool.util.ReadAheadPolicy;
+import io.github.datromtool.util.ZipFilePool;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.NonNull;
@@ -20,8 +25,10 @@ import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.compress.compressors.lzma.LZMAUtils;
 import org.apache.commons.compress.compressors.xz.XZUtils;
+import org.apache.commons.compress.compressors.zstandard.ZstdUtils;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.FileVisitResult;
@@ -30,9 +37,14 @@ import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -58,6 +70,7 @@ public final class FileScanner {
     private final ImmutableList<Listener> listeners;
     private final FileScannerParameters fileScannerParameters;
     private final ThreadLocal<ThreadLocalDataHolder> threadLocalData;
+    private final ReadAheadPolicy readAheadPolicy;
 
     public FileScanner(
             @Nonnull AppConfig.FileScannerConfig config,
@@ -73,6 +86,7 @@ public final class FileScanner {
             this.fileScannerParameters = forDatWithDetector(config, datafiles, detectors);
         }
         this.threadLocalData = ThreadLocal.withInitial(() -> new ThreadLocalDataHolder(fileScannerParameters));
+        this.readAheadPolicy = ReadAheadPolicy.from(config.getReadAhead());
     }
 
     @Nonnull
@@ -138,6 +152,7 @@ public final class FileScanner {
         @NonNull
         Path path;
         long size;
+        long lastModifiedTime;
     }
 
     public interface Listener {
@@ -172,8 +187,26 @@ public final class FileScanner {
         @Override
         public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
             if (attrs.isRegularFile()) {
+                Path firstVolume = ArchiveVolumes.getFirstVolume(file);
+                if (firstVolume != null && Files.isRegularFile(firstVolume)) {
+                    log.info("Skipping volume read along with '{}': '{}'", firstVolume, file);
+                    return FileVisitResult.CONTINUE;
+                }
                 log.info("Adding file to scan list: '{}'", file);
-                onVisited.accept(new FileMetadata(file, attrs.size()));
+                if (ArchiveVolumes.isFirstVolume(file)) {
+                    // The other volumes are read along with this one, so changing any of them changes the archive
+                    try {
+                        ArchiveVolumes.Attributes volumeAttributes = ArchiveVolumes.readAttributes(file);
+                        onVisited.accept(new FileMetadata(
+                                file,
+                                volumeAttributes.getSize(),
+                                volumeAttributes.getLastModifiedTime().toMillis()));
+                        return FileVisitResult.CONTINUE;
+                    } catch (IOException e) {
+                        log.warn("Could not read the attributes of the volumes of '{}'", file, e);
+                    }
+                }
+                onVisited.accept(new FileMetadata(file, attrs.size(), attrs.lastModifiedTime().toMillis()));
             }
             return FileVisitResult.CONTINUE;
         }
@@ -186,15 +219,41 @@ public final class FileScanner {
     }
 
     public ImmutableList<Result> scan(Collection<Path> directories) {
+        return scan(directories, r -> {
+        });
+    }
+
+    /**
+     * Scans the given directories, handing the results of each file to {@code onFileScanned} as soon as
+     * that file is done, from the scanning thread that processed it.
+     * <p>
+     * The consumer may be called concurrently by multiple threads. Any exception it throws is logged and
+     * does not interrupt the scan.
+     */
+    public ImmutableList<Result> scan(
+            @Nonnull Collection<Path> directories,
+            @Nonnull Consumer<? super ImmutableList<Result>> onFileScanned) {
         ExecutorService executorService = Executors.newFixedThreadPool(
                 config.getThreads(),
                 new IndexedThreadFactory(log, "SCANNER"));
+        // Shared by all the GZIP files scanned at once, so they don't each start their own threads
+        ExecutorService decompressionExecutorService = config.getGzipThreads() > 1
+                ? Executors.newFixedThreadPool(config.getGzipThreads(), new IndexedThreadFactory(log, "DECOMPRESSOR"))
+                : null;
+        Decompressor gzipDecompressor = decompressionExecutorService != null
+                ? new ParallelGzipDecompressor(config.getGzipThreads(), decompressionExecutorService)
+                : CompressionAlgorithm.GZIP.getDecompressor();
         if (!LZMAUtils.isLZMACompressionAvailable()) {
             log.warn("LZMA compression support is disabled");
         }
         if (!XZUtils.isXZCompressionAvailable()) {
             log.warn("XZ compression support is disabled");
         }
+        if (!ZstdUtils.isZstdCompressionAvailable()) {
+            log.warn("Zstandard compression support is disabled");
+        }
+        ArchiveDirectoryCache directoryCache = loadDirectoryCache();
+        ZipFilePool.Session zipFileSession = ZipFilePool.shared().openSession();
         try {
             ImmutableList.Builder<FileMetadata> pathsBuilder = ImmutableList.builder();
             for (Path directory : directories) {
@@ -215,11 +274,16 @@ public final class FileScanner {
             }
             ImmutableList<Result> results = paths.stream()
                     .sorted(FILE_SIZE_DESCENDING_COMPARATOR)
-                    .map(fm -> executorService.submit(() -> scanFile(fm)))
+                    .map(fm -> executorService.submit(() -> scanFileAndNotify(
+                            fm,
+                            directoryCache,
+                            gzipDecompressor,
+                            onFileScanned)))
                     .collect(ImmutableList.toImmutableList())
                     .stream()
                     .flatMap(FileScanner::streamResults)
                     .collect(ImmutableList.toImmutableList());
+            saveDirectoryCache(directoryCache);
             for (Listener listener : listeners) {
                 listener.reportAllFinished();
             }
@@ -229,9 +293,54 @@ public final class FileScanner {
             throw e;
         } finally {
             executorService.shutdownNow();
+            if (decompressionExecutorService != null) {
+                decompressionExecutorService.shutdownNow();
+            }
+            zipFileSession.close();
+        }
+    }
+
+    @Nullable
+    private ArchiveDirectoryCache loadDirectoryCache() {
+        Path file = config.getArchiveDirectoryCache();
+        if (file == null) {
+            return null;
+        }
+        try {
+            return ArchiveDirectoryCache.load(file);
+        } catch (IOException e) {
+            log.warn("Could not read the archive directory cache '{}'", file, e);
+            return null;
+        }
+    }
+
+    private static void saveDirectoryCache(@Nullable ArchiveDirectoryCache directoryCache) {
+        if (directoryCache == null) {
+            return;
+        }
+        try {
+            directoryCache.save();
+        } catch (IOException e) {
+            log.warn("Could not write the archive directory cache", e);
         }
     }
 
+    private ImmutableList<Result> scanFileAndNotify(
+            FileMetadata fileMetadata,
+            @Nullable ArchiveDirectoryCache directoryCache,
+            Decompressor gzipDecompressor,
+            Consumer<? super ImmutableList<Result>> onFileScanned) {
+        ImmutableList<Result> results = scanFile(fileMetadata, directoryCache, gzipDecompressor);
+        if (!results.isEmpty()) {
+            try {
+                onFileScanned.accept(results);
+            } catch (Exception e) {
+                log.error("Unexpected exception thrown while handling results for '{}'", fileMetadata.getPath(), e);
+            }
+        }
+        return results;
+    }
+
     private static <T> Stream<T> streamResults(Future<ImmutableList<T>> future) {
         try {
             return future.get().stream();
@@ -241,6 +350,10 @@ public final class FileScanner {
         }
     }
 
+    private boolean isWithinRomSize(long size) {
+        return size >= fileScannerParameters.getMinRomSize() && size <= fileScannerParameters.getMaxRomSize();
+    }
+
     private boolean shouldSkip(Path path, int index, long size) {
         if (size < fileScannerParameters.getMinRomSize()) {
             log.info(
@@ -265,7 +378,10 @@ public final class FileScanner {
         return false;
     }
 
-    private ImmutableList<Result> scanFile(FileMetadata fileMetadata) {
+    private ImmutableList<Result> scanFile(
+            FileMetadata fileMetadata,
+            @Nullable ArchiveDirectoryCache directoryCache,
+            Decompressor gzipDecompressor) {
         Path file = fileMetadata.getPath();
         int index = ((IndexedThread) Thread.currentThread()).getIndex();
         for (Listener listener : listeners) {
@@ -276,23 +392,38 @@ public final class FileScanner {
             boolean scanned = false;
             ArchiveType archiveType = ArchiveType.parse(file);
             if (archiveType != null) {
+                ImmutableList<ArchiveDirectoryCache.Entry> cachedEntries = directoryCache != null
+                        ? directoryCache.get(file, fileMetadata.getSize(), fileMetadata.getLastModifiedTime())
+                        : null;
+                List<ArchiveDirectoryCache.Entry> entries = new ArrayList<>();
                 try {
-                    switch (archiveType) {
-                        case ZIP -> {
-                            scanZip(file, index, builder);
-                            scanned = true;
-                        }
-                        case RAR -> {
-                            scanRar(file, index, builder);
-                            scanned = true;
+                    if (cachedEntries != null && cachedEntries.stream().noneMatch(e -> isWithinRomSize(e.getSize()))) {
+                        // None of the entries would be read, so there's no need to open the archive
+                        for (ArchiveDirectoryCache.Entry entry : cachedEntries) {
+                            shouldSkip(file.resolve(normalizePath(entry.getName())), index, entry.getSize());
                         }
-                        case SEVEN_ZIP -> {
-                            scanSevenZip(file, index, builder);
-                            scanned = true;
+                        scanned = true;
+                    } else {
+                        switch (archiveType) {
+                            case ZIP -> {
+                                scanZip(file, index, builder, entries);
+                                scanned = true;
+                            }
+                            case RAR -> {
+                                scanRar(file, index, builder, cachedEntries, entries);
+                                scanned = true;
+                            }
+                            case SEVEN_ZIP -> {
+                                scanSevenZip(file, index, builder, entries);
+                                scanned = true;
+                            }
+                            case TAR, TAR_BZ2, TAR_GZ, TAR_LZ4, TAR_LZMA, TAR_XZ, TAR_ZST -> {
+                                scanTar(archiveType, file, index, builder, entries, gzipDecompressor);
+                                scanned = true;
+                            }
                         }
-                        case TAR, TAR_BZ2, TAR_GZ, TAR_LZ4, TAR_LZMA, TAR_XZ -> {
-                            scanTar(archiveType, file, index, builder);
-                            scanned = true;
+                        if (directoryCache != null && cachedEntries == null) {
+                            directoryCache.put(file, fileMetadata.getSize(), fileMetadata.getLastModifiedTime(), entries);
                         }
                     }
                 } catch (UnsupportedRarV5Exception e) {
@@ -334,7 +465,7 @@ public final class FileScanner {
             ImmutableList.Builder<Result> builder) throws IOException {
         long size = fileMetadata.getSize();
         if (!shouldSkip(file, index, size)) {
-            try (InputStream inputStream = Files.newInputStream(file)) {
+            try (InputStream inputStream = readAheadPolicy.newInputStream(file)) {
                 ProcessingResult processingResult = process(
                         file,
                         index,
@@ -354,8 +485,15 @@ public final class FileScanner {
     private void scanZip(
             Path file,
             int index,
-            ImmutableList.Builder<Result> builder) throws IOException {
+            ImmutableList.Builder<Result> builder,
+            List<ArchiveDirectoryCache.Entry> entries) throws IOException {
         ArchiveUtils.readZip(file, (zipFile, zipArchiveEntry) -> {
+            entries.add(ArchiveDirectoryCache.Entry.of(
+                    zipArchiveEntry.getName(),
+                    zipArchiveEntry.getSize(),
+                    zipArchiveEntry.getCrc() != -1 ? zipArchiveEntry.getCrc() : null,
+                    zipArchiveEntry.getLocalHeaderOffset(),
+                    zipArchiveEntry.getTime() != -1 ? zipArchiveEntry.getTime() : null));
             long size = zipArchiveEntry.getSize();
             String name = normalizePath(zipArchiveEntry.getName());
             Path entryPath = file.resolve(name);
@@ -382,9 +520,17 @@ public final class FileScanner {
     private void scanRar(
             Path file,
             int index,
-            ImmutableList.Builder<Result> builder) throws Exception {
+            ImmutableList.Builder<Result> builder,
+            @Nullable List<ArchiveDirectoryCache.Entry> cachedEntries,
+            List<ArchiveDirectoryCache.Entry> entries) throws Exception {
         try {
             ArchiveUtils.readRar(file, (archive, fileHeader) -> {
+                entries.add(ArchiveDirectoryCache.Entry.of(
+                        fileHeader.getFileName(),
+                        fileHeader.getFullUnpackSize(),
+                        fileHeader.getFileCRC() & 0xFFFFFFFFL,
+                        -1,
+                        fileHeader.getMTime() != null ? fileHeader.getMTime().getTime() : null));
                 long size = fileHeader.getFullUnpackSize();
                 String name = normalizePath(fileHeader.getFileName());
                 Path entryPath = file.resolve(name);
@@ -407,10 +553,11 @@ public final class FileScanner {
                 }
             });
         } catch (UnsupportedRarV5Exception e) {
+            entries.clear();
             if (isUseUnrar()) {
-                scanRarWithUnrar(file, index, builder);
+                scanRarWithUnrar(file, index, builder, cachedEntries, entries);
             } else if (isUseSevenZip()) {
-                scanRarWithSevenZip(file, index, builder);
+                scanRarWithSevenZip(file, index, builder, cachedEntries, entries);
             } else {
                 throw e;
             }
@@ -428,41 +575,77 @@ public final class FileScanner {
     private void scanRarWithUnrar(
             Path file,
             int index,
-            ImmutableList.Builder<Result> builder) throws Exception {
-        ImmutableSet<String> desiredEntryNames =
-                ArchiveUtils.listRarEntriesWithUnrar(file)
+            ImmutableList.Builder<Result> builder,
+            @Nullable List<ArchiveDirectoryCache.Entry> cachedEntries,
+            List<ArchiveDirectoryCache.Entry> entries) throws Exception {
+        ImmutableList<UnrarArchiveEntry> desiredEntries =
+                listRarEntries(cachedEntries, entries, () -> ArchiveUtils.listRarEntriesWithUnrar(file))
                         .stream()
                         .filter(e -> !shouldSkip(file.resolve(e.getName()), index, e.getSize()))
-                        .map(UnrarArchiveEntry::getName)
-                        .collect(ImmutableSet.toImmutableSet());
-        if (desiredEntryNames.isEmpty()) {
+                        .collect(ImmutableList.toImmutableList());
+        if (desiredEntries.isEmpty()) {
             return;
         }
         ArchiveUtils.readRarWithUnrar(
                 file,
-                desiredEntryNames,
+                desiredEntries,
                 (entry, processInputStream) -> processRarEntry(file, index, builder, entry, processInputStream));
     }
 
     private void scanRarWithSevenZip(
             Path file,
             int index,
-            ImmutableList.Builder<Result> builder) throws Exception {
-        ImmutableSet<String> desiredEntryNames =
-                ArchiveUtils.listRarEntriesWithSevenZip(file)
+            ImmutableList.Builder<Result> builder,
+            @Nullable List<ArchiveDirectoryCache.Entry> cachedEntries,
+            List<ArchiveDirectoryCache.Entry> entries) throws Exception {
+        ImmutableList<UnrarArchiveEntry> desiredEntries =
+                listRarEntries(cachedEntries, entries, () -> ArchiveUtils.listRarEntriesWithSevenZip(file))
                         .stream()
                         .filter(e -> !shouldSkip(file.resolve(e.getName()), index, e.getSize()))
-                        .map(UnrarArchiveEntry::getName)
-                        .collect(ImmutableSet.toImmutableSet());
-        if (desiredEntryNames.isEmpty()) {
+                        .collect(ImmutableList.toImmutableList());
+        if (desiredEntries.isEmpty()) {
             return;
         }
         ArchiveUtils.readRarWithSevenZip(
                 file,
-                desiredEntryNames,
+                desiredEntries,
                 (entry, processInputStream) -> processRarEntry(file, index, builder, entry, processInputStream));
     }
 
+    /**
+     * Lists the entries of a RAR archive with an external tool, unless they're cached
+     */
+    private static List<UnrarArchiveEntry> listRarEntries(
+            @Nullable List<ArchiveDirectoryCache.Entry> cachedEntries,
+            List<ArchiveDirectoryCache.Entry> entries,
+            Callable<List<UnrarArchiveEntry>> lister) throws Exception {
+        if (cachedEntries != null) {
+            return cachedEntries.stream()
+                    .map(e -> UnrarArchiveEntry.builder()
+                            .name(e.getName())
+                            .size(e.getSize())
+                            .modificationTime(e.getLastModifiedTime() != null
+                                    ? LocalDateTime.ofInstant(
+                                    Instant.ofEpochMilli(e.getLastModifiedTime()),
+                                    ZoneId.systemDefault())
+                                    : null)
+                            .build())
+                    .collect(ImmutableList.toImmutableList());
+        }
+        List<UnrarArchiveEntry> listedEntries = lister.call();
+        for (UnrarArchiveEntry listedEntry : listedEntries) {
+            entries.add(ArchiveDirectoryCache.Entry.of(
+                    listedEntry.getName(),
+                    listedEntry.getSize(),
+                    null,
+                    -1,
+                    listedEntry.getModificationTime() != null
+                            ? listedEntry.getModificationTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                            : null));
+        }
+        return listedEntries;
+    }
+
     private void processRarEntry(
             Path file,
             int index,
@@ -489,8 +672,17 @@ public final class FileScanner {
     private void scanSevenZip(
             Path file,
             int index,
-            ImmutableList.Builder<Result> builder) throws IOException {
+            ImmutableList.Builder<Result> builder,
+            List<ArchiveDirectoryCache.Entry> entries) throws IOException {
         ArchiveUtils.readSevenZip(file, (sevenZFile, sevenZArchiveEntry) -> {
+            entries.add(ArchiveDirectoryCache.Entry.of(
+                    sevenZArchiveEntry.getName(),
+                    sevenZArchiveEntry.getSize(),
+                    sevenZArchiveEntry.getHasCrc() ? sevenZArchiveEntry.getCrcValue() : null,
+                    -1,
+                    sevenZArchiveEntry.getHasLastModifiedDate()
+                            ? sevenZArchiveEntry.getLastModifiedDate().getTime()
+                            : null));
             long size = sevenZArchiveEntry.getSize();
             String name = normalizePath(sevenZArchiveEntry.getName());
             Path entryPath = file.resolve(name);
@@ -516,8 +708,17 @@ public final class FileScanner {
             ArchiveType archiveType,
             Path file,
             int index,
-            ImmutableList.Builder<Result> builder) throws IOException {
-        ArchiveUtils.readTar(archiveType, file, (tarArchiveEntry, tarArchiveInputStream) -> {
+            ImmutableList.Builder<Result> builder,
+            List<ArchiveDirectoryCache.Entry> entries,
+            Decompressor gzipDecompressor) throws IOException {
+        ArchiveUtils.readTar(archiveType, file, readAheadPolicy, gzipDecompressor, (tarArchiveEntry, tarArchiveInputStream) -> {
+            entries.add(ArchiveDirectoryCache.Entry.of(
+                    tarArchiveEntry.getName(),
+                    tarArchiveEntry.getRealSize(),
+                    null,
+                    // Offsets in compressed archives wouldn't be of any use
+                    archiveType == ArchiveType.TAR ? tarArchiveEntry.getDataOffset() : -1,
+                    tarArchiveEntry.getModTime() != null ? tarArchiveEntry.getModTime().getTime() : null));
             long size = tarArchiveEntry.getRealSize();
             String name = normalizePath(tarArchiveEntry.getName());
             Path entryPath = file.resolve(name);
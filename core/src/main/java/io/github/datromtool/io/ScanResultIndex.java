@@ -0,0 +1,206 @@
+package io.github.datromtool.io;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Sets;
+import io.github.datromtool.data.CrcKey;
+import io.github.datromtool.data.ParsedGame;
+import io.github.datromtool.domain.datafile.logiqx.Rom;
+
+import javax.annotation.Nonnull;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A mutable index of scan results, which keeps track of which of the given games have all of their ROMs
+ * present as results are added and removed.
+ * <p>
+ * ROMs are looked up the same way {@link ScanResultMatcher} does it: SHA-1, then MD5, then size + CRC.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class ScanResultIndex {
+
+    private final ImmutableListMultimap<String, ParsedGame> gamesForSha1;
+    private final ImmutableListMultimap<String, ParsedGame> gamesForMd5;
+    private final ImmutableListMultimap<CrcKey, ParsedGame> gamesForCrc;
+
+    private final ListMultimap<Path, FileScanner.Result> resultsForPath = ArrayListMultimap.create();
+    private final ListMultimap<String, FileScanner.Result> resultsForSha1 = ArrayListMultimap.create();
+    private final ListMultimap<String, FileScanner.Result> resultsForMd5 = ArrayListMultimap.create();
+    private final ListMultimap<CrcKey, FileScanner.Result> resultsForCrc = ArrayListMultimap.create();
+
+    private final Set<ParsedGame> completeGames = Sets.newIdentityHashSet();
+    private final Set<ParsedGame> changedGames = Sets.newIdentityHashSet();
+
+    public ScanResultIndex(@Nonnull Collection<ParsedGame> games) {
+        ImmutableListMultimap.Builder<String, ParsedGame> sha1Builder = ImmutableListMultimap.builder();
+        ImmutableListMultimap.Builder<String, ParsedGame> md5Builder = ImmutableListMultimap.builder();
+        ImmutableListMultimap.Builder<CrcKey, ParsedGame> crcBuilder = ImmutableListMultimap.builder();
+        for (ParsedGame game : games) {
+            for (Rom rom : game.getGame().getRoms()) {
+                if (rom.getSha1() != null) {
+                    sha1Builder.put(rom.getSha1(), game);
+                }
+                if (rom.getMd5() != null) {
+                    md5Builder.put(rom.getMd5(), game);
+                }
+                if (rom.getCrc() != null && rom.getSize() != null) {
+                    crcBuilder.put(CrcKey.from(rom), game);
+                }
+            }
+        }
+        this.gamesForSha1 = sha1Builder.build();
+        this.gamesForMd5 = md5Builder.build();
+        this.gamesForCrc = crcBuilder.build();
+    }
+
+    /**
+     * Adds a result to this index.
+     *
+     * @return the games for which the given result is a match
+     * @see #add(Collection)
+     */
+    @Nonnull
+    public ImmutableList<ParsedGame> add(@Nonnull FileScanner.Result result) {
+        return add(ImmutableList.of(result));
+    }
+
+    /**
+     * Adds results to this index.
+     *
+     * @return the games for which at least one of the given results is a match
+     */
+    @Nonnull
+    public synchronized ImmutableList<ParsedGame> add(@Nonnull Collection<FileScanner.Result> results) {
+        Set<ParsedGame> affected = Sets.newIdentityHashSet();
+        for (FileScanner.Result result : results) {
+            FileScanner.Result.Digest digest = result.getDigest();
+            CrcKey crcKey = CrcKey.from(result);
+            resultsForPath.put(result.getPath(), result);
+            resultsForSha1.put(digest.getSha1(), result);
+            resultsForMd5.put(digest.getMd5(), result);
+            resultsForCrc.put(crcKey, result);
+            collectGames(result, affected);
+        }
+        return update(affected);
+    }
+
+    /**
+     * Removes all results for the given file, including the ones for files inside it if it's an archive.
+     *
+     * @return the games for which at least one of the removed results was a match
+     */
+    @Nonnull
+    public synchronized ImmutableList<ParsedGame> remove(@Nonnull Path path) {
+        List<FileScanner.Result> removed = resultsForPath.removeAll(path);
+        Set<ParsedGame> affected = Sets.newIdentityHashSet();
+        for (FileScanner.Result result : removed) {
+            FileScanner.Result.Digest digest = result.getDigest();
+            resultsForSha1.remove(digest.getSha1(), result);
+            resultsForMd5.remove(digest.getMd5(), result);
+            resultsForCrc.remove(CrcKey.from(result), result);
+            collectGames(result, affected);
+        }
+        return update(affected);
+    }
+
+    private void collectGames(FileScanner.Result result, Set<ParsedGame> games) {
+        FileScanner.Result.Digest digest = result.getDigest();
+        games.addAll(gamesForSha1.get(digest.getSha1()));
+        games.addAll(gamesForMd5.get(digest.getMd5()));
+        games.addAll(gamesForCrc.get(CrcKey.from(result)));
+    }
+
+    private ImmutableList<ParsedGame> update(Set<ParsedGame> affected) {
+        for (ParsedGame game : affected) {
+            List<Rom> roms = game.getGame().getRoms();
+            boolean complete = !roms.isEmpty() && roms.stream().noneMatch(r -> match(r).isEmpty());
+            boolean changed = complete ? completeGames.add(game) : completeGames.remove(game);
+            if (changed) {
+                changedGames.add(game);
+            }
+        }
+        return ImmutableList.copyOf(affected);
+    }
+
+    /**
+     * @return whether all ROMs of the given game have at least one matching result
+     */
+    public synchronized boolean isComplete(@Nonnull ParsedGame game) {
+        return completeGames.contains(game);
+    }
+
+    /**
+     * Checks whether all ROMs of the given game have a file which is not inside an archive, found through the
+     * most specific digest the ROM has. {@link ScanResultMatcher} picks such files over any other, so adding
+     * more results can't make it match the game to files inside archives.
+     */
+    public synchronized boolean hasUncompressedMatches(@Nonnull ParsedGame game) {
+        List<Rom> roms = game.getGame().getRoms();
+        return !roms.isEmpty() && roms.stream().allMatch(this::hasUncompressedMatch);
+    }
+
+    private boolean hasUncompressedMatch(Rom rom) {
+        List<FileScanner.Result> results;
+        if (rom.getSha1() != null) {
+            results = resultsForSha1.get(rom.getSha1());
+        } else if (rom.getMd5() != null) {
+            results = resultsForMd5.get(rom.getMd5());
+        } else if (rom.getCrc() != null && rom.getSize() != null) {
+            results = resultsForCrc.get(CrcKey.from(rom));
+        } else {
+            return false;
+        }
+        return results.stream().anyMatch(r -> r.getArchiveType() == null);
+    }
+
+    /**
+     * Returns the games which became complete or incomplete since the last call to this method. A game
+     * which changed and then changed back is still returned, as the results matching it may not be the same.
+     */
+    @Nonnull
+    public synchronized ImmutableList<ParsedGame> pollChangedGames() {
+        ImmutableList<ParsedGame> changed = ImmutableList.copyOf(changedGames);
+        changedGames.clear();
+        return changed;
+    }
+
+    /**
+     * @return all results currently matching any of the ROMs of the given game
+     */
+    @Nonnull
+    public synchronized ImmutableList<FileScanner.Result> getResults(@Nonnull ParsedGame game) {
+        return game.getGame().getRoms().stream()
+                .map(this::match)
+                .flatMap(Collection::stream)
+                .distinct()
+                .collect(ImmutableList.toImmutableList());
+    }
+
+    /**
+     * @return all results in this index
+     */
+    @Nonnull
+    public synchronized ImmutableList<FileScanner.Result> getResults() {
+        return ImmutableList.copyOf(resultsForPath.values());
+    }
+
+    private List<FileScanner.Result> match(Rom rom) {
+        List<FileScanner.Result> results = ImmutableList.of();
+        if (rom.getSha1() != null) {
+            results = resultsForSha1.get(rom.getSha1());
+        }
+        if (results.isEmpty() && rom.getMd5() != null) {
+            results = resultsForMd5.get(rom.getMd5());
+        }
+        if (results.isEmpty() && rom.getCrc() != null && rom.getSize() != null) {
+            results = resultsForCrc.get(CrcKey.from(rom));
+        }
+        return results;
+    }
+}
@@ -91,6 +91,11 @@ public final class ScanResultMatcher {
 
     @Nonnull
     public ImmutableList<FileScanner.Result> match(Rom rom) {
+        return match(rom, true);
+    }
+
+    @Nonnull
+    private ImmutableList<FileScanner.Result> match(Rom rom, boolean warn) {
         ImmutableList<FileScanner.Result> results = null;
         if (rom.getSha1() != null) {
             results = resultsForSha1.get(rom.getSha1());
@@ -104,7 +109,7 @@ public final class ScanResultMatcher {
         if (results == null) {
             results = ImmutableList.of();
         }
-        if (results.isEmpty()) {
+        if (results.isEmpty() && warn) {
             log.warn("Missing ROM file: '{}'", rom.getName());
         }
         return results;
@@ -114,16 +119,41 @@ public final class ScanResultMatcher {
     public ImmutableList<RomMatch> match(
             @Nonnull ParsedGame parsedGame,
             @Nullable ArchiveType toType) {
+        return match(parsedGame, toType, true);
+    }
+
+    /**
+     * Same as {@link #match(ParsedGame, ArchiveType)}, but without logging anything for missing files.
+     * Meant for matching games while the results are still being collected.
+     */
+    @Nonnull
+    public Optional<GameMatchList> tryMatch(
+            @Nonnull ParsedGame parsedGame,
+            @Nullable ArchiveType toType) {
+        ImmutableList<RomMatch> romMatches = match(parsedGame, toType, false);
+        if (romMatches.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(new GameMatchList(parsedGame, romMatches));
+    }
+
+    @Nonnull
+    private ImmutableList<RomMatch> match(
+            @Nonnull ParsedGame parsedGame,
+            @Nullable ArchiveType toType,
+            boolean warn) {
         int totalRoms = parsedGame.getGame().getRoms().size();
         if (totalRoms == 0) {
             return ImmutableList.of();
         }
         ImmutableList<RomMatchList> romMatchLists = parsedGame.getGame().getRoms().stream()
-                .map(r -> new RomMatchList(r, match(r)))
+                .map(r -> new RomMatchList(r, match(r, warn)))
                 .filter(s -> !s.getResults().isEmpty())
                 .collect(ImmutableList.toImmutableList());
         if (romMatchLists.size() < totalRoms) {
-            log.warn("Skipping '{}' due to missing files", parsedGame.getGame().getName());
+            if (warn) {
+                log.warn("Skipping '{}' due to missing files", parsedGame.getGame().getName());
+            }
             return ImmutableList.of();
         }
         ImmutableList<RomMatch> uncompressedRomMatches = romMatchLists.stream()
@@ -164,9 +194,11 @@ public final class ScanResultMatcher {
                 .filter(l -> l.size() >= totalRoms)
                 .findFirst()
                 .orElseGet(() -> {
-                    log.warn(
-                            "Could not find all ROMs for '{}' in a single archive",
-                            parsedGame.getGame().getName());
+                    if (warn) {
+                        log.warn(
+                                "Could not find all ROMs for '{}' in a single archive",
+                                parsedGame.getGame().getName());
+                    }
                     return ImmutableList.of();
                 });
     }
@@ -0,0 +1,199 @@
+package io.github.datromtool.io;
+
+import com.google.common.collect.ImmutableList;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides the order in which the specs of a {@link FileCopier.Session} are copied.
+ * <p>
+ * Specs are queued per storage device ({@link FileStore}) of their source. Within each batch of specs submitted
+ * together, the ones reading from the same directory are kept together, so the source is read as sequentially
+ * as possible, and the directories and the specs within them go from the largest to the smallest, so large specs
+ * don't end up being copied by a single thread after all others are done.
+ * <p>
+ * The devices take turns when specs are taken, and at most {@code maxSpecsPerDevice} specs read from the same
+ * device at once, so a single slow drive doesn't take up all the threads.
+ * <p>
+ * This class is thread-safe.
+ */
+@Slf4j
+final class SpecScheduler {
+
+    /**
+     * The device of sources which don't exist or whose {@link FileStore} could not be determined.
+     */
+    private static final Object UNKNOWN_DEVICE = new Object();
+
+    @Value
+    static class Ticket {
+
+        @Nonnull
+        FileCopier.Spec spec;
+        @Nonnull
+        Object device;
+    }
+
+    @Value
+    private static class SizedSpec {
+
+        FileCopier.Spec spec;
+        Object device;
+        @Nullable
+        Path directory;
+        long size;
+    }
+
+    private final int maxSpecsPerDevice;
+    private final Map<Path, Object> devices = new ConcurrentHashMap<>();
+    private final Map<Object, Deque<Ticket>> queues = new LinkedHashMap<>();
+    private final Map<Object, Integer> running = new HashMap<>();
+    private int nextDevice;
+
+    /**
+     * @param maxSpecsPerDevice the maximum amount of specs reading from the same device at once, or zero or less
+     *                          for no limit
+     */
+    SpecScheduler(int maxSpecsPerDevice) {
+        this.maxSpecsPerDevice = maxSpecsPerDevice > 0 ? maxSpecsPerDevice : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Queues a batch of specs, ordering them by directory and size.
+     */
+    void addAll(@Nonnull Collection<? extends FileCopier.Spec> specs) {
+        List<SizedSpec> sizedSpecs = new ArrayList<>(specs.size());
+        for (FileCopier.Spec spec : specs) {
+            Path source = getSource(spec);
+            Path directory = source != null ? source.toAbsolutePath().getParent() : null;
+            sizedSpecs.add(new SizedSpec(spec, getDevice(directory), directory, getSize(spec)));
+        }
+        Map<Optional<Path>, Long> sizePerDirectory = new HashMap<>();
+        for (SizedSpec sizedSpec : sizedSpecs) {
+            sizePerDirectory.merge(Optional.ofNullable(sizedSpec.getDirectory()), sizedSpec.getSize(), Long::sum);
+        }
+        Comparator<SizedSpec> comparator = Comparator
+                .<SizedSpec>comparingLong(s -> sizePerDirectory.get(Optional.ofNullable(s.getDirectory())))
+                .reversed()
+                .thenComparing(s -> Optional.ofNullable(s.getDirectory()).map(Path::toString).orElse(""))
+                .thenComparing(Comparator.comparingLong(SizedSpec::getSize).reversed());
+        sizedSpecs.sort(comparator);
+        synchronized (this) {
+            for (SizedSpec sizedSpec : sizedSpecs) {
+                queues.computeIfAbsent(sizedSpec.getDevice(), k -> new ArrayDeque<>())
+                        .add(new Ticket(sizedSpec.getSpec(), sizedSpec.getDevice()));
+            }
+        }
+    }
+
+    /**
+     * Takes the next spec to be copied, waiting until the device of at least one of the queued specs is below its
+     * limit. Must be followed by {@link #done(Ticket)}.
+     */
+    @Nonnull
+    synchronized Ticket take() throws InterruptedException {
+        while (true) {
+            Ticket ticket = poll();
+            if (ticket != null) {
+                running.merge(ticket.getDevice(), 1, Integer::sum);
+                return ticket;
+            }
+            wait();
+        }
+    }
+
+    synchronized void done(@Nonnull Ticket ticket) {
+        running.merge(ticket.getDevice(), -1, Integer::sum);
+        notifyAll();
+    }
+
+    @Nullable
+    private Ticket poll() {
+        // There are only as many queues as devices, so they're kept even when empty
+        List<Map.Entry<Object, Deque<Ticket>>> entries = new ArrayList<>(queues.entrySet());
+        for (int i = 0; i < entries.size(); i++) {
+            int position = (nextDevice + i) % entries.size();
+            Map.Entry<Object, Deque<Ticket>> entry = entries.get(position);
+            if (!entry.getValue().isEmpty() && running.getOrDefault(entry.getKey(), 0) < maxSpecsPerDevice) {
+                nextDevice = position + 1;
+                return entry.getValue().poll();
+            }
+        }
+        return null;
+    }
+
+    private Object getDevice(@Nullable Path directory) {
+        if (directory == null) {
+            return UNKNOWN_DEVICE;
+        }
+        return devices.computeIfAbsent(directory, d -> {
+            try {
+                return Files.getFileStore(d);
+            } catch (IOException e) {
+                log.debug("Could not determine the file store of '{}'", d, e);
+                return UNKNOWN_DEVICE;
+            }
+        });
+    }
+
+    @Nullable
+    private static Path getSource(FileCopier.Spec spec) {
+        if (spec instanceof FileCopier.CopySpec) {
+            return ((FileCopier.CopySpec) spec).getFrom();
+        } else if (spec instanceof FileCopier.ExtractionSpec) {
+            return ((FileCopier.ExtractionSpec) spec).getFrom();
+        } else if (spec instanceof FileCopier.CompressionSpec) {
+            return ((FileCopier.CompressionSpec) spec).getInternalSpecs()
+                    .stream()
+                    .findFirst()
+                    .map(FileCopier.CompressionSpec.InternalSpec::getFrom)
+                    .orElse(null);
+        } else if (spec instanceof FileCopier.ArchiveCopySpec) {
+            return ((FileCopier.ArchiveCopySpec) spec).getFrom();
+        } else if (spec instanceof FileCopier.MultiDestinationSpec) {
+            return ((FileCopier.MultiDestinationSpec) spec).getFrom();
+        } else {
+            return null;
+        }
+    }
+
+    private static long getSize(FileCopier.Spec spec) {
+        ImmutableList<Path> sources;
+        if (spec instanceof FileCopier.CompressionSpec) {
+            sources = ((FileCopier.CompressionSpec) spec).getInternalSpecs()
+                    .stream()
+                    .map(FileCopier.CompressionSpec.InternalSpec::getFrom)
+                    .collect(ImmutableList.toImmutableList());
+        } else {
+            Path source = getSource(spec);
+            sources = source != null ? ImmutableList.of(source) : ImmutableList.of();
+        }
+        long size = 0;
+        for (Path source : sources) {
+            try {
+                size += Files.size(source);
+            } catch (IOException e) {
+                log.debug("Could not determine the size of '{}'", source, e);
+            }
+        }
+        return size;
+    }
+}
@@ -1,9 +1,14 @@
 package io.github.datromtool.io.compression;
 
+import io.github.datromtool.io.ArchiveType;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import org.apache.commons.compress.compressors.lzma.LZMAUtils;
 import org.apache.commons.compress.compressors.xz.XZUtils;
+import org.apache.commons.compress.compressors.zstandard.ZstdUtils;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 @AllArgsConstructor
 public enum CompressionAlgorithm {
@@ -11,7 +16,8 @@ public enum CompressionAlgorithm {
     GZIP("gzip", "gz", true, new GzipCompressor(), new GzipDecompressor()),
     LZ4("lz4", "lz4", true, new Lz4Compressor(), new Lz4Decompressor()),
     LZMA("LZMA", "lzma", LZMAUtils.isLZMACompressionAvailable(), new LZMACompressor(), new LZMADecompressor()),
-    XZ("xz", "xz", XZUtils.isXZCompressionAvailable(), new XZCompressor(), new XZDecompressor());
+    XZ("xz", "xz", XZUtils.isXZCompressionAvailable(), new XZCompressor(), new XZDecompressor()),
+    ZSTD("Zstandard", "zst", ZstdUtils.isZstdCompressionAvailable(), new ZstdCompressor(), new ZstdDecompressor());
 
     @Getter
     private final String label;
@@ -27,4 +33,21 @@ public enum CompressionAlgorithm {
 
     @Getter
     private final Decompressor decompressor;
+
+    /**
+     * @return the algorithm used to compress TAR archives of the given type, or null if they're not compressed
+     * or it's not a TAR archive
+     */
+    @Nullable
+    public static CompressionAlgorithm forArchiveType(@Nonnull ArchiveType archiveType) {
+        return switch (archiveType) {
+            case TAR_BZ2 -> BZIP2;
+            case TAR_GZ -> GZIP;
+            case TAR_LZ4 -> LZ4;
+            case TAR_LZMA -> LZMA;
+            case TAR_XZ -> XZ;
+            case TAR_ZST -> ZSTD;
+            default -> null;
+        };
+    }
 }
@@ -0,0 +1,30 @@
+package io.github.datromtool.io.compression;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.compressors.xz.XZCompressorInputStream;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Opens gzip and XZ data made of several concatenated streams, and not only the first one.
+ * <p>
+ * Parallel compressors, including {@link ParallelXZOutputStream}, pigz and xz -T, compress each block as a
+ * complete stream and concatenate them, so every reader of these formats must expect more than one.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class ConcatenatedStreams {
+
+    @Nonnull
+    public static GzipCompressorInputStream gzip(@Nonnull InputStream compressedInputStream) throws IOException {
+        return new GzipCompressorInputStream(compressedInputStream, true);
+    }
+
+    @Nonnull
+    public static XZCompressorInputStream xz(@Nonnull InputStream compressedInputStream) throws IOException {
+        return new XZCompressorInputStream(compressedInputStream, true);
+    }
+}
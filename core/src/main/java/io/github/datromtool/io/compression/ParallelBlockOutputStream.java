@@ -0,0 +1,150 @@
+package io.github.datromtool.io.compression;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Splits its input into fixed-size blocks, which are compressed concurrently and written in order to the
+ * underlying stream. At most twice as many blocks as threads are kept in memory at any time.
+ * <p>
+ * Blocks are compressed by the given executor, which is not owned by the stream, so it can be shared by all the
+ * streams being written at once and the amount of threads compressing stays bounded.
+ */
+abstract class ParallelBlockOutputStream extends OutputStream {
+
+    private final OutputStream out;
+    private final int blockSize;
+    private final ExecutorService executorService;
+    private final int maxPendingBlocks;
+    private final Deque<Future<byte[]>> pendingBlocks = new ArrayDeque<>();
+
+    private byte[] block;
+    private int blockLength;
+    private byte[] previousBlock;
+    private long bytesRead;
+    private long bytesWritten;
+    private boolean finished;
+
+    ParallelBlockOutputStream(
+            @Nonnull OutputStream out,
+            int blockSize,
+            int threads,
+            @Nonnull ExecutorService executorService) {
+        this.out = out;
+        this.blockSize = blockSize;
+        this.block = new byte[blockSize];
+        this.executorService = executorService;
+        this.maxPendingBlocks = threads * 2;
+    }
+
+    /**
+     * Compresses a block of the input.
+     *
+     * @param input         the block, which is only completely filled if it's not the last one
+     * @param length        the amount of bytes in the block
+     * @param previousBlock the previous block, which is always completely filled, or null if this is the first one
+     * @param last          whether this is the last block of the input
+     * @return the compressed data, which is written as-is to the underlying stream
+     */
+    abstract byte[] compressBlock(byte[] input, int length, @Nullable byte[] previousBlock, boolean last)
+            throws IOException;
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(@Nonnull byte[] b, int off, int len) throws IOException {
+        if (finished) {
+            throw new IOException("Stream has already been finished");
+        }
+        bytesRead += len;
+        while (len > 0) {
+            int length = Math.min(len, blockSize - blockLength);
+            System.arraycopy(b, off, block, blockLength, length);
+            blockLength += length;
+            off += length;
+            len -= length;
+            if (blockLength == blockSize) {
+                submitBlock(false);
+            }
+        }
+    }
+
+    /**
+     * Compresses the remaining data and writes it, without closing the underlying stream.
+     */
+    public void finish() throws IOException {
+        if (!finished) {
+            finished = true;
+            submitBlock(true);
+            while (!pendingBlocks.isEmpty()) {
+                writeBlock(pendingBlocks.removeFirst());
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            // Blocks are only left if compressing failed, and they must not keep running on the shared executor
+            for (Future<byte[]> pendingBlock : pendingBlocks) {
+                pendingBlock.cancel(false);
+            }
+            pendingBlocks.clear();
+            out.close();
+        }
+    }
+
+    /**
+     * @return the amount of uncompressed bytes written so far
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return the amount of compressed bytes written to the underlying stream so far
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    private void submitBlock(boolean last) throws IOException {
+        if (pendingBlocks.size() >= maxPendingBlocks) {
+            writeBlock(pendingBlocks.removeFirst());
+        }
+        byte[] input = block;
+        int inputLength = blockLength;
+        byte[] dictionary = previousBlock;
+        pendingBlocks.addLast(executorService.submit(() -> compressBlock(input, inputLength, dictionary, last)));
+        previousBlock = input;
+        block = last ? null : new byte[blockSize];
+        blockLength = 0;
+    }
+
+    private void writeBlock(Future<byte[]> future) throws IOException {
+        byte[] compressed;
+        try {
+            compressed = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing data");
+        } catch (ExecutionException e) {
+            throw new IOException("Could not compress data", e.getCause());
+        }
+        out.write(compressed);
+        bytesWritten += compressed.length;
+    }
+}
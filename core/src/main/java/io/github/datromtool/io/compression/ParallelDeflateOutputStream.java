@@ -0,0 +1,91 @@
+package io.github.datromtool.io.compression;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a raw deflate stream (no zlib or gzip wrapper), compressing blocks of the input concurrently the same
+ * way pigz does.
+ * <p>
+ * The input is split into blocks of {@link #BLOCK_SIZE} bytes, which are deflated independently, using the last
+ * 32KB of the previous block as a preset dictionary so the compression ratio stays close to a single-threaded
+ * deflate. Each block ends with a sync flush, so the blocks can simply be concatenated, and the last one finishes
+ * the stream.
+ * <p>
+ * The CRC32 of the uncompressed data is calculated while writing, so it can be used for ZIP entries.
+ */
+public final class ParallelDeflateOutputStream extends ParallelBlockOutputStream {
+
+    public static final int BLOCK_SIZE = 128 * 1024; // 128KB
+
+    /**
+     * Minimum size of the input for deflating its blocks in parallel, or deflating it on its own thread alongside
+     * other entries of the same ZIP file, to pay for the threads and temporary files used.
+     */
+    public static final long MIN_PARALLEL_SIZE = 8L * BLOCK_SIZE;
+
+    private static final int DICTIONARY_SIZE = 32 * 1024; // 32KB
+
+    private final int level;
+    private final CRC32 crc32 = new CRC32();
+
+    /**
+     * @param threads         the amount of blocks deflated at once
+     * @param executorService the executor which deflates the blocks, which is not shut down by this stream
+     */
+    public ParallelDeflateOutputStream(
+            @Nonnull OutputStream out,
+            int level,
+            int threads,
+            @Nonnull ExecutorService executorService) {
+        super(out, BLOCK_SIZE, threads, executorService);
+        this.level = level;
+    }
+
+    @Override
+    public void write(@Nonnull byte[] b, int off, int len) throws IOException {
+        super.write(b, off, len);
+        crc32.update(b, off, len);
+    }
+
+    /**
+     * @return the CRC32 of the uncompressed data written so far
+     */
+    public long getCrc() {
+        return crc32.getValue();
+    }
+
+    @Override
+    byte[] compressBlock(byte[] input, int length, @Nullable byte[] previousBlock, boolean last) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (previousBlock != null) {
+                deflater.setDictionary(previousBlock, BLOCK_SIZE - DICTIONARY_SIZE, DICTIONARY_SIZE);
+            }
+            deflater.setInput(input, 0, length);
+            ByteArrayOutputStream output = new ByteArrayOutputStream(length / 2 + 64);
+            byte[] buffer = new byte[Math.max(length, 1024)];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    output.write(buffer, 0, deflater.deflate(buffer));
+                }
+            } else {
+                int bytesDeflated;
+                do {
+                    bytesDeflated = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                    output.write(buffer, 0, bytesDeflated);
+                } while (bytesDeflated == buffer.length);
+            }
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+}
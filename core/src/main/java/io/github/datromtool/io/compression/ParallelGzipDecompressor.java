@@ -0,0 +1,26 @@
+package io.github.datromtool.io.compression;
+
+import lombok.RequiredArgsConstructor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Same as {@link CompressionAlgorithm#GZIP}'s decompressor, but inflating the members of block-based gzip files,
+ * such as those written by bgzip, with the given amount of threads of an executor, which can be shared by
+ * everything compressed or decompressed at once.
+ *
+ * @see ParallelGzipInputStream
+ */
+@RequiredArgsConstructor
+public final class ParallelGzipDecompressor implements Decompressor {
+
+    private final int threads;
+    private final ExecutorService executorService;
+
+    @Override
+    public InputStream decompress(InputStream compressedInputStream) throws IOException {
+        return ParallelGzipInputStream.decompress(compressedInputStream, threads, executorService);
+    }
+}
@@ -0,0 +1,265 @@
+package io.github.datromtool.io.compression;
+
+import org.apache.commons.compress.utils.IOUtils;
+
+import javax.annotation.Nonnull;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Decompresses gzip files made of independent members which carry their own compressed size, as written by
+ * bgzip (BGZF) and other block-based compressors, inflating many members concurrently.
+ * <p>
+ * The size of each member is read from the "BC" subfield of its header, so members can be handed to other
+ * threads without inflating the ones before them. As soon as a member without it is found, the rest of the
+ * file is decompressed sequentially, as a regular gzip file with any number of members. At most twice as many
+ * members as threads are kept in memory at any time.
+ * <p>
+ * Members are inflated by the given executor, which is not owned by the stream, so it can be shared by all the
+ * streams being read at once. The members still pending when the stream is closed are cancelled.
+ */
+final class ParallelGzipInputStream extends InputStream {
+
+    private static final int ID1 = 0x1f;
+    private static final int ID2 = 0x8b;
+    private static final int DEFLATE = 8;
+    private static final int FEXTRA = 4;
+    /**
+     * Fixed part of the header, up to and including XLEN
+     */
+    private static final int HEADER_SIZE = 12;
+    /**
+     * CRC32 and ISIZE
+     */
+    private static final int TRAILER_SIZE = 8;
+    private static final int MAX_DEFLATE_RATIO = 1032;
+
+    private final InputStream in;
+    private final ExecutorService executorService;
+    private final int maxPendingMembers;
+    private final Deque<Future<byte[]>> pendingMembers = new ArrayDeque<>();
+    private InputStream sequential;
+    private boolean endOfInput;
+    private byte[] current = new byte[0];
+    private int currentPosition;
+    private boolean closed;
+
+    private ParallelGzipInputStream(InputStream in, int threads, ExecutorService executorService) {
+        this.in = in;
+        this.executorService = executorService;
+        this.maxPendingMembers = threads * 2;
+    }
+
+    /**
+     * Decompresses a gzip file, inflating the given amount of members at once with the executor if its members
+     * carry their own compressed size.
+     */
+    @Nonnull
+    static InputStream decompress(
+            @Nonnull InputStream compressedInputStream,
+            int threads,
+            @Nonnull ExecutorService executorService) throws IOException {
+        InputStream in = compressedInputStream.markSupported()
+                ? compressedInputStream
+                : new BufferedInputStream(compressedInputStream);
+        in.mark(HEADER_SIZE);
+        byte[] header = new byte[HEADER_SIZE];
+        int read = IOUtils.readFully(in, header);
+        in.reset();
+        if (read < HEADER_SIZE || threads < 2 || !hasExtraField(header)) {
+            return ConcatenatedStreams.gzip(in);
+        }
+        return new ParallelGzipInputStream(in, threads, executorService);
+    }
+
+    private static boolean hasExtraField(byte[] header) {
+        return (header[0] & 0xff) == ID1
+                && (header[1] & 0xff) == ID2
+                && header[2] == DEFLATE
+                && header[3] == FEXTRA;
+    }
+
+    private static int readUnsignedShort(byte[] b, int offset) {
+        return (b[offset] & 0xff) | ((b[offset + 1] & 0xff) << 8);
+    }
+
+    private static long readUnsignedInt(byte[] b, int offset) {
+        return readUnsignedShort(b, offset) | ((long) readUnsignedShort(b, offset + 2) << 16);
+    }
+
+    /**
+     * Reads the next member and submits it to be inflated, or switches to sequential decompression if it
+     * doesn't carry its compressed size.
+     */
+    private void submitNextMember() throws IOException {
+        byte[] header = new byte[HEADER_SIZE];
+        int read = IOUtils.readFully(in, header);
+        if (read == 0) {
+            endOfInput = true;
+            return;
+        }
+        if (read < HEADER_SIZE || !hasExtraField(header)) {
+            switchToSequential(header, read, null);
+            return;
+        }
+        byte[] extra = new byte[readUnsignedShort(header, 10)];
+        if (IOUtils.readFully(in, extra) < extra.length) {
+            throw new IOException("Truncated gzip header");
+        }
+        int memberSize = -1;
+        for (int i = 0; i + 4 <= extra.length; ) {
+            int subfieldLength = readUnsignedShort(extra, i + 2);
+            if (extra[i] == 'B' && extra[i + 1] == 'C' && subfieldLength == 2 && i + 6 <= extra.length) {
+                memberSize = readUnsignedShort(extra, i + 4) + 1;
+            }
+            i += 4 + subfieldLength;
+        }
+        int dataSize = memberSize - HEADER_SIZE - extra.length - TRAILER_SIZE;
+        if (memberSize < 0 || dataSize < 0) {
+            switchToSequential(header, read, extra);
+            return;
+        }
+        byte[] data = new byte[dataSize + TRAILER_SIZE];
+        if (IOUtils.readFully(in, data) < data.length) {
+            throw new IOException("Truncated gzip member");
+        }
+        pendingMembers.addLast(executorService.submit(() -> inflate(data, dataSize)));
+    }
+
+    private void switchToSequential(byte[] header, int headerLength, byte[] extra) throws IOException {
+        InputStream consumed = new ByteArrayInputStream(header, 0, headerLength);
+        if (extra != null) {
+            consumed = new SequenceInputStream(consumed, new ByteArrayInputStream(extra));
+        }
+        sequential = ConcatenatedStreams.gzip(new SequenceInputStream(consumed, in));
+        endOfInput = true;
+    }
+
+    private static byte[] inflate(byte[] data, int dataSize) throws IOException {
+        long crc = readUnsignedInt(data, dataSize);
+        long size = readUnsignedInt(data, dataSize + 4);
+        if (size > (long) dataSize * MAX_DEFLATE_RATIO || size > Integer.MAX_VALUE - 8) {
+            throw new IOException("Gzip member is larger than its compressed data allows");
+        }
+        // One extra byte, so data beyond the expected size is noticed
+        byte[] output = new byte[(int) size + 1];
+        int inflated = 0;
+        Inflater inflater = new Inflater(true);
+        try {
+            // The trailer is given too, as raw inflating may need a byte past the end of the compressed data
+            inflater.setInput(data, 0, data.length);
+            while (!inflater.finished()) {
+                int n = inflater.inflate(output, inflated, output.length - inflated);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated gzip member");
+                }
+                inflated += n;
+                if (inflated > size) {
+                    throw new IOException("Gzip member is larger than expected");
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt gzip member", e);
+        } finally {
+            inflater.end();
+        }
+        if (inflated != size) {
+            throw new IOException("Gzip member is smaller than expected");
+        }
+        CRC32 crc32 = new CRC32();
+        crc32.update(output, 0, inflated);
+        if (crc32.getValue() != crc) {
+            throw new IOException("Gzip member CRC32 mismatch");
+        }
+        return Arrays.copyOf(output, inflated);
+    }
+
+    /**
+     * @return whether there's anything left to read from the members inflated in parallel
+     */
+    private boolean fill() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        while (currentPosition >= current.length) {
+            while (!endOfInput && pendingMembers.size() < maxPendingMembers) {
+                submitNextMember();
+            }
+            Future<byte[]> next = pendingMembers.pollFirst();
+            if (next == null) {
+                return false;
+            }
+            current = await(next);
+            currentPosition = 0;
+        }
+        return true;
+    }
+
+    private static byte[] await(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while decompressing data");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Could not decompress data", e.getCause());
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (fill()) {
+            return current[currentPosition++] & 0xff;
+        }
+        return sequential != null ? sequential.read() : -1;
+    }
+
+    @Override
+    public int read(@Nonnull byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len == 0) {
+            return 0;
+        }
+        if (fill()) {
+            int read = Math.min(len, current.length - currentPosition);
+            System.arraycopy(current, currentPosition, b, off, read);
+            currentPosition += read;
+            return read;
+        }
+        return sequential != null ? sequential.read(b, off, len) : -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Future<byte[]> pendingMember : pendingMembers) {
+            pendingMember.cancel(false);
+        }
+        pendingMembers.clear();
+        if (sequential != null) {
+            sequential.close();
+        } else {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package io.github.datromtool.io.compression;
+
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.compress.compressors.xz.XZUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Same as {@link CompressionAlgorithm#XZ}'s compressor, but compressing blocks of the given size in parallel, with
+ * the given executor, which can be shared by everything compressed or decompressed at once.
+ *
+ * @see ParallelXZOutputStream
+ */
+@RequiredArgsConstructor
+public final class ParallelXZCompressor implements Compressor {
+
+    private static final int DEFAULT_PRESET = 6;
+
+    private final int blockSize;
+    private final int threads;
+    private final ExecutorService executorService;
+
+    @Override
+    public OutputStream compress(OutputStream backingOutputStream) throws IOException {
+        if (XZUtils.isXZCompressionAvailable()) {
+            return new ParallelXZOutputStream(
+                    backingOutputStream,
+                    DEFAULT_PRESET,
+                    blockSize,
+                    threads,
+                    executorService);
+        }
+        throw new UnsupportedCompressionAlgorithm(CompressionAlgorithm.XZ);
+    }
+}
@@ -0,0 +1,45 @@
+package io.github.datromtool.io.compression;
+
+import org.apache.commons.compress.compressors.xz.XZCompressorOutputStream;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Writes XZ data, compressing blocks of the input concurrently.
+ * <p>
+ * Each block is compressed as a complete XZ stream and the streams are concatenated, which the XZ format allows
+ * and which is what other multithreaded XZ compressors also do. Readers must support concatenated streams.
+ */
+public final class ParallelXZOutputStream extends ParallelBlockOutputStream {
+
+    private final int preset;
+
+    /**
+     * @param threads         the amount of blocks compressed at once
+     * @param executorService the executor which compresses the blocks, which is not shut down by this stream
+     */
+    public ParallelXZOutputStream(
+            @Nonnull OutputStream out,
+            int preset,
+            int blockSize,
+            int threads,
+            @Nonnull ExecutorService executorService) {
+        super(out, blockSize, threads, executorService);
+        this.preset = preset;
+    }
+
+    @Override
+    byte[] compressBlock(byte[] input, int length, @Nullable byte[] previousBlock, boolean last) throws IOException {
+        // Data rarely compresses to less than this, and it avoids resizing the buffer most of the time
+        ByteArrayOutputStream output = new ByteArrayOutputStream(length / 4 + 64);
+        try (XZCompressorOutputStream xzOutputStream = new XZCompressorOutputStream(output, preset)) {
+            xzOutputStream.write(input, 0, length);
+        }
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,168 @@
+package io.github.datromtool.io.compression;
+
+import org.tukaani.xz.SeekableInputStream;
+import org.tukaani.xz.SeekableXZInputStream;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * A read-only {@link SeekableByteChannel} over the decompressed contents of an XZ file.
+ * <p>
+ * XZ files list the compressed and uncompressed sizes of their blocks in an index at the end, so seeking only
+ * decompresses the block the new position is in, from its start. This makes it possible to read a few entries
+ * of a large TAR archive without decompressing all of it, as long as it was compressed in several blocks, as
+ * multithreaded XZ compressors do.
+ */
+public final class SeekableXZChannel implements SeekableByteChannel {
+
+    private final SeekableXZInputStream xzInputStream;
+    private boolean closed;
+
+    private SeekableXZChannel(SeekableXZInputStream xzInputStream) {
+        this.xzInputStream = xzInputStream;
+    }
+
+    /**
+     * Opens the XZ file if it has more than one block. The channel given is closed with the one returned.
+     *
+     * @return the channel, or null if the file has a single block, in which case seeking would mean decompressing
+     * it from the start every time, and the compressed channel is left open
+     */
+    @Nullable
+    public static SeekableXZChannel openIfSeekable(@Nonnull SeekableByteChannel compressedChannel) throws IOException {
+        SeekableXZInputStream xzInputStream = new SeekableXZInputStream(new ChannelInputStream(compressedChannel));
+        if (xzInputStream.getBlockCount() < 2) {
+            // Closing it would close the compressed channel
+            return null;
+        }
+        return new SeekableXZChannel(xzInputStream);
+    }
+
+    /**
+     * @return the number of blocks in all streams of the file
+     */
+    public int getBlockCount() {
+        return xzInputStream.getBlockCount();
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        ensureOpen();
+        if (!dst.hasRemaining()) {
+            return 0;
+        }
+        int read;
+        if (dst.hasArray()) {
+            read = xzInputStream.read(dst.array(), dst.arrayOffset() + dst.position(), dst.remaining());
+            if (read > 0) {
+                dst.position(dst.position() + read);
+            }
+        } else {
+            byte[] buffer = new byte[Math.min(dst.remaining(), 8192)];
+            read = xzInputStream.read(buffer, 0, buffer.length);
+            if (read > 0) {
+                dst.put(buffer, 0, read);
+            }
+        }
+        return read;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position() throws IOException {
+        ensureOpen();
+        return xzInputStream.position();
+    }
+
+    @Override
+    public SeekableXZChannel position(long newPosition) throws IOException {
+        ensureOpen();
+        // Seeking beyond the end is allowed, and reading from there returns -1
+        xzInputStream.seek(newPosition);
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        ensureOpen();
+        return xzInputStream.length();
+    }
+
+    @Override
+    public SeekableXZChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            xzInputStream.close();
+        }
+    }
+
+    private static final class ChannelInputStream extends SeekableInputStream {
+
+        private final SeekableByteChannel channel;
+
+        private ChannelInputStream(SeekableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int read;
+            do {
+                read = read(b, 0, 1);
+            } while (read == 0);
+            return read < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return channel.read(ByteBuffer.wrap(b, off, len));
+        }
+
+        @Override
+        public long length() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public long position() throws IOException {
+            return channel.position();
+        }
+
+        @Override
+        public void seek(long pos) throws IOException {
+            channel.position(pos);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
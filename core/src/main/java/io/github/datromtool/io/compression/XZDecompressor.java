@@ -1,6 +1,5 @@
 package io.github.datromtool.io.compression;
 
-import org.apache.commons.compress.compressors.xz.XZCompressorInputStream;
 import org.apache.commons.compress.compressors.xz.XZUtils;
 
 import java.io.IOException;
@@ -10,7 +9,7 @@ final class XZDecompressor implements Decompressor {
     @Override
     public InputStream decompress(InputStream compressedInputStream) throws IOException {
         if (XZUtils.isXZCompressionAvailable()) {
-            return new XZCompressorInputStream(compressedInputStream);
+            return ConcatenatedStreams.xz(compressedInputStream);
         }
         throw new UnsupportedCompressionAlgorithm(CompressionAlgorithm.XZ);
     }
@@ -0,0 +1,47 @@
+package io.github.datromtool.io.compression;
+
+import com.github.luben.zstd.ZstdOutputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Compresses Zstandard data at the given level, with checksums.
+ * <p>
+ * With more than one worker, the input is split in jobs compressed by the native threads of the zstd library,
+ * and the output is still a single frame, readable by any decoder.
+ */
+public final class ZstdCompressor implements Compressor {
+
+    public static final int DEFAULT_LEVEL = 3;
+
+    private final int level;
+    private final int workers;
+
+    ZstdCompressor() {
+        this(DEFAULT_LEVEL, 0);
+    }
+
+    /**
+     * @param level   the compression level, from 1 to 22
+     * @param workers the number of threads compressing in the background, or zero to compress in the calling thread
+     */
+    public ZstdCompressor(int level, int workers) {
+        this.level = level;
+        this.workers = workers;
+    }
+
+    @Override
+    public OutputStream compress(OutputStream backingOutputStream) throws IOException {
+        if (ZstdUtils.isZstdCompressionAvailable()) {
+            ZstdOutputStream zstdOutputStream = new ZstdOutputStream(backingOutputStream, level);
+            zstdOutputStream.setChecksum(true);
+            if (workers > 0) {
+                zstdOutputStream.setWorkers(workers);
+            }
+            return zstdOutputStream;
+        }
+        throw new UnsupportedCompressionAlgorithm(CompressionAlgorithm.ZSTD);
+    }
+}
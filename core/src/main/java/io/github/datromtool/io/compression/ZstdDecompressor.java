@@ -0,0 +1,17 @@
+package io.github.datromtool.io.compression;
+
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorInputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+final class ZstdDecompressor implements Decompressor {
+    @Override
+    public InputStream decompress(InputStream compressedInputStream) throws IOException {
+        if (ZstdUtils.isZstdCompressionAvailable()) {
+            return new ZstdCompressorInputStream(compressedInputStream);
+        }
+        throw new UnsupportedCompressionAlgorithm(CompressionAlgorithm.ZSTD);
+    }
+}
@@ -0,0 +1,146 @@
+package io.github.datromtool.io.copy;
+
+import com.google.common.collect.ImmutableList;
+import io.github.datromtool.io.copy.archive.ArchiveDestinationInternalSpec;
+import io.github.datromtool.io.copy.archive.ArchiveDestinationSpec;
+import io.github.datromtool.io.copy.archive.ArchiveSourceInternalSpec;
+import io.github.datromtool.io.copy.archive.ArchiveSourceSpec;
+import io.github.datromtool.io.copy.archive.RawStreamTransferStrategy;
+import io.github.datromtool.io.copy.impl.ChannelTransferStrategy;
+import io.github.datromtool.io.copy.impl.FileDestinationSpec;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.function.LongConsumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Copies any {@link SourceSpec} to a file, to a stream or to an entry of any {@link ArchiveDestinationSpec}.
+ * <p>
+ * The {@link TransferStrategy strategies} are tried in order, and the first one which applies does the transfer,
+ * such as passing the compressed data of an archive entry through as is or letting the OS transfer a file to another.
+ * If none of them applies, the source is decoded and encoded again through its streams.
+ */
+@Slf4j
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class TransferEngine {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    @NonNull
+    private final ImmutableList<TransferStrategy> strategies;
+    private final int bufferSize;
+
+    @Nonnull
+    public static TransferEngine withDefaultStrategies() {
+        return withDefaultStrategies(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param bufferSize the size of the buffer used when the source needs to be decoded and encoded again
+     */
+    @Nonnull
+    public static TransferEngine withDefaultStrategies(int bufferSize) {
+        return withStrategies(
+                ImmutableList.of(new RawStreamTransferStrategy(), new ChannelTransferStrategy()),
+                bufferSize);
+    }
+
+    @Nonnull
+    public static TransferEngine withStrategies(@Nonnull Iterable<? extends TransferStrategy> strategies, int bufferSize) {
+        return new TransferEngine(ImmutableList.copyOf(strategies), Math.max(1, bufferSize));
+    }
+
+    /**
+     * Transfers the source to a file, including its timestamps.
+     *
+     * @param progress receives the amount of bytes transferred since it was last called
+     */
+    public void transfer(
+            @Nonnull SourceSpec source,
+            @Nonnull Path destination,
+            @Nonnull LongConsumer progress) throws IOException {
+        for (TransferStrategy strategy : strategies) {
+            if (strategy.transfer(source, destination, progress)) {
+                log.debug("Transferred '{}' to '{}' using {}", source.getName(), destination, strategy);
+                return;
+            }
+        }
+        try (DestinationSpec destinationSpec = FileDestinationSpec.of(destination, source)) {
+            copy(source, destinationSpec.getOutputStream(), progress);
+        }
+    }
+
+    /**
+     * Transfers the source to a stream opened by the caller, such as one which also keeps track of what's written
+     * to it. None of the strategies apply, so the source is always decoded, and the stream is left open.
+     *
+     * @param progress receives the amount of bytes transferred since it was last called
+     */
+    public void transfer(
+            @Nonnull SourceSpec source,
+            @Nonnull OutputStream destination,
+            @Nonnull LongConsumer progress) throws IOException {
+        copy(source, destination, progress);
+    }
+
+    /**
+     * Transfers the source to a new entry of an archive.
+     *
+     * @param progress receives the amount of bytes transferred since it was last called
+     */
+    public void transfer(
+            @Nonnull SourceSpec source,
+            @Nonnull ArchiveDestinationSpec destination,
+            @Nonnull String name,
+            @Nonnull LongConsumer progress) throws IOException {
+        for (TransferStrategy strategy : strategies) {
+            if (strategy.transfer(source, destination, name, progress)) {
+                log.debug("Transferred '{}' to '{}' in '{}' using {}", source.getName(), name, destination, strategy);
+                return;
+            }
+        }
+        try (ArchiveDestinationInternalSpec destinationSpec = destination.createInternalDestinationSpecFor(name, source)) {
+            copy(source, destinationSpec.getOutputStream(), progress);
+        }
+    }
+
+    /**
+     * Transfers the entries of an archive to another archive.
+     *
+     * @param nameMapper maps the name of each entry to its name in the destination, or to null to skip it
+     * @param progress   receives the amount of bytes transferred since it was last called
+     */
+    public void transferAll(
+            @Nonnull ArchiveSourceSpec source,
+            @Nonnull ArchiveDestinationSpec destination,
+            @Nonnull UnaryOperator<String> nameMapper,
+            @Nonnull LongConsumer progress) throws IOException {
+        ArchiveSourceInternalSpec internalSpec;
+        while ((internalSpec = source.getNextInternalSpec()) != null) {
+            try (ArchiveSourceInternalSpec currentSpec = internalSpec) {
+                String name = nameMapper.apply(currentSpec.getName());
+                if (name != null) {
+                    transfer(currentSpec, destination, name, progress);
+                }
+            }
+        }
+    }
+
+    private void copy(SourceSpec source, OutputStream outputStream, LongConsumer progress) throws IOException {
+        InputStream inputStream = source.getInputStream();
+        byte[] buffer = new byte[(int) Math.min(bufferSize, Math.max(1, source.getSize()))];
+        int bytesRead;
+        while ((bytesRead = inputStream.read(buffer)) > 0) {
+            outputStream.write(buffer, 0, bytesRead);
+            progress.accept(bytesRead);
+        }
+    }
+}
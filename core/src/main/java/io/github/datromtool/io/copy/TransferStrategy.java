@@ -0,0 +1,45 @@
+package io.github.datromtool.io.copy;
+
+import io.github.datromtool.io.copy.archive.ArchiveDestinationSpec;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.LongConsumer;
+
+/**
+ * A faster way of transferring some kinds of {@link SourceSpec} to some kinds of destination than decoding the
+ * source and encoding it again, used by {@link TransferEngine}.
+ * <p>
+ * Each method returns {@code false}, without consuming the source, if the strategy doesn't apply, so the next
+ * one can be tried.
+ */
+public interface TransferStrategy {
+
+    /**
+     * Transfers the source to a file, including its timestamps.
+     *
+     * @param progress receives the amount of bytes transferred since it was last called
+     * @return whether the source was transferred
+     */
+    default boolean transfer(
+            @Nonnull SourceSpec source,
+            @Nonnull Path destination,
+            @Nonnull LongConsumer progress) throws IOException {
+        return false;
+    }
+
+    /**
+     * Transfers the source to a new entry of an archive.
+     *
+     * @param progress receives the amount of bytes transferred since it was last called
+     * @return whether the source was transferred
+     */
+    default boolean transfer(
+            @Nonnull SourceSpec source,
+            @Nonnull ArchiveDestinationSpec destination,
+            @Nonnull String name,
+            @Nonnull LongConsumer progress) throws IOException {
+        return false;
+    }
+}
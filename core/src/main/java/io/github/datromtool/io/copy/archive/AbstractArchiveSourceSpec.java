@@ -2,6 +2,7 @@ package io.github.datromtool.io.copy.archive;
 
 import com.google.common.collect.ImmutableSet;
 import io.github.datromtool.io.copy.archive.exceptions.ArchiveEntryNotFoundException;
+import lombok.AccessLevel;
 import lombok.Getter;
 
 import javax.annotation.Nonnull;
@@ -17,6 +18,7 @@ public abstract class AbstractArchiveSourceSpec implements ArchiveSourceSpec {
 
     @Getter
     private final Path path;
+    @Getter(AccessLevel.PROTECTED)
     private final ImmutableSet<String> names;
 
     // Stateful part
@@ -38,6 +40,34 @@ public abstract class AbstractArchiveSourceSpec implements ArchiveSourceSpec {
 
     protected abstract void closeArchive() throws IOException;
 
+    /**
+     * Finds an entry by its name. Archives with an index of their entries should override this and report
+     * {@link #isRandomAccess()}, as by default the entries are read sequentially from the current one.
+     *
+     * @return the entry, or null if there's no file with this name after the entries already read
+     */
+    @Nullable
+    protected ArchiveSourceInternalSpec getEntry(@Nonnull String name) throws IOException {
+        ArchiveSourceInternalSpec entry;
+        while ((entry = getNextEntry()) != null) {
+            if (name.equals(entry.getName())) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    @Nonnull
+    @Override
+    public final ArchiveSourceInternalSpec getInternalSpec(@Nonnull String name) throws IOException {
+        initArchive();
+        ArchiveSourceInternalSpec entry = getEntry(name);
+        if (entry == null) {
+            throw new ArchiveEntryNotFoundException(path, name);
+        }
+        return entry;
+    }
+
     @Nullable
     @Override
     public final ArchiveSourceInternalSpec getNextInternalSpec() throws IOException {
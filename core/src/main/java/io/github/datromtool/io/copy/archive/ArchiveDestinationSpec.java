@@ -3,10 +3,25 @@ package io.github.datromtool.io.copy.archive;
 import io.github.datromtool.io.Addressable;
 import io.github.datromtool.io.copy.SourceSpec;
 
+import javax.annotation.Nonnull;
 import java.io.Closeable;
 import java.io.IOException;
 
 public interface ArchiveDestinationSpec extends Addressable, Closeable {
 
     ArchiveDestinationInternalSpec createInternalDestinationSpecFor(String name, SourceSpec sourceSpec) throws IOException;
+
+    /**
+     * Adds an entry whose data is already compressed, as read from another archive.
+     *
+     * @param sourceSpec the entry being copied, for its attributes
+     * @return whether the entry was added, or false, without writing anything, if this archive can't store data
+     * compressed with the given method as is
+     */
+    default boolean addRawEntry(
+            @Nonnull String name,
+            @Nonnull SourceSpec sourceSpec,
+            @Nonnull RawStream rawStream) throws IOException {
+        return false;
+    }
 }
@@ -1,19 +1,70 @@
 package io.github.datromtool.io.copy.archive;
 
+import com.google.common.collect.ImmutableMap;
 import io.github.datromtool.io.ArchiveType;
+import io.github.datromtool.io.compression.CompressionAlgorithm;
+import io.github.datromtool.io.compression.Compressor;
+import io.github.datromtool.io.copy.archive.impl.SevenZipArchiveDestinationSpec;
+import io.github.datromtool.io.copy.archive.impl.TarArchiveDestinationSpec;
+import io.github.datromtool.io.copy.archive.impl.ZipArchiveDestinationSpec;
 import lombok.RequiredArgsConstructor;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
 
+/**
+ * Builds the {@link ArchiveDestinationSpec} which writes an archive of the given {@link ArchiveType}.
+ */
 @RequiredArgsConstructor
 public final class ArchiveDestinationSpecFactory {
 
-    private final boolean forceSevenZip;
-    private final boolean forceUnrar;
+    /**
+     * Whether the entries of ZIP archives should be compressed independently, so they can be written in parallel
+     */
+    private final boolean parallelZip;
+    /**
+     * The amount of threads used to compress the blocks of each entry of ZIP archives
+     */
+    private final int deflateThreads;
+    /**
+     * The executor which compresses blocks in parallel, shared by all the archives written at the same time, if any
+     */
+    @Nullable
+    private final ExecutorService executorService;
+    /**
+     * The compressors used for TAR archives instead of the default ones of their algorithms, such as ones
+     * using more threads
+     */
+    @Nonnull
+    private final ImmutableMap<CompressionAlgorithm, Compressor> compressors;
+
+    public ArchiveDestinationSpecFactory() {
+        this(false, 1);
+    }
 
+    public ArchiveDestinationSpecFactory(boolean parallelZip, int deflateThreads) {
+        this(parallelZip, deflateThreads, null, ImmutableMap.of());
+    }
+
+    /**
+     * @throws UnsupportedOperationException if archives of the given type can't be written
+     */
     @Nonnull
-    public ArchiveDestinationSpec buildSourceSpec(@Nonnull Path path, @Nonnull ArchiveType archiveType) {
-        return null;
+    public ArchiveDestinationSpec buildDestinationSpec(@Nonnull Path path, @Nonnull ArchiveType archiveType) {
+        return switch (archiveType) {
+            case ZIP -> new ZipArchiveDestinationSpec(path, parallelZip, deflateThreads, executorService);
+            case SEVEN_ZIP -> new SevenZipArchiveDestinationSpec(path);
+            case RAR -> throw new UnsupportedOperationException("RAR compression is not supported");
+            case TAR, TAR_BZ2, TAR_GZ, TAR_LZ4, TAR_LZMA, TAR_XZ, TAR_ZST ->
+                    new TarArchiveDestinationSpec(getCompressor(archiveType), path);
+        };
+    }
+
+    @Nullable
+    private Compressor getCompressor(ArchiveType archiveType) {
+        CompressionAlgorithm algorithm = CompressionAlgorithm.forArchiveType(archiveType);
+        return algorithm != null ? compressors.getOrDefault(algorithm, algorithm.getCompressor()) : null;
     }
 }
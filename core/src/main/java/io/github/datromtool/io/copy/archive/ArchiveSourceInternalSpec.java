@@ -3,5 +3,20 @@ package io.github.datromtool.io.copy.archive;
 import io.github.datromtool.io.AddressableChild;
 import io.github.datromtool.io.copy.SourceSpec;
 
+import javax.annotation.Nullable;
+import java.io.IOException;
+
 public interface ArchiveSourceInternalSpec extends AddressableChild, SourceSpec {
+
+    /**
+     * Opens the data of this entry as stored in the archive, without decompressing it. It's independent of
+     * {@link #getInputStream()} and must be closed by the caller.
+     *
+     * @return the compressed data, or null if the archive doesn't store entries in a way they can be read
+     * separately
+     */
+    @Nullable
+    default RawStream getRawStream() throws IOException {
+        return null;
+    }
 }
@@ -1,7 +1,9 @@
 package io.github.datromtool.io.copy.archive;
 
 import io.github.datromtool.io.Addressable;
+import io.github.datromtool.io.copy.archive.exceptions.ArchiveEntryNotFoundException;
 
+import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.Closeable;
 import java.io.IOException;
@@ -10,4 +12,31 @@ public interface ArchiveSourceSpec extends Addressable, Closeable {
 
     @Nullable
     ArchiveSourceInternalSpec getNextInternalSpec() throws IOException;
+
+    /**
+     * @return whether {@link #getInternalSpec(String)} finds entries without reading the ones before them, which
+     * is the case for archives with an index of their entries
+     */
+    default boolean isRandomAccess() {
+        return false;
+    }
+
+    /**
+     * Finds an entry by its name. Unless {@link #isRandomAccess()}, the entries are read sequentially from the
+     * current one, so only entries after the ones already read can be found, and names should be looked up in the
+     * order they are stored. It shouldn't be mixed with {@link #getNextInternalSpec()}.
+     *
+     * @throws ArchiveEntryNotFoundException if there's no file with this name
+     */
+    @Nonnull
+    default ArchiveSourceInternalSpec getInternalSpec(@Nonnull String name) throws IOException {
+        ArchiveSourceInternalSpec internalSpec;
+        while ((internalSpec = getNextInternalSpec()) != null) {
+            if (name.equals(internalSpec.getName())) {
+                return internalSpec;
+            }
+            internalSpec.close();
+        }
+        throw new ArchiveEntryNotFoundException(getPath(), name);
+    }
 }
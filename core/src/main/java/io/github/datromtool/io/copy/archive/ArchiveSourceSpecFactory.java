@@ -1,18 +1,112 @@
 package io.github.datromtool.io.copy.archive;
 
-import lombok.RequiredArgsConstructor;
+import com.google.common.collect.ImmutableSet;
+import io.github.datromtool.io.ArchiveType;
+import io.github.datromtool.io.compression.CompressionAlgorithm;
+import io.github.datromtool.io.compression.Decompressor;
+import io.github.datromtool.io.copy.archive.impl.RarArchiveSourceSpec;
+import io.github.datromtool.io.copy.archive.impl.SevenZipArchiveSourceSpec;
+import io.github.datromtool.io.copy.archive.impl.TarArchiveSourceSpec;
+import io.github.datromtool.io.copy.archive.impl.ZipArchiveSourceSpec;
+import io.github.datromtool.io.copy.archive.impl.process.SevenZipRarArchiveSourceSpec;
+import io.github.datromtool.io.copy.archive.impl.process.UnrarRarArchiveSourceSpec;
+import io.github.datromtool.util.ArchiveUtils;
+import io.github.datromtool.util.ReadAheadPolicy;
+import lombok.AllArgsConstructor;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.nio.file.Path;
 
-@RequiredArgsConstructor
+/**
+ * Builds the {@link ArchiveSourceSpec} which reads an archive according to its {@link ArchiveType}.
+ */
+@AllArgsConstructor
 public final class ArchiveSourceSpecFactory {
 
+    /**
+     * Whether RAR archives should be read using the 7-Zip executable
+     */
     private final boolean forceSevenZip;
+    /**
+     * Whether RAR archives should be read using the UnRAR executable
+     */
     private final boolean forceUnrar;
+    /**
+     * How many blocks are read in advance from TAR archives
+     */
+    @Nonnull
+    private final ReadAheadPolicy readAheadPolicy;
+    /**
+     * The decompressor used for TAR archives compressed with gzip, or null to use the default one
+     */
+    @Nullable
+    private final Decompressor gzipDecompressor;
+
+    public ArchiveSourceSpecFactory(boolean forceSevenZip, boolean forceUnrar) {
+        this(forceSevenZip, forceUnrar, ReadAheadPolicy.DISABLED, null);
+    }
 
     @Nonnull
     public ArchiveSourceSpec buildSourceSpec(@Nonnull Path path) {
-        return null;
+        return buildSourceSpec(path, ImmutableSet.of());
+    }
+
+    /**
+     * @param names the names of the entries to be read, or empty to read all of them
+     * @throws IllegalArgumentException if the path isn't a supported archive
+     */
+    @Nonnull
+    public ArchiveSourceSpec buildSourceSpec(@Nonnull Path path, @Nonnull Iterable<String> names) {
+        ArchiveType archiveType = ArchiveType.parse(path);
+        if (archiveType == null) {
+            throw new IllegalArgumentException(String.format("'%s' is not a supported archive", path));
+        }
+        return buildSourceSpec(path, archiveType, names);
+    }
+
+    /**
+     * @param archiveType the type of the archive, which may be known regardless of the extension of the path
+     * @param names       the names of the entries to be read, or empty to read all of them
+     */
+    @Nonnull
+    public ArchiveSourceSpec buildSourceSpec(
+            @Nonnull Path path,
+            @Nonnull ArchiveType archiveType,
+            @Nonnull Iterable<String> names) {
+        return switch (archiveType) {
+            case ZIP -> new ZipArchiveSourceSpec(path, names);
+            case SEVEN_ZIP -> new SevenZipArchiveSourceSpec(path, names);
+            case RAR -> buildRarSourceSpec(path, names);
+            case TAR, TAR_BZ2, TAR_GZ, TAR_LZ4, TAR_LZMA, TAR_XZ, TAR_ZST ->
+                    new TarArchiveSourceSpec(getDecompressor(archiveType), path, names, readAheadPolicy);
+        };
+    }
+
+    @Nullable
+    private Decompressor getDecompressor(ArchiveType archiveType) {
+        if (archiveType == ArchiveType.TAR_GZ && gzipDecompressor != null) {
+            return gzipDecompressor;
+        }
+        CompressionAlgorithm algorithm = CompressionAlgorithm.forArchiveType(archiveType);
+        return algorithm != null ? algorithm.getDecompressor() : null;
+    }
+
+    private ArchiveSourceSpec buildRarSourceSpec(Path path, Iterable<String> names) {
+        if (forceSevenZip) {
+            Path sevenZipPath = ArchiveUtils.getSevenZipPath();
+            if (sevenZipPath == null) {
+                throw new IllegalStateException("7-Zip is not available to read " + path);
+            }
+            return new SevenZipRarArchiveSourceSpec(sevenZipPath, path, names);
+        }
+        if (forceUnrar) {
+            Path unrarPath = ArchiveUtils.getUnrarPath();
+            if (unrarPath == null) {
+                throw new IllegalStateException("UnRAR is not available to read " + path);
+            }
+            return new UnrarRarArchiveSourceSpec(unrarPath, path, names);
+        }
+        return new RarArchiveSourceSpec(path, names);
     }
 }
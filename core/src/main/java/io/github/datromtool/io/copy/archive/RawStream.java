@@ -0,0 +1,31 @@
+package io.github.datromtool.io.copy.archive;
+
+import lombok.NonNull;
+import lombok.Value;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The data of an archive entry as stored in the archive, still compressed, so it can be written to another
+ * archive which uses the same compression method without decompressing and compressing it again.
+ */
+@Value
+public class RawStream implements Closeable {
+
+    /**
+     * The compression method, identified as in the ZIP format (e.g. 0 for STORED, 8 for DEFLATE)
+     */
+    int method;
+    long compressedSize;
+    long size;
+    long crc;
+    @NonNull
+    InputStream inputStream;
+
+    @Override
+    public void close() throws IOException {
+        inputStream.close();
+    }
+}
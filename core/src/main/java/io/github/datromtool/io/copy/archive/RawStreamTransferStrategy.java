@@ -0,0 +1,38 @@
+package io.github.datromtool.io.copy.archive;
+
+import io.github.datromtool.io.copy.SourceSpec;
+import io.github.datromtool.io.copy.TransferStrategy;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.function.LongConsumer;
+
+/**
+ * Transfers archive entries to other archives by passing their compressed data through as is, when the source
+ * can provide it as a {@link RawStream} and the destination can store it.
+ */
+public final class RawStreamTransferStrategy implements TransferStrategy {
+
+    @Override
+    public boolean transfer(
+            @Nonnull SourceSpec source,
+            @Nonnull ArchiveDestinationSpec destination,
+            @Nonnull String name,
+            @Nonnull LongConsumer progress) throws IOException {
+        if (!(source instanceof ArchiveSourceInternalSpec)) {
+            return false;
+        }
+        try (RawStream rawStream = ((ArchiveSourceInternalSpec) source).getRawStream()) {
+            if (rawStream == null || !destination.addRawEntry(name, source, rawStream)) {
+                return false;
+            }
+            progress.accept(rawStream.getSize());
+            return true;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "raw stream passthrough";
+    }
+}
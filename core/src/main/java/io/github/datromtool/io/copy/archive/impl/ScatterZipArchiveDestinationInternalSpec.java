@@ -0,0 +1,151 @@
+package io.github.datromtool.io.copy.archive.impl;
+
+import io.github.datromtool.io.compression.ParallelDeflateOutputStream;
+import io.github.datromtool.io.copy.archive.AbstractArchiveDestinationInternalSpec;
+import lombok.Getter;
+import lombok.NonNull;
+
+import javax.annotation.Nullable;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * Deflates an entry into a temporary file on its own, so entries can be compressed concurrently. The compressed
+ * data is later copied as-is into the final ZIP file by {@link #writeTo(ZipArchiveOutputStream)}.
+ * <p>
+ * If more than one deflate thread and an executor are given, the blocks of the entry itself are also compressed in
+ * parallel by {@link ParallelDeflateOutputStream}. If a ZIP file is given, the entry is added to it as soon as it's closed
+ * instead, which keeps it in order with the entries written directly to it.
+ */
+final class ScatterZipArchiveDestinationInternalSpec extends AbstractArchiveDestinationInternalSpec {
+
+    @NonNull
+    @Getter
+    private final ZipArchiveDestinationSpec parent;
+    @NonNull
+    private final ZipArchiveEntry entry;
+    @NonNull
+    private final Path tempFile;
+    private final Deflater deflater;
+    private final CRC32 crc32;
+    private final ParallelDeflateOutputStream parallelDeflateOutputStream;
+    @Nullable
+    private final ZipArchiveOutputStream zipArchiveOutputStream;
+
+    // Stateful part
+    private transient OutputStream outputStream;
+    private transient boolean finished;
+
+    ScatterZipArchiveDestinationInternalSpec(
+            @NonNull ZipArchiveDestinationSpec parent,
+            @NonNull ZipArchiveEntry entry,
+            @NonNull Path tempFile,
+            int deflateThreads,
+            @Nullable ExecutorService executorService,
+            @Nullable ZipArchiveOutputStream zipArchiveOutputStream) throws IOException {
+        this.parent = parent;
+        this.entry = entry;
+        this.tempFile = tempFile;
+        this.zipArchiveOutputStream = zipArchiveOutputStream;
+        if (deflateThreads > 1 && executorService != null) {
+            this.deflater = null;
+            this.crc32 = null;
+            this.parallelDeflateOutputStream = new ParallelDeflateOutputStream(
+                    Files.newOutputStream(tempFile),
+                    Deflater.DEFAULT_COMPRESSION,
+                    deflateThreads,
+                    executorService);
+            this.outputStream = parallelDeflateOutputStream;
+        } else {
+            this.deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            this.crc32 = new CRC32();
+            this.parallelDeflateOutputStream = null;
+            this.outputStream = new CheckedOutputStream(
+                    new DeflaterOutputStream(Files.newOutputStream(tempFile), deflater),
+                    crc32);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return entry.getName();
+    }
+
+    @Override
+    public synchronized OutputStream getOutputStream() {
+        if (finished) {
+            throw new IllegalStateException("Entry has already been closed");
+        }
+        return new NonCloseableOutputStream(outputStream);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (finished) {
+            return;
+        }
+        if (zipArchiveOutputStream == null) {
+            finish();
+            return;
+        }
+        try {
+            finish();
+            addTo(zipArchiveOutputStream);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private void finish() throws IOException {
+        finished = true;
+        try {
+            outputStream.close();
+            entry.setMethod(ZipEntry.DEFLATED);
+            if (parallelDeflateOutputStream != null) {
+                entry.setCrc(parallelDeflateOutputStream.getCrc());
+                entry.setSize(parallelDeflateOutputStream.getBytesRead());
+                entry.setCompressedSize(parallelDeflateOutputStream.getBytesWritten());
+            } else {
+                entry.setCrc(crc32.getValue());
+                entry.setSize(deflater.getBytesRead());
+                entry.setCompressedSize(deflater.getBytesWritten());
+            }
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+            outputStream = null;
+        }
+    }
+
+    synchronized void writeTo(ZipArchiveOutputStream zipArchiveOutputStream) throws IOException {
+        close();
+        addTo(zipArchiveOutputStream);
+    }
+
+    private void addTo(ZipArchiveOutputStream zipArchiveOutputStream) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(tempFile)) {
+            zipArchiveOutputStream.addRawArchiveEntry(entry, inputStream);
+        }
+    }
+
+    synchronized void discard() throws IOException {
+        try {
+            close();
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+}
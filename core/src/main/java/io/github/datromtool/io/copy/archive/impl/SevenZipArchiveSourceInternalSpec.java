@@ -24,6 +24,10 @@ final class SevenZipArchiveSourceInternalSpec extends AbstractArchiveSourceInter
     private final SevenZFile sevenZFile;
     @NonNull
     private final SevenZArchiveEntry sevenZArchiveEntry;
+    /**
+     * Whether the entry was found by name rather than being the current entry of the SevenZFile
+     */
+    private final boolean randomAccess;
 
     // Stateful part
     private transient InputStream inputStream;
@@ -47,8 +51,10 @@ final class SevenZipArchiveSourceInternalSpec extends AbstractArchiveSourceInter
     }
 
     @Override
-    public InputStream getInputStream() {
-        if (inputStream == null) {
+    public InputStream getInputStream() throws IOException {
+        if (inputStream == null && randomAccess) {
+            inputStream = sevenZFile.getInputStream(sevenZArchiveEntry);
+        } else if (inputStream == null) {
             BoundedInputStream boundedInputStream = new BoundedInputStream(new SevenZFileInputStream(sevenZFile), sevenZArchiveEntry.getSize());
             boundedInputStream.setPropagateClose(false);
             inputStream = boundedInputStream;
@@ -57,8 +63,11 @@ final class SevenZipArchiveSourceInternalSpec extends AbstractArchiveSourceInter
     }
 
     @Override
-    public void close() {
-        // No need to close this InputStream
+    public void close() throws IOException {
+        // No need to close the InputStream of the current entry
+        if (inputStream != null && randomAccess) {
+            inputStream.close();
+        }
         inputStream = null;
     }
 
@@ -2,6 +2,7 @@ package io.github.datromtool.io.copy.archive.impl;
 
 import io.github.datromtool.io.copy.archive.AbstractArchiveSourceSpec;
 import io.github.datromtool.io.copy.archive.ArchiveSourceInternalSpec;
+import io.github.datromtool.util.ArchiveUtils;
 import org.apache.commons.compress.archivers.sevenz.SevenZArchiveEntry;
 import org.apache.commons.compress.archivers.sevenz.SevenZFile;
 
@@ -9,11 +10,14 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
 
 public final class SevenZipArchiveSourceSpec extends AbstractArchiveSourceSpec {
 
     // Stateful part
     private transient SevenZFile sevenZFile;
+    private transient Map<String, SevenZArchiveEntry> entriesByName;
 
     public SevenZipArchiveSourceSpec(@Nonnull Path path) {
         super(path);
@@ -26,7 +30,7 @@ public final class SevenZipArchiveSourceSpec extends AbstractArchiveSourceSpec {
     @Override
     protected void initArchive() throws IOException {
         if (sevenZFile == null) {
-            sevenZFile = SevenZFile.builder().setPath(getPath()).get();
+            sevenZFile = ArchiveUtils.openSevenZip(getPath());
         }
     }
 
@@ -36,18 +40,45 @@ public final class SevenZipArchiveSourceSpec extends AbstractArchiveSourceSpec {
         SevenZArchiveEntry sevenZArchiveEntry;
         while ((sevenZArchiveEntry = sevenZFile.getNextEntry()) != null) {
             if (isFile(sevenZArchiveEntry)) {
-                return new SevenZipArchiveSourceInternalSpec(this, sevenZFile, sevenZArchiveEntry);
+                return new SevenZipArchiveSourceInternalSpec(this, sevenZFile, sevenZArchiveEntry, false);
             }
         }
         return null;
     }
 
+    @Override
+    public boolean isRandomAccess() {
+        return true;
+    }
+
+    /**
+     * Finds the entry in the header of the archive. Its data is decompressed from the start of its block, so
+     * reading several entries of a solid archive this way is slower than reading them sequentially.
+     */
+    @Nullable
+    @Override
+    protected ArchiveSourceInternalSpec getEntry(@Nonnull String name) {
+        if (entriesByName == null) {
+            entriesByName = new HashMap<>();
+            for (SevenZArchiveEntry sevenZArchiveEntry : sevenZFile.getEntries()) {
+                if (isFile(sevenZArchiveEntry)) {
+                    entriesByName.putIfAbsent(sevenZArchiveEntry.getName(), sevenZArchiveEntry);
+                }
+            }
+        }
+        SevenZArchiveEntry sevenZArchiveEntry = entriesByName.get(name);
+        return sevenZArchiveEntry != null
+                ? new SevenZipArchiveSourceInternalSpec(this, sevenZFile, sevenZArchiveEntry, true)
+                : null;
+    }
+
     private boolean isFile(SevenZArchiveEntry sevenZArchiveEntry) {
         return !sevenZArchiveEntry.isDirectory() && !sevenZArchiveEntry.isAntiItem();
     }
 
     @Override
     protected void closeArchive() throws IOException {
+        entriesByName = null;
         if (sevenZFile != null) {
             sevenZFile.close();
             sevenZFile = null;
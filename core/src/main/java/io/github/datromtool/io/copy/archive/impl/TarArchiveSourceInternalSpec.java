@@ -7,7 +7,6 @@ import lombok.Getter;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
-import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.io.input.BoundedInputStream;
 
 import javax.annotation.Nullable;
@@ -24,8 +23,11 @@ final class TarArchiveSourceInternalSpec extends AbstractArchiveSourceInternalSp
     @NonNull
     @Getter
     private final TarArchiveSourceSpec parent;
+    /**
+     * Reads the data of this entry only, either from the archive being read sequentially or from its index
+     */
     @NonNull
-    private final TarArchiveInputStream tarArchiveInputStream;
+    private final InputStream entryInputStream;
     @NonNull
     private final TarArchiveEntry tarArchiveEntry;
 
@@ -76,7 +78,7 @@ final class TarArchiveSourceInternalSpec extends AbstractArchiveSourceInternalSp
     @Override
     public InputStream getInputStream() {
         if (inputStream == null) {
-            BoundedInputStream boundedInputStream = new BoundedInputStream(tarArchiveInputStream, tarArchiveEntry.getRealSize());
+            BoundedInputStream boundedInputStream = new BoundedInputStream(entryInputStream, tarArchiveEntry.getRealSize());
             boundedInputStream.setPropagateClose(false);
             inputStream = boundedInputStream;
         }
@@ -2,24 +2,39 @@ package io.github.datromtool.io.copy.archive.impl;
 
 import io.github.datromtool.io.compression.CompressionAlgorithm;
 import io.github.datromtool.io.compression.Decompressor;
+import io.github.datromtool.io.compression.SeekableXZChannel;
 import io.github.datromtool.io.copy.archive.AbstractArchiveSourceSpec;
 import io.github.datromtool.io.copy.archive.ArchiveSourceInternalSpec;
+import io.github.datromtool.util.ArchiveVolumes;
+import io.github.datromtool.util.ReadAheadPolicy;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarFile;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Path;
+import java.util.Iterator;
 
 public final class TarArchiveSourceSpec extends AbstractArchiveSourceSpec {
 
+    private static final int RECORD_SIZE = 512;
+    /**
+     * How many of the first file entries are used to estimate their average size
+     */
+    private static final int SAMPLED_ENTRIES = 16;
+
     private final Decompressor decompressor;
+    private final ReadAheadPolicy readAheadPolicy;
 
     // Stateful part
     private transient TarArchiveInputStream tarArchiveInputStream;
+    private transient TarFile tarFile;
+    private transient Iterator<TarArchiveEntry> indexedEntries;
 
     public TarArchiveSourceSpec(@Nullable CompressionAlgorithm algorithm, @Nonnull Path path) {
         this(algorithm != null ? algorithm.getDecompressor() : null, path);
@@ -32,17 +47,34 @@ public final class TarArchiveSourceSpec extends AbstractArchiveSourceSpec {
     public TarArchiveSourceSpec(@Nullable Decompressor decompressor, @Nonnull Path path) {
         super(path);
         this.decompressor = decompressor;
+        this.readAheadPolicy = ReadAheadPolicy.DISABLED;
     }
 
     public TarArchiveSourceSpec(@Nullable Decompressor decompressor, @Nonnull Path path, @Nonnull Iterable<String> names) {
+        this(decompressor, path, names, ReadAheadPolicy.DISABLED);
+    }
+
+    public TarArchiveSourceSpec(
+            @Nullable Decompressor decompressor,
+            @Nonnull Path path,
+            @Nonnull Iterable<String> names,
+            @Nonnull ReadAheadPolicy readAheadPolicy) {
         super(path, names);
         this.decompressor = decompressor;
+        this.readAheadPolicy = readAheadPolicy;
     }
 
     @Override
     protected void initArchive() throws IOException {
-        if (tarArchiveInputStream == null) {
-            InputStream rawInputStream = Files.newInputStream(getPath());
+        if (tarArchiveInputStream == null && tarFile == null) {
+            if (!getNames().isEmpty() && decompressor == CompressionAlgorithm.XZ.getDecompressor()) {
+                tarFile = openIndexed();
+                if (tarFile != null) {
+                    indexedEntries = tarFile.getEntries().iterator();
+                    return;
+                }
+            }
+            InputStream rawInputStream = ArchiveVolumes.newInputStream(getPath(), readAheadPolicy);
             if (decompressor != null) {
                 tarArchiveInputStream = new TarArchiveInputStream(decompressor.decompress(rawInputStream));
             } else {
@@ -51,9 +83,94 @@ public final class TarArchiveSourceSpec extends AbstractArchiveSourceSpec {
         }
     }
 
+    /**
+     * Opens a TAR.XZ archive compressed in several blocks so the headers of its entries can be read by seeking
+     * over their data, and only the blocks with the data of the entries requested are decompressed.
+     *
+     * @return the archive, or null if it must be read sequentially, because it has a single block or its entries
+     * are smaller than its blocks
+     */
+    @Nullable
+    private TarFile openIndexed() throws IOException {
+        SeekableByteChannel compressedChannel = ArchiveVolumes.newByteChannel(getPath());
+        try {
+            SeekableXZChannel xzChannel = SeekableXZChannel.openIfSeekable(compressedChannel);
+            if (xzChannel == null || !hasEntriesLargerThanBlocks(xzChannel)) {
+                compressedChannel.close();
+                return null;
+            }
+            xzChannel.position(0);
+            return new TarFile(xzChannel);
+        } catch (IOException | RuntimeException e) {
+            compressedChannel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Estimates the average size of the entries from the first headers, which are read by seeking over the data.
+     * <p>
+     * Walking the headers of entries smaller than a block decompresses almost every block, and the blocks of the
+     * entries requested are then decompressed again, which is slower than reading the archive sequentially.
+     */
+    static boolean hasEntriesLargerThanBlocks(@Nonnull SeekableXZChannel channel) throws IOException {
+        long size = channel.size();
+        long averageBlockSize = size / channel.getBlockCount();
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        long position = 0;
+        int files = 0;
+        while (files < SAMPLED_ENTRIES && position + RECORD_SIZE <= size) {
+            channel.position(position);
+            record.clear();
+            while (record.hasRemaining()) {
+                if (channel.read(record) < 0) {
+                    break;
+                }
+            }
+            if (record.hasRemaining() || isEndOfArchive(record.array())) {
+                break;
+            }
+            TarArchiveEntry entry;
+            try {
+                entry = new TarArchiveEntry(record.array());
+            } catch (IllegalArgumentException e) {
+                // Left for the sequential path to report
+                return false;
+            }
+            // Extended headers look like files too
+            if (entry.isFile()
+                    && !entry.isPaxHeader()
+                    && !entry.isGlobalPaxHeader()
+                    && !entry.isGNULongNameEntry()
+                    && !entry.isGNULongLinkEntry()) {
+                files++;
+            }
+            position += RECORD_SIZE + (entry.getSize() + RECORD_SIZE - 1) / RECORD_SIZE * RECORD_SIZE;
+        }
+        return files > 0 && position / files >= averageBlockSize;
+    }
+
+    private static boolean isEndOfArchive(byte[] record) {
+        for (byte b : record) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Nullable
     @Override
     protected ArchiveSourceInternalSpec getNextEntry() throws IOException {
+        if (tarFile != null) {
+            while (indexedEntries.hasNext()) {
+                TarArchiveEntry tarArchiveEntry = indexedEntries.next();
+                if (tarArchiveEntry.isFile() && getNames().contains(tarArchiveEntry.getName())) {
+                    return new TarArchiveSourceInternalSpec(this, tarFile.getInputStream(tarArchiveEntry), tarArchiveEntry);
+                }
+            }
+            return null;
+        }
         TarArchiveEntry tarArchiveEntry;
         while ((tarArchiveEntry = tarArchiveInputStream.getNextEntry()) != null) {
             if (tarArchiveEntry.isFile() && tarArchiveInputStream.canReadEntryData(tarArchiveEntry)) {
@@ -68,5 +185,8 @@ public final class TarArchiveSourceSpec extends AbstractArchiveSourceSpec {
         if (tarArchiveInputStream != null) {
             tarArchiveInputStream.close();
         }
+        if (tarFile != null) {
+            tarFile.close();
+        }
     }
 }
@@ -1,51 +1,180 @@
 package io.github.datromtool.io.copy.archive.impl;
 
+import io.github.datromtool.io.compression.ParallelDeflateOutputStream;
 import io.github.datromtool.io.copy.FileTimes;
 import io.github.datromtool.io.copy.SourceSpec;
 import io.github.datromtool.io.copy.archive.AbstractArchiveDestinationSpec;
 import io.github.datromtool.io.copy.archive.ArchiveDestinationInternalSpec;
-import org.apache.commons.compress.archivers.zip.*;
+import io.github.datromtool.io.copy.archive.RawStream;
+import io.github.datromtool.util.ZipFilePool;
+import org.apache.commons.compress.archivers.zip.X000A_NTFS;
+import org.apache.commons.compress.archivers.zip.X5455_ExtendedTimestamp;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipEightByteInteger;
+import org.apache.commons.compress.archivers.zip.ZipLong;
+import org.apache.commons.compress.archivers.zip.ZipMethod;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
 public final class ZipArchiveDestinationSpec extends AbstractArchiveDestinationSpec {
 
+    private final boolean parallel;
+    private final int deflateThreads;
+    @Nullable
+    private final ExecutorService executorService;
+
     // Stateful part
     private transient ZipArchiveOutputStream zipArchiveOutputStream;
+    private transient List<ScatterZipArchiveDestinationInternalSpec> scatteredSpecs;
 
     public ZipArchiveDestinationSpec(@Nonnull Path path) {
+        this(path, false);
+    }
+
+    public ZipArchiveDestinationSpec(@Nonnull Path path, boolean parallel) {
+        this(path, parallel, 1, null);
+    }
+
+    /**
+     * @param parallel whether entries should be compressed independently of each other, so several of them can be
+     *                 written at the same time from different threads. Each entry is compressed to a temporary file
+     *                 next to the archive, and they are all merged in creation order when this spec is closed.
+     * @param deflateThreads the amount of threads used to compress the blocks of each entry in parallel. When
+     *                       writing sequentially, only entries of at least
+     *                       {@link ParallelDeflateOutputStream#MIN_PARALLEL_SIZE} bytes are compressed this way, to a
+     *                       temporary file which is added to the archive as soon as the entry is closed.
+     * @param executorService the executor which compresses the blocks of the entries, shared with everything else
+     *                        compressed at the same time. Blocks are only compressed in parallel if it's given.
+     */
+    public ZipArchiveDestinationSpec(
+            @Nonnull Path path,
+            boolean parallel,
+            int deflateThreads,
+            @Nullable ExecutorService executorService) {
         super(path);
+        this.parallel = parallel;
+        this.deflateThreads = deflateThreads;
+        this.executorService = executorService;
     }
 
     @Override
-    public ArchiveDestinationInternalSpec createInternalDestinationSpecFor(String name, SourceSpec sourceSpec) throws IOException {
-        if (zipArchiveOutputStream == null) {
-            zipArchiveOutputStream = new ZipArchiveOutputStream(getPath());
-        }
+    public synchronized ArchiveDestinationInternalSpec createInternalDestinationSpecFor(String name, SourceSpec sourceSpec) throws IOException {
         ZipArchiveEntry zipArchiveEntry = new ZipArchiveEntry(name);
         FileTimes sourceFileTimes = sourceSpec.getFileTimes();
         zipArchiveEntry.setSize(sourceSpec.getSize());
         setTimes(sourceFileTimes, zipArchiveEntry);
+        if (parallel) {
+            if (scatteredSpecs == null) {
+                scatteredSpecs = new ArrayList<>();
+            }
+            ScatterZipArchiveDestinationInternalSpec internalSpec = newScatteredSpec(zipArchiveEntry, null);
+            scatteredSpecs.add(internalSpec);
+            return internalSpec;
+        }
+        if (zipArchiveOutputStream == null) {
+            zipArchiveOutputStream = newOutputStream();
+        }
+        if (deflateThreads > 1
+                && executorService != null
+                && sourceSpec.getSize() >= ParallelDeflateOutputStream.MIN_PARALLEL_SIZE) {
+            return newScatteredSpec(zipArchiveEntry, zipArchiveOutputStream);
+        }
         zipArchiveOutputStream.putArchiveEntry(zipArchiveEntry);
         return new ZipArchiveDestinationInternalSpec(this, zipArchiveOutputStream, zipArchiveEntry);
     }
 
+    private ScatterZipArchiveDestinationInternalSpec newScatteredSpec(
+            ZipArchiveEntry zipArchiveEntry,
+            @Nullable ZipArchiveOutputStream target) throws IOException {
+        Path tempFile = Files.createTempFile(getPath().getParent(), getPath().getFileName().toString(), ".tmp");
+        try {
+            return new ScatterZipArchiveDestinationInternalSpec(
+                    this,
+                    zipArchiveEntry,
+                    tempFile,
+                    deflateThreads,
+                    executorService,
+                    target);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+    }
+
+    /**
+     * Entries are only added as is when written sequentially, as the entries compressed in parallel are all
+     * merged when closing.
+     */
     @Override
-    public void close() throws IOException {
+    public synchronized boolean addRawEntry(
+            @Nonnull String name,
+            @Nonnull SourceSpec sourceSpec,
+            @Nonnull RawStream rawStream) throws IOException {
+        if (parallel || !isSupported(rawStream.getMethod())) {
+            return false;
+        }
+        ZipArchiveEntry zipArchiveEntry = new ZipArchiveEntry(name);
+        zipArchiveEntry.setMethod(rawStream.getMethod());
+        zipArchiveEntry.setCompressedSize(rawStream.getCompressedSize());
+        zipArchiveEntry.setSize(rawStream.getSize());
+        zipArchiveEntry.setCrc(rawStream.getCrc());
+        setTimes(sourceSpec.getFileTimes(), zipArchiveEntry);
+        if (zipArchiveOutputStream == null) {
+            zipArchiveOutputStream = newOutputStream();
+        }
+        zipArchiveOutputStream.addRawArchiveEntry(zipArchiveEntry, rawStream.getInputStream());
+        return true;
+    }
+
+    private static boolean isSupported(int method) {
+        // Readers are expected to support the methods in the ZIP specification, but not vendor-specific ones
+        return method == ZipMethod.STORED.getCode()
+                || method == ZipMethod.DEFLATED.getCode()
+                || method == ZipMethod.ENHANCED_DEFLATED.getCode()
+                || method == ZipMethod.BZIP2.getCode()
+                || method == ZipMethod.LZMA.getCode()
+                || method == ZipMethod.XZ.getCode();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (scatteredSpecs != null) {
+            try (ZipArchiveOutputStream scatterOutputStream = newOutputStream()) {
+                for (ScatterZipArchiveDestinationInternalSpec internalSpec : scatteredSpecs) {
+                    internalSpec.writeTo(scatterOutputStream);
+                }
+            } finally {
+                for (ScatterZipArchiveDestinationInternalSpec internalSpec : scatteredSpecs) {
+                    internalSpec.discard();
+                }
+                scatteredSpecs = null;
+            }
+        }
         if (zipArchiveOutputStream != null) {
             zipArchiveOutputStream.close();
             zipArchiveOutputStream = null;
         }
     }
 
+    private ZipArchiveOutputStream newOutputStream() throws IOException {
+        // Handles of an archive previously read from this path must not be reused
+        ZipFilePool.shared().evict(getPath());
+        return new ZipArchiveOutputStream(getPath());
+    }
+
     private static void setTimes(FileTimes fileTimes, ZipArchiveEntry entry) {
         // These do not seem to have any effect on Apache ZipArchiveEntry, but setting it just in case
-        if (fileTimes.getLastModifiedTime() !=null) {
+        if (fileTimes.getLastModifiedTime() != null) {
             entry.setLastModifiedTime(fileTimes.getLastModifiedTime());
         }
         if (fileTimes.getLastAccessTime() != null) {
@@ -2,6 +2,7 @@ package io.github.datromtool.io.copy.archive.impl;
 
 import io.github.datromtool.io.copy.FileTimes;
 import io.github.datromtool.io.copy.archive.AbstractArchiveSourceInternalSpec;
+import io.github.datromtool.io.copy.archive.RawStream;
 import io.github.datromtool.util.ArchiveUtils;
 import lombok.AccessLevel;
 import lombok.Getter;
@@ -56,6 +57,20 @@ final class ZipArchiveSourceInternalSpec extends AbstractArchiveSourceInternalSp
         return inputStream;
     }
 
+    @Override
+    public RawStream getRawStream() throws IOException {
+        if (zipArchiveEntry.getGeneralPurposeBit().usesEncryption()
+                || zipArchiveEntry.getCrc() == ZipArchiveEntry.CRC_UNKNOWN) {
+            return null;
+        }
+        return new RawStream(
+                zipArchiveEntry.getMethod(),
+                zipArchiveEntry.getCompressedSize(),
+                zipArchiveEntry.getSize(),
+                zipArchiveEntry.getCrc(),
+                zipFile.getRawInputStream(zipArchiveEntry));
+    }
+
     @Override
     public void close() throws IOException {
         if (inputStream != null) {
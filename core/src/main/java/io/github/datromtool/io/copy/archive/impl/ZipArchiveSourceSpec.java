@@ -2,6 +2,7 @@ package io.github.datromtool.io.copy.archive.impl;
 
 import io.github.datromtool.io.copy.archive.AbstractArchiveSourceSpec;
 import io.github.datromtool.io.copy.archive.ArchiveSourceInternalSpec;
+import io.github.datromtool.util.ZipFilePool;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipFile;
 
@@ -9,11 +10,16 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Enumeration;
+import java.util.List;
 
 public final class ZipArchiveSourceSpec extends AbstractArchiveSourceSpec {
 
     // Stateful part
+    private transient ZipFilePool.Lease lease;
     private transient ZipFile zipFile;
     private transient Enumeration<ZipArchiveEntry> entries;
 
@@ -27,12 +33,49 @@ public final class ZipArchiveSourceSpec extends AbstractArchiveSourceSpec {
 
     @Override
     protected void initArchive() throws IOException {
-        if (zipFile == null) {
-            zipFile = ZipFile.builder().setPath(getPath()).get();
+        if (lease == null) {
+            lease = ZipFilePool.shared().acquire(getPath());
+            zipFile = lease.getZipFile();
         }
         if (entries == null) {
-            entries = zipFile.getEntriesInPhysicalOrder();
+            if (getNames().isEmpty()) {
+                entries = zipFile.getEntriesInPhysicalOrder();
+            } else {
+                // Looked up in the central directory, so the other entries don't need to be read
+                // Names which aren't found are reported by the superclass after the others are read
+                List<ZipArchiveEntry> namedEntries = new ArrayList<>(getNames().size());
+                for (String name : getNames()) {
+                    ZipArchiveEntry zipArchiveEntry = findEntry(name);
+                    if (zipArchiveEntry != null) {
+                        namedEntries.add(zipArchiveEntry);
+                    }
+                }
+                namedEntries.sort(Comparator.comparingLong(ZipArchiveEntry::getLocalHeaderOffset));
+                entries = Collections.enumeration(namedEntries);
+            }
+        }
+    }
+
+    @Override
+    public boolean isRandomAccess() {
+        return true;
+    }
+
+    @Nullable
+    @Override
+    protected ArchiveSourceInternalSpec getEntry(@Nonnull String name) {
+        ZipArchiveEntry zipArchiveEntry = findEntry(name);
+        return zipArchiveEntry != null ? new ZipArchiveSourceInternalSpec(this, zipFile, zipArchiveEntry) : null;
+    }
+
+    @Nullable
+    private ZipArchiveEntry findEntry(String name) {
+        ZipArchiveEntry zipArchiveEntry = zipFile.getEntry(name);
+        if (zipArchiveEntry == null && name.indexOf('/') >= 0) {
+            // Names are normalized, but the archive may use Windows separators
+            zipArchiveEntry = zipFile.getEntry(name.replace('/', '\\'));
         }
+        return zipArchiveEntry != null && isFile(zipArchiveEntry) ? zipArchiveEntry : null;
     }
 
     @Nullable
@@ -54,9 +97,10 @@ public final class ZipArchiveSourceSpec extends AbstractArchiveSourceSpec {
     @Override
     protected void closeArchive() throws IOException {
         entries = null;
-        if (zipFile != null) {
-            zipFile.close();
-            zipFile = null;
+        zipFile = null;
+        if (lease != null) {
+            lease.close();
+            lease = null;
         }
     }
 }
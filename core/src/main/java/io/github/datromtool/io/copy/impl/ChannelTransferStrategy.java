@@ -0,0 +1,53 @@
+package io.github.datromtool.io.copy.impl;
+
+import io.github.datromtool.io.copy.SourceSpec;
+import io.github.datromtool.io.copy.TransferStrategy;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.LongConsumer;
+
+/**
+ * Transfers plain files to other files using {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+ * which lets the OS copy the data without passing it through the JVM where supported.
+ */
+public final class ChannelTransferStrategy implements TransferStrategy {
+
+    private static final long TRANSFER_CHUNK_SIZE = 8 * 1024 * 1024;
+
+    @Override
+    public boolean transfer(
+            @Nonnull SourceSpec source,
+            @Nonnull Path destination,
+            @Nonnull LongConsumer progress) throws IOException {
+        if (!(source instanceof FileSourceSpec)) {
+            return false;
+        }
+        FileSourceSpec fileSource = (FileSourceSpec) source;
+        try (FileChannel in = FileChannel.open(fileSource.getPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(
+                     destination,
+                     StandardOpenOption.WRITE,
+                     StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            long position = 0;
+            long transferred;
+            while (position < size
+                    && (transferred = in.transferTo(position, Math.min(size - position, TRANSFER_CHUNK_SIZE), out)) > 0) {
+                position += transferred;
+                progress.accept(transferred);
+            }
+        }
+        fileSource.getFileTimes().applyTo(destination);
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "channel transfer";
+    }
+}
@@ -3,6 +3,7 @@ package io.github.datromtool.io.copy.impl;
 import io.github.datromtool.display.CachingDisplayableAddressable;
 import io.github.datromtool.io.copy.FileTimes;
 import io.github.datromtool.io.copy.SourceSpec;
+import io.github.datromtool.util.ReadAheadPolicy;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NonNull;
@@ -28,17 +29,24 @@ public final class FileSourceSpec extends CachingDisplayableAddressable implemen
     @NonNull
     @Getter
     private final FileTimes fileTimes;
+    @NonNull
+    private final ReadAheadPolicy readAheadPolicy;
 
     // Stateful part
     private transient InputStream inputStream;
 
     @Nonnull
     public static FileSourceSpec from(@Nonnull Path path) throws IOException {
+        return from(path, ReadAheadPolicy.DISABLED);
+    }
+
+    @Nonnull
+    public static FileSourceSpec from(@Nonnull Path path, @Nonnull ReadAheadPolicy readAheadPolicy) throws IOException {
         Path normalizedPath = path.toAbsolutePath().normalize();
         BasicFileAttributes attributes = Files.readAttributes(normalizedPath, BasicFileAttributes.class);
         long size = attributes.size();
         FileTimes fileTimes = FileTimes.from(attributes);
-        return new FileSourceSpec(normalizedPath, size, fileTimes);
+        return new FileSourceSpec(normalizedPath, size, fileTimes, readAheadPolicy);
     }
 
     @Override
@@ -52,7 +60,7 @@ public final class FileSourceSpec extends CachingDisplayableAddressable implemen
     @Override
     public InputStream getInputStream() throws IOException {
         if (inputStream == null) {
-            inputStream = Files.newInputStream(path);
+            inputStream = readAheadPolicy.newInputStream(path);
         }
         return inputStream;
     }
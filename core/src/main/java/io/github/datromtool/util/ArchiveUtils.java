@@ -8,6 +8,9 @@ import com.google.common.collect.ImmutableList;
 import io.github.datromtool.SystemUtils;
 import io.github.datromtool.io.ArchiveType;
 import io.github.datromtool.io.UnrarArchiveEntry;
+import io.github.datromtool.io.compression.CompressionAlgorithm;
+import io.github.datromtool.io.compression.ConcatenatedStreams;
+import io.github.datromtool.io.compression.Decompressor;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -15,6 +18,7 @@ import org.apache.commons.compress.archivers.sevenz.SevenZArchiveEntry;
 import org.apache.commons.compress.archivers.sevenz.SevenZFile;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.UnicodePathExtraField;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipFile;
 import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
@@ -27,6 +31,8 @@ import org.apache.commons.compress.compressors.lzma.LZMACompressorInputStream;
 import org.apache.commons.compress.compressors.lzma.LZMACompressorOutputStream;
 import org.apache.commons.compress.compressors.xz.XZCompressorInputStream;
 import org.apache.commons.compress.compressors.xz.XZCompressorOutputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorInputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorOutputStream;
 
 import javax.annotation.Nullable;
 import java.io.BufferedReader;
@@ -49,9 +55,10 @@ import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
+import java.util.zip.ZipException;
 
 import static io.github.datromtool.SystemUtils.OperatingSystem.WINDOWS;
-import static java.nio.file.Files.newInputStream;
+import static io.github.datromtool.util.ArchiveVolumes.newInputStream;
 import static java.nio.file.StandardOpenOption.CREATE;
 import static java.util.regex.Pattern.CASE_INSENSITIVE;
 
@@ -76,13 +83,33 @@ public final class ArchiveUtils {
     @Nullable
     public static InputStream inputStreamForTar(ArchiveType archiveType, Path file)
             throws IOException {
+        return inputStreamForTar(archiveType, file, ReadAheadPolicy.DISABLED);
+    }
+
+    @Nullable
+    public static InputStream inputStreamForTar(ArchiveType archiveType, Path file, ReadAheadPolicy readAheadPolicy)
+            throws IOException {
+        return inputStreamForTar(archiveType, file, readAheadPolicy, CompressionAlgorithm.GZIP.getDecompressor());
+    }
+
+    /**
+     * @param gzipDecompressor the decompressor of TAR_GZ archives, which may inflate their members in parallel
+     */
+    @Nullable
+    public static InputStream inputStreamForTar(
+            ArchiveType archiveType,
+            Path file,
+            ReadAheadPolicy readAheadPolicy,
+            Decompressor gzipDecompressor)
+            throws IOException {
         return switch (archiveType) {
-            case TAR -> newInputStream(file);
-            case TAR_BZ2 -> newBz2InputStream(file);
-            case TAR_GZ -> newGzipInputStream(file);
-            case TAR_LZ4 -> newLz4InputStream(file);
-            case TAR_LZMA -> newLzmaInputStream(file);
-            case TAR_XZ -> newXzInputStream(file);
+            case TAR -> newInputStream(file, readAheadPolicy);
+            case TAR_BZ2 -> new BZip2CompressorInputStream(newInputStream(file, readAheadPolicy));
+            case TAR_GZ -> gzipDecompressor.decompress(newInputStream(file, readAheadPolicy));
+            case TAR_LZ4 -> new FramedLZ4CompressorInputStream(newInputStream(file, readAheadPolicy));
+            case TAR_LZMA -> new LZMACompressorInputStream(newInputStream(file, readAheadPolicy));
+            case TAR_XZ -> ConcatenatedStreams.xz(newInputStream(file, readAheadPolicy));
+            case TAR_ZST -> new ZstdCompressorInputStream(newInputStream(file, readAheadPolicy));
             default -> null;
         };
     }
@@ -92,7 +119,7 @@ public final class ArchiveUtils {
     }
 
     public static GzipCompressorInputStream newGzipInputStream(Path file) throws IOException {
-        return new GzipCompressorInputStream(newInputStream(file));
+        return ConcatenatedStreams.gzip(newInputStream(file));
     }
 
     public static FramedLZ4CompressorInputStream newLz4InputStream(Path file) throws IOException {
@@ -104,7 +131,7 @@ public final class ArchiveUtils {
     }
 
     public static XZCompressorInputStream newXzInputStream(Path file) throws IOException {
-        return new XZCompressorInputStream(newInputStream(file));
+        return ConcatenatedStreams.xz(newInputStream(file));
     }
 
     @Nullable
@@ -117,6 +144,7 @@ public final class ArchiveUtils {
             case TAR_LZ4 -> new FramedLZ4CompressorOutputStream(Files.newOutputStream(file, CREATE));
             case TAR_LZMA -> new LZMACompressorOutputStream(Files.newOutputStream(file, CREATE));
             case TAR_XZ -> new XZCompressorOutputStream(Files.newOutputStream(file, CREATE));
+            case TAR_ZST -> new ZstdCompressorOutputStream(Files.newOutputStream(file, CREATE));
             default -> null;
         };
     }
@@ -124,7 +152,8 @@ public final class ArchiveUtils {
     public static <T extends Throwable> void readZip(
             Path file,
             ThrowingBiConsumer<ZipFile, ZipArchiveEntry, T> consumer) throws IOException, T {
-        try (ZipFile zipFile = ZipFile.builder().setPath(file).get()) {
+        try (ZipFilePool.Lease lease = ZipFilePool.shared().acquire(file)) {
+            ZipFile zipFile = lease.getZipFile();
             Enumeration<ZipArchiveEntry> entries = zipFile.getEntriesInPhysicalOrder();
             while (entries.hasMoreElements()) {
                 ZipArchiveEntry zipArchiveEntry = entries.nextElement();
@@ -136,6 +165,30 @@ public final class ArchiveUtils {
         }
     }
 
+    /**
+     * Copies the entry under a different name. The compressed data, CRC, sizes, timestamps and all
+     * other attributes are kept, so the raw data of the original entry can be written under the new name.
+     */
+    public static ZipArchiveEntry renameZipEntry(ZipArchiveEntry zipArchiveEntry, String name)
+            throws ZipException {
+        if (name.equals(zipArchiveEntry.getName())) {
+            return zipArchiveEntry;
+        }
+        return new RenamedZipArchiveEntry(zipArchiveEntry, name);
+    }
+
+    private static final class RenamedZipArchiveEntry extends ZipArchiveEntry {
+
+        private RenamedZipArchiveEntry(ZipArchiveEntry original, String name) throws ZipException {
+            super(original);
+            setName(name);
+            // Readers prefer the Unicode path extra field over the name, so it must not keep the old one
+            if (getExtraField(UnicodePathExtraField.UPATH_ID) != null) {
+                removeExtraField(UnicodePathExtraField.UPATH_ID);
+            }
+        }
+    }
+
     public static <T extends Throwable> void readRar(
             Path file,
             ThrowingBiConsumer<Archive, FileHeader, T> consumer)
@@ -486,9 +539,22 @@ public final class ArchiveUtils {
             ThrowingBiConsumer<UnrarArchiveEntry, InputStream, T> consumer)
             throws IOException, RarException, T {
         ImmutableList<UnrarArchiveEntry> allEntries = listRarEntriesWithUnrar(path);
-        ImmutableList<UnrarArchiveEntry> desiredEntries = allEntries.stream()
-                .filter(e -> desiredEntryNames.contains(e.getName()))
-                .collect(ImmutableList.toImmutableList());
+        readRarWithUnrar(
+                path,
+                allEntries.stream()
+                        .filter(e -> desiredEntryNames.contains(e.getName()))
+                        .collect(ImmutableList.toImmutableList()),
+                consumer);
+    }
+
+    /**
+     * Reads the given entries, which were already listed, in the order they're in the archive.
+     */
+    public static <T extends Throwable> void readRarWithUnrar(
+            Path path,
+            List<UnrarArchiveEntry> desiredEntries,
+            ThrowingBiConsumer<UnrarArchiveEntry, InputStream, T> consumer)
+            throws IOException, T {
         List<String> arguments = ImmutableList.<String>builder()
                 .add(unrarPath)
                 .add("p")
@@ -554,9 +620,22 @@ public final class ArchiveUtils {
             ThrowingBiConsumer<UnrarArchiveEntry, InputStream, T> consumer)
             throws IOException, RarException, T {
         ImmutableList<UnrarArchiveEntry> allEntries = listRarEntriesWithSevenZip(path);
-        ImmutableList<UnrarArchiveEntry> desiredEntries = allEntries.stream()
-                .filter(e -> desiredEntryNames.contains(e.getName()))
-                .collect(ImmutableList.toImmutableList());
+        readRarWithSevenZip(
+                path,
+                allEntries.stream()
+                        .filter(e -> desiredEntryNames.contains(e.getName()))
+                        .collect(ImmutableList.toImmutableList()),
+                consumer);
+    }
+
+    /**
+     * Reads the given entries, which were already listed, in the order they're in the archive.
+     */
+    public static <T extends Throwable> void readRarWithSevenZip(
+            Path path,
+            List<UnrarArchiveEntry> desiredEntries,
+            ThrowingBiConsumer<UnrarArchiveEntry, InputStream, T> consumer)
+            throws IOException, T {
         List<String> arguments = ImmutableList.<String>builder()
                 .add(sevenZipPath)
                 .add("e")
@@ -596,7 +675,7 @@ public final class ArchiveUtils {
             Path file,
             ThrowingBiConsumer<SevenZFile, SevenZArchiveEntry, T> consumer)
             throws IOException, T {
-        try (SevenZFile sevenZFile = SevenZFile.builder().setPath(file).get()) {
+        try (SevenZFile sevenZFile = openSevenZip(file)) {
             SevenZArchiveEntry sevenZArchiveEntry;
             while ((sevenZArchiveEntry = sevenZFile.getNextEntry()) != null) {
                 if (sevenZArchiveEntry.isDirectory() || sevenZArchiveEntry.isAntiItem()) {
@@ -607,12 +686,44 @@ public final class ArchiveUtils {
         }
     }
 
+    /**
+     * Opens a 7z archive, including all of its volumes if it's split.
+     */
+    public static SevenZFile openSevenZip(Path file) throws IOException {
+        if (ArchiveVolumes.isFirstVolume(file)) {
+            return SevenZFile.builder()
+                    .setSeekableByteChannel(ArchiveVolumes.newByteChannel(file))
+                    .setDefaultName(file.getFileName().toString())
+                    .get();
+        }
+        return SevenZFile.builder().setPath(file).get();
+    }
+
+    public static <T extends Throwable> void readTar(
+            ArchiveType archiveType,
+            Path file,
+            ThrowingBiConsumer<TarArchiveEntry, TarArchiveInputStream, T> consumer)
+            throws IOException, T {
+        readTar(archiveType, file, ReadAheadPolicy.DISABLED, consumer);
+    }
+
+    public static <T extends Throwable> void readTar(
+            ArchiveType archiveType,
+            Path file,
+            ReadAheadPolicy readAheadPolicy,
+            ThrowingBiConsumer<TarArchiveEntry, TarArchiveInputStream, T> consumer)
+            throws IOException, T {
+        readTar(archiveType, file, readAheadPolicy, CompressionAlgorithm.GZIP.getDecompressor(), consumer);
+    }
+
     public static <T extends Throwable> void readTar(
             ArchiveType archiveType,
             Path file,
+            ReadAheadPolicy readAheadPolicy,
+            Decompressor gzipDecompressor,
             ThrowingBiConsumer<TarArchiveEntry, TarArchiveInputStream, T> consumer)
             throws IOException, T {
-        InputStream inputStream = inputStreamForTar(archiveType, file);
+        InputStream inputStream = inputStreamForTar(archiveType, file, readAheadPolicy, gzipDecompressor);
         if (inputStream != null) {
             try (TarArchiveInputStream tarArchiveInputStream = new TarArchiveInputStream(inputStream)) {
                 TarArchiveEntry tarArchiveEntry;
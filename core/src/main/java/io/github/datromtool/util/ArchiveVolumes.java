@@ -0,0 +1,167 @@
+package io.github.datromtool.util;
+
+import com.google.common.collect.ImmutableList;
+import io.github.datromtool.io.ArchiveType;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.Value;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.util.regex.Pattern.CASE_INSENSITIVE;
+
+/**
+ * Handles archives split into volumes, which are read as a single file.
+ * <p>
+ * Archives split by size into {@code name.zip.001}, {@code name.zip.002} and so on are read through a
+ * {@link VolumeChannel}, starting from the first volume. RAR archives split into {@code name.part1.rar},
+ * {@code name.part2.rar} and so on are read by the RAR readers themselves, also starting from the first volume.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class ArchiveVolumes {
+
+    private static final Pattern VOLUME_PATTERN = Pattern.compile("\\.(\\d{3})$");
+    private static final Pattern RAR_VOLUME_PATTERN = Pattern.compile("\\.part(\\d+)\\.rar$", CASE_INSENSITIVE);
+
+    /**
+     * @return whether the file is the first volume of an archive split by size, such as {@code name.zip.001}
+     */
+    public static boolean isFirstVolume(@Nonnull Path file) {
+        String fileName = file.getFileName().toString();
+        Matcher matcher = VOLUME_PATTERN.matcher(fileName);
+        return matcher.find()
+                && Integer.parseInt(matcher.group(1)) == 1
+                && ArchiveType.parse(fileName) != null;
+    }
+
+    /**
+     * @return the first volume of the archive the file is a subsequent volume of, or null if it's not one
+     */
+    @Nullable
+    public static Path getFirstVolume(@Nonnull Path file) {
+        String fileName = file.getFileName().toString();
+        Matcher matcher = VOLUME_PATTERN.matcher(fileName);
+        if (matcher.find()) {
+            String firstName = fileName.substring(0, matcher.start()) + ".001";
+            if (Integer.parseInt(matcher.group(1)) <= 1 || ArchiveType.parse(firstName) == null) {
+                return null;
+            }
+            return file.resolveSibling(firstName);
+        }
+        matcher = RAR_VOLUME_PATTERN.matcher(fileName);
+        if (matcher.find()) {
+            String number = matcher.group(1);
+            if (Integer.parseInt(number) <= 1) {
+                return null;
+            }
+            String first = "0".repeat(number.length() - 1) + "1";
+            return file.resolveSibling(fileName.substring(0, matcher.start(1)) + first + fileName.substring(matcher.end(1)));
+        }
+        return null;
+    }
+
+    /**
+     * @return the volumes of the archive, which is just the file itself if it's not the first volume of an
+     * archive split by size
+     */
+    @Nonnull
+    public static ImmutableList<Path> getVolumes(@Nonnull Path file) {
+        if (!isFirstVolume(file)) {
+            return ImmutableList.of(file);
+        }
+        String fileName = file.getFileName().toString();
+        String baseName = fileName.substring(0, fileName.length() - 3);
+        ImmutableList.Builder<Path> builder = ImmutableList.builder();
+        builder.add(file);
+        for (int i = 2; i <= 999; i++) {
+            Path volume = file.resolveSibling(baseName + String.format("%03d", i));
+            if (!Files.isRegularFile(volume)) {
+                break;
+            }
+            builder.add(volume);
+        }
+        return builder.build();
+    }
+
+    /**
+     * The attributes of all the volumes of an archive, which change if any of them is replaced, truncated,
+     * added or removed.
+     */
+    @Value
+    public static class Attributes {
+
+        /**
+         * The sum of the sizes of the volumes
+         */
+        long size;
+        /**
+         * The latest modification time of the volumes
+         */
+        @Nonnull
+        FileTime lastModifiedTime;
+    }
+
+    /**
+     * Reads the attributes of all the volumes of the archive, which are just the ones of the file itself if it's
+     * not the first volume of an archive split by size.
+     */
+    @Nonnull
+    public static Attributes readAttributes(@Nonnull Path file) throws IOException {
+        long size = 0;
+        FileTime lastModifiedTime = null;
+        for (Path volume : getVolumes(file)) {
+            BasicFileAttributes attributes = Files.readAttributes(volume, BasicFileAttributes.class);
+            size += attributes.size();
+            if (lastModifiedTime == null || attributes.lastModifiedTime().compareTo(lastModifiedTime) > 0) {
+                lastModifiedTime = attributes.lastModifiedTime();
+            }
+        }
+        return new Attributes(size, lastModifiedTime);
+    }
+
+    /**
+     * Opens all the volumes of the archive as a single channel.
+     */
+    @Nonnull
+    public static SeekableByteChannel newByteChannel(@Nonnull Path file) throws IOException {
+        ImmutableList<Path> volumes = getVolumes(file);
+        if (volumes.size() == 1) {
+            return FileChannel.open(file, StandardOpenOption.READ);
+        }
+        return VolumeChannel.open(volumes);
+    }
+
+    /**
+     * Opens all the volumes of the archive as a single stream.
+     */
+    @Nonnull
+    public static InputStream newInputStream(@Nonnull Path file) throws IOException {
+        return newInputStream(file, ReadAheadPolicy.DISABLED);
+    }
+
+    /**
+     * Opens all the volumes of the archive as a single stream, reading a single file in advance if its file store
+     * calls for it. Volumes are prefetched by {@link VolumeChannel} instead.
+     */
+    @Nonnull
+    public static InputStream newInputStream(@Nonnull Path file, @Nonnull ReadAheadPolicy readAheadPolicy)
+            throws IOException {
+        if (!isFirstVolume(file)) {
+            return readAheadPolicy.newInputStream(file);
+        }
+        return Channels.newInputStream(newByteChannel(file));
+    }
+}
@@ -0,0 +1,195 @@
+package io.github.datromtool.util;
+
+import lombok.AllArgsConstructor;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Reads a file sequentially while the next {@code depth} blocks are being read in the background by an
+ * {@link AsynchronousFileChannel}.
+ * <p>
+ * When a block is consumed, its buffer is used to read the block after the last one requested, so there are
+ * always {@code depth} blocks either requested or waiting to be consumed. Skipping drops the blocks before the new
+ * position without waiting for them.
+ */
+final class ReadAheadInputStream extends InputStream {
+
+    @AllArgsConstructor
+    private static final class Block {
+
+        private final ByteBuffer buffer;
+        private final long position;
+        private final Future<Integer> read;
+    }
+
+    private final AsynchronousFileChannel channel;
+    private final long size;
+    private final int blockSize;
+    private final int depth;
+    private final Deque<Block> blocks = new ArrayDeque<>();
+    private ByteBuffer current;
+    private long currentPosition;
+    private long nextPosition;
+    /**
+     * Where reading continues after a skip, which may be in the middle of the next block consumed
+     */
+    private long skipPosition;
+    private boolean closed;
+
+    ReadAheadInputStream(@Nonnull Path file, int blockSize, int depth) throws IOException {
+        this.channel = AsynchronousFileChannel.open(file, StandardOpenOption.READ);
+        this.blockSize = blockSize;
+        this.depth = depth;
+        try {
+            this.size = channel.size();
+            requestMissingBlocks();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void requestMissingBlocks() {
+        while (blocks.size() < depth && nextPosition < size) {
+            request(ByteBuffer.allocate(blockSize));
+        }
+    }
+
+    private void request(ByteBuffer buffer) {
+        buffer.clear();
+        blocks.add(new Block(buffer, nextPosition, channel.read(buffer, nextPosition)));
+        nextPosition += buffer.capacity();
+    }
+
+    /**
+     * @return whether there's anything left to read
+     */
+    private boolean fill() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (current != null && current.hasRemaining()) {
+            return true;
+        }
+        if (current != null && nextPosition < size) {
+            request(current);
+        }
+        current = null;
+        Block block = blocks.poll();
+        if (block == null) {
+            return false;
+        }
+        int read = await(block.read);
+        if (read < 0) {
+            // The file was truncated since it was opened
+            blocks.clear();
+            return false;
+        }
+        ByteBuffer buffer = block.buffer;
+        // Short reads are only expected at the end of the file, but the rest of the block is read just in case
+        while (buffer.hasRemaining() && block.position + buffer.position() < size) {
+            if (await(channel.read(buffer, block.position + buffer.position())) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        if (skipPosition > block.position) {
+            buffer.position((int) Math.min(buffer.limit(), skipPosition - block.position));
+        }
+        current = buffer;
+        currentPosition = block.position;
+        return current.hasRemaining() || fill();
+    }
+
+    private static int await(Future<Integer> read) throws IOException {
+        try {
+            return read.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while reading");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return current.get() & 0xFF;
+    }
+
+    @Override
+    public int read(@Nonnull byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int read = Math.min(len, current.remaining());
+        current.get(b, off, read);
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0 || !fill()) {
+            return 0;
+        }
+        long position = currentPosition + current.position();
+        long target = Math.min(size, position + Math.min(n, size));
+        if (target <= currentPosition + current.limit()) {
+            current.position((int) (target - currentPosition));
+            return target - position;
+        }
+        // The buffers of the blocks dropped may still be being read into, so they aren't reused
+        current = null;
+        while (!blocks.isEmpty() && blocks.peek().position + blocks.peek().buffer.capacity() <= target) {
+            blocks.poll();
+        }
+        if (blocks.isEmpty()) {
+            nextPosition = target;
+        }
+        skipPosition = target;
+        requestMissingBlocks();
+        return target - position;
+    }
+
+    @Override
+    public int available() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        return current != null ? current.remaining() : 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        // Pending reads fail once the channel is closed
+        blocks.clear();
+        current = null;
+        channel.close();
+    }
+}
@@ -0,0 +1,103 @@
+package io.github.datromtool.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import io.github.datromtool.config.AppConfig;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Decides how many blocks are read in advance from each file, according to the {@link FileStore} it's in, and
+ * opens the files accordingly.
+ * <p>
+ * Reading in advance makes up for the latency of each read on network shares, where the blocks read
+ * synchronously by {@link Files#newInputStream} would each wait for a round trip. Local drives are usually
+ * better off with the read-ahead of the operating system.
+ * <p>
+ * This class is thread-safe.
+ */
+@Slf4j
+public final class ReadAheadPolicy {
+
+    public static final ReadAheadPolicy DISABLED = new ReadAheadPolicy(0, 0, ImmutableMap.of());
+
+    /**
+     * Files are mostly read directory by directory, so only the most recent ones are kept
+     */
+    private static final int MAX_CACHED_DIRECTORIES = 1024;
+
+    private final int blockSize;
+    private final int depth;
+    private final ImmutableMap<String, Integer> depthPerFileStore;
+    private final Cache<Path, Integer> depthPerDirectory = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_DIRECTORIES)
+            .build();
+
+    public ReadAheadPolicy(int blockSize, int depth, @Nonnull Map<String, Integer> depthPerFileStore) {
+        this.blockSize = Math.max(1, blockSize);
+        this.depth = depth;
+        this.depthPerFileStore = ImmutableMap.copyOf(depthPerFileStore);
+    }
+
+    @Nonnull
+    public static ReadAheadPolicy from(@Nonnull AppConfig.ReadAheadConfig config) {
+        if (config.getDepth() <= 0 && config.getDepthPerFileStore().isEmpty()) {
+            return DISABLED;
+        }
+        return new ReadAheadPolicy(config.getBlockSize(), config.getDepth(), config.getDepthPerFileStore());
+    }
+
+    /**
+     * @return the amount of blocks read in advance from the file, or zero or less if it's read synchronously
+     */
+    public int getDepth(@Nonnull Path file) {
+        if (depthPerFileStore.isEmpty()) {
+            return depth;
+        }
+        Path directory = file.toAbsolutePath().getParent();
+        if (directory == null) {
+            return depth;
+        }
+        try {
+            return depthPerDirectory.get(directory, () -> getDepthOfFileStore(directory));
+        } catch (ExecutionException e) {
+            // getDepthOfFileStore doesn't throw
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private int getDepthOfFileStore(Path directory) {
+        try {
+            FileStore fileStore = Files.getFileStore(directory);
+            Integer fileStoreDepth = depthPerFileStore.get(fileStore.name());
+            if (fileStoreDepth == null) {
+                fileStoreDepth = depthPerFileStore.get(fileStore.type());
+            }
+            return fileStoreDepth != null ? fileStoreDepth : depth;
+        } catch (IOException e) {
+            log.debug("Could not determine the file store of '{}'", directory, e);
+            return depth;
+        }
+    }
+
+    /**
+     * Opens a file for reading, reading in advance if its file store calls for it.
+     */
+    @Nonnull
+    public InputStream newInputStream(@Nonnull Path file) throws IOException {
+        int fileDepth = getDepth(file);
+        if (fileDepth <= 0) {
+            return Files.newInputStream(file);
+        }
+        return new ReadAheadInputStream(file, blockSize, fileDepth);
+    }
+}
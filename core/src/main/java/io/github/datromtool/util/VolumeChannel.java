@@ -0,0 +1,273 @@
+package io.github.datromtool.util;
+
+import com.google.common.collect.ImmutableList;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A read-only channel over the volumes of a split archive, as if they were a single file.
+ * <p>
+ * Volumes are opened as they're reached. When reading reaches a volume, the next one is opened and its first
+ * {@code prefetchSize} bytes are read in the background, so reading goes on without waiting for the next volume,
+ * which is often on a slow or remote drive.
+ * <p>
+ * Reads and seeks are synchronized, so the channel can be shared by the readers of an archive.
+ */
+@Slf4j
+final class VolumeChannel implements SeekableByteChannel {
+
+    static final int DEFAULT_PREFETCH_SIZE = 1024 * 1024; // 1MB
+
+    private static final ExecutorService PREFETCH_EXECUTOR = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "VOLUME-PREFETCH");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Value
+    private static class Volume {
+
+        FileChannel channel;
+        @Nullable
+        ByteBuffer prefetched;
+    }
+
+    private final ImmutableList<Path> paths;
+    private final long[] offsets;
+    private final long size;
+    private final int prefetchSize;
+    private final FileChannel[] channels;
+    private final ByteBuffer[] prefetched;
+    private final CompletableFuture<?>[] prefetches;
+    private long position;
+    private boolean closed;
+
+    private VolumeChannel(ImmutableList<Path> paths, long[] offsets, long size, int prefetchSize) {
+        this.paths = paths;
+        this.offsets = offsets;
+        this.size = size;
+        this.prefetchSize = prefetchSize;
+        this.channels = new FileChannel[paths.size()];
+        this.prefetched = new ByteBuffer[paths.size()];
+        this.prefetches = new CompletableFuture<?>[paths.size()];
+    }
+
+    @Nonnull
+    static VolumeChannel open(@Nonnull List<Path> volumes) throws IOException {
+        return open(volumes, DEFAULT_PREFETCH_SIZE);
+    }
+
+    @Nonnull
+    static VolumeChannel open(@Nonnull List<Path> volumes, int prefetchSize) throws IOException {
+        if (volumes.isEmpty()) {
+            throw new IllegalArgumentException("At least one volume is required");
+        }
+        long[] offsets = new long[volumes.size()];
+        long size = 0;
+        for (int i = 0; i < volumes.size(); i++) {
+            offsets[i] = size;
+            size += Files.size(volumes.get(i));
+        }
+        return new VolumeChannel(ImmutableList.copyOf(volumes), offsets, size, Math.max(0, prefetchSize));
+    }
+
+    @Override
+    public synchronized int read(ByteBuffer dst) throws IOException {
+        ensureOpen();
+        if (!dst.hasRemaining()) {
+            return 0;
+        }
+        if (position >= size) {
+            return -1;
+        }
+        int index = indexOf(position);
+        long volumePosition = position - offsets[index];
+        long volumeRemaining = volumeSize(index) - volumePosition;
+        FileChannel channel = getChannel(index);
+        int read;
+        ByteBuffer buffer = prefetched[index];
+        if (buffer != null && volumePosition < buffer.limit()) {
+            ByteBuffer source = buffer.duplicate();
+            source.position((int) volumePosition);
+            if (source.remaining() > dst.remaining()) {
+                source.limit(source.position() + dst.remaining());
+            }
+            read = source.remaining();
+            dst.put(source);
+        } else {
+            if (buffer != null) {
+                // Read past it, so it won't be used again
+                prefetched[index] = null;
+            }
+            ByteBuffer limited = dst;
+            if (dst.remaining() > volumeRemaining) {
+                limited = dst.duplicate();
+                limited.limit(limited.position() + (int) volumeRemaining);
+            }
+            read = channel.read(limited, volumePosition);
+            if (read < 0) {
+                throw new IOException(String.format("Volume '%s' is shorter than expected", paths.get(index)));
+            }
+            if (limited != dst) {
+                dst.position(dst.position() + read);
+            }
+        }
+        position += read;
+        return read;
+    }
+
+    private int indexOf(long position) {
+        int index = Arrays.binarySearch(offsets, position);
+        if (index < 0) {
+            index = -index - 2;
+        }
+        // Skip empty volumes, which start at the same offset as the next one
+        while (index < offsets.length - 1 && offsets[index + 1] <= position) {
+            index++;
+        }
+        return index;
+    }
+
+    private long volumeSize(int index) {
+        return (index + 1 < offsets.length ? offsets[index + 1] : size) - offsets[index];
+    }
+
+    private FileChannel getChannel(int index) throws IOException {
+        if (channels[index] == null) {
+            CompletableFuture<?> prefetch = prefetches[index];
+            if (prefetch != null) {
+                try {
+                    Volume volume = (Volume) prefetch.join();
+                    channels[index] = volume.getChannel();
+                    prefetched[index] = volume.getPrefetched();
+                } catch (CompletionException e) {
+                    log.debug("Could not prefetch volume '{}'", paths.get(index), e.getCause());
+                }
+                prefetches[index] = null;
+            }
+            if (channels[index] == null) {
+                channels[index] = FileChannel.open(paths.get(index), StandardOpenOption.READ);
+            }
+        }
+        int next = index + 1;
+        if (prefetchSize > 0 && next < paths.size() && channels[next] == null && prefetches[next] == null) {
+            prefetches[next] = CompletableFuture.supplyAsync(() -> prefetch(next), PREFETCH_EXECUTOR);
+        }
+        return channels[index];
+    }
+
+    private Volume prefetch(int index) {
+        try {
+            FileChannel channel = FileChannel.open(paths.get(index), StandardOpenOption.READ);
+            try {
+                ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(prefetchSize, volumeSize(index)));
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, buffer.position()) < 0) {
+                        break;
+                    }
+                }
+                buffer.flip();
+                return new Volume(channel, buffer);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public synchronized long position() throws IOException {
+        ensureOpen();
+        return position;
+    }
+
+    @Override
+    public synchronized SeekableByteChannel position(long newPosition) throws IOException {
+        ensureOpen();
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("Negative position: " + newPosition);
+        }
+        position = newPosition;
+        return this;
+    }
+
+    @Override
+    public synchronized long size() throws IOException {
+        ensureOpen();
+        return size;
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+        return !closed;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        IOException exception = null;
+        for (int i = 0; i < channels.length; i++) {
+            CompletableFuture<?> prefetch = prefetches[i];
+            if (prefetch != null) {
+                try {
+                    channels[i] = ((Volume) prefetch.join()).getChannel();
+                } catch (CompletionException e) {
+                    // Nothing was left open
+                }
+            }
+            if (channels[i] != null) {
+                try {
+                    channels[i].close();
+                } catch (IOException e) {
+                    if (exception == null) {
+                        exception = e;
+                    } else {
+                        exception.addSuppressed(e);
+                    }
+                }
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (closed) {
+            throw new ClosedChannelException();
+        }
+    }
+}
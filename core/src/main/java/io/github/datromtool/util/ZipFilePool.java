@@ -0,0 +1,251 @@
+package io.github.datromtool.util;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A pool of opened {@link ZipFile}s, so the central directory of an archive is only parsed once even if it's read
+ * several times, such as when it's scanned and then copied.
+ * <p>
+ * A {@link ZipFile} can read several entries at the same time, so each archive has a single handle shared by all
+ * of its users. Handles are reference-counted, and the ones no longer in use are kept open until they become the
+ * least recently used beyond {@code maxIdleHandles}, or until every {@link Session} using the pool is closed. Handles are keyed by path, size and last modification time,
+ * so an archive which changed is opened again. Archives split into volumes are keyed by the path of their first
+ * volume, the sum of the sizes of all of them and the latest modification time among them, so changing any volume
+ * opens the archive again.
+ * <p>
+ * This class is thread-safe.
+ */
+@Slf4j
+public final class ZipFilePool {
+
+    public static final int DEFAULT_MAX_IDLE_HANDLES = 16;
+
+    private static final ZipFilePool SHARED = new ZipFilePool(DEFAULT_MAX_IDLE_HANDLES);
+
+    private final int maxIdleHandles;
+    private final Map<Key, Handle> handles = new HashMap<>();
+    private final LinkedHashMap<Key, Handle> idleHandles = new LinkedHashMap<>(16, 0.75f, true);
+    private int sessions;
+
+    public ZipFilePool(int maxIdleHandles) {
+        this.maxIdleHandles = Math.max(0, maxIdleHandles);
+    }
+
+    /**
+     * @return the pool shared by the scanner and the copier
+     */
+    @Nonnull
+    public static ZipFilePool shared() {
+        return SHARED;
+    }
+
+    @Value
+    private static class Key {
+
+        Path path;
+        long size;
+        FileTime lastModifiedTime;
+    }
+
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    private static final class Handle {
+
+        private final Key key;
+        private final ZipFile zipFile;
+        private int references;
+    }
+
+    /**
+     * A reference to an opened {@link ZipFile}, which must be closed instead of the {@link ZipFile} itself.
+     */
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    public final class Lease implements Closeable {
+
+        private final Handle handle;
+        private boolean closed;
+
+        @Nonnull
+        public ZipFile getZipFile() {
+            return handle.zipFile;
+        }
+
+        @Override
+        public void close() throws IOException {
+            synchronized (ZipFilePool.this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                release(handle);
+            }
+        }
+    }
+
+    /**
+     * A scan or copy which uses the pool. The idle handles are closed once every session is closed, so archives
+     * aren't kept open, and can be deleted or renamed, once nothing is reading them anymore.
+     */
+    public final class Session implements AutoCloseable {
+
+        private boolean closed;
+
+        private Session() {
+        }
+
+        @Override
+        public void close() {
+            synchronized (ZipFilePool.this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                if (--sessions > 0) {
+                    return;
+                }
+                try {
+                    clear();
+                } catch (IOException e) {
+                    log.warn("Could not close the pooled ZIP files", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts a session, which must be closed when it no longer reads archives from the pool.
+     */
+    @Nonnull
+    public synchronized Session openSession() {
+        sessions++;
+        return new Session();
+    }
+
+    /**
+     * Gets the handle of the archive, opening it if it's not in the pool or if it changed since it was opened.
+     */
+    @Nonnull
+    public Lease acquire(@Nonnull Path file) throws IOException {
+        Path path = file.toAbsolutePath().normalize();
+        ArchiveVolumes.Attributes attributes = ArchiveVolumes.readAttributes(path);
+        Key key = new Key(path, attributes.getSize(), attributes.getLastModifiedTime());
+        synchronized (this) {
+            Handle handle = handles.get(key);
+            if (handle != null) {
+                return lease(handle);
+            }
+        }
+        // Parsing the central directory can take a while, so it's done without holding the lock
+        ZipFile zipFile = ArchiveVolumes.isFirstVolume(path)
+                ? ZipFile.builder().setSeekableByteChannel(ArchiveVolumes.newByteChannel(path)).get()
+                : ZipFile.builder().setPath(path).get();
+        synchronized (this) {
+            Handle handle = handles.get(key);
+            if (handle != null) {
+                // Opened by another thread in the meantime
+                zipFile.close();
+                return lease(handle);
+            }
+            evictIdle(path);
+            handle = new Handle(key, zipFile);
+            handles.put(key, handle);
+            return lease(handle);
+        }
+    }
+
+    /**
+     * Closes the handles of an archive which is about to be written. Handles in use are closed when released.
+     */
+    public synchronized void evict(@Nonnull Path file) throws IOException {
+        Path path = file.toAbsolutePath().normalize();
+        handles.values().removeIf(h -> h.key.getPath().equals(path));
+        evictIdle(path);
+    }
+
+    /**
+     * Closes all the handles which are not in use.
+     */
+    public synchronized void clear() throws IOException {
+        List<Handle> toClose = new ArrayList<>(idleHandles.values());
+        idleHandles.clear();
+        for (Handle handle : toClose) {
+            handles.remove(handle.key, handle);
+        }
+        close(toClose);
+    }
+
+    private Lease lease(Handle handle) {
+        handle.references++;
+        idleHandles.remove(handle.key);
+        return new Lease(handle);
+    }
+
+    private void release(Handle handle) throws IOException {
+        if (--handle.references > 0) {
+            return;
+        }
+        if (handles.get(handle.key) != handle) {
+            // Evicted or replaced while in use
+            handle.zipFile.close();
+            return;
+        }
+        idleHandles.put(handle.key, handle);
+        List<Handle> toClose = new ArrayList<>();
+        Iterator<Handle> iterator = idleHandles.values().iterator();
+        while (idleHandles.size() - toClose.size() > maxIdleHandles && iterator.hasNext()) {
+            Handle eldest = iterator.next();
+            iterator.remove();
+            handles.remove(eldest.key);
+            toClose.add(eldest);
+        }
+        close(toClose);
+    }
+
+    private void evictIdle(Path path) throws IOException {
+        List<Handle> toClose = new ArrayList<>();
+        Iterator<Handle> iterator = idleHandles.values().iterator();
+        while (iterator.hasNext()) {
+            Handle handle = iterator.next();
+            if (handle.key.getPath().equals(path)) {
+                iterator.remove();
+                handles.remove(handle.key, handle);
+                toClose.add(handle);
+            }
+        }
+        close(toClose);
+    }
+
+    private static void close(List<Handle> toClose) throws IOException {
+        IOException exception = null;
+        for (Handle handle : toClose) {
+            log.debug("Closing pooled handle of '{}'", handle.key.getPath());
+            try {
+                handle.zipFile.close();
+            } catch (IOException e) {
+                if (exception == null) {
+                    exception = e;
+                } else {
+                    exception.addSuppressed(e);
+                }
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package io.github.datromtool.command;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.github.datromtool.TestDirDependantTest;
+import io.github.datromtool.config.AppConfig;
+import io.github.datromtool.data.CrcKey;
+import io.github.datromtool.data.FileOutputOptions;
+import io.github.datromtool.data.Filter;
+import io.github.datromtool.data.PostFilter;
+import io.github.datromtool.data.SortingPreference;
+import io.github.datromtool.domain.datafile.logiqx.Datafile;
+import io.github.datromtool.domain.datafile.logiqx.Game;
+import io.github.datromtool.domain.datafile.logiqx.Rom;
+import io.github.datromtool.io.ArchiveType;
+import io.github.datromtool.util.ArchiveUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.NullSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OneGameOneRomTest extends TestDirDependantTest {
+
+    private static final String LOOSE_FILE = "0016384.txt";
+    private static final String ARCHIVED_FILE = "0032768.txt";
+
+    private static Map<String, CrcKey> crc32sums;
+    private static Map<String, String> sha1sums;
+
+    private Path tempDir;
+    private Path inputDir;
+
+    @BeforeAll
+    static void setup() throws IOException {
+        crc32sums = Files.readAllLines(scanTestDataSource.getParent().resolve("CRC32SUMS")).stream()
+                .map(s -> s.split("\\s+"))
+                .peek(s -> s[2] = Paths.get(s[2]).getFileName().toString())
+                .collect(Collectors.toMap(s -> s[2], s -> CrcKey.of(Long.parseLong(s[1]), s[0])));
+        sha1sums = Files.readAllLines(scanTestDataSource.getParent().resolve("SHA1SUMS")).stream()
+                .map(s -> s.split("\\s+"))
+                .peek(s -> s[1] = Paths.get(s[1]).getFileName().toString())
+                .collect(Collectors.toMap(s -> s[1], s -> s[0]));
+    }
+
+    @BeforeEach
+    void setupInput() throws IOException {
+        tempDir = Files.createTempDirectory("datromtool_1g1r_test_");
+        inputDir = Files.createDirectory(tempDir.resolve("input"));
+        // The first file is present both loose and in archives, the second one only in archives
+        for (String file : ImmutableList.of(
+                LOOSE_FILE,
+                LOOSE_FILE + ".zip",
+                LOOSE_FILE + ".7z",
+                LOOSE_FILE + ".tar.gz",
+                ARCHIVED_FILE + ".zip",
+                ARCHIVED_FILE + ".7z",
+                ARCHIVED_FILE + ".tar.gz")) {
+            String directory = file.substring(0, file.indexOf('.'));
+            Files.copy(scanTestDataSource.resolve(directory).resolve(file), inputDir.resolve(file));
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        ArchiveUtils.deleteFolder(tempDir);
+    }
+
+    @ParameterizedTest
+    @NullSource
+    @EnumSource(value = ArchiveType.class, names = {"ZIP", "SEVEN_ZIP"})
+    void testCopyDuringScan_sameAsSequential(ArchiveType archiveType) throws Exception {
+        Datafile datafile = Datafile.builder()
+                .games(ImmutableList.of(
+                        createGame("Loose (USA)", null, LOOSE_FILE),
+                        createGame("Loose (Europe)", "Loose (USA)", LOOSE_FILE),
+                        createGame("Archived (USA)", null, ARCHIVED_FILE),
+                        createGame("Mixed (USA)", null, LOOSE_FILE, ARCHIVED_FILE)))
+                .build();
+        Path sequentialDir = tempDir.resolve("sequential");
+        Path pipelinedDir = tempDir.resolve("pipelined");
+        generate(datafile, false, sequentialDir, archiveType);
+        generate(datafile, true, pipelinedDir, archiveType);
+        ImmutableMap<Path, byte[]> sequential = readAll(sequentialDir);
+        ImmutableMap<Path, byte[]> pipelined = readAll(pipelinedDir);
+        assertTrue(sequential.size() >= 2);
+        assertEquals(sequential.keySet(), pipelined.keySet());
+        for (Map.Entry<Path, byte[]> entry : sequential.entrySet()) {
+            assertArrayEquals(entry.getValue(), pipelined.get(entry.getKey()), entry.getKey().toString());
+        }
+    }
+
+    private void generate(Datafile datafile, boolean copyDuringScan, Path outputDir, ArchiveType archiveType)
+            throws Exception {
+        Files.createDirectory(outputDir);
+        new OneGameOneRom(
+                Filter.builder().build(),
+                PostFilter.builder().build(),
+                SortingPreference.builder().build())
+                .generate(
+                        AppConfig.builder()
+                                .copier(AppConfig.FileCopierConfig.builder().copyDuringScan(copyDuringScan).build())
+                                .build(),
+                        ImmutableList.of(datafile),
+                        ImmutableList.of(inputDir),
+                        FileOutputOptions.builder()
+                                .outputDir(outputDir)
+                                .archiveType(archiveType)
+                                .forceSubfolder(true)
+                                .build(),
+                        ImmutableList.of(),
+                        ImmutableList.of());
+    }
+
+    private static Game createGame(String name, String cloneOf, String... files) {
+        return Game.builder()
+                .name(name)
+                .description(name)
+                .cloneOf(cloneOf)
+                .roms(Stream.of(files)
+                        .map(f -> Rom.builder()
+                                .name(f)
+                                .size(crc32sums.get(f).getSize())
+                                .crc(crc32sums.get(f).getCrc())
+                                .sha1(sha1sums.get(f))
+                                .build())
+                        .collect(ImmutableList.toImmutableList()))
+                .build();
+    }
+
+    private static ImmutableMap<Path, byte[]> readAll(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            ImmutableMap.Builder<Path, byte[]> builder = ImmutableMap.builder();
+            for (Path path : paths.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                builder.put(directory.relativize(path), Files.readAllBytes(path));
+            }
+            return builder.build();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package io.github.datromtool.io;
+
+import com.google.common.collect.ImmutableList;
+import io.github.datromtool.util.ArchiveUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ArchiveDirectoryCacheTest {
+
+    private static final ImmutableList<ArchiveDirectoryCache.Entry> ENTRIES = ImmutableList.of(
+            ArchiveDirectoryCache.Entry.of("test/short-text.txt", 22, 0xCAFEBABEL, 100, 1000L),
+            ArchiveDirectoryCache.Entry.of("test/lorem ipsum.txt", 64420, null, -1, null));
+
+    private Path tempDir;
+    private Path cacheFile;
+    private Path archive;
+
+    @BeforeEach
+    void setup() throws Exception {
+        tempDir = Files.createTempDirectory("datromtool_directory_cache_test_");
+        cacheFile = tempDir.resolve("cache").resolve("directory.cache");
+        archive = tempDir.resolve("files.zip");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        ArchiveUtils.deleteFolder(tempDir);
+    }
+
+    @Test
+    void testRoundTrip() throws Exception {
+        ArchiveDirectoryCache cache = ArchiveDirectoryCache.load(cacheFile);
+        assertNull(cache.get(archive, 10, 20));
+        cache.put(archive, 10, 20, ENTRIES);
+        cache.save();
+
+        ArchiveDirectoryCache loaded = ArchiveDirectoryCache.load(cacheFile);
+        assertEquals(ENTRIES, loaded.get(archive, 10, 20));
+    }
+
+    @Test
+    void testChangedArchive() throws Exception {
+        ArchiveDirectoryCache cache = ArchiveDirectoryCache.load(cacheFile);
+        cache.put(archive, 10, 20, ENTRIES);
+        assertNull(cache.get(archive, 11, 20));
+        assertNull(cache.get(archive, 10, 21));
+        assertNull(cache.get(tempDir.resolve("other.zip"), 10, 20));
+    }
+
+    @Test
+    void testSaveUnmodified() throws Exception {
+        ArchiveDirectoryCache.load(cacheFile).save();
+        assertFalse(Files.exists(cacheFile));
+    }
+
+    @Test
+    void testInvalidLines() throws Exception {
+        ArchiveDirectoryCache cache = ArchiveDirectoryCache.load(cacheFile);
+        cache.put(archive, 10, 20, ENTRIES);
+        cache.put(tempDir.resolve("broken.zip"), 30, 40, ENTRIES);
+        cache.save();
+        Files.write(
+                cacheFile,
+                ("garbage\n" + "E\tnot-a-number\t-\t-\t-\tbroken.txt\n").getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        ArchiveDirectoryCache loaded = ArchiveDirectoryCache.load(cacheFile);
+        // The last archive listed gets the invalid entry, so it's discarded
+        int valid = (loaded.get(archive, 10, 20) != null ? 1 : 0)
+                + (loaded.get(tempDir.resolve("broken.zip"), 30, 40) != null ? 1 : 0);
+        assertEquals(1, valid);
+    }
+
+    @Test
+    void testIncompatibleVersion() throws Exception {
+        Files.createDirectories(cacheFile.getParent());
+        Files.write(
+                cacheFile,
+                ("V\t0\nA\t10\t20\t" + archive.toAbsolutePath() + "\n").getBytes(StandardCharsets.UTF_8));
+        assertNull(ArchiveDirectoryCache.load(cacheFile).get(archive, 10, 20));
+    }
+}
@@ -0,0 +1,147 @@
+package io.github.datromtool.io;
+
+import io.github.datromtool.config.AppConfig;
+import io.github.datromtool.data.CrcKey;
+import io.github.datromtool.data.Pair;
+import io.github.datromtool.data.SyncMode;
+import io.github.datromtool.util.ArchiveUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DestinationWriterTest {
+
+    private static final FileTime TIME = FileTime.from(Instant.parse("2022-02-23T09:24:19Z"));
+
+    private Path tempDir;
+    private ExecutorService executorService;
+
+    @BeforeEach
+    void setup() throws Exception {
+        tempDir = Files.createTempDirectory("datromtool_writer_test_");
+        executorService = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        executorService.shutdownNow();
+        ArchiveUtils.deleteFolder(tempDir);
+    }
+
+    @ParameterizedTest
+    @EnumSource(SyncMode.class)
+    void testWrite(SyncMode syncMode) throws Exception {
+        DestinationWriter writer = new DestinationWriter(AppConfig.FileCopierConfig.builder()
+                .writeBufferSize(64 * 1024)
+                .syncMode(syncMode)
+                .build());
+        byte[] contents = new byte[200_000];
+        new Random(0).nextBytes(contents);
+        Path file = tempDir.resolve("file.bin");
+        try (OutputStream outputStream = writer.newOutputStream(file, contents.length)) {
+            for (int i = 0; i < contents.length; i += 1000) {
+                outputStream.write(contents, i, Math.min(1000, contents.length - i));
+            }
+        }
+        writer.finishFile(file, TIME, null, null);
+        writer.flush(executorService);
+        assertArrayEquals(contents, Files.readAllBytes(file));
+        assertEquals(TIME, Files.getLastModifiedTime(file));
+    }
+
+    @Test
+    void testBatchFileTimes() throws Exception {
+        DestinationWriter writer = new DestinationWriter(AppConfig.FileCopierConfig.builder()
+                .batchFileTimes(true)
+                .build());
+        Path file = tempDir.resolve("file.txt");
+        try (OutputStream outputStream = writer.newOutputStream(file, -1)) {
+            outputStream.write(new byte[]{1, 2, 3});
+        }
+        writer.finishFile(file, TIME, null, null);
+        assertNotEquals(TIME, Files.getLastModifiedTime(file));
+        writer.flush(executorService);
+        assertEquals(TIME, Files.getLastModifiedTime(file));
+    }
+
+    @Test
+    void testJournal() throws Exception {
+        Path journalFile = tempDir.resolve(FileCopier.JOURNAL_FILE_NAME);
+        Path done = tempDir.resolve("done.txt");
+        Path interrupted = tempDir.resolve("interrupted.txt");
+        try (CopyJournal journal = CopyJournal.open(journalFile)) {
+            DestinationWriter writer = new DestinationWriter(AppConfig.FileCopierConfig.builder().build(), journal);
+            try (OutputStream outputStream = writer.newOutputStream(done, 3)) {
+                outputStream.write(new byte[]{1, 2, 3});
+            }
+            assertFalse(Files.exists(done));
+            assertTrue(Files.exists(CopyJournal.getTempFile(done)));
+            writer.finishFile(done, TIME, null, null);
+            assertFalse(Files.exists(CopyJournal.getTempFile(done)));
+            assertEquals(TIME, Files.getLastModifiedTime(done));
+            try (OutputStream outputStream = writer.newOutputStream(interrupted, 3)) {
+                outputStream.write(new byte[]{1, 2, 3});
+            }
+            // Never finished, as if the copy was interrupted
+        }
+        assertTrue(Files.exists(CopyJournal.getTempFile(interrupted)));
+        try (CopyJournal journal = CopyJournal.open(journalFile)) {
+            DestinationWriter writer = new DestinationWriter(AppConfig.FileCopierConfig.builder().build(), journal);
+            assertFalse(Files.exists(CopyJournal.getTempFile(interrupted)));
+            assertTrue(writer.isDone(List.of(Pair.of(done, null))));
+            assertFalse(writer.isDone(List.of(Pair.of(done, null), Pair.of(interrupted, null))));
+            CRC32 crc32 = new CRC32();
+            crc32.update(new byte[]{1, 2, 3});
+            assertTrue(writer.isDone(List.of(Pair.of(done, CrcKey.of(3L, Long.toHexString(crc32.getValue()))))));
+            assertFalse(writer.isDone(List.of(Pair.of(done, CrcKey.of(3L, Long.toHexString(crc32.getValue() ^ 1))))));
+            Files.write(done, new byte[]{1, 2});
+            assertFalse(writer.isDone(List.of(Pair.of(done, null))));
+        }
+    }
+
+    @Test
+    void testJournal_batchSync() throws Exception {
+        Path journalFile = tempDir.resolve(FileCopier.JOURNAL_FILE_NAME);
+        Path unsynced = tempDir.resolve("unsynced.txt");
+        Path synced = tempDir.resolve("synced.txt");
+        AppConfig.FileCopierConfig config = AppConfig.FileCopierConfig.builder().syncMode(SyncMode.BATCH).build();
+        try (CopyJournal journal = CopyJournal.open(journalFile)) {
+            DestinationWriter writer = new DestinationWriter(config, journal);
+            try (OutputStream outputStream = writer.newOutputStream(unsynced, 3)) {
+                outputStream.write(new byte[]{1, 2, 3});
+            }
+            writer.finishFile(unsynced, TIME, null, null);
+            // Interrupted before the files were synced
+        }
+        try (CopyJournal journal = CopyJournal.open(journalFile)) {
+            DestinationWriter writer = new DestinationWriter(config, journal);
+            assertFalse(writer.isDone(List.of(Pair.of(unsynced, null))));
+            try (OutputStream outputStream = writer.newOutputStream(synced, 3)) {
+                outputStream.write(new byte[]{1, 2, 3});
+            }
+            writer.finishFile(synced, TIME, null, null);
+            assertFalse(writer.isDone(List.of(Pair.of(synced, null))));
+            writer.flush(executorService);
+            assertTrue(writer.isDone(List.of(Pair.of(synced, null))));
+        }
+    }
+}
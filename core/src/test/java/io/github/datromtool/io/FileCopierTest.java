@@ -3,25 +3,46 @@ package io.github.datromtool.io;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import io.github.datromtool.SystemUtils;
 import io.github.datromtool.TestDirDependantTest;
 import io.github.datromtool.config.AppConfig;
+import io.github.datromtool.data.CrcKey;
+import io.github.datromtool.data.LinkMode;
 import io.github.datromtool.util.ArchiveUtils;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
 
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
 
 import static io.github.datromtool.util.ArchiveUtils.normalizePath;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class FileCopierTest extends TestDirDependantTest {
 
@@ -45,9 +66,706 @@ class FileCopierTest extends TestDirDependantTest {
                 ImmutableList.of(),
                 ImmutableList.of());
         ImmutableList<FileScanner.Result> results = fs.scan(ImmutableList.of(scanTestDataSource));
+        ImmutableSet<FileCopier.Spec> specs = createSpecs(results);
+        FileCopier fc = new FileCopier(AppConfig.FileCopierConfig.builder().build(), ImmutableList.of());
+        fc.copy(specs);
+        ImmutableList<FileScanner.Result> afterCopy = fs.scan(ImmutableList.of(tempDir));
+        assertEquals(results.size(), afterCopy.size());
+        assertAllResultsAreEqual(results, afterCopy);
+    }
+
+    @Test
+    void testCopy_iterator() {
+        FileScanner fs = new FileScanner(
+                AppConfig.FileScannerConfig.builder().build(),
+                ImmutableList.of(),
+                ImmutableList.of(),
+                ImmutableList.of());
+        ImmutableList<FileScanner.Result> results = fs.scan(ImmutableList.of(scanTestDataSource.resolve("0016384")));
+        ImmutableSet<FileCopier.Spec> specs = createSpecs(results);
+        List<Integer> reportedTotals = new CopyOnWriteArrayList<>();
+        AtomicInteger finished = new AtomicInteger();
+        FileCopier.Listener listener = new FileCopier.Listener() {
+            @Override
+            public void init(int numThreads) {
+            }
+
+            @Override
+            public void reportTotalItems(int totalItems) {
+                reportedTotals.add(totalItems);
+            }
+
+            @Override
+            public void reportStart(int thread, Path source, Path destination, long bytes) {
+            }
+
+            @Override
+            public void reportBytesCopied(int thread, long bytes) {
+            }
+
+            @Override
+            public void reportFailure(int thread, Path source, Path destination, String message, Throwable cause) {
+            }
+
+            @Override
+            public void reportFinish(int thread, Path source, Path destination) {
+                finished.incrementAndGet();
+            }
+
+            @Override
+            public void reportAllFinished() {
+            }
+        };
+        FileCopier fc = new FileCopier(
+                AppConfig.FileCopierConfig.builder().maxPendingSpecs(2).build(),
+                ImmutableList.of(listener));
+        fc.copy(specs.iterator());
+        // Pulled in batches of maxPendingSpecs
+        assertEquals(
+                IntStream.rangeClosed(1, (specs.size() + 1) / 2)
+                        .map(i -> Math.min(2 * i, specs.size()))
+                        .boxed()
+                        .collect(Collectors.toList()),
+                reportedTotals);
+        assertEquals(specs.size(), finished.get());
+        ImmutableList<FileScanner.Result> afterCopy = fs.scan(ImmutableList.of(tempDir));
+        assertEquals(results.size(), afterCopy.size());
+        assertAllResultsAreEqual(results, afterCopy);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void testCopy_transfer(boolean cloneFiles) throws Exception {
+        // Large enough to be cloned, which falls back to a transfer where the temporary directory can't clone
+        Path source = scanTestDataSource.resolve("1048577").resolve("1048577.txt");
+        Path destination = tempDir.resolve("1048577.txt");
+        AtomicLong bytesCopied = new AtomicLong();
+        FileCopier.Listener listener = new FileCopier.Listener() {
+            @Override
+            public void init(int numThreads) {
+            }
+
+            @Override
+            public void reportTotalItems(int totalItems) {
+            }
+
+            @Override
+            public void reportStart(int thread, Path source, Path destination, long bytes) {
+            }
+
+            @Override
+            public void reportBytesCopied(int thread, long bytes) {
+                bytesCopied.addAndGet(bytes);
+            }
+
+            @Override
+            public void reportFailure(int thread, Path source, Path destination, String message, Throwable cause) {
+            }
+
+            @Override
+            public void reportFinish(int thread, Path source, Path destination) {
+            }
+
+            @Override
+            public void reportAllFinished() {
+            }
+        };
+        FileCopier fc = new FileCopier(
+                AppConfig.FileCopierConfig.builder().cloneFiles(cloneFiles).build(),
+                ImmutableList.of(listener));
+        fc.copy(ImmutableSet.of(FileCopier.CopySpec.builder().from(source).to(destination).build()));
+        assertArrayEquals(Files.readAllBytes(source), Files.readAllBytes(destination));
+        assertEquals(Files.size(source), bytesCopied.get());
+        assertEquals(Files.getLastModifiedTime(source), Files.getLastModifiedTime(destination));
+        assertFalse(Files.isSymbolicLink(destination));
+    }
+
+    @ParameterizedTest
+    @EnumSource(LinkMode.class)
+    void testCopy_link(LinkMode linkMode) throws Exception {
+        Path source = scanTestDataSource.resolve("0016384").resolve("0016384.txt");
+        Path destination = tempDir.resolve("0016384.txt");
+        FileCopier fc = new FileCopier(AppConfig.FileCopierConfig.builder().build(), ImmutableList.of());
+        fc.copy(ImmutableSet.of(FileCopier.CopySpec.builder()
+                .from(source)
+                .to(destination)
+                .linkMode(linkMode)
+                .build()));
+        assertArrayEquals(Files.readAllBytes(source), Files.readAllBytes(destination));
+        // Creating symbolic links on Windows requires special privileges, so it may fall back to copies
+        if (SystemUtils.OPERATING_SYSTEM != SystemUtils.OperatingSystem.WINDOWS) {
+            assertTrue(Files.isSameFile(source, destination));
+            assertEquals(linkMode == LinkMode.SYMLINK, Files.isSymbolicLink(destination));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void testCopy_zipRename(boolean allowRawZipCopy) {
+        FileScanner fs = new FileScanner(
+                AppConfig.FileScannerConfig.builder().build(),
+                ImmutableList.of(),
+                ImmutableList.of(),
+                ImmutableList.of());
+        Path source = scanTestDataSource.resolve("0016384").resolve("0016384.txt.zip");
+        ImmutableList<FileScanner.Result> results = fs.scan(ImmutableList.of(source));
+        assertEquals(1, results.size());
+        String newName = "Renamed/0016384 (Renamed).txt";
+        FileCopier fc = new FileCopier(
+                AppConfig.FileCopierConfig.builder().allowRawZipCopy(allowRawZipCopy).build(),
+                ImmutableList.of());
+        fc.copy(ImmutableSet.of(FileCopier.ArchiveCopySpec.builder()
+                .from(source)
+                .fromType(ArchiveType.ZIP)
+                .to(tempDir.resolve("renamed.zip"))
+                .toType(ArchiveType.ZIP)
+                .internalSpecs(ImmutableMap.of(
+                        results.get(0).getArchivePath(),
+                        FileCopier.ArchiveCopySpec.InternalSpec.builder()
+                                .from(results.get(0).getArchivePath())
+                                .to(newName)
+                                .build()))
+                .build()));
+        ImmutableList<FileScanner.Result> afterCopy = fs.scan(ImmutableList.of(tempDir));
+        assertEquals(1, afterCopy.size());
+        assertEquals(newName, afterCopy.get(0).getArchivePath());
+        assertEquals(results.get(0).getDigest(), afterCopy.get(0).getDigest());
+        assertEquals(results.get(0).getUnheaderedSize(), afterCopy.get(0).getUnheaderedSize());
+    }
+
+    @ParameterizedTest
+    @CsvSource({"2,1", "1,2", "2,2"})
+    void testCompress_zipParallel(int zipThreads, int deflateThreads) {
+        FileScanner fs = new FileScanner(
+                AppConfig.FileScannerConfig.builder().build(),
+                ImmutableList.of(),
+                ImmutableList.of(),
+                ImmutableList.of());
+        ImmutableList<FileScanner.Result> results = fs.scan(ImmutableList.of(scanTestDataSource.resolve("1048577")));
+        ImmutableSet<FileCopier.CompressionSpec.InternalSpec> internalSpecs = results.stream()
+                .filter(r -> r.getArchiveType() == null)
+                .map(r -> FileCopier.CompressionSpec.InternalSpec.builder()
+                        .from(r.getPath())
+                        .to(r.getPath().getFileName().toString())
+                        .build())
+                .collect(ImmutableSet.toImmutableSet());
+        assertTrue(internalSpecs.size() > 1);
+        FileCopier fc = new FileCopier(
+                AppConfig.FileCopierConfig.builder().zipThreads(zipThreads).deflateThreads(deflateThreads).build(),
+                ImmutableList.of());
+        fc.copy(ImmutableSet.of(FileCopier.CompressionSpec.builder()
+                .toType(ArchiveType.ZIP)
+                .to(tempDir.resolve("compressed.zip"))
+                .internalSpecs(internalSpecs)
+                .build()));
+        ImmutableList<FileScanner.Result> afterCopy = fs.scan(ImmutableList.of(tempDir));
+        assertEquals(internalSpecs.size(), afterCopy.size());
+        for (FileScanner.Result result : afterCopy) {
+            assertEquals(ArchiveType.ZIP, result.getArchiveType());
+            FileScanner.Result original = results.stream()
+                    .filter(r -> r.getArchiveType() == null)
+                    .filter(r -> r.getPath().getFileName().toString().equals(result.getArchivePath()))
+                    .findFirst()
+                    .orElseThrow();
+            assertEquals(original.getDigest(), result.getDigest());
+        }
+    }
+
+    @Test
+    void testHasLargeEntries() throws IOException {
+        Path small = scanTestDataSource.resolve("0016384").resolve("0016384.txt");
+        Path large = scanTestDataSource.resolve("1048577").resolve("1048577.txt");
+        Path largeTar = scanTestDataSource.resolve("1048577").resolve("1048577.txt.tar");
+        assertFalse(FileCopier.hasLargeEntries(compressionSpecOf(small, large)));
+        assertTrue(FileCopier.hasLargeEntries(compressionSpecOf(small, large, largeTar)));
+    }
+
+    private FileCopier.CompressionSpec compressionSpecOf(Path... sources) {
+        return FileCopier.CompressionSpec.builder()
+                .toType(ArchiveType.ZIP)
+                .to(tempDir.resolve("compressed.zip"))
+                .internalSpecs(Arrays.stream(sources)
+                        .map(source -> FileCopier.CompressionSpec.InternalSpec.builder()
+                                .from(source)
+                                .to(source.getFileName().toString())
+                                .build())
+                        .collect(ImmutableSet.toImmutableSet()))
+                .build();
+    }
+
+    @Test
+    void testCompress_tarXzParallel() {
+        FileScanner fs = new FileScanner(
+                AppConfig.FileScannerConfig.builder().build(),
+                ImmutableList.of(),
+                ImmutableList.of(),
+                ImmutableList.of());
+        Path source = scanTestDataSource.resolve("1048577").resolve("1048577.txt");
+        ImmutableList<FileScanner.Result> results = fs.scan(ImmutableList.of(source));
+        assertEquals(1, results.size());
+        FileCopier fc = new FileCopier(
+                AppConfig.FileCopierConfig.builder().xzThreads(2).xzBlockSize(256 * 1024).build(),
+                ImmutableList.of());
+        fc.copy(ImmutableSet.of(FileCopier.CompressionSpec.builder()
+                .toType(ArchiveType.TAR_XZ)
+                .to(tempDir.resolve("compressed.tar.xz"))
+                .internalSpecs(ImmutableSet.of(FileCopier.CompressionSpec.InternalSpec.builder()
+                        .from(source)
+                        .to("1048577.txt")
+                        .build()))
+                .build()));
+        ImmutableList<FileScanner.Result> afterCopy = fs.scan(ImmutableList.of(tempDir));
+        assertEquals(1, afterCopy.size());
+        assertEquals(ArchiveType.TAR_XZ, afterCopy.get(0).getArchiveType());
+        assertEquals(results.get(0).getDigest(), afterCopy.get(0).getDigest());
+    }
+
+    @Test
+    void testCompress_tarZstWithWorkers() {
+        FileScanner fs = new FileScanner(
+                AppConfig.FileScannerConfig.builder().build(),
+                ImmutableList.of(),
+                ImmutableList.of(),
+                ImmutableList.of());
+        Path source = scanTestDataSource.resolve("1048577").resolve("1048577.txt");
+        ImmutableList<FileScanner.Result> results = fs.scan(ImmutableList.of(source));
+        assertEquals(1, results.size());
+        FileCopier fc = new FileCopier(
+                AppConfig.FileCopierConfig.builder().zstdLevel(19).zstdThreads(2).build(),
+                ImmutableList.of());
+        fc.copy(ImmutableSet.of(FileCopier.CompressionSpec.builder()
+                .toType(ArchiveType.TAR_ZST)
+                .to(tempDir.resolve("compressed.tar.zst"))
+                .internalSpecs(ImmutableSet.of(FileCopier.CompressionSpec.InternalSpec.builder()
+                        .from(source)
+                        .to("1048577.txt")
+                        .build()))
+                .build()));
+        ImmutableList<FileScanner.Result> afterCopy = fs.scan(ImmutableList.of(tempDir));
+        assertEquals(1, afterCopy.size());
+        assertEquals(ArchiveType.TAR_ZST, afterCopy.get(0).getArchiveType());
+        assertEquals(results.get(0).getDigest(), afterCopy.get(0).getDigest());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"files.7z", "files.tar.xz"})
+    void testCopy_multipleDestinations(String archive) throws Exception {
+        Path source = archiveTestDataSource.resolve("archives").resolve(archive);
+        ArchiveType archiveType = ArchiveType.parse(source);
+        String shortText = "files/test/short-text.txt";
+        String loremIpsum = "files/test/lorem-ipsum.txt";
+        Files.createDirectories(tempDir.resolve("a"));
+        Files.createDirectories(tempDir.resolve("b"));
+        ImmutableSet<FileCopier.Spec> specs = ImmutableSet.of(
+                FileCopier.ExtractionSpec.builder()
+                        .fromType(archiveType)
+                        .from(source)
+                        .internalSpecs(ImmutableMap.of(
+                                shortText,
+                                FileCopier.ExtractionSpec.InternalSpec.builder()
+                                        .from(shortText)
+                                        .to(tempDir.resolve("a").resolve("short-text.txt"))
+                                        .build()))
+                        .build(),
+                FileCopier.ExtractionSpec.builder()
+                        .fromType(archiveType)
+                        .from(source)
+                        .internalSpecs(ImmutableMap.of(
+                                shortText,
+                                FileCopier.ExtractionSpec.InternalSpec.builder()
+                                        .from(shortText)
+                                        .to(tempDir.resolve("b").resolve("short-text.txt"))
+                                        .build(),
+                                loremIpsum,
+                                FileCopier.ExtractionSpec.InternalSpec.builder()
+                                        .from(loremIpsum)
+                                        .to(tempDir.resolve("b").resolve("lorem-ipsum.txt"))
+                                        .build()))
+                        .build(),
+                FileCopier.ArchiveCopySpec.builder()
+                        .fromType(archiveType)
+                        .toType(ArchiveType.ZIP)
+                        .from(source)
+                        .to(tempDir.resolve("copy.zip"))
+                        .internalSpecs(ImmutableMap.of(
+                                loremIpsum,
+                                FileCopier.ArchiveCopySpec.InternalSpec.builder()
+                                        .from(loremIpsum)
+                                        .to("lorem-ipsum.txt")
+                                        .build()))
+                        .build());
+        ImmutableList<FileCopier.Spec> grouped = FileCopier.groupBySource(specs);
+        assertEquals(1, grouped.size());
+        assertTrue(grouped.get(0) instanceof FileCopier.MultiDestinationSpec);
+
+        FileCopier fc = new FileCopier(AppConfig.FileCopierConfig.builder().build(), ImmutableList.of());
+        fc.copy(specs);
+        Path originals = archiveTestDataSource.resolve("files").resolve("test");
+        byte[] shortTextContents = Files.readAllBytes(originals.resolve("short-text.txt"));
+        byte[] loremIpsumContents = Files.readAllBytes(originals.resolve("lorem-ipsum.txt"));
+        assertArrayEquals(shortTextContents, Files.readAllBytes(tempDir.resolve("a").resolve("short-text.txt")));
+        assertArrayEquals(shortTextContents, Files.readAllBytes(tempDir.resolve("b").resolve("short-text.txt")));
+        assertArrayEquals(loremIpsumContents, Files.readAllBytes(tempDir.resolve("b").resolve("lorem-ipsum.txt")));
+        FileScanner fs = new FileScanner(
+                AppConfig.FileScannerConfig.builder().build(),
+                ImmutableList.of(),
+                ImmutableList.of(),
+                ImmutableList.of());
+        ImmutableList<FileScanner.Result> afterCopy = fs.scan(ImmutableList.of(tempDir.resolve("copy.zip")));
+        assertEquals(1, afterCopy.size());
+        assertEquals("lorem-ipsum.txt", afterCopy.get(0).getArchivePath());
+        assertEquals(loremIpsumContents.length, afterCopy.get(0).getUnheaderedSize());
+    }
+
+    @Test
+    void testMultiDestinationSpec_rejectsRandomAccessArchives() {
+        FileCopier.MultiDestinationSpec.MultiDestinationSpecBuilder builder = FileCopier.MultiDestinationSpec.builder()
+                .fromType(ArchiveType.ZIP)
+                .from(archiveTestDataSource.resolve("archives").resolve("files.zip"))
+                .extractionSpecs(ImmutableList.of())
+                .archiveCopySpecs(ImmutableList.of());
+        assertThrows(IllegalArgumentException.class, builder::build);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"files.7z", "files.tar.xz"})
+    void testCopy_multipleDestinations_partialFailure(String archive) throws Exception {
+        Path source = archiveTestDataSource.resolve("archives").resolve(archive);
+        ArchiveType archiveType = ArchiveType.parse(source);
+        String shortText = "files/test/short-text.txt";
+        String loremIpsum = "files/test/lorem-ipsum.txt";
+        // Neither of these can be written, as their directory doesn't exist
+        Path missingFile = tempDir.resolve("missing").resolve("short-text.txt");
+        Path missingArchive = tempDir.resolve("missing").resolve("copy.zip");
+        ImmutableSet<FileCopier.Spec> specs = ImmutableSet.of(
+                FileCopier.ExtractionSpec.builder()
+                        .fromType(archiveType)
+                        .from(source)
+                        .internalSpecs(ImmutableMap.of(
+                                shortText,
+                                FileCopier.ExtractionSpec.InternalSpec.builder()
+                                        .from(shortText)
+                                        .to(missingFile)
+                                        .build(),
+                                loremIpsum,
+                                FileCopier.ExtractionSpec.InternalSpec.builder()
+                                        .from(loremIpsum)
+                                        .to(tempDir.resolve("lorem-ipsum.txt"))
+                                        .build()))
+                        .build(),
+                FileCopier.ArchiveCopySpec.builder()
+                        .fromType(archiveType)
+                        .toType(ArchiveType.ZIP)
+                        .from(source)
+                        .to(missingArchive)
+                        .internalSpecs(ImmutableMap.of(
+                                shortText,
+                                FileCopier.ArchiveCopySpec.InternalSpec.builder()
+                                        .from(shortText)
+                                        .to("short-text.txt")
+                                        .build()))
+                        .build(),
+                FileCopier.ArchiveCopySpec.builder()
+                        .fromType(archiveType)
+                        .toType(ArchiveType.ZIP)
+                        .from(source)
+                        .to(tempDir.resolve("copy.zip"))
+                        .internalSpecs(ImmutableMap.of(
+                                shortText,
+                                FileCopier.ArchiveCopySpec.InternalSpec.builder()
+                                        .from(shortText)
+                                        .to("short-text.txt")
+                                        .build()))
+                        .build());
+        List<Path> failures = new CopyOnWriteArrayList<>();
+        FileCopier.Listener listener = new FileCopier.Listener() {
+            @Override
+            public void init(int numThreads) {
+            }
+
+            @Override
+            public void reportTotalItems(int totalItems) {
+            }
+
+            @Override
+            public void reportStart(int thread, Path source, Path destination, long bytes) {
+            }
+
+            @Override
+            public void reportBytesCopied(int thread, long bytes) {
+            }
+
+            @Override
+            public void reportFailure(int thread, Path source, Path destination, String message, Throwable cause) {
+                failures.add(destination);
+            }
+
+            @Override
+            public void reportFinish(int thread, Path source, Path destination) {
+            }
+
+            @Override
+            public void reportAllFinished() {
+            }
+        };
+        FileCopier fc = new FileCopier(AppConfig.FileCopierConfig.builder().build(), ImmutableList.of(listener));
+        fc.copy(specs);
+        assertEquals(ImmutableSet.of(missingFile, missingArchive), ImmutableSet.copyOf(failures));
+        assertEquals(2, failures.size());
+        Path originals = archiveTestDataSource.resolve("files").resolve("test");
+        assertArrayEquals(
+                Files.readAllBytes(originals.resolve("lorem-ipsum.txt")),
+                Files.readAllBytes(tempDir.resolve("lorem-ipsum.txt")));
+        assertEquals(ImmutableSet.of("short-text.txt"), entryNames(ArchiveType.ZIP, tempDir.resolve("copy.zip")));
+    }
+
+    @Test
+    void testCopy_extractZip_byName() throws Exception {
+        Path source = archiveTestDataSource.resolve("archives").resolve("files.zip");
+        String shortText = "files/test/short-text.txt";
+        String unknown = "files/test/unknown.txt";
+        FileCopier fc = new FileCopier(AppConfig.FileCopierConfig.builder().build(), ImmutableList.of());
+        fc.copy(ImmutableSet.of(FileCopier.ExtractionSpec.builder()
+                .fromType(ArchiveType.ZIP)
+                .from(source)
+                .internalSpecs(ImmutableMap.of(
+                        unknown,
+                        FileCopier.ExtractionSpec.InternalSpec.builder()
+                                .from(unknown)
+                                .to(tempDir.resolve("unknown.txt"))
+                                .build(),
+                        shortText,
+                        FileCopier.ExtractionSpec.InternalSpec.builder()
+                                .from(shortText)
+                                .to(tempDir.resolve("short-text.txt"))
+                                .build()))
+                .build()));
+        // The entries found are extracted even if others are missing
+        assertArrayEquals(
+                Files.readAllBytes(archiveTestDataSource.resolve("files").resolve("test").resolve("short-text.txt")),
+                Files.readAllBytes(tempDir.resolve("short-text.txt")));
+        assertFalse(Files.exists(tempDir.resolve("unknown.txt")));
+    }
+
+    @Test
+    void testGroupBySource_split() {
+        Path source = archiveTestDataSource.resolve("archives").resolve("files.7z");
+        String shortText = "files/test/short-text.txt";
+        ImmutableList<FileCopier.Spec> specs = IntStream.rangeClosed(0, FileCopier.MAX_GROUP_SIZE)
+                .mapToObj(i -> FileCopier.ArchiveCopySpec.builder()
+                        .fromType(ArchiveType.SEVEN_ZIP)
+                        .toType(ArchiveType.ZIP)
+                        .from(source)
+                        .to(tempDir.resolve("copy-" + i + ".zip"))
+                        .internalSpecs(ImmutableMap.of(
+                                shortText,
+                                FileCopier.ArchiveCopySpec.InternalSpec.builder()
+                                        .from(shortText)
+                                        .to("short-text.txt")
+                                        .build()))
+                        .build())
+                .collect(ImmutableList.toImmutableList());
+        ImmutableList<FileCopier.Spec> grouped = FileCopier.groupBySource(specs);
+        assertEquals(2, grouped.size());
+        assertEquals(
+                FileCopier.MAX_GROUP_SIZE,
+                ((FileCopier.MultiDestinationSpec) grouped.get(0)).getArchiveCopySpecs().size());
+        assertEquals(specs.get(FileCopier.MAX_GROUP_SIZE), grouped.get(1));
+    }
+
+    @Test
+    void testCopy_resume() throws Exception {
+        Path source = archiveTestDataSource.resolve("archives").resolve("files.zip");
+        String shortText = "files/test/short-text.txt";
+        Path extracted = tempDir.resolve("short-text.txt");
+        Path copied = tempDir.resolve("copy.zip");
+        FileCopier.ExtractionSpec extractionSpec = FileCopier.ExtractionSpec.builder()
+                .fromType(ArchiveType.ZIP)
+                .from(source)
+                .internalSpecs(ImmutableMap.of(
+                        shortText,
+                        FileCopier.ExtractionSpec.InternalSpec.builder()
+                                .from(shortText)
+                                .to(extracted)
+                                .build()))
+                .build();
+        // Fails, so the journal is kept
+        FileCopier.CopySpec failing = FileCopier.CopySpec.builder()
+                .from(tempDir.resolve("missing.txt"))
+                .to(tempDir.resolve("missing-copy.txt"))
+                .build();
+        ImmutableSet<FileCopier.Spec> specs = ImmutableSet.of(
+                extractionSpec,
+                failing,
+                FileCopier.ArchiveCopySpec.builder()
+                        .fromType(ArchiveType.ZIP)
+                        .toType(ArchiveType.ZIP)
+                        .from(source)
+                        .to(copied)
+                        .internalSpecs(ImmutableMap.of(
+                                shortText,
+                                FileCopier.ArchiveCopySpec.InternalSpec.builder()
+                                        .from(shortText)
+                                        .to("short-text.txt")
+                                        .build()))
+                        .build());
+        Path journalFile = tempDir.resolve(FileCopier.JOURNAL_FILE_NAME);
+        new FileCopier(AppConfig.FileCopierConfig.builder().build(), ImmutableList.of(), journalFile).copy(specs);
+        byte[] shortTextContents = Files.readAllBytes(
+                archiveTestDataSource.resolve("files").resolve("test").resolve("short-text.txt"));
+        assertArrayEquals(shortTextContents, Files.readAllBytes(extracted));
+        assertTrue(Files.isRegularFile(copied));
+        assertFalse(Files.exists(tempDir.resolve("short-text.txt.part")));
+        assertFalse(Files.exists(tempDir.resolve("copy.zip.part")));
+        assertTrue(Files.isRegularFile(journalFile));
+
+        // Only the file which no longer matches the journal is copied again
+        FileTime sentinel = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(copied, sentinel);
+        Files.write(extracted, new byte[]{1});
+        new FileCopier(AppConfig.FileCopierConfig.builder().build(), ImmutableList.of(), journalFile).copy(specs);
+        assertArrayEquals(shortTextContents, Files.readAllBytes(extracted));
+        assertEquals(sentinel, Files.getLastModifiedTime(copied));
+
+        // A file is also copied again if its journaled CRC32 isn't the expected one
+        CrcKey actual = crcKey(archiveTestDataSource.resolve("files").resolve("test").resolve("short-text.txt"));
+        CrcKey other = CrcKey.of(actual.getSize(), Long.toHexString(Long.parseLong(actual.getCrc(), 16) ^ 1));
+        Files.setLastModifiedTime(extracted, sentinel);
+        new FileCopier(AppConfig.FileCopierConfig.builder().build(), ImmutableList.of(), journalFile).copy(
+                ImmutableSet.of(failing, withExpected(extractionSpec, actual)));
+        assertEquals(sentinel, Files.getLastModifiedTime(extracted));
+        new FileCopier(AppConfig.FileCopierConfig.builder().build(), ImmutableList.of(), journalFile).copy(
+                ImmutableSet.of(failing, withExpected(extractionSpec, other)));
+        assertNotEquals(sentinel, Files.getLastModifiedTime(extracted));
+        assertArrayEquals(shortTextContents, Files.readAllBytes(extracted));
+
+        // The journal is deleted once everything is copied
+        new FileCopier(AppConfig.FileCopierConfig.builder().build(), ImmutableList.of(), journalFile).copy(
+                ImmutableSet.of(extractionSpec));
+        assertFalse(Files.exists(journalFile));
+    }
+
+    private static FileCopier.ExtractionSpec withExpected(FileCopier.ExtractionSpec spec, CrcKey expected) {
+        return FileCopier.ExtractionSpec.builder()
+                .fromType(spec.getFromType())
+                .from(spec.getFrom())
+                .internalSpecs(ImmutableMap.copyOf(Maps.transformValues(
+                        spec.getInternalSpecs(),
+                        i -> FileCopier.ExtractionSpec.InternalSpec.builder()
+                                .from(i.getFrom())
+                                .to(i.getTo())
+                                .expected(expected)
+                                .build())))
+                .build();
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = ArchiveType.class, names = {"ZIP", "SEVEN_ZIP"})
+    void testCopy_skipUnchanged(ArchiveType toType) throws Exception {
+        Path source = archiveTestDataSource.resolve("archives").resolve("files.zip");
+        String shortText = "files/test/short-text.txt";
+        String loremIpsum = "files/test/lorem-ipsum.txt";
+        Path originals = archiveTestDataSource.resolve("files").resolve("test");
+        CrcKey shortTextCrc = crcKey(originals.resolve("short-text.txt"));
+        CrcKey loremIpsumCrc = crcKey(originals.resolve("lorem-ipsum.txt"));
+        Path extracted = tempDir.resolve("short-text.txt");
+        Path stale = tempDir.resolve("lorem-ipsum.txt");
+        Path copied = tempDir.resolve("copy." + toType.getAlias());
+        ImmutableSet<FileCopier.Spec> specs = ImmutableSet.of(
+                FileCopier.ExtractionSpec.builder()
+                        .fromType(ArchiveType.ZIP)
+                        .from(source)
+                        .internalSpecs(ImmutableMap.of(
+                                shortText,
+                                FileCopier.ExtractionSpec.InternalSpec.builder()
+                                        .from(shortText)
+                                        .to(extracted)
+                                        .expected(shortTextCrc)
+                                        .build(),
+                                loremIpsum,
+                                FileCopier.ExtractionSpec.InternalSpec.builder()
+                                        .from(loremIpsum)
+                                        .to(stale)
+                                        .expected(loremIpsumCrc)
+                                        .build()))
+                        .build(),
+                FileCopier.ArchiveCopySpec.builder()
+                        .fromType(ArchiveType.ZIP)
+                        .toType(toType)
+                        .from(source)
+                        .to(copied)
+                        .internalSpecs(ImmutableMap.of(
+                                shortText,
+                                FileCopier.ArchiveCopySpec.InternalSpec.builder()
+                                        .from(shortText)
+                                        .to("short-text.txt")
+                                        .expected(shortTextCrc)
+                                        .build()))
+                        .build());
+        AppConfig.FileCopierConfig config = AppConfig.FileCopierConfig.builder().skipUnchanged(true).build();
+        new FileCopier(config, ImmutableList.of()).copy(specs);
+        assertArrayEquals(Files.readAllBytes(originals.resolve("short-text.txt")), Files.readAllBytes(extracted));
+
+        FileTime sentinel = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(extracted, sentinel);
+        Files.setLastModifiedTime(copied, sentinel);
+        // Same size, different contents
+        byte[] staleContents = Files.readAllBytes(stale);
+        staleContents[0] ^= 1;
+        Files.write(stale, staleContents);
+        new FileCopier(config, ImmutableList.of()).copy(specs);
+        assertEquals(sentinel, Files.getLastModifiedTime(extracted));
+        assertEquals(sentinel, Files.getLastModifiedTime(copied));
+        assertArrayEquals(Files.readAllBytes(originals.resolve("lorem-ipsum.txt")), Files.readAllBytes(stale));
+
+        // An archive with an entry which is no longer expected is written again
+        new FileCopier(config, ImmutableList.of()).copy(ImmutableSet.of(FileCopier.ArchiveCopySpec.builder()
+                .fromType(ArchiveType.ZIP)
+                .toType(toType)
+                .from(source)
+                .to(copied)
+                .internalSpecs(ImmutableMap.of(
+                        shortText,
+                        FileCopier.ArchiveCopySpec.InternalSpec.builder()
+                                .from(shortText)
+                                .to("short-text.txt")
+                                .expected(shortTextCrc)
+                                .build(),
+                        loremIpsum,
+                        FileCopier.ArchiveCopySpec.InternalSpec.builder()
+                                .from(loremIpsum)
+                                .to("lorem-ipsum.txt")
+                                .expected(loremIpsumCrc)
+                                .build()))
+                .build()));
+        assertEquals(ImmutableSet.of("short-text.txt", "lorem-ipsum.txt"), entryNames(toType, copied));
+        Files.setLastModifiedTime(copied, sentinel);
+        new FileCopier(config, ImmutableList.of()).copy(specs);
+        assertNotEquals(sentinel, Files.getLastModifiedTime(copied));
+        assertEquals(ImmutableSet.of("short-text.txt"), entryNames(toType, copied));
+    }
+
+    private static ImmutableSet<String> entryNames(ArchiveType archiveType, Path archive) throws Exception {
+        ImmutableSet.Builder<String> names = ImmutableSet.builder();
+        if (archiveType == ArchiveType.ZIP) {
+            ArchiveUtils.readZip(archive, (zipFile, entry) -> names.add(entry.getName()));
+        } else {
+            ArchiveUtils.readSevenZip(archive, (sevenZFile, entry) -> names.add(entry.getName()));
+        }
+        return names.build();
+    }
+
+    private static CrcKey crcKey(Path file) throws Exception {
+        byte[] contents = Files.readAllBytes(file);
+        CRC32 crc32 = new CRC32();
+        crc32.update(contents);
+        return CrcKey.of((long) contents.length, Long.toHexString(crc32.getValue()));
+    }
+
+    private ImmutableSet<FileCopier.Spec> createSpecs(Collection<FileScanner.Result> results) {
         Map<Path, List<FileScanner.Result>> resultsForArchive =
                 results.stream().collect(Collectors.groupingBy(FileScanner.Result::getPath));
-        ImmutableSet<FileCopier.Spec> specs = resultsForArchive.entrySet()
+        return resultsForArchive.entrySet()
                 .stream()
                 .map(e -> {
                     ArchiveType archiveType = e.getValue()
@@ -94,11 +812,6 @@ class FileCopierTest extends TestDirDependantTest {
                                     .collect(ImmutableMap.toImmutableMap(FileCopier.ArchiveCopySpec.InternalSpec::getFrom, Function.identity(), (a, b) -> a)))
                             .build();
                 }).collect(ImmutableSet.toImmutableSet());
-        FileCopier fc = new FileCopier(AppConfig.FileCopierConfig.builder().build(), ImmutableList.of());
-        fc.copy(specs);
-        ImmutableList<FileScanner.Result> afterCopy = fs.scan(ImmutableList.of(tempDir));
-        assertEquals(results.size(), afterCopy.size());
-        assertAllResultsAreEqual(results, afterCopy);
     }
 
     private void assertAllResultsAreEqual(
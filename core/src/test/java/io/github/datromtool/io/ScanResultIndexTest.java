@@ -0,0 +1,155 @@
+package io.github.datromtool.io;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import io.github.datromtool.TestDirDependantTest;
+import io.github.datromtool.config.AppConfig;
+import io.github.datromtool.data.CrcKey;
+import io.github.datromtool.data.ParsedGame;
+import io.github.datromtool.data.RegionData;
+import io.github.datromtool.domain.datafile.logiqx.Game;
+import io.github.datromtool.domain.datafile.logiqx.Rom;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static io.github.datromtool.util.TestUtils.getFilename;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScanResultIndexTest extends TestDirDependantTest {
+
+    private static final String FILE = "0016384.txt";
+    private static final String HEADERED_FILE = "headered-0016384.txt";
+    private static final String MISSING_FILE = "0032768.txt";
+
+    private static Map<String, CrcKey> crc32sums;
+    private static Map<String, String> sha1sums;
+    private static ImmutableList<FileScanner.Result> results;
+
+    private ParsedGame single;
+    private ParsedGame both;
+    private ParsedGame missing;
+    private ScanResultIndex index;
+
+    @BeforeAll
+    static void setup() throws IOException {
+        crc32sums = Files.readAllLines(scanTestDataSource.getParent().resolve("CRC32SUMS")).stream()
+                .map(s -> s.split("\\s+"))
+                .peek(s -> s[2] = Paths.get(s[2]).getFileName().toString())
+                .collect(Collectors.toMap(s -> s[2], s -> CrcKey.of(Long.parseLong(s[1]), s[0])));
+        sha1sums = Files.readAllLines(scanTestDataSource.getParent().resolve("SHA1SUMS")).stream()
+                .map(s -> s.split("\\s+"))
+                .peek(s -> s[1] = Paths.get(s[1]).getFileName().toString())
+                .collect(Collectors.toMap(s -> s[1], s -> s[0]));
+        FileScanner fileScanner = new FileScanner(
+                AppConfig.FileScannerConfig.builder().build(),
+                ImmutableList.of(),
+                ImmutableList.of(),
+                ImmutableList.of());
+        results = fileScanner.scan(ImmutableList.of(scanTestDataSource.resolve("0016384")));
+    }
+
+    @BeforeEach
+    void setupIndex() {
+        single = createGame("Single", FILE);
+        both = createGame("Both", FILE, HEADERED_FILE);
+        missing = createGame("Missing", FILE, MISSING_FILE);
+        index = new ScanResultIndex(ImmutableList.of(single, both, missing));
+    }
+
+    private static ParsedGame createGame(String name, String... files) {
+        return ParsedGame.builder()
+                .game(Game.builder()
+                        .name(name)
+                        .description(name)
+                        .roms(Stream.of(files)
+                                .map(f -> Rom.builder()
+                                        .name(f)
+                                        .size(crc32sums.get(f).getSize())
+                                        .crc(crc32sums.get(f).getCrc())
+                                        .sha1(sha1sums.get(f))
+                                        .build())
+                                .collect(ImmutableList.toImmutableList()))
+                        .build())
+                .regionData(RegionData.builder().build())
+                .build();
+    }
+
+    @Test
+    void testAdd() {
+        ImmutableList<ParsedGame> affected = index.add(results);
+        assertEquals(ImmutableSet.of(single, both, missing), ImmutableSet.copyOf(affected));
+        assertTrue(index.isComplete(single));
+        assertTrue(index.isComplete(both));
+        assertFalse(index.isComplete(missing));
+        assertEquals(ImmutableSet.of(single, both), ImmutableSet.copyOf(index.pollChangedGames()));
+        assertTrue(index.pollChangedGames().isEmpty());
+        assertEquals(results.size(), index.getResults().size());
+    }
+
+    @Test
+    void testAdd_incrementally() {
+        for (FileScanner.Result result : results) {
+            if (!getFilename(result).equals(HEADERED_FILE)) {
+                index.add(result);
+            }
+        }
+        assertTrue(index.isComplete(single));
+        assertFalse(index.isComplete(both));
+        assertEquals(ImmutableList.of(single), index.pollChangedGames());
+        results.stream()
+                .filter(r -> getFilename(r).equals(HEADERED_FILE))
+                .forEach(index::add);
+        assertTrue(index.isComplete(both));
+        assertEquals(ImmutableList.of(both), index.pollChangedGames());
+    }
+
+    @Test
+    void testHasUncompressedMatches() {
+        results.stream()
+                .filter(r -> r.getArchiveType() != null)
+                .forEach(index::add);
+        assertTrue(index.isComplete(single));
+        assertFalse(index.hasUncompressedMatches(single));
+        results.stream()
+                .filter(r -> r.getArchiveType() == null)
+                .forEach(index::add);
+        assertTrue(index.hasUncompressedMatches(single));
+        assertTrue(index.hasUncompressedMatches(both));
+        assertFalse(index.hasUncompressedMatches(missing));
+    }
+
+    @Test
+    void testRemove() {
+        index.add(results);
+        index.pollChangedGames();
+        ImmutableList<Path> pathsWithFile = results.stream()
+                .filter(r -> getFilename(r).equals(FILE))
+                .map(FileScanner.Result::getPath)
+                .distinct()
+                .collect(ImmutableList.toImmutableList());
+        assertTrue(pathsWithFile.size() > 1);
+
+        index.remove(pathsWithFile.get(0));
+        assertTrue(index.isComplete(single));
+        assertTrue(index.pollChangedGames().isEmpty());
+        assertFalse(index.getResults(single).isEmpty());
+
+        pathsWithFile.forEach(index::remove);
+        assertFalse(index.isComplete(single));
+        assertFalse(index.isComplete(both));
+        assertEquals(ImmutableSet.of(single, both), ImmutableSet.copyOf(index.pollChangedGames()));
+        assertTrue(index.getResults(single).isEmpty());
+        assertFalse(index.getResults(both).isEmpty());
+    }
+}
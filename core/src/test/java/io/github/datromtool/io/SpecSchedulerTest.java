@@ -0,0 +1,76 @@
+package io.github.datromtool.io;
+
+import com.google.common.collect.ImmutableList;
+import io.github.datromtool.util.ArchiveUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SpecSchedulerTest {
+
+    private Path tempDir;
+
+    @BeforeEach
+    void setup() throws Exception {
+        tempDir = Files.createTempDirectory("datromtool_scheduler_test_");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        ArchiveUtils.deleteFolder(tempDir);
+    }
+
+    private FileCopier.CopySpec createSpec(String directory, String name, int size) throws Exception {
+        Path dir = Files.createDirectories(tempDir.resolve(directory));
+        Path file = Files.write(dir.resolve(name), new byte[size]);
+        return FileCopier.CopySpec.builder()
+                .from(file)
+                .to(tempDir.resolve("out").resolve(name))
+                .build();
+    }
+
+    @Test
+    void testOrder() throws Exception {
+        FileCopier.CopySpec smallA = createSpec("a", "small-a", 10);
+        FileCopier.CopySpec largeB = createSpec("b", "large-b", 1000);
+        FileCopier.CopySpec mediumA = createSpec("a", "medium-a", 100);
+        FileCopier.CopySpec smallB = createSpec("b", "small-b", 1);
+        SpecScheduler scheduler = new SpecScheduler(0);
+        scheduler.addAll(ImmutableList.of(smallA, largeB, mediumA, smallB));
+        // Largest directory first, largest specs first within each directory
+        assertEquals(largeB, scheduler.take().getSpec());
+        assertEquals(smallB, scheduler.take().getSpec());
+        assertEquals(mediumA, scheduler.take().getSpec());
+        assertEquals(smallA, scheduler.take().getSpec());
+    }
+
+    @Test
+    void testMaxSpecsPerDevice() throws Exception {
+        FileCopier.CopySpec first = createSpec("a", "first", 2);
+        FileCopier.CopySpec second = createSpec("a", "second", 1);
+        SpecScheduler scheduler = new SpecScheduler(1);
+        scheduler.addAll(ImmutableList.of(first, second));
+        SpecScheduler.Ticket ticket = scheduler.take();
+        assertEquals(first, ticket.getSpec());
+        CompletableFuture<SpecScheduler.Ticket> next = CompletableFuture.supplyAsync(() -> {
+            try {
+                return scheduler.take();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        // Both are in the same directory, so they're on the same device
+        assertThrows(TimeoutException.class, () -> next.get(200, TimeUnit.MILLISECONDS));
+        scheduler.done(ticket);
+        assertEquals(second, next.get(5, TimeUnit.SECONDS).getSpec());
+    }
+}
@@ -0,0 +1,221 @@
+package io.github.datromtool.io.copy;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import io.github.datromtool.io.ArchiveContentsDependantTest;
+import io.github.datromtool.io.ArchiveType;
+import io.github.datromtool.io.compression.ParallelDeflateOutputStream;
+import io.github.datromtool.io.copy.archive.ArchiveDestinationSpec;
+import io.github.datromtool.io.copy.archive.ArchiveDestinationSpecFactory;
+import io.github.datromtool.io.copy.archive.ArchiveSourceInternalSpec;
+import io.github.datromtool.io.copy.archive.ArchiveSourceSpec;
+import io.github.datromtool.io.copy.archive.ArchiveSourceSpecFactory;
+import io.github.datromtool.io.copy.archive.impl.ZipArchiveDestinationSpec;
+import io.github.datromtool.io.copy.impl.FileSourceSpec;
+import io.github.datromtool.util.ArchiveUtils;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TransferEngineTest extends ArchiveContentsDependantTest {
+
+    private final ArchiveSourceSpecFactory sourceSpecFactory = new ArchiveSourceSpecFactory(false, false);
+    private final ArchiveDestinationSpecFactory destinationSpecFactory = new ArchiveDestinationSpecFactory();
+    private final TransferEngine transferEngine = TransferEngine.withDefaultStrategies();
+
+    private Path tempDir;
+
+    @BeforeEach
+    void setup() throws Exception {
+        tempDir = Files.createTempDirectory("datromtool_transfer_test_");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        ArchiveUtils.deleteFolder(tempDir);
+    }
+
+    @Test
+    void testTransferFile() throws Exception {
+        Path destination = tempDir.resolve("short-text.txt");
+        AtomicLong progress = new AtomicLong();
+        try (SourceSpec source = FileSourceSpec.from(archiveTestDataSource.resolve(SHORT_TEXT_FILE))) {
+            transferEngine.transfer(source, destination, progress::addAndGet);
+        }
+        assertArrayEquals(shortTextContents, Files.readAllBytes(destination));
+        assertEquals(shortTextContents.length, progress.get());
+        assertEquals(
+                Files.getLastModifiedTime(archiveTestDataSource.resolve(SHORT_TEXT_FILE)),
+                Files.getLastModifiedTime(destination));
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = ArchiveType.class, names = {"ZIP", "SEVEN_ZIP", "TAR_GZ"})
+    void testTransferAllFromZip(ArchiveType archiveType) throws Exception {
+        Path destination = tempDir.resolve("files." + archiveType.getAlias());
+        AtomicLong progress = new AtomicLong();
+        try (ArchiveSourceSpec source = sourceSpecFactory.buildSourceSpec(getArchive("files.zip"));
+             ArchiveDestinationSpec destinationSpec = destinationSpecFactory.buildDestinationSpec(destination, archiveType)) {
+            transferEngine.transferAll(source, destinationSpec, name -> name, progress::addAndGet);
+        }
+        assertEquals(shortTextContents.length + loremIpsumContents.length, progress.get());
+        // Entries are written in the order they're read from the source
+        Path extracted = Files.createDirectory(tempDir.resolve("extracted"));
+        try (ArchiveSourceSpec spec = sourceSpecFactory.buildSourceSpec(destination)) {
+            ArchiveSourceInternalSpec internalSpec;
+            while ((internalSpec = spec.getNextInternalSpec()) != null) {
+                try (ArchiveSourceInternalSpec entry = internalSpec) {
+                    transferEngine.transfer(entry, extracted.resolve(Path.of(entry.getName()).getFileName()), bytes -> {
+                    });
+                }
+            }
+        }
+        assertArrayEquals(shortTextContents, Files.readAllBytes(extracted.resolve("short-text.txt")));
+        assertArrayEquals(loremIpsumContents, Files.readAllBytes(extracted.resolve("lorem-ipsum.txt")));
+    }
+
+    @Test
+    void testTransferAll_renamed() throws Exception {
+        Path destination = tempDir.resolve("renamed.zip");
+        try (ArchiveSourceSpec source = sourceSpecFactory.buildSourceSpec(getArchive("files.zip"));
+             ArchiveDestinationSpec destinationSpec = destinationSpecFactory.buildDestinationSpec(destination, ArchiveType.ZIP)) {
+            transferEngine.transferAll(
+                    source,
+                    destinationSpec,
+                    name -> name.equals(SHORT_TEXT_FILE) ? "renamed.txt" : null,
+                    progress -> {
+                    });
+        }
+        try (ArchiveSourceSpec spec = sourceSpecFactory.buildSourceSpec(destination)) {
+            SourceSpec internalSpec = spec.getNextInternalSpec();
+            assertEquals("renamed.txt", internalSpec.getName());
+            assertIsShortTextContents(internalSpec);
+            assertNull(spec.getNextInternalSpec());
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void testTransferAll_rawStream(boolean parallel) throws Exception {
+        Path source = getArchive("files.zip");
+        Path destination = tempDir.resolve("raw.zip");
+        try (ArchiveSourceSpec sourceSpec = sourceSpecFactory.buildSourceSpec(source);
+             ArchiveDestinationSpec destinationSpec = new ZipArchiveDestinationSpec(destination, parallel)) {
+            transferEngine.transferAll(sourceSpec, destinationSpec, name -> name, progress -> {
+            });
+        }
+        try (ZipFile sourceZip = ZipFile.builder().setPath(source).get();
+             ZipFile destinationZip = ZipFile.builder().setPath(destination).get()) {
+            for (String name : new String[]{SHORT_TEXT_FILE, LOREM_IPSUM_FILE}) {
+                ZipArchiveEntry sourceEntry = sourceZip.getEntry(name);
+                ZipArchiveEntry destinationEntry = destinationZip.getEntry(name);
+                assertEquals(sourceEntry.getCrc(), destinationEntry.getCrc());
+                if (!parallel) {
+                    // Only passed through when writing sequentially
+                    assertArrayEquals(
+                            IOUtils.toByteArray(sourceZip.getRawInputStream(sourceEntry)),
+                            IOUtils.toByteArray(destinationZip.getRawInputStream(destinationEntry)));
+                }
+                try (InputStream inputStream = destinationZip.getInputStream(destinationEntry)) {
+                    assertArrayEquals(name.equals(SHORT_TEXT_FILE) ? shortTextContents : loremIpsumContents,
+                            IOUtils.toByteArray(inputStream));
+                }
+            }
+        }
+    }
+
+    @Test
+    void testTransfer_parallelDeflate() throws Exception {
+        byte[] largeContents = new byte[(int) ParallelDeflateOutputStream.MIN_PARALLEL_SIZE];
+        new Random(0).nextBytes(largeContents);
+        Path largeFile = Files.write(tempDir.resolve("large.bin"), largeContents);
+        Path source = getArchive("files.zip");
+        Path destination = tempDir.resolve("deflated.zip");
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try (ArchiveSourceSpec sourceSpec = sourceSpecFactory.buildSourceSpec(source);
+             ArchiveDestinationSpec destinationSpec =
+                     new ZipArchiveDestinationSpec(destination, false, 2, executorService);
+             SourceSpec largeSpec = FileSourceSpec.from(largeFile)) {
+            transferEngine.transfer(largeSpec, destinationSpec, "large.bin", progress -> {
+            });
+            transferEngine.transferAll(sourceSpec, destinationSpec, name -> name, progress -> {
+            });
+        } finally {
+            executorService.shutdownNow();
+        }
+        try (ZipFile sourceZip = ZipFile.builder().setPath(source).get();
+             ZipFile destinationZip = ZipFile.builder().setPath(destination).get()) {
+            ImmutableList<String> names = Collections.list(destinationZip.getEntriesInPhysicalOrder())
+                    .stream()
+                    .map(ZipArchiveEntry::getName)
+                    .collect(ImmutableList.toImmutableList());
+            // The large entry is added as soon as it's deflated, before the ones passed through as is
+            assertEquals("large.bin", names.get(0));
+            assertEquals(ImmutableSet.of("large.bin", SHORT_TEXT_FILE, LOREM_IPSUM_FILE), ImmutableSet.copyOf(names));
+            try (InputStream inputStream = destinationZip.getInputStream(destinationZip.getEntry("large.bin"))) {
+                assertArrayEquals(largeContents, IOUtils.toByteArray(inputStream));
+            }
+            assertArrayEquals(
+                    IOUtils.toByteArray(sourceZip.getRawInputStream(sourceZip.getEntry(LOREM_IPSUM_FILE))),
+                    IOUtils.toByteArray(destinationZip.getRawInputStream(destinationZip.getEntry(LOREM_IPSUM_FILE))));
+        }
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(ImmutableSet.of(largeFile, destination), files.collect(ImmutableSet.toImmutableSet()));
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = ArchiveType.class, names = {"ZIP", "SEVEN_ZIP", "TAR_XZ"})
+    void testTransferToStream(ArchiveType archiveType) throws Exception {
+        AtomicLong progress = new AtomicLong();
+        try (ArchiveSourceSpec source = sourceSpecFactory.buildSourceSpec(getArchive("files." + archiveType.getAlias()))) {
+            ArchiveSourceInternalSpec internalSpec;
+            while ((internalSpec = source.getNextInternalSpec()) != null) {
+                try (ArchiveSourceInternalSpec entry = internalSpec;
+                     OutputStream outputStream = Files.newOutputStream(
+                             tempDir.resolve(Path.of(entry.getName()).getFileName()))) {
+                    transferEngine.transfer(entry, outputStream, progress::addAndGet);
+                }
+            }
+        }
+        assertEquals(shortTextContents.length + loremIpsumContents.length, progress.get());
+        assertArrayEquals(shortTextContents, Files.readAllBytes(tempDir.resolve("short-text.txt")));
+        assertArrayEquals(loremIpsumContents, Files.readAllBytes(tempDir.resolve("lorem-ipsum.txt")));
+    }
+
+    @Test
+    void testUnsupportedArchives() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> sourceSpecFactory.buildSourceSpec(archiveTestDataSource.resolve(SHORT_TEXT_FILE)));
+        assertThrows(
+                UnsupportedOperationException.class,
+                () -> destinationSpecFactory.buildDestinationSpec(tempDir.resolve("files.rar"), ArchiveType.RAR));
+    }
+
+    private static Path getArchive(String name) {
+        return archiveTestDataSource.resolve("archives").resolve(name);
+    }
+}
@@ -11,6 +11,7 @@ import java.nio.file.Path;
 
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class SevenZipArchiveSourceSpecTest extends ArchiveContentsDependantTest {
 
@@ -76,4 +77,14 @@ class SevenZipArchiveSourceSpecTest extends ArchiveContentsDependantTest {
         }
     }
 
-}
\ No newline at end of file
+    @Test
+    void testGetInternalSpec() throws IOException {
+        try (SevenZipArchiveSourceSpec spec = new SevenZipArchiveSourceSpec(sevenZipFile)) {
+            assertTrue(spec.isRandomAccess());
+            assertIsShortText(spec.getInternalSpec(SHORT_TEXT_FILE));
+            assertIsLoremIpsum(spec.getInternalSpec(LOREM_IPSUM_FILE));
+            assertThrows(ArchiveEntryNotFoundException.class, () -> spec.getInternalSpec("unknownFile"));
+        }
+    }
+
+}
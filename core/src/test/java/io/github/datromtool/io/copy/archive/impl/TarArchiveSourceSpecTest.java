@@ -3,19 +3,36 @@ package io.github.datromtool.io.copy.archive.impl;
 import com.google.common.collect.ImmutableList;
 import io.github.datromtool.io.ArchiveContentsDependantTest;
 import io.github.datromtool.io.compression.CompressionAlgorithm;
+import io.github.datromtool.io.compression.ParallelXZCompressor;
+import io.github.datromtool.io.compression.SeekableXZChannel;
 import io.github.datromtool.io.copy.archive.exceptions.ArchiveEntryNotFoundException;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Stream;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @Slf4j
 class TarArchiveSourceSpecTest extends ArchiveContentsDependantTest {
@@ -95,4 +112,79 @@ class TarArchiveSourceSpecTest extends ArchiveContentsDependantTest {
         }
     }
 
-}
\ No newline at end of file
+    @ParameterizedTest
+    @MethodSource("tarArchives")
+    void testGetInternalSpec_sequential(Path file, CompressionAlgorithm algorithm) throws IOException {
+        try (TarArchiveSourceSpec spec = new TarArchiveSourceSpec(algorithm, file)) {
+            assertFalse(spec.isRandomAccess());
+            assertIsShortText(spec.getInternalSpec(SHORT_TEXT_FILE), false, DateField.MTIME);
+            // Stored before the short text, which was already read
+            assertThrows(ArchiveEntryNotFoundException.class, () -> spec.getInternalSpec(LOREM_IPSUM_FILE));
+        }
+    }
+
+    @Test
+    void testReadIndexedXZ(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("files.tar.xz");
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try (OutputStream outputStream = new ParallelXZCompressor(16 * 1024, 2, executorService)
+                .compress(Files.newOutputStream(file))) {
+            Files.copy(archiveTestDataSource.resolve("archives").resolve("files.tar"), outputStream);
+        } finally {
+            executorService.shutdownNow();
+        }
+        try (SeekableXZChannel channel = SeekableXZChannel.openIfSeekable(FileChannel.open(file, StandardOpenOption.READ))) {
+            assertNotNull(channel);
+            assertTrue(TarArchiveSourceSpec.hasEntriesLargerThanBlocks(channel));
+        }
+        try (TarArchiveSourceSpec spec = new TarArchiveSourceSpec(CompressionAlgorithm.XZ, file, ImmutableList.of(SHORT_TEXT_FILE, LOREM_IPSUM_FILE))) {
+            assertIsLoremIpsum(spec.getNextInternalSpec(), false, DateField.MTIME);
+            assertIsShortText(spec.getNextInternalSpec(), false, DateField.MTIME);
+            assertNull(spec.getNextInternalSpec());
+        }
+        try (TarArchiveSourceSpec spec = new TarArchiveSourceSpec(CompressionAlgorithm.XZ, file, ImmutableList.of(SHORT_TEXT_FILE, "unknownFile"))) {
+            assertIsShortText(spec.getNextInternalSpec(), false, DateField.MTIME);
+            assertThrows(ArchiveEntryNotFoundException.class, spec::getNextInternalSpec);
+        }
+    }
+
+    @Test
+    void testMultiBlockXZWithSmallEntries_isReadSequentially(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("small.tar.xz");
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try (TarArchiveOutputStream tarOutputStream = new TarArchiveOutputStream(
+                new ParallelXZCompressor(4 * 1024, 2, executorService).compress(Files.newOutputStream(file)))) {
+            for (int i = 0; i < 32; i++) {
+                TarArchiveEntry entry = new TarArchiveEntry("file" + i + ".txt");
+                entry.setSize(1024);
+                tarOutputStream.putArchiveEntry(entry);
+                tarOutputStream.write(loremIpsumContents, i * 1024, 1024);
+                tarOutputStream.closeArchiveEntry();
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        try (SeekableXZChannel channel = SeekableXZChannel.openIfSeekable(FileChannel.open(file, StandardOpenOption.READ))) {
+            assertNotNull(channel);
+            assertFalse(TarArchiveSourceSpec.hasEntriesLargerThanBlocks(channel));
+        }
+        try (TarArchiveSourceSpec spec = new TarArchiveSourceSpec(CompressionAlgorithm.XZ, file, ImmutableList.of("file20.txt", "file3.txt"))) {
+            try (InputStream inputStream = spec.getNextInternalSpec().getInputStream()) {
+                assertArrayEquals(Arrays.copyOfRange(loremIpsumContents, 3 * 1024, 4 * 1024), inputStream.readAllBytes());
+            }
+            try (InputStream inputStream = spec.getNextInternalSpec().getInputStream()) {
+                assertArrayEquals(Arrays.copyOfRange(loremIpsumContents, 20 * 1024, 21 * 1024), inputStream.readAllBytes());
+            }
+            assertNull(spec.getNextInternalSpec());
+        }
+    }
+
+    @Test
+    void testSingleBlockXZ_isReadSequentially() throws IOException {
+        Path file = archiveTestDataSource.resolve("archives").resolve("files.tar.xz");
+        try (FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+            assertNull(SeekableXZChannel.openIfSeekable(fileChannel));
+        }
+    }
+
+}
@@ -1,5 +1,6 @@
 package io.github.datromtool.io.copy.archive.impl;
 
+import com.google.common.collect.ImmutableList;
 import io.github.datromtool.io.ArchiveContentsDependantTest;
 import io.github.datromtool.io.copy.SourceSpec;
 import io.github.datromtool.io.copy.archive.ArchiveDestinationInternalSpec;
@@ -14,7 +15,12 @@ import org.junit.jupiter.api.Test;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 
 class ZipArchiveDestinationSpecTest extends ArchiveContentsDependantTest {
@@ -45,6 +51,55 @@ class ZipArchiveDestinationSpecTest extends ArchiveContentsDependantTest {
         }
     }
 
+    @Test
+    void testWriteFileToZip_parallel() throws Exception {
+        Path file = tempDir.resolve("testWriteFileToZip_parallel.zip");
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try (ArchiveDestinationSpec destinationSpec = new ZipArchiveDestinationSpec(file, true)) {
+            try (SourceSpec shortText = FileSourceSpec.from(archiveTestDataSource.resolve(SHORT_TEXT_FILE));
+                 SourceSpec loremIpsum = FileSourceSpec.from(archiveTestDataSource.resolve(LOREM_IPSUM_FILE));
+                 ArchiveDestinationInternalSpec shortTextDestination =
+                         destinationSpec.createInternalDestinationSpecFor(SHORT_TEXT_FILE, shortText);
+                 ArchiveDestinationInternalSpec loremIpsumDestination =
+                         destinationSpec.createInternalDestinationSpecFor(LOREM_IPSUM_FILE, loremIpsum)) {
+                Future<?> loremIpsumFuture = executorService.submit(() ->
+                        IOUtils.copy(loremIpsum.getInputStream(), loremIpsumDestination.getOutputStream()));
+                Future<?> shortTextFuture = executorService.submit(() ->
+                        IOUtils.copy(shortText.getInputStream(), shortTextDestination.getOutputStream()));
+                loremIpsumFuture.get();
+                shortTextFuture.get();
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        try (ZipArchiveSourceSpec spec = new ZipArchiveSourceSpec(file)) {
+            assertIsLocalShortText(spec.getNextInternalSpec());
+            assertIsLocalLoremIpsum(spec.getNextInternalSpec());
+            assertNull(spec.getNextInternalSpec());
+        }
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(ImmutableList.of(file), files.collect(ImmutableList.toImmutableList()));
+        }
+    }
+
+    @Test
+    void testWriteFileToZip_parallelDeflate() throws IOException {
+        Path file = tempDir.resolve("testWriteFileToZip_parallelDeflate.zip");
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try (ArchiveDestinationSpec destinationSpec =
+                     new ZipArchiveDestinationSpec(file, false, 2, executorService)) {
+            writeFile(SHORT_TEXT_FILE, destinationSpec);
+            writeFile(LOREM_IPSUM_FILE, destinationSpec);
+        } finally {
+            executorService.shutdownNow();
+        }
+        try (ZipArchiveSourceSpec spec = new ZipArchiveSourceSpec(file)) {
+            assertIsLocalShortText(spec.getNextInternalSpec());
+            assertIsLocalLoremIpsum(spec.getNextInternalSpec());
+            assertNull(spec.getNextInternalSpec());
+        }
+    }
+
     private static void writeFile(String filePath, ArchiveDestinationSpec destinationSpec) throws IOException {
         try (SourceSpec sourceSpec = FileSourceSpec.from(archiveTestDataSource.resolve(filePath))) {
             try (ArchiveDestinationInternalSpec destinationInternalSpec = destinationSpec.createInternalDestinationSpecFor(filePath, sourceSpec)) {
@@ -0,0 +1,66 @@
+package io.github.datromtool.io.copy.compression;
+
+import io.github.datromtool.io.ArchiveContentsDependantTest;
+import io.github.datromtool.io.compression.ParallelDeflateOutputStream;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ParallelDeflateOutputStreamTest extends ArchiveContentsDependantTest {
+
+    private ExecutorService executorService;
+
+    @BeforeEach
+    void setup() {
+        executorService = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, ParallelDeflateOutputStream.BLOCK_SIZE, 10 * ParallelDeflateOutputStream.BLOCK_SIZE + 1})
+    void testCompressDecompress(int size) throws IOException {
+        byte[] contents = new byte[size];
+        for (int i = 0; i < size; i += loremIpsumContents.length) {
+            System.arraycopy(loremIpsumContents, 0, contents, i, Math.min(loremIpsumContents.length, size - i));
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        ParallelDeflateOutputStream outputStream =
+                new ParallelDeflateOutputStream(compressed, Deflater.DEFAULT_COMPRESSION, 4, executorService);
+        try (outputStream) {
+            // Odd-sized writes, so they don't line up with the blocks
+            for (int i = 0; i < size; i += 10_000) {
+                outputStream.write(contents, i, Math.min(10_000, size - i));
+            }
+        }
+        CRC32 crc32 = new CRC32();
+        crc32.update(contents);
+        assertEquals(crc32.getValue(), outputStream.getCrc());
+        assertEquals(size, outputStream.getBytesRead());
+        assertEquals(compressed.size(), outputStream.getBytesWritten());
+        try (InputStream inputStream = new InflaterInputStream(
+                new ByteArrayInputStream(compressed.toByteArray()),
+                new Inflater(true))) {
+            assertArrayEquals(contents, IOUtils.toByteArray(inputStream));
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package io.github.datromtool.io.copy.compression;
+
+import io.github.datromtool.io.ArchiveContentsDependantTest;
+import io.github.datromtool.io.compression.ParallelGzipDecompressor;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ParallelGzipInputStreamTest extends ArchiveContentsDependantTest {
+
+    private static final int BLOCK_SIZE = 64 * 1024 - 256;
+
+    private ExecutorService executorService;
+
+    @BeforeEach
+    void setup() {
+        executorService = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    private static byte[] repeatLoremIpsum(int size) {
+        byte[] contents = new byte[size];
+        for (int i = 0; i < size; i += loremIpsumContents.length) {
+            System.arraycopy(loremIpsumContents, 0, contents, i, Math.min(loremIpsumContents.length, size - i));
+        }
+        return contents;
+    }
+
+    /**
+     * Writes the data as BGZF members, as bgzip does, including the empty member at the end
+     */
+    private static void writeBgzf(ByteArrayOutputStream out, byte[] contents) {
+        for (int i = 0; i < contents.length; i += BLOCK_SIZE) {
+            writeBgzfMember(out, Arrays.copyOfRange(contents, i, Math.min(contents.length, i + BLOCK_SIZE)));
+        }
+        writeBgzfMember(out, new byte[0]);
+    }
+
+    private static void writeBgzfMember(ByteArrayOutputStream out, byte[] input) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(input);
+        deflater.finish();
+        byte[] buffer = new byte[input.length + 1024];
+        int compressedSize = deflater.deflate(buffer);
+        deflater.end();
+        CRC32 crc32 = new CRC32();
+        crc32.update(input);
+        int memberSize = 12 + 6 + compressedSize + 8;
+        out.writeBytes(new byte[]{0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff, 6, 0, 'B', 'C', 2, 0});
+        writeShort(out, memberSize - 1);
+        out.write(buffer, 0, compressedSize);
+        writeInt(out, crc32.getValue());
+        writeInt(out, input.length);
+    }
+
+    private static void writeShort(ByteArrayOutputStream out, int value) {
+        out.write(value & 0xff);
+        out.write((value >> 8) & 0xff);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, long value) {
+        writeShort(out, (int) (value & 0xffff));
+        writeShort(out, (int) ((value >> 16) & 0xffff));
+    }
+
+    private byte[] decompress(byte[] compressed) throws IOException {
+        try (InputStream inputStream = new ParallelGzipDecompressor(4, executorService)
+                .decompress(new ByteArrayInputStream(compressed))) {
+            return IOUtils.toByteArray(inputStream);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, BLOCK_SIZE, 10 * BLOCK_SIZE + 1})
+    void testBgzf(int size) throws IOException {
+        byte[] contents = repeatLoremIpsum(size);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        writeBgzf(compressed, contents);
+        assertArrayEquals(contents, decompress(compressed.toByteArray()));
+    }
+
+    @Test
+    void testBgzfFollowedByRegularMember() throws IOException {
+        byte[] contents = repeatLoremIpsum(3 * BLOCK_SIZE);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        writeBgzf(compressed, Arrays.copyOfRange(contents, 0, 2 * BLOCK_SIZE));
+        try (GzipCompressorOutputStream outputStream = new GzipCompressorOutputStream(compressed)) {
+            outputStream.write(contents, 2 * BLOCK_SIZE, BLOCK_SIZE);
+        }
+        assertArrayEquals(contents, decompress(compressed.toByteArray()));
+    }
+
+    @Test
+    void testMultipleRegularMembers() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        for (int i = 0; i < 2; i++) {
+            try (GzipCompressorOutputStream outputStream = new GzipCompressorOutputStream(compressed)) {
+                outputStream.write(loremIpsumContents);
+            }
+        }
+        byte[] expected = new byte[loremIpsumContents.length * 2];
+        System.arraycopy(loremIpsumContents, 0, expected, 0, loremIpsumContents.length);
+        System.arraycopy(loremIpsumContents, 0, expected, loremIpsumContents.length, loremIpsumContents.length);
+        assertArrayEquals(expected, decompress(compressed.toByteArray()));
+    }
+
+    @Test
+    void testCorruptMember() {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        writeBgzf(compressed, repeatLoremIpsum(2 * BLOCK_SIZE));
+        byte[] bytes = compressed.toByteArray();
+        // Last byte of the CRC32 of the first member
+        int firstMemberSize = ((bytes[16] & 0xff) | ((bytes[17] & 0xff) << 8)) + 1;
+        bytes[firstMemberSize - 5] ^= 0x55;
+        assertThrows(IOException.class, () -> decompress(bytes));
+    }
+}
@@ -0,0 +1,54 @@
+package io.github.datromtool.io.copy.compression;
+
+import io.github.datromtool.io.ArchiveContentsDependantTest;
+import io.github.datromtool.io.compression.CompressionAlgorithm;
+import io.github.datromtool.io.compression.ParallelXZCompressor;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+class ParallelXZCompressorTest extends ArchiveContentsDependantTest {
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    private ExecutorService executorService;
+
+    @BeforeEach
+    void setup() {
+        executorService = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, BLOCK_SIZE, 10 * BLOCK_SIZE + 1})
+    void testCompressDecompress(int size) throws IOException {
+        byte[] contents = new byte[size];
+        for (int i = 0; i < size; i += loremIpsumContents.length) {
+            System.arraycopy(loremIpsumContents, 0, contents, i, Math.min(loremIpsumContents.length, size - i));
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream outputStream = new ParallelXZCompressor(BLOCK_SIZE, 4, executorService).compress(compressed)) {
+            outputStream.write(contents);
+        }
+        try (InputStream inputStream = CompressionAlgorithm.XZ.getDecompressor()
+                .decompress(new ByteArrayInputStream(compressed.toByteArray()))) {
+            assertArrayEquals(contents, IOUtils.toByteArray(inputStream));
+        }
+    }
+}
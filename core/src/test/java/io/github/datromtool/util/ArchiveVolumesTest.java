@@ -0,0 +1,138 @@
+package io.github.datromtool.util;
+
+import com.google.common.collect.ImmutableList;
+import io.github.datromtool.io.ArchiveContentsDependantTest;
+import io.github.datromtool.io.ArchiveType;
+import io.github.datromtool.io.copy.archive.ArchiveSourceInternalSpec;
+import io.github.datromtool.io.copy.archive.ArchiveSourceSpec;
+import io.github.datromtool.io.copy.archive.ArchiveSourceSpecFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ArchiveVolumesTest extends ArchiveContentsDependantTest {
+
+    private Path tempDir;
+
+    @BeforeEach
+    void setup() throws Exception {
+        tempDir = Files.createTempDirectory("datromtool_volumes_test_");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        ArchiveUtils.deleteFolder(tempDir);
+    }
+
+    private List<Path> split(byte[] contents, String name, int... sizes) throws Exception {
+        List<Path> volumes = new ArrayList<>();
+        int offset = 0;
+        for (int i = 0; i <= sizes.length; i++) {
+            int end = i < sizes.length ? offset + sizes[i] : contents.length;
+            Path volume = tempDir.resolve(String.format("%s.%03d", name, i + 1));
+            volumes.add(Files.write(volume, Arrays.copyOfRange(contents, offset, end)));
+            offset = end;
+        }
+        return volumes;
+    }
+
+    @Test
+    void testNames() {
+        assertEquals(ArchiveType.ZIP, ArchiveType.parse("files.zip.001"));
+        assertEquals(ArchiveType.TAR_GZ, ArchiveType.parse("files.tar.gz.001"));
+        assertNull(ArchiveType.parse("files.zip.002"));
+        assertNull(ArchiveType.parse("files.rar.001"));
+        assertNull(ArchiveType.parse("files.bin.001"));
+        assertEquals(tempDir.resolve("files.7z.001"), ArchiveVolumes.getFirstVolume(tempDir.resolve("files.7z.002")));
+        assertEquals(tempDir.resolve("files.part01.rar"), ArchiveVolumes.getFirstVolume(tempDir.resolve("files.part02.rar")));
+        assertNull(ArchiveVolumes.getFirstVolume(tempDir.resolve("files.part1.rar")));
+        assertNull(ArchiveVolumes.getFirstVolume(tempDir.resolve("files.bin.002")));
+        assertNull(ArchiveVolumes.getFirstVolume(tempDir.resolve("files.zip")));
+    }
+
+    @Test
+    void testVolumeChannel() throws Exception {
+        byte[] contents = new byte[10000];
+        new Random(1).nextBytes(contents);
+        List<Path> volumes = split(contents, "data.zip", 3000, 0, 2500);
+        assertEquals(volumes, ArchiveVolumes.getVolumes(volumes.get(0)));
+        try (SeekableByteChannel channel = VolumeChannel.open(volumes, 1000)) {
+            assertEquals(contents.length, channel.size());
+            assertArrayEquals(contents, read(channel, 0, contents.length));
+            assertEquals(-1, channel.read(ByteBuffer.allocate(1)));
+            // Across the boundaries of the volumes, including the empty one
+            assertArrayEquals(Arrays.copyOfRange(contents, 2900, 5600), read(channel, 2900, 2700));
+            assertArrayEquals(Arrays.copyOfRange(contents, 100, 200), read(channel, 100, 100));
+        }
+    }
+
+    @Test
+    void testReadAttributes() throws Exception {
+        byte[] contents = new byte[10000];
+        new Random(1).nextBytes(contents);
+        List<Path> volumes = split(contents, "data.zip", 3000, 3000);
+        FileTime time = FileTime.from(Instant.parse("2022-02-23T09:24:19Z"));
+        for (Path volume : volumes) {
+            Files.setLastModifiedTime(volume, time);
+        }
+        assertEquals(new ArchiveVolumes.Attributes(10000, time), ArchiveVolumes.readAttributes(volumes.get(0)));
+        // A later volume which changed changes the attributes of the archive
+        Files.write(volumes.get(1), Arrays.copyOfRange(contents, 3000, 4000));
+        FileTime laterTime = FileTime.from(Instant.parse("2022-02-24T09:24:19Z"));
+        Files.setLastModifiedTime(volumes.get(1), laterTime);
+        assertEquals(new ArchiveVolumes.Attributes(8000, laterTime), ArchiveVolumes.readAttributes(volumes.get(0)));
+    }
+
+    private static byte[] read(SeekableByteChannel channel, long position, int length) throws Exception {
+        channel.position(position);
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                break;
+            }
+        }
+        assertEquals(position + length, channel.position());
+        return buffer.array();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"zip", "7z", "tar.gz"})
+    void testReadSplitArchive(String extension) throws Exception {
+        byte[] contents = Files.readAllBytes(archiveTestDataSource.resolve("archives").resolve("files." + extension));
+        int volumeSize = contents.length / 3;
+        List<Path> volumes = split(contents, "files." + extension, volumeSize, volumeSize);
+        ArchiveSourceSpec spec = new ArchiveSourceSpecFactory(false, false).buildSourceSpec(volumes.get(0));
+        List<String> names = new ArrayList<>();
+        try (spec) {
+            ArchiveSourceInternalSpec internalSpec;
+            while ((internalSpec = spec.getNextInternalSpec()) != null) {
+                names.add(internalSpec.getName());
+                if (internalSpec.getName().equals(SHORT_TEXT_FILE)) {
+                    assertIsShortTextContents(internalSpec);
+                } else {
+                    assertIsLoremIpsumContents(internalSpec);
+                }
+            }
+        }
+        assertEquals(
+                ImmutableList.of(LOREM_IPSUM_FILE, SHORT_TEXT_FILE),
+                names.stream().sorted().collect(ImmutableList.toImmutableList()));
+    }
+}
@@ -0,0 +1,99 @@
+package io.github.datromtool.util;
+
+import com.google.common.collect.ImmutableMap;
+import io.github.datromtool.config.AppConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ReadAheadPolicyTest {
+
+    private Path tempDir;
+
+    @BeforeEach
+    void setup() throws Exception {
+        tempDir = Files.createTempDirectory("datromtool_read_ahead_test_");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        ArchiveUtils.deleteFolder(tempDir);
+    }
+
+    @Test
+    void testRead() throws Exception {
+        byte[] contents = new byte[10500];
+        new Random(1).nextBytes(contents);
+        Path file = Files.write(tempDir.resolve("file.bin"), contents);
+        ReadAheadPolicy policy = new ReadAheadPolicy(1000, 3, ImmutableMap.of());
+        try (InputStream inputStream = policy.newInputStream(file)) {
+            assertInstanceOf(ReadAheadInputStream.class, inputStream);
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            // Single bytes and reads across the blocks
+            outputStream.write(inputStream.read());
+            byte[] buffer = new byte[1500];
+            int read;
+            while ((read = inputStream.read(buffer)) >= 0) {
+                outputStream.write(buffer, 0, read);
+            }
+            assertEquals(-1, inputStream.read());
+            assertArrayEquals(contents, outputStream.toByteArray());
+        }
+    }
+
+    @Test
+    void testSkip() throws Exception {
+        byte[] contents = new byte[10500];
+        new Random(1).nextBytes(contents);
+        Path file = Files.write(tempDir.resolve("file.bin"), contents);
+        try (InputStream inputStream = new ReadAheadPolicy(1000, 3, ImmutableMap.of()).newInputStream(file)) {
+            assertEquals(contents[0] & 0xFF, inputStream.read());
+            // Within the current block
+            assertEquals(499, inputStream.skip(499));
+            assertEquals(contents[500] & 0xFF, inputStream.read());
+            // Into a block already requested
+            assertEquals(1499, inputStream.skip(1499));
+            assertEquals(contents[2000] & 0xFF, inputStream.read());
+            // Beyond all blocks requested, into the middle of a block
+            assertEquals(5749, inputStream.skip(5749));
+            byte[] buffer = new byte[300];
+            assertEquals(250, inputStream.readNBytes(buffer, 0, 250));
+            assertArrayEquals(Arrays.copyOfRange(contents, 7750, 8000), Arrays.copyOf(buffer, 250));
+            assertEquals(300, inputStream.readNBytes(buffer, 0, 300));
+            assertArrayEquals(Arrays.copyOfRange(contents, 8000, 8300), buffer);
+            // Past the end
+            assertEquals(2200, inputStream.skip(10000));
+            assertEquals(-1, inputStream.read());
+            assertEquals(0, inputStream.skip(1));
+        }
+    }
+
+    @Test
+    void testEmptyFile() throws Exception {
+        Path file = Files.write(tempDir.resolve("empty.bin"), new byte[0]);
+        try (InputStream inputStream = new ReadAheadPolicy(1000, 3, ImmutableMap.of()).newInputStream(file)) {
+            assertEquals(-1, inputStream.read());
+        }
+    }
+
+    @Test
+    void testDepthPerFileStore() throws Exception {
+        Path file = Files.write(tempDir.resolve("file.bin"), new byte[1]);
+        String type = Files.getFileStore(tempDir).type();
+        assertEquals(5, new ReadAheadPolicy(1000, 0, ImmutableMap.of(type, 5)).getDepth(file));
+        assertEquals(2, new ReadAheadPolicy(1000, 2, ImmutableMap.of("no-such-type", 5)).getDepth(file));
+        assertSame(ReadAheadPolicy.DISABLED, ReadAheadPolicy.from(AppConfig.ReadAheadConfig.builder().build()));
+    }
+}
@@ -0,0 +1,129 @@
+package io.github.datromtool.util;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ZipFilePoolTest {
+
+    private Path tempDir;
+
+    @BeforeEach
+    void setup() throws Exception {
+        tempDir = Files.createTempDirectory("datromtool_zip_pool_test_");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        ArchiveUtils.deleteFolder(tempDir);
+    }
+
+    private Path createZip(String name, String entryName) throws Exception {
+        Path file = tempDir.resolve(name);
+        try (ZipArchiveOutputStream outputStream = new ZipArchiveOutputStream(file)) {
+            outputStream.putArchiveEntry(new ZipArchiveEntry(entryName));
+            outputStream.write(entryName.getBytes(StandardCharsets.UTF_8));
+            outputStream.closeArchiveEntry();
+        }
+        return file;
+    }
+
+    @Test
+    void testShared() throws Exception {
+        Path file = createZip("file.zip", "a.txt");
+        ZipFilePool pool = new ZipFilePool(1);
+        try (ZipFilePool.Lease first = pool.acquire(file);
+             ZipFilePool.Lease second = pool.acquire(file)) {
+            assertSame(first.getZipFile(), second.getZipFile());
+        }
+        try (ZipFilePool.Lease first = pool.acquire(file)) {
+            ZipFilePool.Lease second = pool.acquire(file);
+            second.close();
+            // Still open while the first lease is in use, and kept open when idle
+            assertNotNull(first.getZipFile().getEntry("a.txt"));
+        }
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsed() throws Exception {
+        Path a = createZip("a.zip", "a.txt");
+        Path b = createZip("b.zip", "b.txt");
+        ZipFilePool pool = new ZipFilePool(1);
+        Object zipFileA;
+        try (ZipFilePool.Lease lease = pool.acquire(a)) {
+            zipFileA = lease.getZipFile();
+        }
+        try (ZipFilePool.Lease lease = pool.acquire(b)) {
+            assertNotNull(lease.getZipFile());
+        }
+        try (ZipFilePool.Lease lease = pool.acquire(a)) {
+            assertNotSame(zipFileA, lease.getZipFile());
+        }
+    }
+
+    @Test
+    void testReopensChangedArchive() throws Exception {
+        Path file = createZip("file.zip", "a.txt");
+        ZipFilePool pool = new ZipFilePool(4);
+        try (ZipFilePool.Lease lease = pool.acquire(file)) {
+            assertNotNull(lease.getZipFile().getEntry("a.txt"));
+        }
+        Files.delete(file);
+        createZip("file.zip", "b.txt");
+        Files.setLastModifiedTime(file, FileTime.from(Instant.parse("2022-02-23T09:24:19Z")));
+        try (ZipFilePool.Lease lease = pool.acquire(file)) {
+            assertNull(lease.getZipFile().getEntry("a.txt"));
+            assertNotNull(lease.getZipFile().getEntry("b.txt"));
+        }
+    }
+
+    @Test
+    void testEvict() throws Exception {
+        Path file = createZip("file.zip", "a.txt");
+        ZipFilePool pool = new ZipFilePool(4);
+        Object zipFile;
+        try (ZipFilePool.Lease lease = pool.acquire(file)) {
+            zipFile = lease.getZipFile();
+            pool.evict(file);
+            // Still usable until released
+            assertNotNull(lease.getZipFile().getEntry("a.txt"));
+        }
+        try (ZipFilePool.Lease lease = pool.acquire(file)) {
+            assertNotSame(zipFile, lease.getZipFile());
+        }
+    }
+
+    @Test
+    void testClosesIdleHandlesAfterSessions() throws Exception {
+        Path file = createZip("file.zip", "a.txt");
+        ZipFilePool pool = new ZipFilePool(4);
+        ZipFilePool.Session scan = pool.openSession();
+        ZipFilePool.Session copy = pool.openSession();
+        Object zipFile;
+        try (ZipFilePool.Lease lease = pool.acquire(file)) {
+            zipFile = lease.getZipFile();
+        }
+        scan.close();
+        // Still used by the other session
+        try (ZipFilePool.Lease lease = pool.acquire(file)) {
+            assertSame(zipFile, lease.getZipFile());
+        }
+        copy.close();
+        try (ZipFilePool.Lease lease = pool.acquire(file)) {
+            assertNotSame(zipFile, lease.getZipFile());
+        }
+    }
+}